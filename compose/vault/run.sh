@@ -16,6 +16,7 @@ vault kv patch secret/shakti-registration/dev/  spring.couchbase.password=passwo
 vault kv patch secret/shakti-registration/dev/  gluu.uri=https://iam-dev2.shakticoin.com
 vault kv patch secret/shakti-registration/dev/  gluu.client.id=6d6e7ace-3b3a-48ad-be22-d2146f314927
 vault kv patch secret/shakti-registration/dev/  gluu.client.secret=vTIsFJr3ccVhvXjEHp0P8K8WuMPDQOyYAC4Iein1
+vault kv patch secret/shakti-registration/dev/  idempotency.fingerprint.secret=Qm3ZtV8xK1pLw7RcYd2NfH6sJ9aE4uGo0TyBiXe5
 echo "finished writing value to secret/shakti-registration/dev/"
 
 # block forever
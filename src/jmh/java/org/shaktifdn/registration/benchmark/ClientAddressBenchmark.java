@@ -0,0 +1,81 @@
+package org.shaktifdn.registration.benchmark;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shaktifdn.registration.service.IpAddressService;
+import org.shaktifdn.registration.service.XForwardedRemoteAddressResolver;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of finding the client address of a request, behind the load balancer (address taken from
+ * {@code X-Forwarded-For}) and without it (remote address of the connection), through
+ * {@link XForwardedRemoteAddressResolver} alone and through {@link IpAddressService} as the
+ * controllers call it, log statement included.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="ClientAddressBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ClientAddressBenchmark {
+
+    private static final String EMAIL = "bench@shakticoin.com";
+
+    private XForwardedRemoteAddressResolver resolver;
+    private IpAddressService ipAddressService;
+    private ServerHttpRequest forwarded;
+    private ServerHttpRequest direct;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        resolver = XForwardedRemoteAddressResolver.maxTrustedIndex(1);
+        ipAddressService = new IpAddressService(resolver);
+        InetSocketAddress proxy = new InetSocketAddress("10.0.0.1", 443);
+        forwarded = MockServerHttpRequest
+                .post("/users")
+                .remoteAddress(proxy)
+                .header("X-Forwarded-For", "198.51.100.23, 203.0.113.7")
+                .build();
+        direct = MockServerHttpRequest
+                .post("/users")
+                .remoteAddress(new InetSocketAddress("203.0.113.7", 50123))
+                .build();
+    }
+
+    @Benchmark
+    public InetSocketAddress resolveForwarded() {
+        return resolver.resolve(forwarded);
+    }
+
+    @Benchmark
+    public InetSocketAddress resolveDirect() {
+        return resolver.resolve(direct);
+    }
+
+    @Benchmark
+    public String clientIpAddressForwarded() {
+        return ipAddressService.getClientIpAddress(EMAIL, forwarded);
+    }
+
+    @Benchmark
+    public String clientIpAddressDirect() {
+        return ipAddressService.getClientIpAddress(EMAIL, direct);
+    }
+}
@@ -0,0 +1,175 @@
+package org.shaktifdn.registration.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import gluu.scim2.client.rest.ClientSideService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.GluuProperties;
+import org.shaktifdn.registration.config.ServiceProperties;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.service.GluuReactiveService;
+import org.shaktifdn.registration.service.GluuScimClient;
+import org.shaktifdn.registration.service.GluuService;
+import org.shaktifdn.registration.service.GluuServiceApi;
+import org.shaktifdn.registration.service.GluuUmaAuthenticator;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import javax.ws.rs.core.Response;
+import java.lang.reflect.Proxy;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.security.KeyPairGenerator;
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Side-by-side throughput of the RESTEasy based {@link GluuService} (blocking call per
+ * {@code boundedElastic} thread) and {@link GluuReactiveService} for bursts of concurrent
+ * {@code createUser} calls against an in-process SCIM stub with a fixed response latency.
+ * <p>
+ * The blocking side is driven through a {@link ClientSideService} proxy doing a blocking HTTP call,
+ * which is what the RESTEasy proxy does without the UMA round trips.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="GluuScimClientBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class GluuScimClientBenchmark {
+
+    private static final String USERS = GluuService.GLUU_URL_IDENTITY2 + "/scim/v2/Users";
+    private static final String IP_ADDRESS = "0.0.0.0";
+
+    @Param({"16", "256"})
+    private int concurrency;
+
+    @Param({"50"})
+    private long latencyMillis;
+
+    private DisposableServer server;
+    private GluuServiceApi blocking;
+    private GluuServiceApi reactive;
+    private OnboardShaktiUserRequest request;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        Duration latency = Duration.ofMillis(latencyMillis);
+        server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.post(USERS, (req, res) -> req.receive()
+                        .then()
+                        .then(Mono.delay(latency))
+                        .then(Mono.defer(() -> res
+                                .status(201)
+                                .header("Content-Type", "application/scim+json")
+                                .sendString(Mono.just("{}"))
+                                .then()))))
+                .bindNow();
+        String gluuUri = "http://localhost:" + server.port();
+
+        GluuProperties gluuProperties = new GluuProperties();
+        gluuProperties.setGluuUri(gluuUri);
+
+        blocking = new GluuService(
+                gluuProperties,
+                Schedulers.boundedElastic(),
+                blockingScimClient(URI.create(gluuUri + USERS)),
+                WebClient.builder(),
+                new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry()))
+        );
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        WebClient webClient = WebClient.builder().build();
+        reactive = new GluuReactiveService(
+                gluuProperties,
+                new GluuScimClient(
+                        webClient,
+                        gluuUri + GluuService.GLUU_URL_IDENTITY2,
+                        new GluuUmaAuthenticator(webClient, "benchmark", generator.generateKeyPair().getPrivate(), "kid")
+                ),
+                WebClient.builder(),
+                new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry()))
+        );
+
+        request = OnboardShaktiUserRequest
+                .builder()
+                .email("bench@shakticoin.com")
+                .shaktiID("sk-bench")
+                .password("password")
+                .mobileNo("+11231231234")
+                .pin("1234")
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.disposeNow();
+    }
+
+    @Benchmark
+    public void blockingCreateUser() {
+        burst(blocking);
+    }
+
+    @Benchmark
+    public void reactiveCreateUser() {
+        burst(reactive);
+    }
+
+    private void burst(GluuServiceApi service) {
+        Flux.range(0, concurrency)
+                .flatMap(i -> service.createUser(request, IP_ADDRESS), concurrency)
+                .then()
+                .block();
+    }
+
+    private static ClientSideService blockingScimClient(URI usersUri) {
+        HttpClient httpClient = HttpClient.newHttpClient();
+        ObjectMapper objectMapper = new ObjectMapper();
+        return (ClientSideService) Proxy.newProxyInstance(
+                ClientSideService.class.getClassLoader(),
+                new Class<?>[]{ClientSideService.class},
+                (proxy, method, args) -> {
+                    if (!"createUser".equals(method.getName())) {
+                        throw new UnsupportedOperationException(method.getName());
+                    }
+                    HttpResponse<Void> response = httpClient.send(
+                            HttpRequest.newBuilder(usersUri)
+                                    .header("Content-Type", "application/scim+json")
+                                    .POST(HttpRequest.BodyPublishers.ofString(objectMapper.writeValueAsString(args[0])))
+                                    .build(),
+                            HttpResponse.BodyHandlers.discarding()
+                    );
+                    return Response.status(response.statusCode()).build();
+                }
+        );
+    }
+}
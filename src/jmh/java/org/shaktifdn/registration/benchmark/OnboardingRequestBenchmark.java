@@ -0,0 +1,121 @@
+package org.shaktifdn.registration.benchmark;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.gluu.oxtrust.model.scim2.user.UserResource;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.util.Utils;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import javax.validation.ConstraintViolation;
+import javax.validation.Validation;
+import javax.validation.Validator;
+import javax.validation.ValidatorFactory;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * CPU and allocation cost of accepting a {@code POST /users} body: Jackson deserialization of an
+ * {@link OnboardShaktiUserRequest}, Bean Validation against the patterns in
+ * {@link org.shaktifdn.registration.constant.Constant} (valid and invalid bodies, the latter paying
+ * for message interpolation) and the mapping to a SCIM user by {@link Utils#createUserModel}.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="OnboardingRequestBenchmark -prof gc"
+ * </pre>
+ * {@code gc.alloc.rate.norm} is the number of bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class OnboardingRequestBenchmark {
+
+    private static final String IP_ADDRESS = "203.0.113.7";
+    private static final String VALID_BODY = "{"
+            + "\"email\":\"bench@shakticoin.com\","
+            + "\"ipaddress\":\"" + IP_ADDRESS + "\","
+            + "\"countryCode\":\"+1\","
+            + "\"mobileNo\":\"9876549876\","
+            + "\"emailVerified\":true,"
+            + "\"mobileVerified\":false,"
+            + "\"password\":\"Qwert@123\","
+            + "\"deviceId\":\"1234\","
+            + "\"pin\":\"123456\","
+            + "\"geojson\":{\"longitude\":2.35,\"latitude\":48.85},"
+            + "\"authorizationBytes\":\"fd\""
+            + "}";
+    private static final String INVALID_BODY = "{"
+            + "\"email\":\"bench-at-shakticoin\","
+            + "\"ipaddress\":\"999.0.0.1\","
+            + "\"countryCode\":\"1\","
+            + "\"mobileNo\":\"98765x\","
+            + "\"password\":\"qwerty\","
+            + "\"deviceId\":\"\","
+            + "\"geojson\":{\"longitude\":200,\"latitude\":-100}"
+            + "}";
+
+    private ObjectMapper objectMapper;
+    private ValidatorFactory validatorFactory;
+    private Validator validator;
+    private byte[] validBody;
+    private OnboardShaktiUserRequest validRequest;
+    private OnboardShaktiUserRequest invalidRequest;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        validatorFactory = Validation.buildDefaultValidatorFactory();
+        validator = validatorFactory.getValidator();
+        validBody = VALID_BODY.getBytes(StandardCharsets.UTF_8);
+        validRequest = objectMapper.readValue(validBody, OnboardShaktiUserRequest.class);
+        invalidRequest = objectMapper.readValue(INVALID_BODY, OnboardShaktiUserRequest.class);
+        if (!validator.validate(validRequest).isEmpty() || validator.validate(invalidRequest).isEmpty()) {
+            throw new IllegalStateException("benchmark bodies do not validate as expected");
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        validatorFactory.close();
+    }
+
+    @Benchmark
+    public OnboardShaktiUserRequest deserialize() throws IOException {
+        return objectMapper.readValue(validBody, OnboardShaktiUserRequest.class);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<OnboardShaktiUserRequest>> validate() {
+        return validator.validate(validRequest);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<OnboardShaktiUserRequest>> validateInvalid() {
+        return validator.validate(invalidRequest);
+    }
+
+    @Benchmark
+    public Set<ConstraintViolation<OnboardShaktiUserRequest>> deserializeAndValidate() throws IOException {
+        return validator.validate(objectMapper.readValue(validBody, OnboardShaktiUserRequest.class));
+    }
+
+    @Benchmark
+    public UserResource createUserModel() {
+        return Utils.createUserModel(validRequest, IP_ADDRESS);
+    }
+}
@@ -0,0 +1,137 @@
+package org.shaktifdn.registration.benchmark;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shaktifdn.registration.controller.ShaktiRegistrationControllerAdvice;
+import org.shaktifdn.registration.exception.BadRequestException;
+import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
+import org.shaktifdn.registration.exception.ServiceOverloadedException;
+import org.shaktifdn.registration.request.GeoJSONModel;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.response.ResponseBean;
+import org.shaktifdn.registration.response.ShaktiResponse;
+import org.springframework.core.MethodParameter;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.validation.BeanPropertyBindingResult;
+import org.springframework.validation.FieldError;
+import org.springframework.web.bind.support.WebExchangeBindException;
+
+import javax.validation.Validation;
+import javax.validation.ValidatorFactory;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Cost of writing a response: serialization of a successful {@link ShaktiResponse} and, for the
+ * errors the registration endpoints answer most, the mapping by {@link ShaktiRegistrationControllerAdvice}
+ * followed by the serialization of the error body. Exceptions are created once, only the mapping and
+ * the serialization are measured.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="ShaktiResponseBenchmark -prof gc"
+ * </pre>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class ShaktiResponseBenchmark {
+
+    private ObjectMapper objectMapper;
+    private ShaktiRegistrationControllerAdvice advice;
+    private ShaktiResponse<ResponseBean> success;
+    private BadRequestException badRequest;
+    private WebExchangeBindException invalidRequest;
+    private ServiceOverloadedException overloaded;
+    private ExternalServiceDependencyFailure dependencyFailure;
+
+    @Setup(Level.Trial)
+    public void setUp() throws NoSuchMethodException {
+        objectMapper = Jackson2ObjectMapperBuilder.json().build();
+        advice = new ShaktiRegistrationControllerAdvice();
+        ResponseBean bean = new ResponseBean();
+        bean.setMessage("User registered successfully");
+        bean.setDetails(Map.of("shaktiID", "sk-bench", "email", "bench@shakticoin.com"));
+        success = ShaktiResponse.<ResponseBean>builder()
+                .status(true)
+                .message("success")
+                .data(bean)
+                .build();
+        badRequest = new BadRequestException("Invalid Request");
+        invalidRequest = invalidRequest();
+        overloaded = new ServiceOverloadedException("kycService");
+        dependencyFailure = new ExternalServiceDependencyFailure(HttpStatus.BAD_GATEWAY, "Wallet service is not available");
+    }
+
+    @Benchmark
+    public byte[] success() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(success);
+    }
+
+    @Benchmark
+    public byte[] badRequest() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(advice.handleServerWebInputException(badRequest).getBody());
+    }
+
+    @Benchmark
+    public byte[] invalidRequest() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(advice.handleWebExchangeBindException(invalidRequest).getBody());
+    }
+
+    @Benchmark
+    public byte[] overloaded() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(advice.handle(overloaded).getBody());
+    }
+
+    @Benchmark
+    public byte[] dependencyFailure() throws JsonProcessingException {
+        return objectMapper.writeValueAsBytes(advice.handleExternalServiceDependencyFailure(dependencyFailure).getBody());
+    }
+
+    /**
+     * The exception WebFlux raises for an invalid {@code POST /users} body, with the field errors
+     * of a real validation.
+     */
+    private WebExchangeBindException invalidRequest() throws NoSuchMethodException {
+        OnboardShaktiUserRequest request = OnboardShaktiUserRequest
+                .builder()
+                .email("bench-at-shakticoin")
+                .countryCode("1")
+                .mobileNo("98765x")
+                .password("qwerty")
+                .geojson(new GeoJSONModel(200, -100))
+                .build();
+        BeanPropertyBindingResult bindingResult = new BeanPropertyBindingResult(request, "onboardShaktiUserRequest");
+        try (ValidatorFactory validatorFactory = Validation.buildDefaultValidatorFactory()) {
+            validatorFactory.getValidator().validate(request).forEach(violation -> bindingResult.addError(new FieldError(
+                    bindingResult.getObjectName(),
+                    violation.getPropertyPath().toString(),
+                    violation.getInvalidValue(),
+                    false,
+                    null,
+                    null,
+                    violation.getMessage()
+            )));
+        }
+        MethodParameter parameter = new MethodParameter(
+                ShaktiResponseBenchmark.class.getDeclaredMethod("onboard", OnboardShaktiUserRequest.class), 0);
+        return new WebExchangeBindException(parameter, bindingResult);
+    }
+
+    @SuppressWarnings("unused")
+    private void onboard(OnboardShaktiUserRequest request) {
+    }
+}
@@ -0,0 +1,102 @@
+package org.shaktifdn.registration.benchmark;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.ServiceProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.http.server.HttpServer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per call cost of building the {@link WebClient} from the shared builder on every request, as the
+ * services used to, against reusing the client held by {@link WebClientRegistry}. The builder mirrors
+ * the load balanced one (a filter, a default header and a shared connector) and the stub answers
+ * immediately, so the difference is the client construction.
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="WebClientBuildBenchmark -prof gc"
+ * </pre>
+ * {@code gc.alloc.rate.norm} gives the bytes allocated per call.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 10)
+@Fork(1)
+public class WebClientBuildBenchmark {
+
+    private static final String PATH = "/email/otp/verified";
+
+    private DisposableServer server;
+    private WebClient.Builder builder;
+    private WebClient client;
+    private String url;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .route(routes -> routes.post(PATH, (req, res) -> req.receive()
+                        .then()
+                        .then(Mono.defer(() -> res
+                                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                                .sendString(Mono.just("{\"status\":true}"))
+                                .then()))))
+                .bindNow();
+        url = "http://localhost:" + server.port() + PATH;
+
+        builder = WebClient.builder()
+                .filter(ExchangeFilterFunction.ofRequestProcessor(Mono::just))
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create()))
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+        client = new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry())).client("emailService", builder);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        server.disposeNow();
+    }
+
+    @Benchmark
+    public String buildPerCall() {
+        return call(builder.build());
+    }
+
+    @Benchmark
+    public String reused() {
+        return call(client);
+    }
+
+    private String call(WebClient webClient) {
+        return webClient
+                .post()
+                .uri(url)
+                .bodyValue("{\"email\":\"bench@shakticoin.com\"}")
+                .retrieve()
+                .bodyToMono(String.class)
+                .block();
+    }
+}
@@ -0,0 +1,107 @@
+package org.shaktifdn.registration.loadtest;
+
+import org.shaktifdn.registration.service.BizVaultService;
+import org.shaktifdn.registration.service.EmailService;
+import org.shaktifdn.registration.service.GluuService;
+import org.shaktifdn.registration.service.KycUserService;
+import org.shaktifdn.registration.service.MobileService;
+import org.shaktifdn.registration.service.SelfyIdService;
+import org.shaktifdn.registration.service.WalletService;
+import org.springframework.core.env.PropertySource;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+import reactor.netty.resources.LoopResources;
+
+import java.io.PrintStream;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Stubs of every downstream the onboarding, status and wallet requests reach, answering the happy
+ * path: verified email and mobile, unknown user in Gluu and BizVault, no wallet yet. Stubs run on
+ * their own {@code stub-*} threads so they can be told apart from the service when measuring.
+ */
+final class Downstreams implements AutoCloseable {
+
+    static final String EMAIL = "emailService";
+    static final String SMS = "smsService";
+    static final String WALLET = "walletService";
+    static final String KYC = "kycService";
+    static final String BIZ_VAULT = "bizVaultService";
+    static final String SELFY_ID = "selfyIdService";
+    static final String GLUU = GluuService.GLUU;
+    static final String THREAD_PREFIX = "stub";
+
+    private static final String GET = "GET";
+    private static final String POST = "POST";
+    private static final String SCIM_USERS = GluuService.GLUU_URL_IDENTITY2 + "/scim/v2/Users";
+
+    private final Map<String, StubDownstream> stubs = new LinkedHashMap<>();
+    private final LoopResources loops;
+    private final Scheduler delays;
+
+    Downstreams(PropertySource<?> options) {
+        add(new StubDownstream(EMAIL, StubBehavior.from(options, EMAIL))
+                .reply(POST, EmailService.EMAIL_OTP_INQUIRY, 200,
+                        "{\"code\":200,\"message\":\"OK\",\"payload\":{\"status\":\"VERIFIED\"}}"));
+        add(new StubDownstream(SMS, StubBehavior.from(options, SMS))
+                .reply(POST, MobileService.MOBILE_OTP_INQUIRY, 200,
+                        "{\"code\":200,\"message\":\"OK\"}"));
+        add(new StubDownstream(BIZ_VAULT, StubBehavior.from(options, BIZ_VAULT))
+                .reply(GET, BizVaultService.BIZVAULTS_EMAIL_REGISTRATION_STATUS, 200,
+                        "{\"status\":true,\"data\":{\"bizVaultRegistered\":false}}"));
+        add(new StubDownstream(KYC, StubBehavior.from(options, KYC))
+                .reply(GET, KycUserService.URL_KYC_WALLET, 200,
+                        "{\"shaktiID\":\"loadtest\"}"));
+        add(new StubDownstream(SELFY_ID, StubBehavior.from(options, SELFY_ID))
+                .reply(POST, SelfyIdService.SELFYID_ENCRYPT, 200,
+                        "{\"encryptedWalletBytes\":\"ZW5jcnlwdGVkV2FsbGV0\",\"encryptedPassphrase\":\"ZW5jcnlwdGVkUGFzcw==\"}"));
+        add(new StubDownstream(WALLET, StubBehavior.from(options, WALLET))
+                .reply(POST, WalletService.URL_WALLET_DEVICE_ACCESS_REGISTRATION, 200, "")
+                .reply(GET, WalletService.URL_WALLETS_PASSPHRASE, 200,
+                        "{\"status\":true,\"data\":{\"passphrase\":\"correct horse battery staple\"}}")
+                .reply(POST, WalletService.URL_WALLETS, 200,
+                        "{\"message\":\"Wallet created\",\"walletBytes\":\"d2FsbGV0\",\"mainnetWalletID\":\"m-1\",\"testnetWalletID\":\"t-1\"}"));
+        add(new StubDownstream(GLUU, StubBehavior.from(options, GLUU))
+                .reply(POST, SCIM_USERS, 201, "{}")
+                .reply(GET, SCIM_USERS, 200,
+                        "{\"totalResults\":0,\"itemsPerPage\":0,\"startIndex\":1,\"Resources\":[]}"));
+
+        Object threads = options.getProperty("stub.threads");
+        loops = LoopResources.create(THREAD_PREFIX, threads != null ? Integer.parseInt(threads.toString()) : 2, true);
+        delays = Schedulers.newParallel(THREAD_PREFIX + "-delay");
+    }
+
+    Downstreams start() {
+        stubs.values().forEach(stub -> stub.start(loops, delays));
+        return this;
+    }
+
+    String url(String downstream) {
+        return stubs.get(downstream).baseUrl();
+    }
+
+    Collection<StubDownstream> all() {
+        return stubs.values();
+    }
+
+    void report(PrintStream out) {
+        out.println();
+        out.printf("%-16s %10s %10s  %s%n", "downstream", "calls", "failures", "behavior");
+        for (StubDownstream stub : stubs.values()) {
+            out.printf("%-16s %10d %10d  %s%n", stub.getName(), stub.getCalls(), stub.getFailures(), stub.getBehavior());
+        }
+    }
+
+    @Override
+    public void close() {
+        stubs.values().forEach(StubDownstream::close);
+        loops.dispose();
+        delays.dispose();
+    }
+
+    private void add(StubDownstream stub) {
+        stubs.put(stub.getName(), stub);
+    }
+}
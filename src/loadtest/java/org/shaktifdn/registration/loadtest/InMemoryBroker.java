@@ -0,0 +1,38 @@
+package org.shaktifdn.registration.loadtest;
+
+import org.springframework.cloud.stream.function.StreamBridge;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * Stand-in for Kafka: a {@link StreamBridge} that accepts every message and counts it by binding.
+ * The mock is stub-only, so it does not keep the invocations of a long run in memory.
+ */
+final class InMemoryBroker {
+
+    private final Map<String, LongAdder> published = new ConcurrentHashMap<>();
+
+    StreamBridge streamBridge() {
+        StreamBridge streamBridge = mock(StreamBridge.class, withSettings().stubOnly());
+        when(streamBridge.send(anyString(), any())).thenAnswer(invocation -> {
+            published.computeIfAbsent(invocation.getArgument(0), binding -> new LongAdder()).increment();
+            return true;
+        });
+        return streamBridge;
+    }
+
+    Map<String, Long> getPublished() {
+        Map<String, Long> counts = new TreeMap<>();
+        published.forEach((binding, count) -> counts.put(binding, count.sum()));
+        return counts;
+    }
+}
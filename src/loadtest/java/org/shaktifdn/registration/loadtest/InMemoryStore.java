@@ -0,0 +1,124 @@
+package org.shaktifdn.registration.loadtest;
+
+import org.shaktifdn.registration.model.OutboxMessage;
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.shaktifdn.registration.model.UserRegisterStateType;
+import org.shaktifdn.registration.repository.OutboxMessageRepository;
+import org.shaktifdn.registration.repository.UserRegisterStateRepository;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Proxy;
+import java.time.Instant;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.BiFunction;
+import java.util.stream.Collectors;
+
+/**
+ * Stand-in for Couchbase: the repositories used by onboarding and the outbox relay, kept in maps.
+ * Only the operations those paths call are implemented, any other one fails loudly.
+ */
+final class InMemoryStore {
+
+    private final Map<String, UserRegisterState> states = new ConcurrentHashMap<>();
+    private final Map<String, OutboxMessage> outbox = new ConcurrentHashMap<>();
+
+    @SuppressWarnings("unchecked")
+    UserRegisterStateRepository userRegisterStateRepository() {
+        return repository(UserRegisterStateRepository.class, (operation, args) -> {
+            switch (operation) {
+                case "save":
+                    UserRegisterState state = (UserRegisterState) args[0];
+                    states.put(state.getId(), state);
+                    return Mono.just(state);
+                case "findById":
+                    return Mono.justOrEmpty(states.get((String) args[0]));
+                case "findByShaktiId":
+                    return Mono.justOrEmpty(states.get(UserRegisterState.key((String) args[0])));
+                case "addStateTypes":
+                    states.computeIfPresent((String) args[0], (id, existing) -> {
+                        existing.getStateTypes().addAll((Collection<UserRegisterStateType>) args[1]);
+                        return existing;
+                    });
+                    return Mono.empty();
+                case "addCompletedSteps":
+                    states.computeIfPresent((String) args[0], (id, existing) -> {
+                        existing.getCompletedSteps().addAll((Collection<String>) args[1]);
+                        return existing;
+                    });
+                    return Mono.empty();
+                case "deleteById":
+                    states.remove((String) args[0]);
+                    return Mono.empty();
+                case "count":
+                    return Mono.just((long) states.size());
+                default:
+                    return null;
+            }
+        });
+    }
+
+    OutboxMessageRepository outboxMessageRepository() {
+        return repository(OutboxMessageRepository.class, (operation, args) -> {
+            switch (operation) {
+                case "save":
+                    OutboxMessage message = (OutboxMessage) args[0];
+                    outbox.put(message.getId(), message);
+                    return Mono.just(message);
+                case "delete":
+                    outbox.remove(((OutboxMessage) args[0]).getId());
+                    return Mono.empty();
+                case "findDue":
+                    Instant now = (Instant) args[0];
+                    int limit = (Integer) args[1];
+                    List<OutboxMessage> due = outbox.values()
+                            .stream()
+                            .filter(candidate -> !candidate.getNextAttemptAt().isAfter(now))
+                            .sorted(Comparator.comparing(OutboxMessage::getNextAttemptAt))
+                            .limit(limit)
+                            .collect(Collectors.toList());
+                    return Flux.fromIterable(due);
+                case "count":
+                    return Mono.just((long) outbox.size());
+                default:
+                    return null;
+            }
+        });
+    }
+
+    int getStateCount() {
+        return states.size();
+    }
+
+    int getPendingOutboxCount() {
+        return outbox.size();
+    }
+
+    /**
+     * @param operations answers an operation by method name, or null when it is not supported
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T repository(Class<T> type, BiFunction<String, Object[], Object> operations) {
+        return (T) Proxy.newProxyInstance(type.getClassLoader(), new Class<?>[]{type}, (proxy, method, args) -> {
+            if (method.getDeclaringClass() == Object.class) {
+                switch (method.getName()) {
+                    case "equals":
+                        return proxy == args[0];
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    default:
+                        return "in-memory " + type.getSimpleName();
+                }
+            }
+            Object result = operations.apply(method.getName(), args);
+            if (result == null) {
+                throw new UnsupportedOperationException(type.getSimpleName() + "." + method.getName() + " is not part of the load test");
+            }
+            return result;
+        });
+    }
+}
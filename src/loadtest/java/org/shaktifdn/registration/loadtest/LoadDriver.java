@@ -0,0 +1,293 @@
+package org.shaktifdn.registration.loadtest;
+
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+import reactor.netty.resources.LoopResources;
+
+import java.io.PrintStream;
+import java.lang.management.GarbageCollectorMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadInfo;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Closed-loop driver: a fixed number of virtual clients each send the next request of the mix as
+ * soon as the previous one is answered, first for a warmup that is not recorded, then for the
+ * measured run. Latency percentiles are kept per scenario, and the allocation rate covers every
+ * thread but the ones of the driver and of the stubs, so it is the one of the registration service.
+ */
+final class LoadDriver implements AutoCloseable {
+
+    static final String THREAD_PREFIX = "driver";
+
+    private static final String PASSWORD = "Qwert@123";
+
+    private final WebClient webClient;
+    private final LoopResources loops;
+    private final ConnectionProvider connections;
+    private final int concurrency;
+    private final List<Scenario> mix;
+    private final int totalWeight;
+    private final double mobileShare;
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final Map<Scenario, Timer> timers = new LinkedHashMap<>();
+    private final Map<String, LongAdder> statuses = new ConcurrentHashMap<>();
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * @param mix         scenario weights, as in {@code onboarding=6,status=3,wallet=1}
+     * @param mobileShare share of onboarding requests sent as the mobile client, with a wallet
+     */
+    LoadDriver(String baseUrl, int concurrency, int threads, String mix, double mobileShare) {
+        this.concurrency = concurrency;
+        this.mobileShare = mobileShare;
+        this.mix = parseMix(mix);
+        this.totalWeight = this.mix.stream().mapToInt(scenario -> scenario.weight).sum();
+        this.loops = LoopResources.create(THREAD_PREFIX, threads, true);
+        this.connections = ConnectionProvider.builder(THREAD_PREFIX)
+                .maxConnections(concurrency)
+                .pendingAcquireMaxCount(-1)
+                .build();
+        this.webClient = WebClient.builder()
+                .baseUrl(baseUrl)
+                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(connections)
+                        .runOn(loops)
+                        .responseTimeout(Duration.ofSeconds(30))))
+                .build();
+        for (Scenario scenario : this.mix) {
+            timers.put(scenario, Timer.builder("loadtest.requests")
+                    .tag("scenario", scenario.name)
+                    .publishPercentiles(0.5, 0.99, 0.999)
+                    .percentilePrecision(2)
+                    .distributionStatisticExpiry(Duration.ofDays(1))
+                    .distributionStatisticBufferLength(1)
+                    .register(registry));
+        }
+    }
+
+    Report run(Duration warmup, Duration duration) {
+        phase(warmup, false);
+        Map<Long, Long> allocatedBefore = allocatedBytesByThread();
+        long gcCountBefore = gcCount();
+        long gcMillisBefore = gcMillis();
+        long start = System.nanoTime();
+        phase(duration, true);
+        long elapsedNanos = System.nanoTime() - start;
+        long allocated = allocatedSince(allocatedBefore);
+        return new Report(elapsedNanos, allocated, gcCount() - gcCountBefore, gcMillis() - gcMillisBefore);
+    }
+
+    @Override
+    public void close() {
+        connections.disposeLater().block(Duration.ofSeconds(5));
+        loops.dispose();
+    }
+
+    private void phase(Duration length, boolean measured) {
+        long end = System.nanoTime() + length.toNanos();
+        Flux.range(0, concurrency)
+                .flatMap(client -> Mono.defer(() -> send(measured)).repeat(() -> System.nanoTime() < end), concurrency)
+                .then()
+                .block();
+    }
+
+    private Mono<Integer> send(boolean measured) {
+        Scenario scenario = next();
+        long start = System.nanoTime();
+        return request(scenario)
+                .exchangeToMono(response -> response.releaseBody().thenReturn(response.rawStatusCode()))
+                .onErrorResume(error -> Mono.just(0))
+                .doOnNext(status -> {
+                    if (measured) {
+                        timers.get(scenario).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+                        statuses.computeIfAbsent(scenario.name + " " + status, key -> new LongAdder()).increment();
+                    }
+                });
+    }
+
+    private WebClient.RequestHeadersSpec<?> request(Scenario scenario) {
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        long id = sequence.incrementAndGet();
+        switch (scenario.name) {
+            case "onboarding":
+                return webClient.post()
+                        .uri("/users")
+                        .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .header("X-Forwarded-For", "203.0." + random.nextInt(256) + "." + random.nextInt(1, 255))
+                        .bodyValue(onboardingBody(id, random.nextDouble() < mobileShare, random));
+            case "status":
+                return webClient.get()
+                        .uri(uri -> uri.path("/users/status").queryParam("email", email(random.nextLong(1, id + 1))).build());
+            case "wallet":
+                return webClient.post()
+                        .uri("/wallet")
+                        .header(HttpHeaders.CONTENT_TYPE, "application/json")
+                        .bodyValue("{\"passphrase\":\"correct horse battery staple\",\"authorizationBytes\":\"fd\"}");
+            default:
+                throw new IllegalStateException("unknown scenario " + scenario.name);
+        }
+    }
+
+    private static String onboardingBody(long id, boolean mobile, ThreadLocalRandom random) {
+        StringBuilder body = new StringBuilder(320)
+                .append("{\"email\":\"").append(email(id)).append("\",")
+                .append("\"countryCode\":\"+1\",")
+                .append("\"mobileNo\":\"").append(random.nextLong(1_000_000_000L, 10_000_000_000L)).append("\",")
+                .append("\"emailVerified\":true,")
+                .append("\"mobileVerified\":true,")
+                .append("\"password\":\"").append(PASSWORD).append("\",")
+                .append("\"deviceId\":\"device-").append(id).append("\",")
+                .append("\"geojson\":{\"longitude\":2.35,\"latitude\":48.85},")
+                .append("\"authorizationBytes\":\"fd\"");
+        if (mobile) {
+            body.append(",\"walletBytes\":\"d2FsbGV0\",")
+                    .append("\"mainnetWalletId\":\"m-").append(id).append("\",")
+                    .append("\"testnetWalletId\":\"t-").append(id).append("\",")
+                    .append("\"passphrase\":\"correct horse battery staple\"");
+        }
+        return body.append('}').toString();
+    }
+
+    private static String email(long id) {
+        return "load-" + id + "@shakticoin.com";
+    }
+
+    private Scenario next() {
+        int pick = ThreadLocalRandom.current().nextInt(totalWeight);
+        for (Scenario scenario : mix) {
+            pick -= scenario.weight;
+            if (pick < 0) {
+                return scenario;
+            }
+        }
+        return mix.get(mix.size() - 1);
+    }
+
+    private static List<Scenario> parseMix(String mix) {
+        List<Scenario> scenarios = new ArrayList<>();
+        for (String entry : mix.split(",")) {
+            String[] parts = entry.trim().split("=");
+            int weight = parts.length > 1 ? Integer.parseInt(parts[1].trim()) : 1;
+            if (weight > 0) {
+                scenarios.add(new Scenario(parts[0].trim(), weight));
+            }
+        }
+        if (scenarios.isEmpty()) {
+            throw new IllegalArgumentException("empty scenario mix: " + mix);
+        }
+        return scenarios;
+    }
+
+    private static Map<Long, Long> allocatedBytesByThread() {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        long[] ids = threads.getAllThreadIds();
+        ThreadInfo[] infos = threads.getThreadInfo(ids);
+        long[] allocated = threads.getThreadAllocatedBytes(ids);
+        Map<Long, Long> byThread = new HashMap<>();
+        for (int i = 0; i < ids.length; i++) {
+            if (infos[i] != null && allocated[i] >= 0 && !isHarnessThread(infos[i].getThreadName())) {
+                byThread.put(ids[i], allocated[i]);
+            }
+        }
+        return byThread;
+    }
+
+    /**
+     * Bytes allocated since the snapshot by the threads alive now; threads that ended in between
+     * are not counted, which the long-lived event loops and scheduler workers make negligible.
+     */
+    private static long allocatedSince(Map<Long, Long> before) {
+        long total = 0;
+        for (Map.Entry<Long, Long> thread : allocatedBytesByThread().entrySet()) {
+            total += thread.getValue() - before.getOrDefault(thread.getKey(), 0L);
+        }
+        return total;
+    }
+
+    private static boolean isHarnessThread(String name) {
+        return name.startsWith(THREAD_PREFIX) || name.startsWith(Downstreams.THREAD_PREFIX);
+    }
+
+    private static long gcCount() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionCount).sum();
+    }
+
+    private static long gcMillis() {
+        return ManagementFactory.getGarbageCollectorMXBeans().stream().mapToLong(GarbageCollectorMXBean::getCollectionTime).sum();
+    }
+
+    private static final class Scenario {
+        private final String name;
+        private final int weight;
+
+        private Scenario(String name, int weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+    }
+
+    final class Report {
+        private final long elapsedNanos;
+        private final long allocatedBytes;
+        private final long gcCount;
+        private final long gcMillis;
+
+        private Report(long elapsedNanos, long allocatedBytes, long gcCount, long gcMillis) {
+            this.elapsedNanos = elapsedNanos;
+            this.allocatedBytes = allocatedBytes;
+            this.gcCount = gcCount;
+            this.gcMillis = gcMillis;
+        }
+
+        void print(PrintStream out) {
+            double seconds = elapsedNanos / 1e9;
+            long total = 0;
+            out.println();
+            out.printf("%-12s %10s %10s %10s %10s %10s %10s%n", "scenario", "requests", "req/s", "p50 ms", "p99 ms", "p999 ms", "max ms");
+            for (Map.Entry<Scenario, Timer> entry : timers.entrySet()) {
+                Timer timer = entry.getValue();
+                ValueAtPercentile[] percentiles = timer.takeSnapshot().percentileValues();
+                total += timer.count();
+                out.printf("%-12s %10d %10.1f %10.1f %10.1f %10.1f %10.1f%n",
+                        entry.getKey().name,
+                        timer.count(),
+                        timer.count() / seconds,
+                        percentiles[0].value(TimeUnit.MILLISECONDS),
+                        percentiles[1].value(TimeUnit.MILLISECONDS),
+                        percentiles[2].value(TimeUnit.MILLISECONDS),
+                        timer.max(TimeUnit.MILLISECONDS));
+            }
+            out.printf("%-12s %10d %10.1f%n", "total", total, total / seconds);
+
+            out.println();
+            out.printf("%-24s %10s%n", "scenario status", "responses");
+            statuses.entrySet()
+                    .stream()
+                    .sorted(Map.Entry.comparingByKey())
+                    .forEach(status -> out.printf("%-24s %10d%n", status.getKey(), status.getValue().sum()));
+
+            out.println();
+            out.printf("allocation   %.1f MB/s, %d bytes/request (service threads only)%n",
+                    allocatedBytes / seconds / (1024 * 1024), total > 0 ? allocatedBytes / total : 0);
+            out.printf("gc           %d collections, %d ms over %.1f s%n", gcCount, gcMillis, seconds);
+        }
+    }
+}
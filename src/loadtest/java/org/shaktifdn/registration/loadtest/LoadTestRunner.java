@@ -0,0 +1,100 @@
+package org.shaktifdn.registration.loadtest;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import org.shaktifdn.registration.metrics.OnboardingMetrics;
+import org.slf4j.LoggerFactory;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.http.server.reactive.ReactorHttpHandlerAdapter;
+import org.springframework.web.server.adapter.WebHttpHandlerBuilder;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+
+import java.io.PrintStream;
+import java.time.Duration;
+
+/**
+ * Runs onboarding, status and wallet traffic against the registration service wired in
+ * {@link RegistrationUnderTest}, served over HTTP on a local port, and prints throughput, latency
+ * percentiles, allocation rate, the onboarding stage timings and what the stubs, the outbox and
+ * the broker saw.
+ * <pre>
+ * mvn -Ploadtest test-compile exec:exec -Dloadtest.args="--duration=PT2M --concurrency=128"
+ * </pre>
+ * Options, with their defaults:
+ * <ul>
+ *     <li>{@code --duration=PT60S --warmup=PT10S}: measured run, after a warmup that is not recorded</li>
+ *     <li>{@code --concurrency=64}: virtual clients, each sending its next request once answered</li>
+ *     <li>{@code --mix=onboarding=6,status=3,wallet=1}: relative weights of the scenarios</li>
+ *     <li>{@code --mobile-share=0.3}: share of onboarding sent by the mobile client, with a wallet</li>
+ *     <li>{@code --stub.p50=20ms --stub.p99=100ms --stub.error-rate=0 --stub.error-status=503}: behavior
+ *     of every stub, overridden per downstream as in {@code --kycService.p99=2s}</li>
+ *     <li>{@code --max-connections=100 --pending-acquire-max-count=200 --concurrency-limit=true
+ *     --hedged-endpoints=}: client settings of the service</li>
+ *     <li>{@code --driver.threads=2 --stub.threads=2 --log-level=WARN}</li>
+ * </ul>
+ */
+public final class LoadTestRunner {
+
+    private LoadTestRunner() {
+    }
+
+    public static void main(String[] args) {
+        PropertySource<?> options = new SimpleCommandLinePropertySource(args);
+        ((Logger) LoggerFactory.getLogger("org.shaktifdn")).setLevel(Level.toLevel(option(options, "log-level", "WARN")));
+        PrintStream out = System.out;
+
+        InMemoryStore store = new InMemoryStore();
+        InMemoryBroker broker = new InMemoryBroker();
+        try (Downstreams downstreams = new Downstreams(options).start();
+             AnnotationConfigApplicationContext context = new AnnotationConfigApplicationContext()) {
+            context.getEnvironment().getPropertySources().addFirst(options);
+            context.registerBean(Downstreams.class, () -> downstreams);
+            context.registerBean(InMemoryStore.class, () -> store);
+            context.registerBean(InMemoryBroker.class, () -> broker);
+            context.register(RegistrationUnderTest.class);
+            context.refresh();
+
+            DisposableServer server = HttpServer.create()
+                    .host("localhost")
+                    .port(0)
+                    .handle(new ReactorHttpHandlerAdapter(WebHttpHandlerBuilder.applicationContext(context).build()))
+                    .bindNow();
+            Duration warmup = DurationStyle.detectAndParse(option(options, "warmup", "PT10S"));
+            Duration duration = DurationStyle.detectAndParse(option(options, "duration", "PT60S"));
+            int concurrency = Integer.parseInt(option(options, "concurrency", "64"));
+            out.printf("registration on port %d, %d clients, warmup %s, run %s%n", server.port(), concurrency, warmup, duration);
+
+            try (LoadDriver driver = new LoadDriver(
+                    "http://localhost:" + server.port(),
+                    concurrency,
+                    Integer.parseInt(option(options, "driver.threads", "2")),
+                    option(options, "mix", "onboarding=6,status=3,wallet=1"),
+                    Double.parseDouble(option(options, "mobile-share", "0.3"))
+            )) {
+                driver.run(warmup, duration).print(out);
+            } finally {
+                server.disposeNow();
+            }
+
+            out.println();
+            out.println("onboarding stages, over warmup and run (count, mean, p50, p99, max in ms)");
+            context.getBean(OnboardingMetrics.class)
+                    .summary()
+                    .forEach((stage, values) -> out.printf("  %-60s %s%n", stage, values));
+            downstreams.report(out);
+            out.println();
+            out.printf("published    %s%n", broker.getPublished());
+            out.printf("store        %d registration states, %d outbox messages pending%n",
+                    store.getStateCount(), store.getPendingOutboxCount());
+        }
+    }
+
+    private static String option(PropertySource<?> options, String name, String defaultValue) {
+        Object value = options.getProperty(name);
+        return value != null ? value.toString() : defaultValue;
+    }
+}
@@ -0,0 +1,450 @@
+package org.shaktifdn.registration.loadtest;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentracing.Tracer;
+import org.shaktifdn.registration.cache.EmailRegistrationCache;
+import org.shaktifdn.registration.cache.OnboardingIdempotency;
+import org.shaktifdn.registration.cache.VerifiedContactCache;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.AsyncOnboardingProperties;
+import org.shaktifdn.registration.config.CoalescingProperties;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.DeadlineProperties;
+import org.shaktifdn.registration.config.GluuProperties;
+import org.shaktifdn.registration.config.HedgingProperties;
+import org.shaktifdn.registration.config.OnboardingSagaProperties;
+import org.shaktifdn.registration.config.OutboxProperties;
+import org.shaktifdn.registration.config.RegistrationCacheProperties;
+import org.shaktifdn.registration.config.ServiceProperties;
+import org.shaktifdn.registration.controller.RequestDeadlineWebFilter;
+import org.shaktifdn.registration.controller.ShaktiRegistrationControllerAdvice;
+import org.shaktifdn.registration.controller.UserController;
+import org.shaktifdn.registration.controller.WalletController;
+import org.shaktifdn.registration.message.CreateUserOutbox;
+import org.shaktifdn.registration.metrics.OnboardingMetrics;
+import org.shaktifdn.registration.repository.OutboxMessageRepository;
+import org.shaktifdn.registration.repository.UserRegisterStateRepository;
+import org.shaktifdn.registration.response.UserDetail;
+import org.shaktifdn.registration.service.BizVaultService;
+import org.shaktifdn.registration.service.EmailService;
+import org.shaktifdn.registration.service.GluuReactiveService;
+import org.shaktifdn.registration.service.GluuScimClient;
+import org.shaktifdn.registration.service.GluuService;
+import org.shaktifdn.registration.service.GluuServiceApi;
+import org.shaktifdn.registration.service.GluuUmaAuthenticator;
+import org.shaktifdn.registration.service.IpAddressService;
+import org.shaktifdn.registration.service.KycUserService;
+import org.shaktifdn.registration.service.MobileService;
+import org.shaktifdn.registration.service.OnboardingJobs;
+import org.shaktifdn.registration.service.OnboardingSaga;
+import org.shaktifdn.registration.service.SelfyIdService;
+import org.shaktifdn.registration.service.UserInfoClient;
+import org.shaktifdn.registration.service.UserService;
+import org.shaktifdn.registration.service.WalletService;
+import org.shaktifdn.registration.service.XForwardedRemoteAddressResolver;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.scheduling.annotation.EnableScheduling;
+import org.springframework.util.unit.DataSize;
+import org.springframework.web.reactive.config.EnableWebFlux;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.time.Duration;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+/**
+ * The registration service as it runs in production, from the controllers down to the web clients,
+ * with the settings of application.yml, but without Consul, Vault, OAuth2 and tracing: downstream
+ * URLs point at {@link Downstreams}, Couchbase is replaced by {@link InMemoryStore}, Kafka by
+ * {@link InMemoryBroker} and the signed-in user of the wallet flow by a stub {@link UserInfoClient}.
+ * The shared tiers of {@link VerifiedContactCache} and {@link OnboardingIdempotency} are off, as they
+ * use Couchbase directly, and the resilience4j circuit breakers are not applied.
+ * <p>
+ * {@code --max-connections}, {@code --pending-acquire-max-count}, {@code --concurrency-limit} and
+ * {@code --hedged-endpoints} override the production settings.
+ */
+@Configuration
+@EnableWebFlux
+@EnableScheduling
+public class RegistrationUnderTest {
+
+    @Bean
+    MeterRegistry meterRegistry() {
+        return new SimpleMeterRegistry();
+    }
+
+    @Bean
+    Scheduler scheduler() {
+        return Schedulers.boundedElastic();
+    }
+
+    @Bean
+    ServiceProperties serviceProperties(Downstreams downstreams, Environment environment) {
+        ServiceProperties properties = new ServiceProperties();
+        properties.setEmailService(downstreams.url(Downstreams.EMAIL));
+        properties.setSmsService(downstreams.url(Downstreams.SMS));
+        properties.setWalletService(downstreams.url(Downstreams.WALLET));
+        properties.setKycService(downstreams.url(Downstreams.KYC));
+        properties.setSelfyIdService(downstreams.url(Downstreams.SELFY_ID));
+        properties.setBizVaultService(downstreams.url(Downstreams.BIZ_VAULT));
+        ServiceProperties.ClientSettings defaults = properties.getClientDefaults();
+        defaults.setConnectTimeout(Duration.ofSeconds(2));
+        defaults.setReadTimeout(Duration.ofSeconds(10));
+        defaults.setResponseTimeout(Duration.ofSeconds(10));
+        defaults.setMaxInMemorySize(DataSize.ofKilobytes(256));
+        defaults.setMaxConnections(environment.getProperty("max-connections", Integer.class, 100));
+        defaults.setPendingAcquireMaxCount(environment.getProperty("pending-acquire-max-count", Integer.class, 200));
+        defaults.setPendingAcquireTimeout(Duration.ofSeconds(5));
+        defaults.setMaxIdleTime(Duration.ofSeconds(20));
+        defaults.setMaxLifeTime(Duration.ofSeconds(60));
+        return properties;
+    }
+
+    @Bean
+    GluuProperties gluuProperties(Downstreams downstreams) {
+        GluuProperties properties = new GluuProperties();
+        properties.setGluuUri(downstreams.url(Downstreams.GLUU));
+        return properties;
+    }
+
+    @Bean
+    ConcurrencyLimitProperties concurrencyLimitProperties(Environment environment) {
+        ConcurrencyLimitProperties properties = new ConcurrencyLimitProperties();
+        properties.setEnabled(environment.getProperty("concurrency-limit", Boolean.class, true));
+        return properties;
+    }
+
+    @Bean
+    CoalescingProperties coalescingProperties() {
+        CoalescingProperties properties = new CoalescingProperties();
+        properties.setEndpoints(Set.of(
+                EmailService.IS_OTP_VERIFIED_ENDPOINT,
+                MobileService.INQUIRE_ENDPOINT,
+                KycUserService.IS_WALLET_EXISTS_ENDPOINT
+        ));
+        return properties;
+    }
+
+    @Bean
+    HedgingProperties hedgingProperties(Environment environment) {
+        HedgingProperties properties = new HedgingProperties();
+        properties.setEndpoints(Set.of(environment.getProperty("hedged-endpoints", String[].class, new String[0])));
+        return properties;
+    }
+
+    @Bean
+    RegistrationCacheProperties registrationCacheProperties() {
+        RegistrationCacheProperties properties = new RegistrationCacheProperties();
+        properties.getVerifiedContact().setSharedEnabled(false);
+        properties.getIdempotency().setSharedEnabled(false);
+        return properties;
+    }
+
+    @Bean
+    AsyncOnboardingProperties asyncOnboardingProperties() {
+        AsyncOnboardingProperties properties = new AsyncOnboardingProperties();
+        properties.setSharedEnabled(false);
+        return properties;
+    }
+
+    @Bean
+    OnboardingSagaProperties onboardingSagaProperties() {
+        return new OnboardingSagaProperties();
+    }
+
+    @Bean
+    DeadlineProperties deadlineProperties() {
+        return new DeadlineProperties();
+    }
+
+    @Bean
+    OutboxProperties outboxProperties() {
+        return new OutboxProperties();
+    }
+
+    @Bean("loadBalanced")
+    WebClient.Builder loadBalanced() {
+        return jsonWebClient();
+    }
+
+    @Bean("loadBalancedSameBearerToken")
+    WebClient.Builder loadBalancedSameBearerToken() {
+        return jsonWebClient();
+    }
+
+    @Bean("extWebClient")
+    WebClient.Builder extWebClient() {
+        return jsonWebClient();
+    }
+
+    @Bean
+    ConcurrencyLimiters concurrencyLimiters(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        return new ConcurrencyLimiters(properties, meterRegistry);
+    }
+
+    @Bean
+    WebClientRegistry webClientRegistry(ServiceProperties serviceProperties, ConcurrencyLimiters concurrencyLimiters) {
+        return new WebClientRegistry(serviceProperties, concurrencyLimiters);
+    }
+
+    @Bean
+    RequestCoalescer requestCoalescer(CoalescingProperties properties, MeterRegistry meterRegistry) {
+        return new RequestCoalescer(properties, meterRegistry);
+    }
+
+    @Bean
+    RequestHedger requestHedger(HedgingProperties properties, MeterRegistry meterRegistry) {
+        return new RequestHedger(properties, meterRegistry);
+    }
+
+    @Bean
+    UserRegisterStateRepository userRegisterStateRepository(InMemoryStore store) {
+        return store.userRegisterStateRepository();
+    }
+
+    @Bean
+    OutboxMessageRepository outboxMessageRepository(InMemoryStore store) {
+        return store.outboxMessageRepository();
+    }
+
+    @Bean
+    CreateUserOutbox createUserOutbox(
+            OutboxMessageRepository outboxMessageRepository,
+            InMemoryBroker broker,
+            OutboxProperties properties,
+            Scheduler scheduler,
+            MeterRegistry meterRegistry
+    ) {
+        return new CreateUserOutbox(outboxMessageRepository, broker.streamBridge(), properties, scheduler, meterRegistry);
+    }
+
+    @Bean
+    EmailRegistrationCache emailRegistrationCache(RegistrationCacheProperties properties, MeterRegistry meterRegistry) {
+        return new EmailRegistrationCache(properties, meterRegistry);
+    }
+
+    @Bean
+    VerifiedContactCache verifiedContactCache(RegistrationCacheProperties properties, MeterRegistry meterRegistry) {
+        return new VerifiedContactCache(null, properties, meterRegistry);
+    }
+
+    @Bean
+    OnboardingIdempotency onboardingIdempotency(RegistrationCacheProperties properties, MeterRegistry meterRegistry) {
+        return new OnboardingIdempotency(null, Jackson2ObjectMapperBuilder.json().build(), properties, meterRegistry);
+    }
+
+    @Bean
+    OnboardingMetrics onboardingMetrics(MeterRegistry meterRegistry, ObjectProvider<Tracer> tracer) {
+        return new OnboardingMetrics(meterRegistry, tracer);
+    }
+
+    @Bean
+    UserInfoClient userInfoClient() {
+        UserInfoClient userInfoClient = mock(UserInfoClient.class, withSettings().stubOnly());
+        when(userInfoClient.getShaktiId()).thenAnswer(invocation -> Mono.fromSupplier(() -> UserDetail
+                .builder()
+                .shaktiId(UUID.randomUUID().toString())
+                .build()));
+        return userInfoClient;
+    }
+
+    @Bean
+    GluuServiceApi gluuService(
+            GluuProperties gluuProperties,
+            @Qualifier("extWebClient") WebClient.Builder extWebClient,
+            WebClientRegistry webClientRegistry
+    ) throws NoSuchAlgorithmException {
+        WebClient webClient = webClientRegistry.client(GluuService.GLUU, extWebClient);
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        GluuScimClient scimClient = new GluuScimClient(
+                webClient,
+                gluuProperties.getGluuUri() + GluuService.GLUU_URL_IDENTITY2,
+                new GluuUmaAuthenticator(webClient, "loadtest", generator.generateKeyPair().getPrivate(), "loadtest")
+        );
+        return new GluuReactiveService(gluuProperties, scimClient, extWebClient, webClientRegistry);
+    }
+
+    @Bean
+    EmailService emailService(
+            @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger,
+            VerifiedContactCache verifiedContactCache
+    ) {
+        return new EmailService(loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger, verifiedContactCache);
+    }
+
+    @Bean
+    MobileService mobileService(
+            @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger,
+            VerifiedContactCache verifiedContactCache
+    ) {
+        return new MobileService(loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger, verifiedContactCache);
+    }
+
+    @Bean
+    KycUserService kycUserService(
+            @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger
+    ) {
+        return new KycUserService(loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger);
+    }
+
+    @Bean
+    BizVaultService bizVaultService(
+            @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger
+    ) {
+        return new BizVaultService(loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger);
+    }
+
+    @Bean
+    SelfyIdService selfyIdService(
+            @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry
+    ) {
+        return new SelfyIdService(loadBalanced, serviceProperties, webClientRegistry);
+    }
+
+    @Bean
+    WalletService walletService(
+            @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
+            @Qualifier("loadBalancedSameBearerToken") WebClient.Builder loadBalancedSameBearerToken,
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger,
+            UserInfoClient userInfoClient,
+            KycUserService kycUserService,
+            UserRegisterStateRepository userRegisterStateRepository,
+            Scheduler scheduler
+    ) {
+        return new WalletService(
+                loadBalanced,
+                loadBalancedSameBearerToken,
+                serviceProperties,
+                webClientRegistry,
+                requestCoalescer,
+                requestHedger,
+                userInfoClient,
+                kycUserService,
+                userRegisterStateRepository,
+                scheduler
+        );
+    }
+
+    @Bean
+    OnboardingSaga onboardingSaga(
+            UserRegisterStateRepository userRegisterStateRepository,
+            OnboardingSagaProperties onboardingSagaProperties,
+            MeterRegistry meterRegistry
+    ) {
+        return new OnboardingSaga(userRegisterStateRepository, onboardingSagaProperties, meterRegistry);
+    }
+
+    @Bean
+    UserService userService(
+            EmailService emailService,
+            MobileService mobileService,
+            GluuServiceApi gluuService,
+            SelfyIdService selfyIdService,
+            UserRegisterStateRepository userRegisterStateRepository,
+            BizVaultService bizVaultService,
+            WalletService walletService,
+            CreateUserOutbox createUserOutbox,
+            EmailRegistrationCache emailRegistrationCache,
+            VerifiedContactCache verifiedContactCache,
+            OnboardingMetrics onboardingMetrics,
+            OnboardingIdempotency onboardingIdempotency,
+            OnboardingSaga onboardingSaga
+    ) {
+        return new UserService(
+                emailService,
+                mobileService,
+                gluuService,
+                selfyIdService,
+                userRegisterStateRepository,
+                bizVaultService,
+                walletService,
+                createUserOutbox,
+                emailRegistrationCache,
+                verifiedContactCache,
+                onboardingMetrics,
+                onboardingIdempotency,
+                onboardingSaga
+        );
+    }
+
+    @Bean
+    OnboardingJobs onboardingJobs(
+            UserService userService,
+            UserRegisterStateRepository userRegisterStateRepository,
+            AsyncOnboardingProperties asyncOnboardingProperties,
+            MeterRegistry meterRegistry
+    ) {
+        return new OnboardingJobs(userService, userRegisterStateRepository, null, asyncOnboardingProperties, meterRegistry);
+    }
+
+    @Bean
+    UserController userController(UserService userService, OnboardingJobs onboardingJobs) {
+        return new UserController(
+                userService,
+                new IpAddressService(XForwardedRemoteAddressResolver.maxTrustedIndex(1)),
+                onboardingJobs
+        );
+    }
+
+    @Bean
+    WalletController walletController(WalletService walletService) {
+        return new WalletController(walletService);
+    }
+
+    @Bean
+    ShaktiRegistrationControllerAdvice shaktiRegistrationControllerAdvice() {
+        return new ShaktiRegistrationControllerAdvice();
+    }
+
+    @Bean
+    RequestDeadlineWebFilter requestDeadlineWebFilter(DeadlineProperties deadlineProperties) {
+        return new RequestDeadlineWebFilter(deadlineProperties);
+    }
+
+    private static WebClient.Builder jsonWebClient() {
+        return WebClient.builder()
+                .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
+    }
+}
@@ -0,0 +1,81 @@
+package org.shaktifdn.registration.loadtest;
+
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.core.env.PropertySource;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Latency and error distribution of a stub downstream. Latencies are log-normal with the given median
+ * and 99th percentile, errors are answered with {@link #getErrorStatus()} at {@link #getErrorRate()}.
+ * <p>
+ * Read from the {@code --stub.*} options, overridden per downstream by {@code --<downstream>.*}:
+ * {@code p50}, {@code p99}, {@code error-rate} and {@code error-status}.
+ */
+final class StubBehavior {
+
+    private static final double Z_99 = 2.326;
+
+    private final Duration p50;
+    private final Duration p99;
+    private final double errorRate;
+    private final int errorStatus;
+    private final double sigma;
+
+    StubBehavior(Duration p50, Duration p99, double errorRate, int errorStatus) {
+        if (p99.compareTo(p50) < 0) {
+            throw new IllegalArgumentException("p99 " + p99 + " is below p50 " + p50);
+        }
+        if (errorRate < 0 || errorRate > 1) {
+            throw new IllegalArgumentException("error rate " + errorRate + " is not between 0 and 1");
+        }
+        this.p50 = p50;
+        this.p99 = p99;
+        this.errorRate = errorRate;
+        this.errorStatus = errorStatus;
+        this.sigma = p50.isZero() ? 0 : Math.log((double) p99.toNanos() / p50.toNanos()) / Z_99;
+    }
+
+    static StubBehavior from(PropertySource<?> options, String downstream) {
+        return new StubBehavior(
+                DurationStyle.detectAndParse(option(options, downstream, "p50", "20ms")),
+                DurationStyle.detectAndParse(option(options, downstream, "p99", "100ms")),
+                Double.parseDouble(option(options, downstream, "error-rate", "0")),
+                Integer.parseInt(option(options, downstream, "error-status", "503"))
+        );
+    }
+
+    Duration nextLatency() {
+        if (sigma == 0) {
+            return p50;
+        }
+        double gaussian = ThreadLocalRandom.current().nextGaussian();
+        return Duration.ofNanos((long) (p50.toNanos() * Math.exp(sigma * gaussian)));
+    }
+
+    boolean nextFails() {
+        return errorRate > 0 && ThreadLocalRandom.current().nextDouble() < errorRate;
+    }
+
+    int getErrorStatus() {
+        return errorStatus;
+    }
+
+    double getErrorRate() {
+        return errorRate;
+    }
+
+    @Override
+    public String toString() {
+        return "p50=" + p50.toMillis() + "ms p99=" + p99.toMillis() + "ms errors=" + errorRate + "x" + errorStatus;
+    }
+
+    private static String option(PropertySource<?> options, String downstream, String name, String defaultValue) {
+        Object value = options.getProperty(downstream + "." + name);
+        if (value == null) {
+            value = options.getProperty("stub." + name);
+        }
+        return value != null ? value.toString() : defaultValue;
+    }
+}
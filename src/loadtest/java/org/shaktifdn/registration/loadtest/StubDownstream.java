@@ -0,0 +1,120 @@
+package org.shaktifdn.registration.loadtest;
+
+import org.reactivestreams.Publisher;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+import reactor.netty.DisposableServer;
+import reactor.netty.http.server.HttpServer;
+import reactor.netty.http.server.HttpServerRequest;
+import reactor.netty.http.server.HttpServerResponse;
+import reactor.netty.resources.LoopResources;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * In-process HTTP stub of one downstream, answering canned replies by method and path after a
+ * latency drawn from its {@link StubBehavior}, or failing with the error status of the behavior.
+ * Unknown routes answer 404 at once.
+ */
+final class StubDownstream implements AutoCloseable {
+
+    private final String name;
+    private final StubBehavior behavior;
+    private final Map<String, Reply> replies = new HashMap<>();
+    private final LongAdder calls = new LongAdder();
+    private final LongAdder failures = new LongAdder();
+    private Scheduler delays;
+    private DisposableServer server;
+
+    StubDownstream(String name, StubBehavior behavior) {
+        this.name = name;
+        this.behavior = behavior;
+    }
+
+    StubDownstream reply(String method, String path, int status, String body) {
+        replies.put(method + " " + path, new Reply(status, body));
+        return this;
+    }
+
+    /**
+     * @param loops  event loops of the stubs, kept apart from the ones of the registration service
+     * @param delays scheduler the latencies are waited on
+     */
+    StubDownstream start(LoopResources loops, Scheduler delays) {
+        this.delays = delays;
+        this.server = HttpServer.create()
+                .host("localhost")
+                .port(0)
+                .runOn(loops)
+                .handle(this::handle)
+                .bindNow();
+        return this;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    StubBehavior getBehavior() {
+        return behavior;
+    }
+
+    String baseUrl() {
+        return "http://localhost:" + server.port();
+    }
+
+    long getCalls() {
+        return calls.sum();
+    }
+
+    long getFailures() {
+        return failures.sum();
+    }
+
+    @Override
+    public void close() {
+        if (server != null) {
+            server.disposeNow();
+        }
+    }
+
+    private Publisher<Void> handle(HttpServerRequest request, HttpServerResponse response) {
+        String uri = request.uri();
+        int query = uri.indexOf('?');
+        Reply reply = replies.get(request.method().name() + " " + (query < 0 ? uri : uri.substring(0, query)));
+        if (reply == null) {
+            return response.status(404).send();
+        }
+        Duration latency = behavior.nextLatency();
+        return request.receive()
+                .then()
+                .then(Mono.delay(latency, delays))
+                .then(Mono.defer(() -> {
+                    calls.increment();
+                    if (behavior.nextFails()) {
+                        failures.increment();
+                        return response.status(behavior.getErrorStatus()).send().then();
+                    }
+                    return response
+                            .status(reply.status)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .sendString(Mono.just(reply.body))
+                            .then();
+                }));
+    }
+
+    private static final class Reply {
+        private final int status;
+        private final String body;
+
+        private Reply(int status, String body) {
+            this.status = status;
+            this.body = body;
+        }
+    }
+}
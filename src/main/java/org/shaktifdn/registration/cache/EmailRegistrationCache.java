@@ -0,0 +1,98 @@
+package org.shaktifdn.registration.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.RegistrationCacheProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Locale;
+import java.util.function.Function;
+
+/**
+ * Short-TTL cache of the "is this email registered" answers of Gluu and BizVault, keyed by the
+ * lowercased email. Positive and negative answers expire independently.
+ * <p>
+ * Lookups go through Caffeine's {@link AsyncCache}, so concurrent callers for the same email share a
+ * single in-flight remote call; a failed call is not cached. See {@link ReactiveCaches} for the context
+ * the call runs with.
+ */
+@Component
+@Slf4j
+public class EmailRegistrationCache {
+
+    private final AsyncCache<String, Boolean> gluu;
+    private final AsyncCache<String, Boolean> bizVault;
+
+    public EmailRegistrationCache(RegistrationCacheProperties properties, MeterRegistry meterRegistry) {
+        RegistrationCacheProperties.EmailRegistration settings = properties.getEmailRegistration();
+        this.gluu = build(settings);
+        this.bizVault = build(settings);
+        CaffeineCacheMetrics.monitor(meterRegistry, gluu.synchronous(), "emailRegistration.gluu");
+        CaffeineCacheMetrics.monitor(meterRegistry, bizVault.synchronous(), "emailRegistration.bizVault");
+    }
+
+    public Mono<Boolean> isRegisteredInGluu(String email, Function<String, Mono<Boolean>> lookup) {
+        return get(gluu, email, lookup);
+    }
+
+    public Mono<Boolean> isRegisteredInBizVault(String email, Function<String, Mono<Boolean>> lookup) {
+        return get(bizVault, email, lookup);
+    }
+
+    public void invalidate(String email) {
+        if (email == null) {
+            return;
+        }
+        String key = key(email);
+        log.debug("invalidating email registration cache for {}", key);
+        gluu.synchronous().invalidate(key);
+        bizVault.synchronous().invalidate(key);
+    }
+
+    public void invalidateAll() {
+        gluu.synchronous().invalidateAll();
+        bizVault.synchronous().invalidateAll();
+    }
+
+    private static Mono<Boolean> get(
+            AsyncCache<String, Boolean> cache,
+            String email,
+            Function<String, Mono<Boolean>> lookup
+    ) {
+        return ReactiveCaches.get(cache, key(email), lookup);
+    }
+
+    private static String key(String email) {
+        return email.toLowerCase(Locale.ROOT);
+    }
+
+    private static AsyncCache<String, Boolean> build(RegistrationCacheProperties.EmailRegistration settings) {
+        long positiveTtl = settings.getPositiveTtl().toNanos();
+        long negativeTtl = settings.getNegativeTtl().toNanos();
+        return Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfter(new Expiry<String, Boolean>() {
+                    @Override
+                    public long expireAfterCreate(String key, Boolean registered, long currentTime) {
+                        return Boolean.TRUE.equals(registered) ? positiveTtl : negativeTtl;
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Boolean registered, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, registered, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Boolean registered, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+}
@@ -0,0 +1,411 @@
+package org.shaktifdn.registration.cache;
+
+import com.couchbase.client.core.error.DocumentExistsException;
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.json.JsonObject;
+import com.couchbase.client.java.kv.GetResult;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.shaktifdn.registration.config.RegistrationCacheProperties;
+import org.shaktifdn.registration.exception.BadRequestException;
+import org.shaktifdn.registration.exception.ConflictRecordsException;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.response.ResponseBean;
+import org.shaktifdn.registration.security.SecurityUtils;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.time.Instant;
+import java.util.Base64;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+import static com.couchbase.client.java.kv.InsertOptions.insertOptions;
+import static com.couchbase.client.java.kv.UpsertOptions.upsertOptions;
+
+/**
+ * Makes onboarding safe to retry: requests with the same {@link #HEADER}, or without one the same
+ * device and email, run the onboarding pipeline once. A retry arriving while it runs attaches to it,
+ * one arriving after it succeeded gets the stored 201 response replayed, without calling any
+ * downstream. A failed onboarding releases its key so the retry runs it again.
+ * <p>
+ * Keys are held in a local tier and, to cover retries landing on another replica, in a Couchbase
+ * document claimed with an insert: {@code IN_PROGRESS} with a short expiry while the pipeline runs,
+ * then {@code COMPLETED} with the response for {@code ttl}. Retries finding another replica's claim
+ * poll it for {@code inProgressWait} and then answer 409. When Couchbase fails, onboarding runs
+ * unguarded, as it did before.
+ * <p>
+ * Password, PIN, passphrase, wallet and authorization bytes are never stored: they are removed from
+ * the stored response and put back from the retried request when replaying. They take part in the
+ * fingerprint of the request through an HMAC with {@code fingerprintKey} only. Reusing a key for a
+ * different email, mobile number, device, wallet or any of those secrets answers 400, so a retry with
+ * another password is not told it succeeded.
+ */
+@Component
+@Slf4j
+public class OnboardingIdempotency {
+
+    public static final String HEADER = "Idempotency-Key";
+    static final String TYPE = "OnboardingIdempotency";
+    static final String METRIC_NAME = "registration.onboarding.idempotency";
+    private static final String ID_PREFIX = TYPE + "::";
+    private static final String STATE = "state";
+    private static final String IN_PROGRESS = "IN_PROGRESS";
+    private static final String COMPLETED = "COMPLETED";
+    private static final String FINGERPRINT = "fingerprint";
+    private static final String RESPONSE = "response";
+    private static final String CLAIMED = "CLAIMED";
+    private static final String TAKEN = "TAKEN";
+    private static final String RELEASED = "RELEASED";
+    private static final String UNAVAILABLE = "UNAVAILABLE";
+    private static final String HMAC_ALGORITHM = "HmacSHA256";
+
+    private final ReactiveCouchbaseTemplate couchbaseTemplate;
+    private final ObjectMapper objectMapper;
+    private final MeterRegistry meterRegistry;
+    private final RegistrationCacheProperties.Idempotency settings;
+    private final SecretKeySpec fingerprintKey;
+    private final boolean shared;
+    private final Cache<String, Completed> completed;
+    private final Map<String, Flight> inFlight = new ConcurrentHashMap<>();
+
+    public OnboardingIdempotency(
+            ReactiveCouchbaseTemplate couchbaseTemplate,
+            ObjectMapper objectMapper,
+            RegistrationCacheProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.couchbaseTemplate = couchbaseTemplate;
+        this.objectMapper = objectMapper;
+        this.meterRegistry = meterRegistry;
+        this.settings = properties.getIdempotency();
+        if (StringUtils.isNotBlank(settings.getFingerprintKey())) {
+            this.fingerprintKey = new SecretKeySpec(settings.getFingerprintKey().getBytes(StandardCharsets.UTF_8), HMAC_ALGORITHM);
+            this.shared = settings.isSharedEnabled();
+        } else {
+            byte[] random = new byte[32];
+            new SecureRandom().nextBytes(random);
+            this.fingerprintKey = new SecretKeySpec(random, HMAC_ALGORITHM);
+            this.shared = false;
+            if (settings.isSharedEnabled()) {
+                log.warn("no onboarding idempotency fingerprint key set, keys are not shared with other replicas");
+            }
+        }
+        this.completed = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfterWrite(settings.getTtl())
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, completed, "onboardingIdempotency");
+    }
+
+    /**
+     * @param idempotencyKey value of {@link #HEADER}, or null to key by device and email
+     * @param request        onboarding request, with its email lowercased
+     * @param onboarding     the onboarding pipeline, run at most once per key
+     */
+    public Mono<ResponseBean> onboard(
+            String idempotencyKey,
+            OnboardShaktiUserRequest request,
+            Supplier<Mono<ResponseBean>> onboarding
+    ) {
+        if (!settings.isEnabled()) {
+            return Mono.defer(onboarding);
+        }
+        String id = key(idempotencyKey, request);
+        String fingerprint = fingerprint(request);
+        return Mono.defer(() -> {
+            Completed done = completed.getIfPresent(id);
+            if (done != null) {
+                return replay(done, fingerprint, request, "local");
+            }
+            AtomicBoolean leader = new AtomicBoolean();
+            Flight flight = inFlight.computeIfAbsent(id, k -> {
+                leader.set(true);
+                return newFlight(k, fingerprint, request, onboarding);
+            });
+            if (leader.get()) {
+                return flight.response;
+            }
+            if (!flight.fingerprint.equals(fingerprint)) {
+                return mismatch();
+            }
+            log.info("onboarding retry for {} attached to the one in progress", request.getEmail());
+            counter("attached").increment();
+            return flight.response;
+        });
+    }
+
+    private Flight newFlight(
+            String id,
+            String fingerprint,
+            OnboardShaktiUserRequest request,
+            Supplier<Mono<ResponseBean>> onboarding
+    ) {
+        AtomicReference<Flight> self = new AtomicReference<>();
+        Mono<ResponseBean> response = (shared
+                ? claim(id, fingerprint, request, onboarding, Instant.now().plus(settings.getInProgressWait()))
+                : run(id, fingerprint, onboarding, false))
+                .doFinally(signal -> inFlight.remove(id, self.get()))
+                .cache();
+        self.set(new Flight(fingerprint, response));
+        return self.get();
+    }
+
+    /**
+     * Claims the key in Couchbase and runs onboarding, or follows the claim of another replica
+     */
+    private Mono<ResponseBean> claim(
+            String id,
+            String fingerprint,
+            OnboardShaktiUserRequest request,
+            Supplier<Mono<ResponseBean>> onboarding,
+            Instant giveUpAt
+    ) {
+        return Mono.defer(() -> collection().insert(
+                        id,
+                        JsonObject.create().put("_type", TYPE).put(STATE, IN_PROGRESS).put(FINGERPRINT, fingerprint),
+                        insertOptions().expiry(settings.getInProgressTtl())
+                ))
+                .thenReturn(CLAIMED)
+                .onErrorResume(DocumentExistsException.class, e -> Mono.just(TAKEN))
+                .onErrorResume(e -> {
+                    log.warn("could not claim onboarding idempotency key {}, onboarding unguarded", id, e);
+                    counter("error").increment();
+                    return Mono.just(UNAVAILABLE);
+                })
+                .flatMap(claim -> {
+                    if (CLAIMED.equals(claim)) {
+                        return run(id, fingerprint, onboarding, true);
+                    }
+                    if (TAKEN.equals(claim)) {
+                        return follow(id, fingerprint, request, onboarding, giveUpAt);
+                    }
+                    return run(id, fingerprint, onboarding, false);
+                });
+    }
+
+    /**
+     * Waits for the onboarding another replica runs for the key, and replays its response
+     */
+    private Mono<ResponseBean> follow(
+            String id,
+            String fingerprint,
+            OnboardShaktiUserRequest request,
+            Supplier<Mono<ResponseBean>> onboarding,
+            Instant giveUpAt
+    ) {
+        return Mono.defer(() -> collection().get(id))
+                .map(GetResult::contentAsObject)
+                .onErrorResume(DocumentNotFoundException.class, e -> Mono.just(JsonObject.create().put(STATE, RELEASED)))
+                .onErrorResume(e -> {
+                    log.warn("could not read onboarding idempotency key {}, onboarding unguarded", id, e);
+                    counter("error").increment();
+                    return Mono.just(JsonObject.create().put(STATE, UNAVAILABLE));
+                })
+                .flatMap(record -> {
+                    if (UNAVAILABLE.equals(record.getString(STATE))) {
+                        return run(id, fingerprint, onboarding, false);
+                    }
+                    if (RELEASED.equals(record.getString(STATE))) {
+                        // released by a failed onboarding, or expired: claim the key again
+                        return claim(id, fingerprint, request, onboarding, giveUpAt);
+                    }
+                    if (!fingerprint.equals(record.getString(FINGERPRINT))) {
+                        return mismatch();
+                    }
+                    if (COMPLETED.equals(record.getString(STATE))) {
+                        Completed done = new Completed(fingerprint, read(record.getString(RESPONSE)));
+                        completed.put(id, done);
+                        return replay(done, fingerprint, request, "shared");
+                    }
+                    if (Instant.now().isAfter(giveUpAt)) {
+                        counter("conflict").increment();
+                        return Mono.error(new ConflictRecordsException(
+                                "onboarding of " + request.getEmail() + " is already in progress, retry later"));
+                    }
+                    return Mono.delay(settings.getPollInterval())
+                            .then(Mono.defer(() -> follow(id, fingerprint, request, onboarding, giveUpAt)));
+                });
+    }
+
+    private Mono<ResponseBean> run(String id, String fingerprint, Supplier<Mono<ResponseBean>> onboarding, boolean shared) {
+        counter("executed").increment();
+        return Mono.defer(onboarding)
+                .flatMap(response -> {
+                    ResponseBean stored = withoutSecrets(response);
+                    completed.put(id, new Completed(fingerprint, stored));
+                    return shared ? complete(id, fingerprint, stored).thenReturn(response) : Mono.just(response);
+                })
+                .onErrorResume(e -> (shared ? release(id) : Mono.<Void>empty()).then(Mono.error(e)));
+    }
+
+    private Mono<Void> complete(String id, String fingerprint, ResponseBean stored) {
+        return Mono.defer(() -> collection().upsert(
+                        id,
+                        JsonObject.create()
+                                .put("_type", TYPE)
+                                .put(STATE, COMPLETED)
+                                .put(FINGERPRINT, fingerprint)
+                                .put(RESPONSE, write(stored)),
+                        upsertOptions().expiry(settings.getTtl())
+                ))
+                .doOnError(e -> log.warn("could not store completed onboarding {}", id, e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private Mono<Void> release(String id) {
+        return Mono.defer(() -> collection().remove(id))
+                .doOnError(e -> log.warn("could not release onboarding idempotency key {}", id, e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private Mono<ResponseBean> replay(Completed done, String fingerprint, OnboardShaktiUserRequest request, String source) {
+        if (!done.fingerprint.equals(fingerprint)) {
+            return mismatch();
+        }
+        log.info("replaying completed onboarding for {} from the {} tier", request.getEmail(), source);
+        counter("replayed").increment();
+        ResponseBean stored = done.response;
+        OnboardShaktiUserRequest details = copyOfDetails(stored);
+        if (details != null) {
+            details.setPassword(request.getPassword());
+            details.setPin(request.getPin());
+            details.setPassphrase(request.getPassphrase());
+            details.setWalletBytes(request.getWalletBytes());
+            details.setAuthorizationBytes(request.getAuthorizationBytes());
+        }
+        return Mono.just(new ResponseBean(stored.getTimestamp(), stored.getStatus(), stored.getMessage(), details));
+    }
+
+    private Mono<ResponseBean> mismatch() {
+        counter("mismatch").increment();
+        return Mono.error(new BadRequestException("a different onboarding request was made with the same " + HEADER + ", or device and email"));
+    }
+
+    private ResponseBean withoutSecrets(ResponseBean response) {
+        OnboardShaktiUserRequest details = copyOfDetails(response);
+        if (details != null) {
+            details.setPassword(null);
+            details.setPin(null);
+            details.setPassphrase(null);
+            details.setWalletBytes(null);
+            details.setAuthorizationBytes(null);
+        }
+        return new ResponseBean(response.getTimestamp(), response.getStatus(), response.getMessage(), details);
+    }
+
+    /**
+     * @return a copy, through a tree so Jackson does not hand back the same instance
+     */
+    private OnboardShaktiUserRequest copyOfDetails(ResponseBean response) {
+        return objectMapper.convertValue(objectMapper.valueToTree(response.getDetails()), OnboardShaktiUserRequest.class);
+    }
+
+    private String write(ResponseBean response) {
+        try {
+            return objectMapper.writeValueAsString(response);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("onboarding response cannot be stored", e);
+        }
+    }
+
+    private ResponseBean read(String response) {
+        try {
+            return objectMapper.readValue(response, ResponseBean.class);
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("stored onboarding response cannot be read", e);
+        }
+    }
+
+    /**
+     * @return document id; the key is scoped to the email so one user cannot replay another's response
+     */
+    static String key(String idempotencyKey, OnboardShaktiUserRequest request) {
+        String email = request.getEmail().toLowerCase(Locale.ROOT);
+        String scope = StringUtils.isNotBlank(idempotencyKey)
+                ? "key:" + email + ":" + idempotencyKey.trim()
+                : "device:" + email + ":" + request.getDeviceId();
+        return ID_PREFIX + SecurityUtils.tokenHash(scope);
+    }
+
+    /**
+     * @return hash of the fields that identify an onboarding, with an HMAC of the secrets so they cannot
+     * be guessed from a stored fingerprint
+     */
+    String fingerprint(OnboardShaktiUserRequest request) {
+        return SecurityUtils.tokenHash(String.join("\n",
+                request.getEmail().toLowerCase(Locale.ROOT),
+                String.valueOf(request.getCountryCode()),
+                String.valueOf(request.getMobileNo()),
+                String.valueOf(request.getDeviceId()),
+                String.valueOf(request.getMainnetWalletId()),
+                String.valueOf(request.getTestnetWalletId()),
+                hmac(String.join("\n",
+                        String.valueOf(request.getPassword()),
+                        String.valueOf(request.getPin()),
+                        String.valueOf(request.getPassphrase()),
+                        String.valueOf(request.getWalletBytes()),
+                        String.valueOf(request.getAuthorizationBytes())
+                ))
+        ));
+    }
+
+    private String hmac(String value) {
+        try {
+            Mac mac = Mac.getInstance(HMAC_ALGORITHM);
+            mac.init(fingerprintKey);
+            return Base64.getUrlEncoder().withoutPadding().encodeToString(mac.doFinal(value.getBytes(StandardCharsets.UTF_8)));
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(HMAC_ALGORITHM + " not available", e);
+        }
+    }
+
+    private Counter counter(String result) {
+        return meterRegistry.counter(METRIC_NAME, "result", result);
+    }
+
+    private ReactiveCollection collection() {
+        return couchbaseTemplate.getCouchbaseClientFactory().getDefaultCollection().reactive();
+    }
+
+    private static final class Flight {
+        private final String fingerprint;
+        private final Mono<ResponseBean> response;
+
+        private Flight(String fingerprint, Mono<ResponseBean> response) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+        }
+    }
+
+    private static final class Completed {
+        private final String fingerprint;
+        private final ResponseBean response;
+
+        private Completed(String fingerprint, ResponseBean response) {
+            this.fingerprint = fingerprint;
+            this.response = response;
+        }
+    }
+}
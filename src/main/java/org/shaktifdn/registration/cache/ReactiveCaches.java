@@ -0,0 +1,27 @@
+package org.shaktifdn.registration.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import org.shaktifdn.registration.client.Deadline;
+import reactor.core.publisher.Mono;
+
+import java.util.function.Function;
+
+/**
+ * Reads through a Caffeine {@link AsyncCache} from reactive code.
+ * <p>
+ * The loader runs with the Reactor context of the caller that starts it, so the deadline and the span
+ * of that request reach the remote call. Each caller stops waiting at its own {@link Deadline}. A caller
+ * that cancels only stops waiting: the load shared by the other callers goes on and its answer is kept.
+ */
+public final class ReactiveCaches {
+
+    private ReactiveCaches() {
+    }
+
+    public static <K, V> Mono<V> get(AsyncCache<K, V> cache, K key, Function<K, Mono<V>> loader) {
+        return Deadline.bound(Mono.deferContextual(context -> Mono.fromFuture(cache
+                .get(key, (k, executor) -> loader.apply(k).contextWrite(context).toFuture())
+                // cancelling the copy leaves the shared future alone
+                .copy())));
+    }
+}
@@ -0,0 +1,162 @@
+package org.shaktifdn.registration.cache;
+
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.json.JsonObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.RegistrationCacheProperties;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Locale;
+
+import static com.couchbase.client.java.kv.UpsertOptions.upsertOptions;
+
+/**
+ * Short-lived record of emails and mobile numbers whose OTP was confirmed, so onboarding can skip the
+ * email and SMS service inquiries right after a successful confirmation.
+ * <p>
+ * Entries are kept in a local Caffeine tier and in a Couchbase document with an expiry, shared by all
+ * replicas. Only positive answers are stored; a miss or a failing Couchbase call answers {@code false}
+ * and callers fall back to the remote inquiry.
+ */
+@Component
+@Slf4j
+public class VerifiedContactCache {
+
+    static final String TYPE = "VerifiedContact";
+    static final String METRIC_NAME = "registration.verifiedContact.lookup";
+    private static final String ID_PREFIX = TYPE + "::";
+    private static final String EXPIRES_AT = "expiresAt";
+
+    private final ReactiveCouchbaseTemplate couchbaseTemplate;
+    private final MeterRegistry meterRegistry;
+    private final RegistrationCacheProperties.VerifiedContact settings;
+    private final Cache<String, Instant> local;
+
+    public VerifiedContactCache(
+            ReactiveCouchbaseTemplate couchbaseTemplate,
+            RegistrationCacheProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.couchbaseTemplate = couchbaseTemplate;
+        this.meterRegistry = meterRegistry;
+        this.settings = properties.getVerifiedContact();
+        this.local = Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfter(new Expiry<String, Instant>() {
+                    @Override
+                    public long expireAfterCreate(String key, Instant expiresAt, long currentTime) {
+                        return Math.max(0, Duration.between(Instant.now(), expiresAt).toNanos());
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Instant expiresAt, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, expiresAt, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Instant expiresAt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .build();
+        CaffeineCacheMetrics.monitor(meterRegistry, local, "verifiedContact");
+    }
+
+    public Mono<Void> emailVerified(String email, String requestedFlow) {
+        return put(emailKey(email, requestedFlow));
+    }
+
+    public Mono<Void> mobileVerified(String countryCode, String mobileNo, String requestedFlow) {
+        return put(mobileKey(countryCode, mobileNo, requestedFlow));
+    }
+
+    /**
+     * @return true when the email was confirmed recently, false when unknown
+     */
+    public Mono<Boolean> isEmailVerified(String email, String requestedFlow) {
+        return get(emailKey(email, requestedFlow));
+    }
+
+    /**
+     * @return true when the mobile number was confirmed recently, false when unknown
+     */
+    public Mono<Boolean> isMobileVerified(String countryCode, String mobileNo, String requestedFlow) {
+        return get(mobileKey(countryCode, mobileNo, requestedFlow));
+    }
+
+    public void invalidateAll() {
+        local.invalidateAll();
+    }
+
+    private Mono<Void> put(String key) {
+        Instant expiresAt = Instant.now().plus(settings.getTtl());
+        local.put(key, expiresAt);
+        if (!settings.isSharedEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> collection().upsert(
+                        key,
+                        JsonObject.create().put("_type", TYPE).put(EXPIRES_AT, expiresAt.toString()),
+                        upsertOptions().expiry(settings.getTtl())
+                ))
+                .doOnError(e -> log.warn("could not share verified contact {}", key, e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private Mono<Boolean> get(String key) {
+        Instant expiresAt = local.getIfPresent(key);
+        if (expiresAt != null && expiresAt.isAfter(Instant.now())) {
+            return Mono.fromSupplier(() -> found("local"));
+        }
+        if (!settings.isSharedEnabled()) {
+            return Mono.fromSupplier(() -> missed("miss"));
+        }
+        return Mono.defer(() -> collection().get(key))
+                .map(result -> Instant.parse(result.contentAsObject().getString(EXPIRES_AT)))
+                .filter(shared -> shared.isAfter(Instant.now()))
+                .map(shared -> {
+                    local.put(key, shared);
+                    return found("shared");
+                })
+                .onErrorResume(DocumentNotFoundException.class, e -> Mono.empty())
+                .onErrorResume(e -> {
+                    log.warn("could not read verified contact {}", key, e);
+                    return Mono.fromSupplier(() -> missed("error"));
+                })
+                .switchIfEmpty(Mono.fromSupplier(() -> missed("miss")));
+    }
+
+    private boolean found(String source) {
+        meterRegistry.counter(METRIC_NAME, "source", source).increment();
+        return true;
+    }
+
+    private boolean missed(String source) {
+        meterRegistry.counter(METRIC_NAME, "source", source).increment();
+        return false;
+    }
+
+    static String emailKey(String email, String requestedFlow) {
+        return ID_PREFIX + "email:" + requestedFlow + ":" + email.toLowerCase(Locale.ROOT);
+    }
+
+    static String mobileKey(String countryCode, String mobileNo, String requestedFlow) {
+        return ID_PREFIX + "mobile:" + requestedFlow + ":" + countryCode + ":" + mobileNo;
+    }
+
+    private ReactiveCollection collection() {
+        return couchbaseTemplate.getCouchbaseClientFactory().getDefaultCollection().reactive();
+    }
+}
@@ -0,0 +1,129 @@
+package org.shaktifdn.registration.client;
+
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Concurrency limit of one downstream, adjusted with additive increase and multiplicative decrease.
+ * <p>
+ * The limit grows by one for each fast response while the calls in flight use at least half of it. It
+ * is multiplied by the backoff ratio on an error, or when the recent average latency exceeds the
+ * long-term average by the configured tolerance, at most once per decrease interval. Comparing two
+ * averages instead of an absolute threshold keeps the limit stable for downstreams mixing fast and
+ * slow endpoints.
+ */
+@Slf4j
+public class AdaptiveConcurrencyLimiter {
+
+    private final String downstream;
+    private final ConcurrencyLimitProperties settings;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final LongAdder rejected = new LongAdder();
+    private final double longAlpha;
+    private final double shortAlpha;
+    private volatile double limit;
+    private double longRtt;
+    private double shortRtt;
+    private long lastDecrease;
+
+    public AdaptiveConcurrencyLimiter(String downstream, ConcurrencyLimitProperties settings) {
+        this.downstream = downstream;
+        this.settings = settings;
+        this.limit = settings.getInitialLimit();
+        this.longAlpha = 2.0 / (settings.getLongWindow() + 1);
+        this.shortAlpha = 2.0 / (settings.getShortWindow() + 1);
+        this.lastDecrease = System.nanoTime() - settings.getDecreaseInterval().toNanos();
+    }
+
+    /**
+     * Takes a slot for one call.
+     *
+     * @return false when the limit is reached and the call must be rejected
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            int current = inFlight.get();
+            if (current >= getLimit()) {
+                rejected.increment();
+                return false;
+            }
+            if (inFlight.compareAndSet(current, current + 1)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a completed call and adjusts the limit.
+     *
+     * @param rttNanos time until the response arrived
+     * @param dropped  whether the call failed in a way that indicates overload
+     */
+    public void release(long rttNanos, boolean dropped) {
+        int current = inFlight.getAndDecrement();
+        synchronized (this) {
+            if (longRtt == 0) {
+                longRtt = rttNanos;
+                shortRtt = rttNanos;
+            } else {
+                longRtt += longAlpha * (rttNanos - longRtt);
+                shortRtt += shortAlpha * (rttNanos - shortRtt);
+            }
+            if (dropped || shortRtt > longRtt * settings.getLatencyTolerance()) {
+                decrease();
+            } else if (current * 2 >= limit) {
+                limit = Math.min(settings.getMaxLimit(), limit + 1);
+            }
+        }
+    }
+
+    /**
+     * Frees the slot of a cancelled call without adjusting the limit.
+     */
+    public void cancel() {
+        inFlight.decrementAndGet();
+    }
+
+    public int getLimit() {
+        return (int) limit;
+    }
+
+    public int getInFlight() {
+        return inFlight.get();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("limit", getLimit());
+        status.put("inFlight", getInFlight());
+        status.put("rejected", getRejected());
+        synchronized (this) {
+            status.put("longLatency", Duration.ofNanos((long) longRtt).toString());
+            status.put("shortLatency", Duration.ofNanos((long) shortRtt).toString());
+        }
+        return status;
+    }
+
+    private void decrease() {
+        long now = System.nanoTime();
+        if (now - lastDecrease < settings.getDecreaseInterval().toNanos()) {
+            return;
+        }
+        lastDecrease = now;
+        double decreased = Math.max(settings.getMinLimit(), limit * settings.getBackoffRatio());
+        if ((int) decreased < (int) limit) {
+            log.info("lowering concurrency limit of {} to {}", downstream, (int) decreased);
+        }
+        limit = decreased;
+    }
+}
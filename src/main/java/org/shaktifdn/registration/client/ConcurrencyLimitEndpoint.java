@@ -0,0 +1,26 @@
+package org.shaktifdn.registration.client;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/concurrency}: current concurrency limit of every downstream.
+ */
+@Component
+@Endpoint(id = "concurrency")
+public class ConcurrencyLimitEndpoint {
+
+    private final ConcurrencyLimiters concurrencyLimiters;
+
+    public ConcurrencyLimitEndpoint(ConcurrencyLimiters concurrencyLimiters) {
+        this.concurrencyLimiters = concurrencyLimiters;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> limits() {
+        return concurrencyLimiters.status();
+    }
+}
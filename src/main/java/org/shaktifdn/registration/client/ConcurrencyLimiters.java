@@ -0,0 +1,97 @@
+package org.shaktifdn.registration.client;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.exception.ServiceOverloadedException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One {@link AdaptiveConcurrencyLimiter} per downstream, applied to its web client as a filter. Calls
+ * over the limit fail at once with {@link ServiceOverloadedException} instead of queueing for a
+ * connection. 5xx and 429 responses and transport errors count as overload. The circuit breakers
+ * ignore the exception, as a shed call never reached its downstream.
+ */
+@Component
+@Slf4j
+public class ConcurrencyLimiters {
+
+    static final String LIMIT = "registration.client.concurrency.limit";
+    static final String IN_FLIGHT = "registration.client.concurrency.inflight";
+    static final String REJECTED = "registration.client.concurrency.rejected";
+
+    private final ConcurrencyLimitProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, AdaptiveConcurrencyLimiter> limiters = new ConcurrentHashMap<>();
+
+    public ConcurrencyLimiters(ConcurrencyLimitProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public ExchangeFilterFunction filter(String downstream) {
+        if (!properties.isEnabled()) {
+            return (request, next) -> next.exchange(request);
+        }
+        AdaptiveConcurrencyLimiter limiter = limiter(downstream);
+        return (request, next) -> Mono.defer(() -> {
+            if (!limiter.tryAcquire()) {
+                log.warn("shedding call to {} {}, limit {} reached", downstream, request.url(), limiter.getLimit());
+                return Mono.error(new ServiceOverloadedException(downstream));
+            }
+            long start = System.nanoTime();
+            AtomicBoolean released = new AtomicBoolean();
+            return next.exchange(request)
+                    .doOnSuccess(response -> {
+                        if (released.compareAndSet(false, true)) {
+                            int status = response != null ? response.rawStatusCode() : 0;
+                            limiter.release(System.nanoTime() - start, status >= 500 || status == 429);
+                        }
+                    })
+                    .doOnError(e -> {
+                        if (released.compareAndSet(false, true)) {
+                            limiter.release(System.nanoTime() - start, true);
+                        }
+                    })
+                    .doOnCancel(() -> {
+                        if (released.compareAndSet(false, true)) {
+                            limiter.cancel();
+                        }
+                    });
+        });
+    }
+
+    /**
+     * @return limit, calls in flight, rejections and latencies per downstream
+     */
+    public Map<String, Map<String, Object>> status() {
+        Map<String, Map<String, Object>> status = new TreeMap<>();
+        limiters.forEach((downstream, limiter) -> status.put(downstream, limiter.status()));
+        return status;
+    }
+
+    AdaptiveConcurrencyLimiter limiter(String downstream) {
+        return limiters.computeIfAbsent(downstream, name -> {
+            AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter(name, properties);
+            Gauge.builder(LIMIT, limiter, AdaptiveConcurrencyLimiter::getLimit)
+                    .tag("downstream", name)
+                    .register(meterRegistry);
+            Gauge.builder(IN_FLIGHT, limiter, AdaptiveConcurrencyLimiter::getInFlight)
+                    .tag("downstream", name)
+                    .register(meterRegistry);
+            FunctionCounter.builder(REJECTED, limiter, AdaptiveConcurrencyLimiter::getRejected)
+                    .tag("downstream", name)
+                    .register(meterRegistry);
+            return limiter;
+        });
+    }
+}
@@ -0,0 +1,99 @@
+package org.shaktifdn.registration.client;
+
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.Optional;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Point in time by which the response to an incoming request is due. It travels in the Reactor
+ * context of the request, outbound calls are cut off when it passes and forward the time left in
+ * {@link #HEADER} so downstream services can stop early too.
+ * <p>
+ * A call shared by several requests, a coalesced call or a cache load, runs under the deadline of the
+ * request that started it; the others stop waiting for it at their own deadline with {@link #bound}.
+ */
+public final class Deadline {
+
+    /**
+     * milliseconds the receiver has to answer
+     */
+    public static final String HEADER = "X-Request-Timeout";
+    private static final String DEADLINE_EXCEEDED = "Request deadline exceeded";
+
+    private final long deadlineNanos;
+
+    private Deadline(long deadlineNanos) {
+        this.deadlineNanos = deadlineNanos;
+    }
+
+    public static Deadline after(Duration timeout) {
+        return new Deadline(System.nanoTime() + timeout.toNanos());
+    }
+
+    public static Optional<Deadline> from(ContextView context) {
+        return context.getOrEmpty(Deadline.class);
+    }
+
+    public Duration remaining() {
+        return Duration.ofNanos(deadlineNanos - System.nanoTime());
+    }
+
+    public boolean isExpired() {
+        return deadlineNanos - System.nanoTime() <= 0;
+    }
+
+    /**
+     * Times out the source with the time left of the current deadline, or with the fallback outside
+     * of a request.
+     */
+    public static <T> Mono<T> timeout(Mono<T> source, Duration fallback, Supplier<? extends Throwable> error) {
+        return Mono.deferContextual(context -> {
+            Optional<Deadline> deadline = from(context);
+            if (deadline.isPresent() && deadline.get().isExpired()) {
+                return Mono.error(error);
+            }
+            Duration timeout = deadline.map(Deadline::remaining).orElse(fallback);
+            return source.timeout(timeout, Mono.error(error));
+        });
+    }
+
+    /**
+     * Stops waiting for the source when the current deadline passes, for a call started by another
+     * request. Without a deadline the wait is not bounded.
+     */
+    public static <T> Mono<T> bound(Mono<T> source) {
+        return Mono.deferContextual(context -> from(context)
+                .map(deadline -> deadline.isExpired()
+                        ? Mono.<T>error(new TimeoutException(DEADLINE_EXCEEDED))
+                        : source.timeout(deadline.remaining(), Mono.error(() -> new TimeoutException(DEADLINE_EXCEEDED))))
+                .orElse(source));
+    }
+
+    /**
+     * Applies the current deadline to web client calls and forwards the time left in {@link #HEADER}.
+     * Calls made without a deadline pass through unchanged.
+     */
+    public static ExchangeFilterFunction exchangeFilter() {
+        return (request, next) -> Mono.deferContextual(context -> {
+            Optional<Deadline> deadline = from(context);
+            if (deadline.isEmpty()) {
+                return next.exchange(request);
+            }
+            Duration remaining = deadline.get().remaining();
+            if (remaining.isNegative() || remaining.isZero()) {
+                return Mono.error(new TimeoutException(DEADLINE_EXCEEDED));
+            }
+            ClientRequest withDeadline = ClientRequest.from(request)
+                    .headers(headers -> headers.set(HEADER, String.valueOf(remaining.toMillis())))
+                    .build();
+            return next.exchange(withDeadline)
+                    .timeout(remaining, Mono.error(() -> new TimeoutException(DEADLINE_EXCEEDED)));
+        });
+    }
+}
@@ -0,0 +1,79 @@
+package org.shaktifdn.registration.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.CoalescingProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Single-flight for outbound calls: while a call for an endpoint and key is in flight, further
+ * callers with the same endpoint and key subscribe to it instead of issuing their own request.
+ * The entry is dropped as soon as the call terminates, so nothing is cached past the response.
+ * <p>
+ * The upstream call runs with the subscriber context of the caller that started it, its deadline
+ * included, and is not cancelled when individual callers cancel. Each caller stops waiting at its own
+ * {@link Deadline}. Only endpoints listed in {@link CoalescingProperties} are coalesced.
+ */
+@Component
+@Slf4j
+public class RequestCoalescer {
+
+    static final String METRIC_NAME = "registration.client.coalescing";
+    private static final String KEY_SEPARATOR = "|";
+
+    private final CoalescingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Mono<?>> inFlight = new ConcurrentHashMap<>();
+
+    public RequestCoalescer(CoalescingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    @SuppressWarnings("unchecked")
+    public <T> Mono<T> coalesce(String endpoint, String key, Supplier<Mono<T>> call) {
+        if (!properties.isEnabled(endpoint)) {
+            return Mono.defer(call);
+        }
+        String flightKey = endpoint + KEY_SEPARATOR + key;
+        return Mono.defer(() -> {
+            AtomicBoolean leader = new AtomicBoolean();
+            Mono<?> flight = inFlight.computeIfAbsent(flightKey, k -> {
+                leader.set(true);
+                return newFlight(k, call);
+            });
+            if (leader.get()) {
+                counter(endpoint, "upstream").increment();
+            } else {
+                log.debug("joining in-flight call {}", flightKey);
+                counter(endpoint, "collapsed").increment();
+            }
+            return Deadline.bound((Mono<T>) flight);
+        });
+    }
+
+    private <T> Mono<T> newFlight(String flightKey, Supplier<Mono<T>> call) {
+        AtomicReference<Mono<T>> self = new AtomicReference<>();
+        Mono<T> flight = Mono.defer(call)
+                .doFinally(signal -> inFlight.remove(flightKey, self.get()))
+                .cache();
+        self.set(flight);
+        return flight;
+    }
+
+    private Counter counter(String endpoint, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("outbound calls by whether they went upstream or joined an in-flight call")
+                .tag("endpoint", endpoint)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+}
@@ -0,0 +1,134 @@
+package org.shaktifdn.registration.client;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.HedgingProperties;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Hedged requests for idempotent outbound calls: when a call takes longer than the configured latency
+ * percentile of its endpoint, the same call is issued once more and whichever answers first wins, the
+ * other one is cancelled. With the default round-robin load balancer the second call goes to the next
+ * instance of the downstream.
+ * <p>
+ * Every call earns a fraction of a hedge, so the extra load stays within the budget ratio. A hedge
+ * that fails is ignored and the first call is awaited. Only endpoints listed in
+ * {@link HedgingProperties} are hedged, and only after enough responses were measured.
+ */
+@Component
+@Slf4j
+public class RequestHedger {
+
+    static final String METRIC_NAME = "registration.client.hedging";
+    private static final int WINDOW = 512;
+    private static final int RECOMPUTE_EVERY = 16;
+    private static final long TOKEN = 1000;
+
+    private final HedgingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, EndpointStats> stats = new ConcurrentHashMap<>();
+
+    public RequestHedger(HedgingProperties properties, MeterRegistry meterRegistry) {
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public <T> Mono<T> hedge(String endpoint, Supplier<Mono<T>> call) {
+        if (!properties.isEnabled(endpoint)) {
+            return Mono.defer(call);
+        }
+        EndpointStats endpointStats = stats.computeIfAbsent(endpoint, k -> new EndpointStats());
+        return Mono.defer(() -> {
+            endpointStats.deposit((long) (properties.getBudgetRatio() * TOKEN), properties.getMaxBurst() * TOKEN);
+            Mono<T> primary = timed(endpointStats, call);
+            long delayNanos = endpointStats.delayNanos;
+            if (delayNanos < 0) {
+                return primary;
+            }
+            Duration delay = Duration.ofNanos(Math.max(delayNanos, properties.getMinDelay().toNanos()));
+            Mono<T> hedged = Mono.delay(delay)
+                    .flatMap(tick -> {
+                        if (!endpointStats.withdraw()) {
+                            counter(endpoint, "over_budget").increment();
+                            return Mono.never();
+                        }
+                        log.debug("hedging {} after {}", endpoint, delay);
+                        counter(endpoint, "hedged").increment();
+                        return timed(endpointStats, call)
+                                .doOnNext(response -> counter(endpoint, "won").increment())
+                                .onErrorResume(e -> {
+                                    log.debug("hedged call to {} failed", endpoint, e);
+                                    return Mono.never();
+                                });
+                    });
+            return Mono.firstWithSignal(primary, hedged);
+        });
+    }
+
+    private <T> Mono<T> timed(EndpointStats endpointStats, Supplier<Mono<T>> call) {
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return Mono.defer(call)
+                    .doOnSuccess(response -> endpointStats.record(
+                            System.nanoTime() - start,
+                            properties.getPercentile(),
+                            properties.getMinSamples()
+                    ));
+        });
+    }
+
+    private Counter counter(String endpoint, String result) {
+        return Counter.builder(METRIC_NAME)
+                .description("hedged outbound calls by whether they were sent, won or refused by the budget")
+                .tag("endpoint", endpoint)
+                .tag("result", result)
+                .register(meterRegistry);
+    }
+
+    /**
+     * Recent latencies and hedge budget of one endpoint. The hedge delay is recomputed from the
+     * latency window every few responses, so reading it costs one volatile read.
+     */
+    private static final class EndpointStats {
+
+        private final long[] latencies = new long[WINDOW];
+        private final AtomicLong budget = new AtomicLong();
+        private long recorded;
+        private volatile long delayNanos = -1;
+
+        synchronized void record(long nanos, double percentile, int minSamples) {
+            latencies[(int) (recorded++ % WINDOW)] = nanos;
+            if (recorded >= minSamples && (recorded - minSamples) % RECOMPUTE_EVERY == 0) {
+                int size = (int) Math.min(recorded, WINDOW);
+                long[] sorted = Arrays.copyOf(latencies, size);
+                Arrays.sort(sorted);
+                delayNanos = sorted[Math.max(0, Math.min(size - 1, (int) Math.ceil(percentile * size) - 1))];
+            }
+        }
+
+        void deposit(long tokens, long max) {
+            budget.accumulateAndGet(tokens, (current, added) -> Math.min(current + added, max));
+        }
+
+        boolean withdraw() {
+            while (true) {
+                long current = budget.get();
+                if (current < TOKEN) {
+                    return false;
+                }
+                if (budget.compareAndSet(current, current - TOKEN)) {
+                    return true;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,111 @@
+package org.shaktifdn.registration.client;
+
+import io.netty.channel.ChannelOption;
+import io.netty.handler.timeout.ReadTimeoutHandler;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.ServiceProperties;
+import org.springframework.http.client.reactive.ReactorClientHttpConnector;
+import org.springframework.stereotype.Component;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.netty.http.client.HttpClient;
+import reactor.netty.resources.ConnectionProvider;
+
+import javax.annotation.PreDestroy;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Holds one pre-built {@link WebClient} per downstream and builder template, so callers stop paying
+ * for {@link WebClient.Builder#build()} (filter chain, codecs and exchange strategies) on every request.
+ * <p>
+ * Each client is built from a clone of its template, which is left untouched, with the
+ * {@link ServiceProperties.ClientSettings} of the downstream applied on top. Every downstream gets
+ * its own connection pool, so a slow downstream exhausts only its own connections. Pool metrics
+ * ({@code reactor.netty.connection.provider.*}, tagged with the downstream name) are published to
+ * the global Micrometer registry. Calls are also capped by the adaptive limit of the downstream, see
+ * {@link ConcurrencyLimiters}, and by the {@link Deadline} of the request they are made for.
+ */
+@Component
+@Slf4j
+public class WebClientRegistry {
+
+    private final ServiceProperties serviceProperties;
+    private final ConcurrencyLimiters concurrencyLimiters;
+    private final Map<String, Map<WebClient.Builder, WebClient>> clients = new ConcurrentHashMap<>();
+    private final Map<String, ConnectionProvider> pools = new ConcurrentHashMap<>();
+
+    public WebClientRegistry(ServiceProperties serviceProperties, ConcurrencyLimiters concurrencyLimiters) {
+        this.serviceProperties = serviceProperties;
+        this.concurrencyLimiters = concurrencyLimiters;
+    }
+
+    /**
+     * @param downstream downstream name, as used under {@code clients.client-settings}
+     * @param template   builder carrying the filters shared by all downstreams
+     */
+    public WebClient client(String downstream, WebClient.Builder template) {
+        return clients
+                .computeIfAbsent(downstream, k -> new ConcurrentHashMap<>())
+                .computeIfAbsent(template, t -> build(downstream, t));
+    }
+
+    @PreDestroy
+    public void dispose() {
+        pools.values().forEach(ConnectionProvider::dispose);
+    }
+
+    private WebClient build(String downstream, WebClient.Builder template) {
+        ServiceProperties.ClientSettings settings = serviceProperties.settingsFor(downstream);
+        log.info("building web client for {} with {}", downstream, settings);
+        WebClient.Builder builder = template.clone()
+                .clientConnector(new ReactorClientHttpConnector(httpClient(downstream, settings)))
+                .filters(filters -> filters.add(0, Deadline.exchangeFilter()))
+                .filter(concurrencyLimiters.filter(downstream));
+        if (settings.getMaxInMemorySize() != null) {
+            int maxInMemorySize = (int) settings.getMaxInMemorySize().toBytes();
+            builder.codecs(codecs -> codecs.defaultCodecs().maxInMemorySize(maxInMemorySize));
+        }
+        return builder.build();
+    }
+
+    private HttpClient httpClient(String downstream, ServiceProperties.ClientSettings settings) {
+        HttpClient httpClient = HttpClient.create(pools.computeIfAbsent(downstream, name -> pool(name, settings)));
+        if (settings.getConnectTimeout() != null) {
+            httpClient = httpClient.option(ChannelOption.CONNECT_TIMEOUT_MILLIS, (int) settings.getConnectTimeout().toMillis());
+        }
+        if (settings.getResponseTimeout() != null) {
+            httpClient = httpClient.responseTimeout(settings.getResponseTimeout());
+        }
+        if (settings.getReadTimeout() != null) {
+            long readTimeout = settings.getReadTimeout().toMillis();
+            // added per request, handlers added on a connection are removed when it goes back to the pool
+            httpClient = httpClient.doOnRequest((request, connection) ->
+                    connection.addHandlerLast(new ReadTimeoutHandler(readTimeout, TimeUnit.MILLISECONDS)));
+        }
+        return httpClient;
+    }
+
+    private static ConnectionProvider pool(String downstream, ServiceProperties.ClientSettings settings) {
+        ConnectionProvider.Builder pool = ConnectionProvider.builder(downstream).metrics(true);
+        if (settings.getMaxConnections() != null) {
+            pool.maxConnections(settings.getMaxConnections());
+        }
+        if (settings.getPendingAcquireMaxCount() != null) {
+            pool.pendingAcquireMaxCount(settings.getPendingAcquireMaxCount());
+        }
+        if (settings.getPendingAcquireTimeout() != null) {
+            pool.pendingAcquireTimeout(settings.getPendingAcquireTimeout());
+        }
+        if (settings.getMaxIdleTime() != null) {
+            pool.maxIdleTime(settings.getMaxIdleTime());
+        }
+        if (settings.getMaxLifeTime() != null) {
+            pool.maxLifeTime(settings.getMaxLifeTime());
+        }
+        if (settings.getEvictInBackground() != null) {
+            pool.evictInBackground(settings.getEvictInBackground());
+        }
+        return pool.build();
+    }
+}
@@ -0,0 +1,44 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Workers, queue and status retention of onboarding requested with {@code Prefer: respond-async}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "registration.onboarding.async")
+@Getter
+@Setter
+public class AsyncOnboardingProperties {
+
+    /**
+     * onboarding jobs run at the same time
+     */
+    private int concurrency = 16;
+    /**
+     * jobs waiting for a worker; further requests are answered 503
+     */
+    private int queueSize = 1000;
+    /**
+     * how long the status of a job can be polled
+     */
+    private Duration retention = Duration.ofHours(1);
+    private long maximumSize = 10_000;
+    /**
+     * how often a server-sent event stream checks the status of its job
+     */
+    private Duration watchInterval = Duration.ofSeconds(1);
+    /**
+     * how long a server-sent event stream follows a job that does not finish
+     */
+    private Duration watchTimeout = Duration.ofMinutes(2);
+    /**
+     * share job status with the other replicas through Couchbase
+     */
+    private boolean sharedEnabled = true;
+}
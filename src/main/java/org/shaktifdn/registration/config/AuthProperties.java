@@ -0,0 +1,60 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Settings of the lookups made for authenticated requests against the identity provider.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "registration.auth")
+@Getter
+@Setter
+public class AuthProperties {
+
+    private UserInfo userInfo = new UserInfo();
+    private Jwks jwks = new Jwks();
+
+    @Getter
+    @Setter
+    public static class UserInfo {
+        private boolean cacheEnabled = true;
+        /**
+         * longest time a userinfo answer is kept; entries never outlive the access token
+         */
+        private Duration maxTtl = Duration.ofMinutes(5);
+        private long maximumSize = 10_000;
+        /**
+         * take shakti id and email from the access token claims when both are present, skipping userinfo
+         */
+        private boolean claimsEnabled = false;
+    }
+
+    @Getter
+    @Setter
+    public static class Jwks {
+        /**
+         * JWK set location; when empty it is read from the issuer's OpenID configuration
+         */
+        private String jwkSetUri;
+        private String jwsAlgorithm = "RS256";
+        /**
+         * how often keys are fetched in the background, so keys added ahead of a rotation are known in time
+         */
+        private Duration refreshInterval = Duration.ofMinutes(5);
+        /**
+         * shortest gap between two fetches triggered by tokens signed with an unknown key
+         */
+        private Duration minRefreshInterval = Duration.ofSeconds(30);
+        private boolean validatedTokenCacheEnabled = true;
+        /**
+         * longest time a validated token skips signature checks; entries never outlive the token
+         */
+        private Duration validatedTokenTtl = Duration.ofMinutes(1);
+        private long validatedTokenMaximumSize = 10_000;
+    }
+}
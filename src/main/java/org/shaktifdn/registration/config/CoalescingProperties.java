@@ -0,0 +1,26 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Outbound endpoints whose concurrent identical calls are collapsed into one upstream request,
+ * e.g. {@code clients.coalescing.endpoints: emailService.isOtpVerified,smsService.inquire}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "clients.coalescing")
+@Getter
+@Setter
+public class CoalescingProperties {
+
+    private Set<String> endpoints = new HashSet<>();
+
+    public boolean isEnabled(String endpoint) {
+        return endpoints.contains(endpoint);
+    }
+}
@@ -0,0 +1,45 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Adaptive limit of concurrent calls to each downstream. Every downstream gets its own limit, which
+ * grows while responses stay fast and shrinks on errors or when latency rises above its long-term
+ * average.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "clients.concurrency-limit")
+@Getter
+@Setter
+public class ConcurrencyLimitProperties {
+
+    private boolean enabled = true;
+    private int initialLimit = 50;
+    private int minLimit = 10;
+    private int maxLimit = 200;
+    /**
+     * factor applied to the limit on an error or a latency rise
+     */
+    private double backoffRatio = 0.9;
+    /**
+     * recent latency above this multiple of the long-term latency counts as overload
+     */
+    private double latencyTolerance = 2.0;
+    /**
+     * samples averaged into the long-term latency
+     */
+    private int longWindow = 600;
+    /**
+     * samples averaged into the recent latency
+     */
+    private int shortWindow = 10;
+    /**
+     * shortest gap between two decreases, so one slow burst shrinks the limit once
+     */
+    private Duration decreaseInterval = Duration.ofMillis(200);
+}
@@ -0,0 +1,30 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Time budget of an incoming request. Outbound calls made while serving it get whatever is left of
+ * the budget as their timeout.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "registration.deadline")
+@Getter
+@Setter
+public class DeadlineProperties {
+
+    private boolean enabled = true;
+    /**
+     * budget of a request; a shorter budget sent by the caller in the deadline header wins
+     */
+    private Duration timeout = Duration.ofSeconds(10);
+    /**
+     * path prefixes, below the base path, whose requests get a deadline
+     */
+    private List<String> paths = List.of("/users", "/wallet", "/email", "/sms");
+}
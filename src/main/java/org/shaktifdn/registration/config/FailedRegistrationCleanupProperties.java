@@ -0,0 +1,53 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Paging, concurrency and rate limits of the failed registration cleanup.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "user.registration.failed")
+@Getter
+@Setter
+public class FailedRegistrationCleanupProperties {
+
+    /**
+     * registrations left incomplete for longer than this are removed; also the interval between runs
+     */
+    private Duration cleanupAfter = Duration.ofMinutes(10);
+    /**
+     * candidates read per page
+     */
+    private int pageSize = 100;
+    /**
+     * registrations removed from Gluu at the same time
+     */
+    private int gluuConcurrency = 4;
+    /**
+     * registrations whose Couchbase documents are deleted at the same time
+     */
+    private int couchbaseConcurrency = 8;
+    /**
+     * registrations cleaned up per second at most
+     */
+    private int ratePerSecond = 20;
+    private Lease lease = new Lease();
+
+    /**
+     * Lease making a single replica run the cleanup.
+     */
+    @Getter
+    @Setter
+    public static class Lease {
+        /**
+         * how long the lease outlives a replica that stopped renewing it
+         */
+        private Duration ttl = Duration.ofMinutes(2);
+        private Duration renewInterval = Duration.ofSeconds(30);
+    }
+}
@@ -0,0 +1,47 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Idempotent outbound endpoints that get a second, hedged request when the first one is slower than
+ * usual, e.g. {@code clients.hedging.endpoints: bizVaultService.isEmailRegistered,kycService.isWalletExists}.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "clients.hedging")
+@Getter
+@Setter
+public class HedgingProperties {
+
+    private Set<String> endpoints = new HashSet<>();
+    /**
+     * latency percentile of the endpoint after which the hedged request is sent
+     */
+    private double percentile = 0.95;
+    /**
+     * lower bound of the hedge delay, so fast endpoints are not hedged on jitter
+     */
+    private Duration minDelay = Duration.ofMillis(50);
+    /**
+     * responses measured before an endpoint is hedged
+     */
+    private int minSamples = 100;
+    /**
+     * hedged requests earned per request, 0.1 caps the extra load at 10%
+     */
+    private double budgetRatio = 0.1;
+    /**
+     * hedged requests that may be sent in a burst
+     */
+    private int maxBurst = 10;
+
+    public boolean isEnabled(String endpoint) {
+        return endpoints.contains(endpoint);
+    }
+}
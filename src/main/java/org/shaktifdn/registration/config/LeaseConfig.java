@@ -0,0 +1,32 @@
+package org.shaktifdn.registration.config;
+
+import org.shaktifdn.registration.lease.LeaderLease;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+
+import java.util.UUID;
+
+@Configuration
+public class LeaseConfig {
+
+    /**
+     * identifies this replica as lease owner, unique even when host names are reused
+     */
+    private static final String OWNER =
+            System.getenv().getOrDefault("HOSTNAME", "localhost") + "-" + UUID.randomUUID().toString().substring(0, 8);
+
+    @Bean
+    public LeaderLease failedRegistrationCleanupLease(
+            ReactiveCouchbaseTemplate couchbaseTemplate,
+            FailedRegistrationCleanupProperties properties
+    ) {
+        return new LeaderLease(
+                "failedRegistrationCleanup",
+                OWNER,
+                couchbaseTemplate,
+                properties.getLease().getTtl(),
+                properties.getLease().getRenewInterval()
+        );
+    }
+}
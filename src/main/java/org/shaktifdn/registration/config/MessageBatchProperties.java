@@ -0,0 +1,27 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Windowing of the Kafka consumers updating the registration state: messages are grouped into
+ * batches of up to {@link #maxSize}, or whatever arrived within {@link #maxWait}, and handled with
+ * one state lookup per batch.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "registration.messaging.batch")
+@Getter
+@Setter
+public class MessageBatchProperties {
+
+    private int maxSize = 100;
+    private Duration maxWait = Duration.ofMillis(500);
+    /**
+     * batches handled at the same time per consumer
+     */
+    private int concurrency = 4;
+}
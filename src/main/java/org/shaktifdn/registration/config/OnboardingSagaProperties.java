@@ -0,0 +1,37 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Retries and compensation of the onboarding steps that follow the validation of the request.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "registration.onboarding.saga")
+@Getter
+@Setter
+public class OnboardingSagaProperties {
+
+    /**
+     * retries of a step failing with a transient error, before the onboarding is compensated
+     */
+    private int retries = 2;
+    /**
+     * delay before the first retry, doubled at each retry with jitter
+     */
+    private Duration backoff = Duration.ofMillis(100);
+    private Duration maxBackoff = Duration.ofSeconds(1);
+    /**
+     * undo the completed steps as soon as the onboarding fails, instead of leaving the user to the
+     * cleanup of failed registrations
+     */
+    private boolean compensationEnabled = true;
+    /**
+     * time given to undo the steps of a failed onboarding; it does not get the request deadline
+     */
+    private Duration compensationTimeout = Duration.ofSeconds(15);
+}
@@ -0,0 +1,37 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Polling, batching and retry settings of the outbox relay publishing {@code CreateUserMessage}s.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "registration.outbox")
+@Getter
+@Setter
+public class OutboxProperties {
+
+    /**
+     * delay between two relay runs
+     */
+    private Duration pollInterval = Duration.ofSeconds(1);
+    /**
+     * messages read per relay run
+     */
+    private int batchSize = 100;
+    /**
+     * messages of a batch sent at the same time
+     */
+    private int concurrency = 4;
+    /**
+     * how long a claimed message is hidden from other relays before it can be picked up again
+     */
+    private Duration claimTimeout = Duration.ofSeconds(30);
+    private Duration initialBackoff = Duration.ofSeconds(1);
+    private Duration maxBackoff = Duration.ofMinutes(5);
+}
@@ -0,0 +1,79 @@
+package org.shaktifdn.registration.config;
+
+import lombok.Getter;
+import lombok.Setter;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+/**
+ * Sizes and TTLs of the caches in front of remote lookups.
+ */
+@Configuration
+@ConfigurationProperties(prefix = "registration.cache")
+@Getter
+@Setter
+public class RegistrationCacheProperties {
+
+    private EmailRegistration emailRegistration = new EmailRegistration();
+    private VerifiedContact verifiedContact = new VerifiedContact();
+    private Idempotency idempotency = new Idempotency();
+
+    @Getter
+    @Setter
+    public static class EmailRegistration {
+        /**
+         * how long an "already registered" answer is trusted
+         */
+        private Duration positiveTtl = Duration.ofMinutes(10);
+        /**
+         * how long a "not registered" answer is trusted; kept short as it flips on sign-up
+         */
+        private Duration negativeTtl = Duration.ofSeconds(30);
+        private long maximumSize = 10_000;
+    }
+
+    @Getter
+    @Setter
+    public static class VerifiedContact {
+        /**
+         * how long a confirmed OTP lets onboarding skip the email and SMS service inquiries
+         */
+        private Duration ttl = Duration.ofMinutes(5);
+        private long maximumSize = 10_000;
+        /**
+         * share confirmations with the other replicas through Couchbase
+         */
+        private boolean sharedEnabled = true;
+    }
+
+    @Getter
+    @Setter
+    public static class Idempotency {
+        private boolean enabled = true;
+        /**
+         * how long a completed onboarding is replayed to retries with the same key
+         */
+        private Duration ttl = Duration.ofHours(24);
+        /**
+         * how long an onboarding in progress holds its key, so a replica dying mid-way does not block retries
+         */
+        private Duration inProgressTtl = Duration.ofMinutes(2);
+        /**
+         * how long a retry waits for an onboarding in progress on another replica before answering 409
+         */
+        private Duration inProgressWait = Duration.ofSeconds(10);
+        private Duration pollInterval = Duration.ofMillis(250);
+        private long maximumSize = 10_000;
+        /**
+         * share keys with the other replicas through Couchbase
+         */
+        private boolean sharedEnabled = true;
+        /**
+         * HMAC key of the secrets in the request fingerprint, the same on every replica; without one a
+         * random key is used and keys are not shared
+         */
+        private String fingerprintKey;
+    }
+}
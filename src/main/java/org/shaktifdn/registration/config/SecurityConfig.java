@@ -1,8 +1,12 @@
 package org.shaktifdn.registration.config;
 
 
+import io.micrometer.core.instrument.MeterRegistry;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.security.AuthoritiesConstants;
 import org.shaktifdn.registration.security.SecurityUtils;
+import org.shaktifdn.registration.security.oauth2.CachingJwkSetSource;
+import org.shaktifdn.registration.security.oauth2.CachingReactiveJwtDecoder;
 import org.shaktifdn.registration.security.oauth2.JwtGrantedAuthorityConverter;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.actuate.autoconfigure.security.reactive.EndpointRequest;
@@ -24,6 +28,7 @@ import org.springframework.security.oauth2.core.OAuth2TokenValidator;
 import org.springframework.security.oauth2.core.oidc.user.DefaultOidcUser;
 import org.springframework.security.oauth2.core.oidc.user.OidcUser;
 import org.springframework.security.oauth2.core.oidc.user.OidcUserAuthority;
+import org.springframework.security.oauth2.jose.jws.SignatureAlgorithm;
 import org.springframework.security.oauth2.jwt.*;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationConverter;
 import org.springframework.security.oauth2.server.resource.authentication.ReactiveJwtAuthenticationConverterAdapter;
@@ -32,6 +37,7 @@ import org.springframework.security.web.server.header.ReferrerPolicyServerHttpHe
 import org.springframework.security.web.server.savedrequest.NoOpServerRequestCache;
 import org.springframework.security.web.server.util.matcher.NegatedServerWebExchangeMatcher;
 import org.springframework.security.web.server.util.matcher.OrServerWebExchangeMatcher;
+import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.Collections;
@@ -135,12 +141,40 @@ public class SecurityConfig {
     }
 
     @Bean
-    ReactiveJwtDecoder jwtDecoder() {
-        NimbusReactiveJwtDecoder jwtDecoder = (NimbusReactiveJwtDecoder) ReactiveJwtDecoders.fromOidcIssuerLocation(issuerUri);
+    CachingJwkSetSource jwkSetSource(
+            WebClientRegistry webClientRegistry,
+            AuthProperties authProperties,
+            MeterRegistry meterRegistry
+    ) {
+        return new CachingJwkSetSource(
+                issuerUri,
+                webClientRegistry.client("gluu", WebClient.builder()),
+                authProperties.getJwks(),
+                meterRegistry
+        );
+    }
+
+    /**
+     * Verifies tokens against the keys of {@link CachingJwkSetSource} instead of discovering the issuer
+     * with a blocking call at startup.
+     */
+    @Bean
+    ReactiveJwtDecoder jwtDecoder(
+            CachingJwkSetSource jwkSetSource,
+            AuthProperties authProperties,
+            MeterRegistry meterRegistry
+    ) {
+        NimbusReactiveJwtDecoder jwtDecoder = NimbusReactiveJwtDecoder
+                .withJwkSource(jwkSetSource)
+                .jwsAlgorithm(SignatureAlgorithm.from(authProperties.getJwks().getJwsAlgorithm()))
+                .build();
         OAuth2TokenValidator<Jwt> withIssuer = JwtValidators.createDefaultWithIssuer(issuerUri);
         jwtDecoder.setClaimSetConverter(new UsernameSubClaimAdapter());
         jwtDecoder.setJwtValidator(withIssuer);
-        return jwtDecoder;
+        if (!authProperties.getJwks().isValidatedTokenCacheEnabled()) {
+            return jwtDecoder;
+        }
+        return new CachingReactiveJwtDecoder(jwtDecoder, authProperties.getJwks(), meterRegistry);
     }
 
     private static class UsernameSubClaimAdapter implements Converter<Map<String, Object>, Map<String, Object>> {
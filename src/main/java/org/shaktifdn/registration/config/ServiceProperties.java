@@ -2,12 +2,18 @@ package org.shaktifdn.registration.config;
 
 import lombok.Getter;
 import lombok.Setter;
+import lombok.ToString;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.cloud.context.config.annotation.RefreshScope;
 import org.springframework.context.annotation.Configuration;
 
+import org.springframework.util.unit.DataSize;
+
 import javax.annotation.PostConstruct;
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
 
 @RefreshScope
 @Configuration
@@ -24,6 +30,19 @@ public class ServiceProperties {
 	private String selfyIdService;
 	private String bizVaultService;
 
+	/**
+	 * settings applied to every downstream web client unless overridden in {@link #clientSettings}
+	 */
+	private ClientSettings clientDefaults = new ClientSettings();
+	/**
+	 * per downstream overrides, keyed by downstream name (emailService, smsService, ..., gluu)
+	 */
+	private Map<String, ClientSettings> clientSettings = new HashMap<>();
+
+	public ClientSettings settingsFor(String downstream) {
+		return clientDefaults.overriddenBy(clientSettings.get(downstream));
+	}
+
 	@PostConstruct
 	public void postInit() {
 		log.info("loaded external emailService properties: {}", getEmailService());
@@ -32,6 +51,48 @@ public class ServiceProperties {
 		log.info("loaded external kycService properties: {}", getKycService());
 		log.info("loaded external selfyIdService properties: {}", getSelfyIdService());
 		log.info("loaded external bizVaultService properties: {}", getBizVaultService());
+		log.info("loaded web client defaults: {}, overrides: {}", getClientDefaults(), getClientSettings());
+
+	}
+
+	@Getter
+	@Setter
+	@ToString
+	public static class ClientSettings {
+		private Duration connectTimeout;
+		private Duration readTimeout;
+		private Duration responseTimeout;
+		private DataSize maxInMemorySize;
+		/**
+		 * connection pool of the downstream, unset values fall back to the Reactor Netty defaults
+		 */
+		private Integer maxConnections;
+		private Integer pendingAcquireMaxCount;
+		private Duration pendingAcquireTimeout;
+		private Duration maxIdleTime;
+		private Duration maxLifeTime;
+		private Duration evictInBackground;
+
+		ClientSettings overriddenBy(ClientSettings overrides) {
+			if (overrides == null) {
+				return this;
+			}
+			ClientSettings merged = new ClientSettings();
+			merged.setConnectTimeout(pick(overrides.getConnectTimeout(), connectTimeout));
+			merged.setReadTimeout(pick(overrides.getReadTimeout(), readTimeout));
+			merged.setResponseTimeout(pick(overrides.getResponseTimeout(), responseTimeout));
+			merged.setMaxInMemorySize(pick(overrides.getMaxInMemorySize(), maxInMemorySize));
+			merged.setMaxConnections(pick(overrides.getMaxConnections(), maxConnections));
+			merged.setPendingAcquireMaxCount(pick(overrides.getPendingAcquireMaxCount(), pendingAcquireMaxCount));
+			merged.setPendingAcquireTimeout(pick(overrides.getPendingAcquireTimeout(), pendingAcquireTimeout));
+			merged.setMaxIdleTime(pick(overrides.getMaxIdleTime(), maxIdleTime));
+			merged.setMaxLifeTime(pick(overrides.getMaxLifeTime(), maxLifeTime));
+			merged.setEvictInBackground(pick(overrides.getEvictInBackground(), evictInBackground));
+			return merged;
+		}
 
+		private static <T> T pick(T override, T defaultValue) {
+			return override != null ? override : defaultValue;
+		}
 	}
 }
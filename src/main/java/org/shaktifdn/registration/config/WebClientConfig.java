@@ -2,15 +2,19 @@ package org.shaktifdn.registration.config;
 
 import gluu.scim2.client.factory.ScimClientFactory;
 import gluu.scim2.client.rest.ClientSideService;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.controller.RequestDeadlineWebFilter;
+import org.shaktifdn.registration.service.GluuScimClient;
 import org.shaktifdn.registration.service.GluuService;
+import org.shaktifdn.registration.service.GluuUmaAuthenticator;
 import org.shaktifdn.registration.service.XForwardedRemoteAddressResolver;
+import org.springframework.beans.factory.annotation.Qualifier;
 import org.springframework.cloud.client.loadbalancer.LoadBalanced;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import org.springframework.context.annotation.Profile;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
-import org.springframework.http.client.reactive.ReactorClientHttpConnector;
 import org.springframework.security.oauth2.client.AuthorizedClientServiceReactiveOAuth2AuthorizedClientManager;
 import org.springframework.security.oauth2.client.ReactiveOAuth2AuthorizedClientService;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
@@ -18,11 +22,6 @@ import org.springframework.security.oauth2.client.web.reactive.function.client.S
 import org.springframework.security.oauth2.server.resource.web.reactive.function.client.ServerBearerExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
 import org.springframework.web.reactive.function.client.WebClient;
-import reactor.netty.http.client.HttpClient;
-import reactor.netty.resources.ConnectionProvider;
-
-import java.time.Duration;
-import java.util.UUID;
 
 
 @Configuration
@@ -78,7 +77,7 @@ public class WebClientConfig {
     }
 
     @Bean("scimClient")
-    @Profile("!testMode")
+    @Profile("!testMode & !reactiveScim")
     ClientSideService scimClient(GluuProperties gluuProperties) {
         return ScimClientFactory.getClient(
                 gluuProperties.getGluuUri() + GluuService.GLUU_URL_IDENTITY2,
@@ -90,6 +89,27 @@ public class WebClientConfig {
 
     }
 
+    @Bean("reactiveScimClient")
+    @Profile("reactiveScim")
+    GluuScimClient reactiveScimClient(
+            GluuProperties gluuProperties,
+            WebClientRegistry webClientRegistry,
+            @Qualifier("extWebClient") WebClient.Builder extWebClient
+    ) {
+        WebClient webClient = webClientRegistry.client(GluuService.GLUU, extWebClient);
+        return new GluuScimClient(
+                webClient,
+                gluuProperties.getGluuUri() + GluuService.GLUU_URL_IDENTITY2,
+                GluuUmaAuthenticator.fromKeyStore(
+                        webClient,
+                        gluuProperties.getUmaAatClientId(),
+                        gluuProperties.getUmaAatClientJksPath(),
+                        gluuProperties.getUmaAatClientJksPassword(),
+                        gluuProperties.getUmaAatClientKeyId()
+                )
+        );
+    }
+
     @Bean("scimClientDev")
     @Profile("testMode")
     ClientSideService scimClientDev() throws Exception {
@@ -101,15 +121,16 @@ public class WebClientConfig {
         return XForwardedRemoteAddressResolver.maxTrustedIndex(1);
     }
 
+    @Bean
+    RequestDeadlineWebFilter requestDeadlineWebFilter(DeadlineProperties deadlineProperties) {
+        return new RequestDeadlineWebFilter(deadlineProperties);
+    }
+
+    /**
+     * Connection pools and timeouts are set per downstream by {@link WebClientRegistry}.
+     */
     private static WebClient.Builder createWebClientBuilder(ExchangeFilterFunction oauth) {
-        ConnectionProvider provider = ConnectionProvider.builder("fixed" + UUID.randomUUID())
-                .maxConnections(500)
-                .maxIdleTime(Duration.ofSeconds(20))
-                .maxLifeTime(Duration.ofSeconds(60))
-                .pendingAcquireTimeout(Duration.ofSeconds(60))
-                .evictInBackground(Duration.ofSeconds(120)).build();
         return WebClient.builder().filter(oauth)
-                .clientConnector(new ReactorClientHttpConnector(HttpClient.create(provider)))
                 .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE);
     }
 }
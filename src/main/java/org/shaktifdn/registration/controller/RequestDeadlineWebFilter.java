@@ -0,0 +1,51 @@
+package org.shaktifdn.registration.controller;
+
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.shaktifdn.registration.client.Deadline;
+import org.shaktifdn.registration.config.DeadlineProperties;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+
+/**
+ * Starts the {@link Deadline} of requests to the registration endpoints. The budget is the configured
+ * timeout, or the time left sent by the caller in {@link Deadline#HEADER} when that is shorter.
+ */
+@Slf4j
+public class RequestDeadlineWebFilter implements WebFilter {
+
+    private final DeadlineProperties properties;
+
+    public RequestDeadlineWebFilter(DeadlineProperties properties) {
+        this.properties = properties;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        String path = exchange.getRequest().getPath().pathWithinApplication().value();
+        if (!properties.isEnabled() || properties.getPaths().stream().noneMatch(path::startsWith)) {
+            return chain.filter(exchange);
+        }
+        Duration budget = budget(exchange.getRequest().getHeaders().getFirst(Deadline.HEADER));
+        return chain.filter(exchange)
+                .contextWrite(context -> context.put(Deadline.class, Deadline.after(budget)));
+    }
+
+    private Duration budget(String callerTimeout) {
+        Duration timeout = properties.getTimeout();
+        if (!StringUtils.isNumeric(callerTimeout)) {
+            return timeout;
+        }
+        try {
+            Duration callerBudget = Duration.ofMillis(Long.parseLong(callerTimeout));
+            return callerBudget.compareTo(timeout) < 0 ? callerBudget : timeout;
+        } catch (NumberFormatException e) {
+            log.debug("ignoring {} header {}", Deadline.HEADER, callerTimeout);
+            return timeout;
+        }
+    }
+}
@@ -3,6 +3,7 @@ package org.shaktifdn.registration.controller;
 import lombok.extern.slf4j.Slf4j;
 import org.shaktifdn.registration.exception.*;
 import org.shaktifdn.registration.response.ShaktiResponse;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.validation.FieldError;
@@ -236,6 +237,20 @@ public class ShaktiRegistrationControllerAdvice {
                 );
     }
 
+    @ExceptionHandler(ServiceOverloadedException.class)
+    public ResponseEntity<ShaktiResponse> handle(ServiceOverloadedException ex) {
+        log.warn(ex.getMessage());
+        return ResponseEntity
+                .status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(ShaktiResponse
+                        .builder()
+                        .status(false)
+                        .message(PLEASE_TRY_AGAIN_LATER)
+                        .build()
+                );
+    }
+
     @ExceptionHandler(ExternalServiceDependencyFailure.class)
     public ResponseEntity<ShaktiResponse> handleExternalServiceDependencyFailure(ExternalServiceDependencyFailure ex) {
         return ResponseEntity
@@ -3,14 +3,21 @@ package org.shaktifdn.registration.controller;
 import io.swagger.v3.oas.annotations.tags.Tag;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.cache.OnboardingIdempotency;
 import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.response.OnboardingJobStatus;
 import org.shaktifdn.registration.response.ResponseBean;
 import org.shaktifdn.registration.response.ShaktiResponse;
 import org.shaktifdn.registration.response.UserRegistrationStatusResponse;
 import org.shaktifdn.registration.service.IpAddressService;
+import org.shaktifdn.registration.service.OnboardingJobs;
 import org.shaktifdn.registration.service.UserService;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
 import org.springframework.http.server.reactive.ServerHttpRequest;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.util.UriComponentsBuilder;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 
 import javax.validation.Valid;
@@ -22,19 +29,84 @@ import javax.validation.Valid;
 @Tag(name = "userController", description = "calling to user services APIs")
 public class UserController {
 
+    static final String RESPOND_ASYNC = "Prefer=respond-async";
+
     private final UserService userService;
     private final IpAddressService ipAddressService;
+    private final OnboardingJobs onboardingJobs;
 
     /**
-     * @param user onboard shakti model
+     * @param user           onboard shakti model
+     * @param idempotencyKey optional key making retries attach to or replay the first onboarding
      * @return Mono of Response Bean
      * @apiNote This API will Onboard the user after successfully verified email and mobile. By this user account is created in Shakti EchoSystem
      */
     @PostMapping
-    public Mono<ResponseBean> saveOnboardShakti(@RequestBody @Valid OnboardShaktiUserRequest user, ServerHttpRequest serverHttpRequest) {
+    public Mono<ResponseBean> saveOnboardShakti(
+            @RequestBody @Valid OnboardShaktiUserRequest user,
+            @RequestHeader(value = OnboardingIdempotency.HEADER, required = false) String idempotencyKey,
+            ServerHttpRequest serverHttpRequest
+    ) {
         String clientIpAddress = ipAddressService.getClientIpAddress(user.getEmail(), serverHttpRequest);
         log.info("Onboard Shakti - save User Method Started for user email id {} ", user.getEmail());
-        return userService.saveOnboardShakti(user, clientIpAddress);
+        return userService.saveOnboardShakti(user, clientIpAddress, idempotencyKey);
+    }
+
+    /**
+     * @param user           onboard shakti model
+     * @param idempotencyKey optional key making retries attach to or replay the first onboarding
+     * @return 202 with the accepted job, whose status is at the Location URL
+     * @apiNote Asynchronous variant of the onboarding, chosen with {@code Prefer: respond-async}: the request is validated and queued, and the
+     * onboarding runs in the background
+     */
+    @PostMapping(headers = RESPOND_ASYNC)
+    public Mono<ResponseEntity<ShaktiResponse<OnboardingJobStatus>>> saveOnboardShaktiAsync(
+            @RequestBody @Valid OnboardShaktiUserRequest user,
+            @RequestHeader(value = OnboardingIdempotency.HEADER, required = false) String idempotencyKey,
+            ServerHttpRequest serverHttpRequest
+    ) {
+        String clientIpAddress = ipAddressService.getClientIpAddress(user.getEmail(), serverHttpRequest);
+        log.info("Onboard Shakti - accepting asynchronous onboarding for user email id {} ", user.getEmail());
+        return onboardingJobs
+                .submit(user, clientIpAddress, idempotencyKey)
+                .map(job -> ResponseEntity
+                        .accepted()
+                        .location(UriComponentsBuilder
+                                .fromPath(serverHttpRequest.getPath().value())
+                                .path("/onboarding/{jobId}")
+                                .buildAndExpand(job.getJobId())
+                                .toUri())
+                        .body(ShaktiResponse
+                                .<OnboardingJobStatus>builder()
+                                .status(true)
+                                .message("Onboarding accepted")
+                                .data(job)
+                                .build()));
+    }
+
+    /**
+     * @param jobId id of an asynchronous onboarding
+     * @return state of the job and registration stages completed so far
+     */
+    @GetMapping(value = "/onboarding/{jobId}")
+    public Mono<ShaktiResponse<OnboardingJobStatus>> getOnboardingStatus(@PathVariable("jobId") String jobId) {
+        return onboardingJobs
+                .status(jobId)
+                .map(status -> ShaktiResponse
+                        .<OnboardingJobStatus>builder()
+                        .status(true)
+                        .message(status.getState().name())
+                        .data(status)
+                        .build());
+    }
+
+    /**
+     * @param jobId id of an asynchronous onboarding
+     * @return server-sent events with the status of the job each time it changes, until it finishes
+     */
+    @GetMapping(value = "/onboarding/{jobId}", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public Flux<OnboardingJobStatus> watchOnboardingStatus(@PathVariable("jobId") String jobId) {
+        return onboardingJobs.watch(jobId);
     }
 
     /**
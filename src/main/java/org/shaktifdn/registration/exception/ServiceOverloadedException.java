@@ -0,0 +1,17 @@
+package org.shaktifdn.registration.exception;
+
+import lombok.Getter;
+
+/**
+ * A call was shed because its downstream is at its concurrency limit.
+ */
+@Getter
+public class ServiceOverloadedException extends AbstractException {
+
+    private final String downstream;
+
+    public ServiceOverloadedException(String downstream) {
+        super(downstream + " is overloaded, please try again later");
+        this.downstream = downstream;
+    }
+}
@@ -0,0 +1,148 @@
+package org.shaktifdn.registration.lease;
+
+import com.couchbase.client.core.error.CasMismatchException;
+import com.couchbase.client.core.error.DocumentExistsException;
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.json.JsonObject;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static com.couchbase.client.java.kv.InsertOptions.insertOptions;
+import static com.couchbase.client.java.kv.RemoveOptions.removeOptions;
+import static com.couchbase.client.java.kv.ReplaceOptions.replaceOptions;
+
+/**
+ * Lease held in a Couchbase document with an expiry, so a single replica runs a periodic job. The
+ * lease is taken with an insert and renewed or released with CAS-guarded replaces and removes; a
+ * holder that dies without releasing it loses it once the document expires.
+ */
+@Slf4j
+public class LeaderLease {
+
+    static final String TYPE = "LeaderLease";
+    private static final String ID_PREFIX = TYPE + "::";
+    private static final String OWNER = "owner";
+    private static final String RENEWED_AT = "renewedAt";
+    private static final String EXPIRES_AT = "expiresAt";
+
+    private final String name;
+    private final String owner;
+    private final ReactiveCouchbaseTemplate couchbaseTemplate;
+    private final Duration ttl;
+    private final Duration renewInterval;
+
+    public LeaderLease(
+            String name,
+            String owner,
+            ReactiveCouchbaseTemplate couchbaseTemplate,
+            Duration ttl,
+            Duration renewInterval
+    ) {
+        this.name = name;
+        this.owner = owner;
+        this.couchbaseTemplate = couchbaseTemplate;
+        this.ttl = ttl;
+        this.renewInterval = renewInterval;
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    /**
+     * Runs the task if this instance gets the lease, renewing it while the task runs. The task is
+     * cancelled when a renewal fails and the lease is released once the task terminates.
+     *
+     * @return the task result, or empty when another instance holds the lease
+     */
+    public <T> Mono<T> runExclusively(Mono<T> task) {
+        return tryAcquire()
+                .flatMap(acquired -> {
+                    if (!acquired) {
+                        log.debug("lease {} held by another instance", name);
+                        return Mono.empty();
+                    }
+                    log.info("lease {} acquired by {}", name, owner);
+                    return task
+                            .takeUntilOther(lost())
+                            .doFinally(signal -> release().subscribe());
+                });
+    }
+
+    /**
+     * Takes the lease when it is free, or renews it when this instance already holds it.
+     */
+    public Mono<Boolean> tryAcquire() {
+        String id = id();
+        return collection()
+                .get(id)
+                .flatMap(current -> owner.equals(current.contentAsObject().getString(OWNER))
+                        ? collection().replace(id, content(), replaceOptions().cas(current.cas()).expiry(ttl)).thenReturn(true)
+                        : Mono.just(false))
+                .onErrorResume(DocumentNotFoundException.class, e ->
+                        collection().insert(id, content(), insertOptions().expiry(ttl)).thenReturn(true))
+                .onErrorResume(DocumentExistsException.class, e -> Mono.just(false))
+                .onErrorResume(CasMismatchException.class, e -> Mono.just(false));
+    }
+
+    public Mono<Void> release() {
+        String id = id();
+        return collection()
+                .get(id)
+                .filter(current -> owner.equals(current.contentAsObject().getString(OWNER)))
+                .flatMap(current -> collection().remove(id, removeOptions().cas(current.cas())))
+                .doOnNext(removed -> log.info("lease {} released by {}", name, owner))
+                .onErrorResume(DocumentNotFoundException.class, e -> Mono.empty())
+                .onErrorResume(CasMismatchException.class, e -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * @return current owner and timestamps of the lease, as shown by {@link LeaderLeaseEndpoint}
+     */
+    public Mono<Map<String, Object>> status() {
+        return collection()
+                .get(id())
+                .map(current -> current.contentAsObject().toMap())
+                .onErrorResume(DocumentNotFoundException.class, e -> Mono.just(Map.of()))
+                .map(lease -> {
+                    Map<String, Object> status = new LinkedHashMap<>(lease);
+                    status.put("self", owner);
+                    status.put("leader", owner.equals(lease.get(OWNER)));
+                    return status;
+                });
+    }
+
+    private Mono<Boolean> lost() {
+        return Flux.interval(renewInterval)
+                .concatMap(tick -> tryAcquire().onErrorReturn(false))
+                .filter(renewed -> !renewed)
+                .next()
+                .doOnNext(renewed -> log.warn("lease {} lost by {}, stopping", name, owner));
+    }
+
+    private JsonObject content() {
+        Instant now = Instant.now();
+        return JsonObject.create()
+                .put("_type", TYPE)
+                .put(OWNER, owner)
+                .put(RENEWED_AT, now.toString())
+                .put(EXPIRES_AT, now.plus(ttl).toString());
+    }
+
+    private String id() {
+        return ID_PREFIX + name;
+    }
+
+    private ReactiveCollection collection() {
+        return couchbaseTemplate.getCouchbaseClientFactory().getDefaultCollection().reactive();
+    }
+}
@@ -0,0 +1,31 @@
+package org.shaktifdn.registration.lease;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * {@code /actuator/leases}: current owner of every {@link LeaderLease}.
+ */
+@Component
+@Endpoint(id = "leases")
+public class LeaderLeaseEndpoint {
+
+    private final List<LeaderLease> leases;
+
+    public LeaderLeaseEndpoint(List<LeaderLease> leases) {
+        this.leases = leases;
+    }
+
+    @ReadOperation
+    public Mono<Map<String, Map<String, Object>>> leases() {
+        return Flux.fromIterable(leases)
+                .flatMap(lease -> lease.status().map(status -> Map.entry(lease.getName(), status)))
+                .collectMap(Map.Entry::getKey, Map.Entry::getValue);
+    }
+}
@@ -0,0 +1,156 @@
+package org.shaktifdn.registration.message;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.OutboxProperties;
+import org.shaktifdn.registration.model.OutboxMessage;
+import org.shaktifdn.registration.repository.OutboxMessageRepository;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.kafka.support.KafkaHeaders;
+import org.springframework.messaging.support.MessageBuilder;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Scheduler;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * Couchbase backed outbox for {@link CreateUserMessage}s. Onboarding stores the message with
+ * {@link #enqueue(CreateUserMessage)} before answering, and the relay publishes due messages in
+ * batches to the {@value #BINDING} binding, retrying failed sends with exponential backoff.
+ * <p>
+ * A message is claimed by bumping its next attempt time with a CAS replace, so several instances
+ * can run the relay, and deleted only after the broker acknowledged it. A crash between the send
+ * and the delete publishes the message again; consumers can drop such duplicates by the
+ * {@value #DEDUP_KEY_HEADER} header.
+ */
+@Component
+@Slf4j
+public class CreateUserOutbox {
+
+    public static final String BINDING = "createUser-out-0";
+    public static final String DEDUP_KEY_HEADER = "dedupKey";
+    static final String METRIC_NAME = "registration.outbox.relayed";
+
+    private final OutboxMessageRepository outboxMessageRepository;
+    private final StreamBridge streamBridge;
+    private final OutboxProperties properties;
+    private final Scheduler scheduler;
+    private final MeterRegistry meterRegistry;
+    private final AtomicBoolean relaying = new AtomicBoolean();
+
+    public CreateUserOutbox(
+            OutboxMessageRepository outboxMessageRepository,
+            StreamBridge streamBridge,
+            OutboxProperties properties,
+            Scheduler scheduler,
+            MeterRegistry meterRegistry
+    ) {
+        this.outboxMessageRepository = outboxMessageRepository;
+        this.streamBridge = streamBridge;
+        this.properties = properties;
+        this.scheduler = scheduler;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * Inserts the message; one already stored for the Shakti ID, by an attempt whose answer was lost,
+     * is kept and counts as enqueued.
+     */
+    public Mono<OutboxMessage> enqueue(CreateUserMessage message) {
+        log.info("storing create user message for shakti id {}", message.getShaktiId());
+        OutboxMessage outboxMessage = OutboxMessage.create(BINDING, message);
+        return outboxMessageRepository.save(outboxMessage)
+                .onErrorResume(DuplicateKeyException.class, e -> {
+                    log.info("create user message for shakti id {} already stored", message.getShaktiId());
+                    return Mono.just(outboxMessage);
+                });
+    }
+
+    @Scheduled(fixedDelayString = "${registration.outbox.poll-interval:PT1S}", initialDelay = 10000)
+    public void relayCron() {
+        if (!relaying.compareAndSet(false, true)) {
+            return;
+        }
+        relay()
+                .subscribeOn(scheduler)
+                .doFinally(signal -> relaying.set(false))
+                .subscribe();
+    }
+
+    /**
+     * Publishes one batch of due messages.
+     *
+     * @return count of messages published
+     */
+    public Mono<Long> relay() {
+        return outboxMessageRepository
+                .findDue(Instant.now(), properties.getBatchSize())
+                .flatMap(this::relay, properties.getConcurrency())
+                .filter(Boolean::booleanValue)
+                .count()
+                .doOnNext(count -> {
+                    if (count > 0) {
+                        log.info("published {} create user messages", count);
+                    }
+                })
+                .onErrorResume(throwable -> {
+                    log.error("error while relaying create user messages", throwable);
+                    return Mono.just(0L);
+                });
+    }
+
+    private Mono<Boolean> relay(OutboxMessage message) {
+        message.setNextAttemptAt(Instant.now().plus(properties.getClaimTimeout()));
+        return outboxMessageRepository.save(message)
+                .onErrorResume(OptimisticLockingFailureException.class, e -> {
+                    log.debug("outbox message {} claimed by another relay", message.getId());
+                    return Mono.empty();
+                })
+                .flatMap(claimed -> send(claimed)
+                        .then(outboxMessageRepository.delete(claimed))
+                        .thenReturn(true)
+                        .doOnNext(sent -> meterRegistry.counter(METRIC_NAME, "result", "sent").increment())
+                        .onErrorResume(throwable -> retryLater(claimed, throwable)));
+    }
+
+    private Mono<Void> send(OutboxMessage message) {
+        return Mono.fromCallable(() -> streamBridge.send(
+                        message.getDestination(),
+                        MessageBuilder
+                                .withPayload(message.getPayload())
+                                .setHeader(KafkaHeaders.MESSAGE_KEY, message.getMessageKey().getBytes(StandardCharsets.UTF_8))
+                                .setHeader(DEDUP_KEY_HEADER, message.getId())
+                                .build()
+                ))
+                .subscribeOn(scheduler)
+                .flatMap(sent -> sent
+                        ? Mono.<Void>empty()
+                        : Mono.error(new IllegalStateException("message not accepted by binding " + message.getDestination())));
+    }
+
+    private Mono<Boolean> retryLater(OutboxMessage message, Throwable throwable) {
+        meterRegistry.counter(METRIC_NAME, "result", "failed").increment();
+        message.setAttempts(message.getAttempts() + 1);
+        message.setLastError(throwable.toString());
+        message.setNextAttemptAt(Instant.now().plus(backoff(message.getAttempts())));
+        log.error("publishing {} failed, attempt {}, next at {}", message.getId(), message.getAttempts(), message.getNextAttemptAt(), throwable);
+        return outboxMessageRepository.save(message)
+                .thenReturn(false)
+                .onErrorResume(e -> {
+                    log.error("could not reschedule outbox message {}", message.getId(), e);
+                    return Mono.just(false);
+                });
+    }
+
+    Duration backoff(int attempts) {
+        Duration backoff = properties.getInitialBackoff().multipliedBy(1L << Math.min(attempts - 1, 20));
+        return backoff.compareTo(properties.getMaxBackoff()) > 0 ? properties.getMaxBackoff() : backoff;
+    }
+}
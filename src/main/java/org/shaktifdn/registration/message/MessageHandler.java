@@ -1,111 +1,154 @@
 package org.shaktifdn.registration.message;
 
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
+import org.shaktifdn.registration.config.MessageBatchProperties;
+import org.shaktifdn.registration.model.UserRegisterState;
 import org.shaktifdn.registration.model.UserRegisterStateType;
-import org.shaktifdn.registration.repository.UserRegisterStateDetailRepository;
 import org.shaktifdn.registration.repository.UserRegisterStateRepository;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Sinks;
-import reactor.core.publisher.Sinks.Many;
+import reactor.core.publisher.Mono;
 
-import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BiFunction;
 import java.util.function.Function;
-import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 @Configuration
 @Slf4j
 public class MessageHandler {
 
-    @Bean
-    public Many<CreateUserMessage> createUserMessageSink() {
-        return Sinks.many().multicast().onBackpressureBuffer();
-    }
-
-    @Bean
-    public Supplier<Flux<CreateUserMessage>> createUser(Many<CreateUserMessage> createUserMessageSink) {
-        return createUserMessageSink::asFlux;
-    }
+    static final String BATCH_TIMER = "registration.messaging.batch";
+    static final String BATCH_SIZE = "registration.messaging.batch.size";
+    static final String MESSAGES = "registration.messaging.messages";
 
     @Bean
     public Function<Flux<KYCUserCreatedMessage>, Flux<Void>> kycUserCreated(
             UserRegisterStateRepository userRegisterStateRepository,
-            UserRegisterStateDetailRepository userRegisterStateDetailRepository
+            MessageBatchProperties messageBatchProperties,
+            MeterRegistry meterRegistry
     ) {
-        return input -> input
-                .flatMap(kycUserCreatedMessage -> {
-                    log.info("updating KYC User Created for {}", kycUserCreatedMessage);
-                    return userRegisterStateRepository
-                            .findByShaktiId(kycUserCreatedMessage.getShaktiId())
-                            .flatMap(userRegisterState -> {
-                                List<UserRegisterStateDetail> details = new ArrayList<>();
-                                details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.KYC_USER_CREATED));
-                                if (userRegisterState.isMobileUser()) {
-                                    details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.KYC_USER_WALLET_UPDATED));
-                                }
-                                return userRegisterStateDetailRepository.saveAll(details)
-                                        .collectList()
-                                        .map(ignore -> userRegisterState);
-                            });
-                })
-                .flatMap(ignore -> Flux.<Void>empty())
-                .onErrorResume(throwable -> {
-                    log.error("error while processing KYCUserCreatedMessage", throwable);
-                    return Flux.empty();
-                })
-                .onErrorStop();
+        return batched(
+                "kycUserCreated",
+                KYCUserCreatedMessage::getShaktiId,
+                (message, userRegisterState) -> userRegisterState.isMobileUser()
+                        ? List.of(UserRegisterStateType.KYC_USER_CREATED, UserRegisterStateType.KYC_USER_WALLET_UPDATED)
+                        : List.of(UserRegisterStateType.KYC_USER_CREATED),
+                userRegisterStateRepository,
+                messageBatchProperties,
+                meterRegistry
+        );
     }
 
     @Bean
     public Function<Flux<BountyReferralCreatedMessage>, Flux<Void>> bountyReferralCreated(
             UserRegisterStateRepository userRegisterStateRepository,
-            UserRegisterStateDetailRepository userRegisterStateDetailRepository
+            MessageBatchProperties messageBatchProperties,
+            MeterRegistry meterRegistry
     ) {
-        return input -> input
-                .flatMap(message -> {
-                    log.info("updating BonusBounty for {}", message);
-                    return userRegisterStateRepository
-                            .findByShaktiId(message.getShaktiId())
-                            .flatMap(userRegisterState ->
-                                    userRegisterStateDetailRepository
-                                            .save(UserRegisterStateDetail
-                                                    .create(userRegisterState, UserRegisterStateType.BOUNTY_CREATED)
-                                            )
-                            );
-                })
-                .flatMap(userRegisterState -> Flux.<Void>empty())
-                .onErrorResume(throwable -> {
-                    log.error("error while processing BountyReferralCreatedMessage", throwable);
-                    return Flux.empty();
-                })
-                .onErrorStop();
+        return batched(
+                "bountyReferralCreated",
+                BountyReferralCreatedMessage::getShaktiId,
+                (message, userRegisterState) -> List.of(UserRegisterStateType.BOUNTY_CREATED),
+                userRegisterStateRepository,
+                messageBatchProperties,
+                meterRegistry
+        );
     }
 
     @Bean
     public Function<Flux<SelfyIdCreatedMessage>, Flux<Void>> selfyIdCreated(
             UserRegisterStateRepository userRegisterStateRepository,
-            UserRegisterStateDetailRepository userRegisterStateDetailRepository
+            MessageBatchProperties messageBatchProperties,
+            MeterRegistry meterRegistry
+    ) {
+        return batched(
+                "selfyIdCreated",
+                SelfyIdCreatedMessage::getShaktiId,
+                (message, userRegisterState) -> List.of(UserRegisterStateType.SELFY_ID_ENCRYPTED),
+                userRegisterStateRepository,
+                messageBatchProperties,
+                meterRegistry
+        );
+    }
+
+    /**
+     * Groups the incoming messages into batches, loads the {@link UserRegisterState}s of a batch with
+     * one query and adds the resulting state types to each state with one sub-document mutation. A failing batch is logged and
+     * skipped so the consumer keeps running.
+     */
+    private static <T> Function<Flux<T>, Flux<Void>> batched(
+            String handler,
+            Function<T, String> shaktiId,
+            BiFunction<T, UserRegisterState, List<UserRegisterStateType>> stateTypes,
+            UserRegisterStateRepository userRegisterStateRepository,
+            MessageBatchProperties properties,
+            MeterRegistry meterRegistry
     ) {
+        Timer batchTimer = Timer.builder(BATCH_TIMER).tag("handler", handler).register(meterRegistry);
+        DistributionSummary batchSize = DistributionSummary.builder(BATCH_SIZE).tag("handler", handler).register(meterRegistry);
         return input -> input
-                .flatMap(selfyIdCreatedMessage -> {
-                    log.info("updating SelfyID for {}", selfyIdCreatedMessage);
-                    return userRegisterStateRepository
-                            .findByShaktiId(selfyIdCreatedMessage.getShaktiId())
-                            .flatMap(userRegisterState -> userRegisterStateDetailRepository
-                                    .save(UserRegisterStateDetail
-                                            .create(userRegisterState, UserRegisterStateType.SELFY_ID_ENCRYPTED)
-                                    )
-                            );
-                })
-                .flatMap(userRegisterState -> Flux.<Void>empty())
+                .bufferTimeout(properties.getMaxSize(), properties.getMaxWait())
+                .flatMap(batch -> {
+                    log.info("updating {} for {} messages", handler, batch.size());
+                    batchSize.record(batch.size());
+                    long start = System.nanoTime();
+                    return handleBatch(handler, batch, shaktiId, stateTypes, userRegisterStateRepository, meterRegistry)
+                            .doFinally(signal -> batchTimer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS))
+                            .onErrorResume(throwable -> {
+                                log.error("error while processing {} batch {}", handler, batch, throwable);
+                                meterRegistry.counter(MESSAGES, "handler", handler, "result", "failed").increment(batch.size());
+                                return Mono.empty();
+                            });
+                }, properties.getConcurrency())
+                .flatMap(ignore -> Flux.<Void>empty())
                 .onErrorResume(throwable -> {
-                    log.error("error while processing SelfyIdCreatedMessage", throwable);
+                    log.error("error while processing {}", handler, throwable);
                     return Flux.empty();
                 })
                 .onErrorStop();
     }
 
+    private static <T> Mono<Long> handleBatch(
+            String handler,
+            List<T> batch,
+            Function<T, String> shaktiId,
+            BiFunction<T, UserRegisterState, List<UserRegisterStateType>> stateTypes,
+            UserRegisterStateRepository userRegisterStateRepository,
+            MeterRegistry meterRegistry
+    ) {
+        Set<String> shaktiIds = batch.stream().map(shaktiId).collect(Collectors.toSet());
+        return userRegisterStateRepository
+                .findAllByShaktiIdIn(shaktiIds)
+                .collectMap(UserRegisterState::getShaktiId)
+                .flatMap(states -> {
+                    Map<String, Set<UserRegisterStateType>> toAdd = new HashMap<>();
+                    int unmatched = 0;
+                    for (T message : batch) {
+                        UserRegisterState userRegisterState = states.get(shaktiId.apply(message));
+                        if (userRegisterState == null) {
+                            log.debug("no registration state for {} message {}", handler, message);
+                            unmatched++;
+                        } else {
+                            toAdd.computeIfAbsent(userRegisterState.getId(), id -> new LinkedHashSet<>())
+                                    .addAll(stateTypes.apply(message, userRegisterState));
+                        }
+                    }
+                    meterRegistry.counter(MESSAGES, "handler", handler, "result", "unmatched").increment(unmatched);
+                    meterRegistry.counter(MESSAGES, "handler", handler, "result", "updated").increment(batch.size() - unmatched);
+                    return Flux.fromIterable(toAdd.entrySet())
+                            .flatMap(entry -> userRegisterStateRepository.addStateTypes(entry.getKey(), entry.getValue()))
+                            .then(Mono.just((long) toAdd.size()));
+                });
+    }
+
 }
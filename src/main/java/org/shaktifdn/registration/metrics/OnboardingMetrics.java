@@ -0,0 +1,151 @@
+package org.shaktifdn.registration.metrics;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.distribution.ValueAtPercentile;
+import io.opentracing.Span;
+import io.opentracing.Tracer;
+import io.opentracing.util.GlobalTracer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.SignalType;
+import reactor.util.context.ContextView;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Timers and tracing spans of the onboarding flow and its stages. Timers and spans carry the same
+ * tags: {@code flow} (mobile or web), {@code outcome} (success, failure or cancelled) and
+ * {@code exception} (simple class name of the failure, or none), stages also {@code stage}.
+ * <p>
+ * Stage spans are children of the span of the flow, which travels in the Reactor context. Timers
+ * publish histogram buckets for Prometheus and keep a live p50/p99 for {@link OnboardingMetricsEndpoint}.
+ */
+@Component
+@Slf4j
+public class OnboardingMetrics {
+
+    static final String FLOW_TIMER = "registration.onboarding";
+    static final String STAGE_TIMER = "registration.onboarding.stage";
+    static final String FLOW_MOBILE = "mobile";
+    static final String FLOW_WEB = "web";
+    private static final String SPAN_PREFIX = "onboarding.";
+    private static final String STAGE = "stage";
+    private static final String FLOW = "flow";
+    private static final String OUTCOME = "outcome";
+    private static final String EXCEPTION = "exception";
+    private static final String NONE = "none";
+    private static final String ERROR = "error";
+
+    private final MeterRegistry meterRegistry;
+    private final Tracer tracer;
+
+    public OnboardingMetrics(MeterRegistry meterRegistry, ObjectProvider<Tracer> tracer) {
+        this.meterRegistry = meterRegistry;
+        this.tracer = tracer.getIfAvailable(GlobalTracer::get);
+    }
+
+    public static String flow(boolean mobile) {
+        return mobile ? FLOW_MOBILE : FLOW_WEB;
+    }
+
+    /**
+     * Times a whole onboarding under {@link #FLOW_TIMER} and opens the span its stages belong to.
+     */
+    public <T> Mono<T> flow(String flow, Supplier<Mono<T>> onboarding) {
+        return instrument(FLOW_TIMER, SPAN_PREFIX + flow, Tags.of(FLOW, flow), onboarding);
+    }
+
+    /**
+     * Times one stage of an onboarding under {@link #STAGE_TIMER}, in a child span of the flow.
+     */
+    public <T> Mono<T> stage(String stage, String flow, Supplier<Mono<T>> call) {
+        return instrument(STAGE_TIMER, SPAN_PREFIX + stage, Tags.of(STAGE, stage, FLOW, flow), call);
+    }
+
+    /**
+     * @return count, mean, p50, p99 and max in milliseconds of every flow and stage, by tags
+     */
+    public Map<String, Map<String, Object>> summary() {
+        Map<String, Map<String, Object>> summary = new TreeMap<>();
+        meterRegistry.find(FLOW_TIMER).timers().forEach(timer -> summary.put(key(timer), summarize(timer)));
+        meterRegistry.find(STAGE_TIMER).timers().forEach(timer -> summary.put(key(timer), summarize(timer)));
+        return summary;
+    }
+
+    private <T> Mono<T> instrument(String timerName, String operation, Tags tags, Supplier<Mono<T>> call) {
+        return Mono.deferContextual(context -> {
+            Span span = startSpan(operation, tags, context);
+            long start = System.nanoTime();
+            AtomicReference<Throwable> failure = new AtomicReference<>();
+            return Mono.defer(call)
+                    .doOnError(failure::set)
+                    .doFinally(signal -> finish(timerName, tags, signal, failure.get(), span, System.nanoTime() - start))
+                    .contextWrite(inner -> inner.put(Span.class, span));
+        });
+    }
+
+    private Span startSpan(String operation, Tags tags, ContextView context) {
+        Tracer.SpanBuilder builder = tracer.buildSpan(operation);
+        Span parent = context.<Span>getOrEmpty(Span.class).orElseGet(tracer::activeSpan);
+        if (parent != null) {
+            builder.asChildOf(parent);
+        }
+        tags.forEach(tag -> builder.withTag(tag.getKey(), tag.getValue()));
+        return builder.start();
+    }
+
+    private void finish(String timerName, Tags tags, SignalType signal, Throwable failure, Span span, long elapsedNanos) {
+        String outcome = signal == SignalType.ON_ERROR ? "failure" : signal == SignalType.CANCEL ? "cancelled" : "success";
+        String exception = failure != null ? failure.getClass().getSimpleName() : NONE;
+        Timer.builder(timerName)
+                .tags(tags)
+                .tag(OUTCOME, outcome)
+                .tag(EXCEPTION, exception)
+                .publishPercentileHistogram()
+                .publishPercentiles(0.5, 0.99)
+                .minimumExpectedValue(Duration.ofMillis(1))
+                .maximumExpectedValue(Duration.ofSeconds(30))
+                .register(meterRegistry)
+                .record(elapsedNanos, TimeUnit.NANOSECONDS);
+        span.setTag(OUTCOME, outcome);
+        span.setTag(EXCEPTION, exception);
+        if (failure != null) {
+            span.setTag(ERROR, true);
+        }
+        span.finish();
+        log.debug("{} {} finished with {} in {} ms", timerName, tags, outcome, TimeUnit.NANOSECONDS.toMillis(elapsedNanos));
+    }
+
+    private static String key(Timer timer) {
+        Meter.Id id = timer.getId();
+        StringBuilder key = new StringBuilder(id.getTag(STAGE) != null ? id.getTag(STAGE) : "total");
+        for (String tag : new String[]{FLOW, OUTCOME, EXCEPTION}) {
+            key.append('/').append(id.getTag(tag));
+        }
+        return key.toString();
+    }
+
+    private static Map<String, Object> summarize(Timer timer) {
+        HistogramSnapshot snapshot = timer.takeSnapshot();
+        Map<String, Object> summary = new LinkedHashMap<>();
+        summary.put("count", snapshot.count());
+        summary.put("meanMs", snapshot.mean(TimeUnit.MILLISECONDS));
+        for (ValueAtPercentile percentile : snapshot.percentileValues()) {
+            summary.put("p" + Math.round(percentile.percentile() * 100) + "Ms", percentile.value(TimeUnit.MILLISECONDS));
+        }
+        summary.put("maxMs", snapshot.max(TimeUnit.MILLISECONDS));
+        return summary;
+    }
+}
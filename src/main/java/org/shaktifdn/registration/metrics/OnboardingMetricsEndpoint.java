@@ -0,0 +1,27 @@
+package org.shaktifdn.registration.metrics;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+
+/**
+ * {@code /actuator/onboarding}: live latency of the onboarding flow and each of its stages, keyed by
+ * {@code stage/flow/outcome/exception}.
+ */
+@Component
+@Endpoint(id = "onboarding")
+public class OnboardingMetricsEndpoint {
+
+    private final OnboardingMetrics onboardingMetrics;
+
+    public OnboardingMetricsEndpoint(OnboardingMetrics onboardingMetrics) {
+        this.onboardingMetrics = onboardingMetrics;
+    }
+
+    @ReadOperation
+    public Map<String, Map<String, Object>> stages() {
+        return onboardingMetrics.summary();
+    }
+}
@@ -0,0 +1,46 @@
+package org.shaktifdn.registration.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.couchbase.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * Progress of a cleanup run: the cutoff it was started with and the id of the last candidate
+ * handled, so a restarted instance resumes the run instead of starting over.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document
+public class CleanupCheckpoint {
+    public static final String TYPE = "CleanupCheckpoint";
+    private static final String ID_PREFIX = TYPE + "::";
+    @Id
+    private String id;
+    private String _type = TYPE;
+    /**
+     * states created before it are candidates of the run
+     */
+    private Instant modifiedBefore;
+    private String lastId;
+    private Instant startedAt;
+    private Instant updatedAt;
+
+    public static CleanupCheckpoint start(String name, Instant modifiedBefore) {
+        CleanupCheckpoint checkpoint = new CleanupCheckpoint();
+        checkpoint.id = key(name);
+        checkpoint.modifiedBefore = modifiedBefore;
+        checkpoint.lastId = "";
+        checkpoint.startedAt = Instant.now();
+        checkpoint.updatedAt = checkpoint.startedAt;
+        return checkpoint;
+    }
+
+    public static String key(String name) {
+        return ID_PREFIX + name;
+    }
+}
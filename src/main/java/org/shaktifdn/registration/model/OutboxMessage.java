@@ -0,0 +1,50 @@
+package org.shaktifdn.registration.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.shaktifdn.registration.message.CreateUserMessage;
+import org.springframework.data.annotation.Id;
+import org.springframework.data.annotation.Version;
+import org.springframework.data.couchbase.core.mapping.Document;
+
+import java.time.Instant;
+
+/**
+ * A {@link CreateUserMessage} waiting to be published. The id doubles as dedup key: one message per
+ * Shakti ID. A new message is inserted, so a second write for the same Shakti ID, such as a retried
+ * outbox step of the same onboarding, finds the first in place and queues no second event; every
+ * onboarding has its own Shakti ID. The document is removed once the broker acknowledged it.
+ */
+@Data
+@AllArgsConstructor
+@NoArgsConstructor
+@Document
+public class OutboxMessage {
+    public static final String TYPE = "OutboxMessage";
+    private static final String ID_PREFIX = "CreateUserMessage::";
+    @Id
+    private String id;
+    private String _type = TYPE;
+    private String destination;
+    private String messageKey;
+    private CreateUserMessage payload;
+    private int attempts;
+    private Instant nextAttemptAt;
+    private Instant createdAt;
+    private String lastError;
+
+    @Version
+    private long version;
+
+    public static OutboxMessage create(String destination, CreateUserMessage message) {
+        OutboxMessage outboxMessage = new OutboxMessage();
+        outboxMessage.id = ID_PREFIX + message.getShaktiId();
+        outboxMessage.destination = destination;
+        outboxMessage.messageKey = message.getShaktiId();
+        outboxMessage.payload = message;
+        outboxMessage.createdAt = Instant.now();
+        outboxMessage.nextAttemptAt = outboxMessage.createdAt;
+        return outboxMessage;
+    }
+}
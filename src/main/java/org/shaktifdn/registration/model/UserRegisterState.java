@@ -5,12 +5,12 @@ import lombok.Data;
 import lombok.NoArgsConstructor;
 import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
 import org.springframework.data.annotation.Id;
-import org.springframework.data.annotation.LastModifiedDate;
 import org.springframework.data.annotation.Version;
 import org.springframework.data.couchbase.core.mapping.Document;
 
 import java.time.Instant;
-import java.util.UUID;
+import java.util.HashSet;
+import java.util.Set;
 import java.util.concurrent.TimeUnit;
 
 @Data
@@ -19,6 +19,9 @@ import java.util.concurrent.TimeUnit;
 @Document(expiry = 2, expiryUnit = TimeUnit.DAYS)
 public class UserRegisterState {
     public static final String TYPE = "UserRegisterState";
+    public static final String STATE_TYPES = "stateTypes";
+    public static final String COMPLETED_STEPS = "completedSteps";
+    private static final String ID_PREFIX = TYPE + "::";
     @Id
     private String id;
     private String _type = TYPE;
@@ -29,13 +32,22 @@ public class UserRegisterState {
     private boolean isMobileUser;
     private Instant createdAt;
     private Instant lastModification;
+    /**
+     * stages completed so far, updated in place through {@code UserRegisterStateRepository#addStateTypes}
+     */
+    private Set<UserRegisterStateType> stateTypes = new HashSet<>();
+    /**
+     * onboarding steps done by this service, logged by {@code OnboardingSaga} so a failed onboarding
+     * can be compensated
+     */
+    private Set<String> completedSteps = new HashSet<>();
 
     @Version
     private long version;
 
     public static UserRegisterState create(OnboardShaktiUserRequest onboardShaktiUserRequest, Boolean isMobileUser) {
         UserRegisterState userRegisterState = new UserRegisterState();
-        userRegisterState.id = UUID.randomUUID().toString();
+        userRegisterState.id = key(onboardShaktiUserRequest.getShaktiID());
         userRegisterState.shaktiId = onboardShaktiUserRequest.getShaktiID();
         userRegisterState.email = onboardShaktiUserRequest.getEmail();
         userRegisterState.countryCode = onboardShaktiUserRequest.getCountryCode();
@@ -44,4 +56,11 @@ public class UserRegisterState {
         userRegisterState.createdAt = Instant.now();
         return userRegisterState;
     }
+
+    /**
+     * Document id of the state of a Shakti ID, so it can be read with a KV get instead of a query.
+     */
+    public static String key(String shaktiId) {
+        return ID_PREFIX + shaktiId;
+    }
 }
@@ -1,10 +1,9 @@
 package org.shaktifdn.registration.repository;
 
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
+import org.shaktifdn.registration.model.CleanupCheckpoint;
 import org.springframework.data.couchbase.repository.ReactiveCouchbaseRepository;
 import org.springframework.stereotype.Repository;
 
 @Repository
-public interface UserRegisterStateDetailRepository extends ReactiveCouchbaseRepository<UserRegisterStateDetail, String> {
-
-}
\ No newline at end of file
+public interface CleanupCheckpointRepository extends ReactiveCouchbaseRepository<CleanupCheckpoint, String> {
+}
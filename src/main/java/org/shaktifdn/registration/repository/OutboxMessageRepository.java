@@ -0,0 +1,21 @@
+package org.shaktifdn.registration.repository;
+
+import org.shaktifdn.registration.model.OutboxMessage;
+import org.springframework.data.couchbase.repository.Query;
+import org.springframework.data.couchbase.repository.ReactiveCouchbaseRepository;
+import org.springframework.stereotype.Repository;
+import reactor.core.publisher.Flux;
+
+import java.time.Instant;
+
+@Repository
+public interface OutboxMessageRepository extends ReactiveCouchbaseRepository<OutboxMessage, String> {
+
+    /*
+     Below query requires this index
+     CREATE INDEX adv_outbox_nextAttemptAt ON `services`(`nextAttemptAt`) WHERE `_type` = 'OutboxMessage'
+     */
+    @Query("#{#n1ql.selectEntity} where `_type`=\"" + OutboxMessage.TYPE + "\" and `nextAttemptAt` <= $1" +
+            " ORDER BY `nextAttemptAt` LIMIT $2")
+    Flux<OutboxMessage> findDue(Instant now, int limit);
+}
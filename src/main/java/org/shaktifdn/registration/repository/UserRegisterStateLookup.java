@@ -0,0 +1,18 @@
+package org.shaktifdn.registration.repository;
+
+import org.shaktifdn.registration.model.UserRegisterState;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * Lookup of {@link UserRegisterState}s by Shakti ID through key-value gets on
+ * {@link UserRegisterState#key(String)} instead of N1QL queries.
+ */
+public interface UserRegisterStateLookup {
+
+    Mono<UserRegisterState> findByShaktiId(String shaktiId);
+
+    Flux<UserRegisterState> findAllByShaktiIdIn(Collection<String> shaktiIds);
+}
@@ -0,0 +1,97 @@
+package org.shaktifdn.registration.repository;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import org.springframework.data.couchbase.core.query.Query;
+import org.springframework.data.couchbase.core.query.QueryCriteria;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+/**
+ * Fetches states with a KV get on their Shakti ID based key. States written before the key scheme
+ * was introduced still have a random id; while {@code user.registration.state.legacy-lookup-enabled}
+ * is on, a KV miss falls back to a N1QL query on {@code shaktiId}. Those documents expire after two
+ * days, so the fallback can be switched off once the old documents are gone.
+ */
+@Slf4j
+public class UserRegisterStateLookupImpl implements UserRegisterStateLookup {
+
+    static final String METRIC_NAME = "registration.state.lookup";
+
+    private final ReactiveCouchbaseTemplate couchbaseTemplate;
+    private final MeterRegistry meterRegistry;
+    private final boolean legacyLookupEnabled;
+
+    public UserRegisterStateLookupImpl(
+            ReactiveCouchbaseTemplate couchbaseTemplate,
+            MeterRegistry meterRegistry,
+            @Value("${user.registration.state.legacy-lookup-enabled:true}") boolean legacyLookupEnabled
+    ) {
+        this.couchbaseTemplate = couchbaseTemplate;
+        this.meterRegistry = meterRegistry;
+        this.legacyLookupEnabled = legacyLookupEnabled;
+    }
+
+    @Override
+    public Mono<UserRegisterState> findByShaktiId(String shaktiId) {
+        return couchbaseTemplate
+                .findById(UserRegisterState.class)
+                .one(UserRegisterState.key(shaktiId))
+                .doOnNext(state -> count("kv", 1))
+                .switchIfEmpty(Mono.defer(() -> legacyLookupEnabled ? findLegacy(shaktiId) : Mono.empty()))
+                .switchIfEmpty(Mono.fromRunnable(() -> count("miss", 1)));
+    }
+
+    @Override
+    public Flux<UserRegisterState> findAllByShaktiIdIn(Collection<String> shaktiIds) {
+        List<String> keys = shaktiIds.stream().map(UserRegisterState::key).collect(Collectors.toList());
+        return Flux.<UserRegisterState>from(couchbaseTemplate.findById(UserRegisterState.class).all(keys))
+                .collectList()
+                .flatMapMany(found -> {
+                    count("kv", found.size());
+                    Set<String> missing = new HashSet<>(shaktiIds);
+                    found.forEach(state -> missing.remove(state.getShaktiId()));
+                    if (missing.isEmpty() || !legacyLookupEnabled) {
+                        count("miss", missing.size());
+                        return Flux.fromIterable(found);
+                    }
+                    return Flux.concat(Flux.fromIterable(found), findAllLegacy(missing));
+                });
+    }
+
+    private Mono<UserRegisterState> findLegacy(String shaktiId) {
+        log.debug("no keyed registration state for {}, falling back to query", shaktiId);
+        return couchbaseTemplate
+                .findByQuery(UserRegisterState.class)
+                .matching(new Query(QueryCriteria.where("shaktiId").is(shaktiId)).limit(1))
+                .first()
+                .doOnNext(state -> count("legacy", 1));
+    }
+
+    private Flux<UserRegisterState> findAllLegacy(Set<String> shaktiIds) {
+        log.debug("no keyed registration state for {}, falling back to query", shaktiIds);
+        return couchbaseTemplate
+                .findByQuery(UserRegisterState.class)
+                .matching(new Query(QueryCriteria.where("shaktiId").in(shaktiIds.toArray())))
+                .all()
+                .collectList()
+                .flatMapMany(found -> {
+                    count("legacy", found.size());
+                    count("miss", shaktiIds.size() - found.size());
+                    return Flux.fromIterable(found);
+                });
+    }
+
+    private void count(String source, int amount) {
+        meterRegistry.counter(METRIC_NAME, "source", source).increment(amount);
+    }
+}
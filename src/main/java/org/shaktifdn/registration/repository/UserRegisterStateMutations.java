@@ -0,0 +1,29 @@
+package org.shaktifdn.registration.repository;
+
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.shaktifdn.registration.model.UserRegisterStateType;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+
+/**
+ * In-place updates of a {@link UserRegisterState} that do not read and rewrite the whole document.
+ */
+public interface UserRegisterStateMutations {
+
+    /**
+     * Adds the state types to {@link UserRegisterState#getStateTypes()}; types already present and
+     * unknown states are ignored.
+     *
+     * @param id document id of the state
+     */
+    Mono<Void> addStateTypes(String id, Collection<UserRegisterStateType> stateTypes);
+
+    /**
+     * Adds the onboarding steps to {@link UserRegisterState#getCompletedSteps()}; steps already present
+     * and unknown states are ignored.
+     *
+     * @param id document id of the state
+     */
+    Mono<Void> addCompletedSteps(String id, Collection<String> steps);
+}
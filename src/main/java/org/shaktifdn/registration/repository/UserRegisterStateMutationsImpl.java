@@ -0,0 +1,57 @@
+package org.shaktifdn.registration.repository;
+
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.core.error.subdoc.PathExistsException;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.kv.MutateInSpec;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.shaktifdn.registration.model.UserRegisterStateType;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+/**
+ * Uses sub-document {@code arrayAddUnique} mutations, so concurrent consumers adding different types
+ * to the same state never overwrite each other and the document expiry is left untouched.
+ */
+@Slf4j
+public class UserRegisterStateMutationsImpl implements UserRegisterStateMutations {
+
+    private final ReactiveCouchbaseTemplate couchbaseTemplate;
+
+    public UserRegisterStateMutationsImpl(ReactiveCouchbaseTemplate couchbaseTemplate) {
+        this.couchbaseTemplate = couchbaseTemplate;
+    }
+
+    @Override
+    public Mono<Void> addStateTypes(String id, Collection<UserRegisterStateType> stateTypes) {
+        return addUnique(id, UserRegisterState.STATE_TYPES, stateTypes.stream().map(Enum::name).collect(Collectors.toList()));
+    }
+
+    @Override
+    public Mono<Void> addCompletedSteps(String id, Collection<String> steps) {
+        return addUnique(id, UserRegisterState.COMPLETED_STEPS, steps);
+    }
+
+    private Mono<Void> addUnique(String id, String path, Collection<String> values) {
+        ReactiveCollection collection = couchbaseTemplate.getCouchbaseClientFactory().getDefaultCollection().reactive();
+        // one mutation per value: arrayAddUnique fails the whole mutateIn when a value is already present
+        return Flux.fromIterable(values)
+                .concatMap(value -> collection
+                        .mutateIn(id, List.of(MutateInSpec.arrayAddUnique(path, value).createPath()))
+                        .onErrorResume(PathExistsException.class, e -> {
+                            log.debug("state {} already has {} in {}", id, value, path);
+                            return Mono.empty();
+                        }))
+                .then()
+                .onErrorResume(DocumentNotFoundException.class, e -> {
+                    log.debug("no registration state {}", id);
+                    return Mono.empty();
+                });
+    }
+}
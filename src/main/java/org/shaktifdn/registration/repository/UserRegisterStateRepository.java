@@ -1,29 +1,24 @@
 package org.shaktifdn.registration.repository;
 
 import org.shaktifdn.registration.model.UserRegisterState;
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
 import org.springframework.data.couchbase.repository.Query;
 import org.springframework.data.couchbase.repository.ReactiveCouchbaseRepository;
 import org.springframework.stereotype.Repository;
 import reactor.core.publisher.Flux;
-import reactor.core.publisher.Mono;
 
 import java.time.Instant;
 
 @Repository
-public interface UserRegisterStateRepository extends ReactiveCouchbaseRepository<UserRegisterState, String> {
-
-    @Query("#{#n1ql.selectEntity} where `_type`=\"" + UserRegisterState.TYPE + "\" and `shaktiId` = $1 LIMIT 1")
-    Mono<UserRegisterState> findByShaktiId(String shaktiId);
+public interface UserRegisterStateRepository extends ReactiveCouchbaseRepository<UserRegisterState, String>, UserRegisterStateLookup, UserRegisterStateMutations {
 
     /*
-     Below query requires this index
-     CREATE INDEX adv_userRegisterStateId_type ON `services`(`userRegisterStateId`) WHERE `_type` = 'UserRegisterStateDetail'
+     Keyset paged by document id. States written before stateTypes have none or only the later ones, they match
+     with what they have and get the types of their UserRegisterStateDetail documents added. Below query requires this index
+     CREATE INDEX adv_userRegisterState_incomplete ON `services`(`createdAt`, IFMISSING(ARRAY_LENGTH(`stateTypes`), 0), META().id) WHERE `_type` = 'UserRegisterState'
      */
-    @Query("SELECT DISTINCT META(u).id AS __id, META(u).cas AS __cas, u.* FROM #{#n1ql.bucket} u " +
-            " JOIN #{#n1ql.bucket} d ON META(u).id = d.userRegisterStateId AND d.`_type`=\"" + UserRegisterStateDetail.TYPE + "\" " +
-            " WHERE u.`_type`=\"" + UserRegisterState.TYPE + "\"  AND u.`lastModification` < $1" +
-            " GROUP BY u HAVING COUNT(DISTINCT d.stateType) < $2")
-    Flux<UserRegisterState> findByIncomplete(Instant modifiedBefore, Integer countOfTypes);
+    @Query("#{#n1ql.selectEntity} WHERE `_type`=\"" + UserRegisterState.TYPE + "\" AND `createdAt` < $1" +
+            " AND IFMISSING(ARRAY_LENGTH(`" + UserRegisterState.STATE_TYPES + "`), 0) < $2 AND META().id > $3" +
+            " ORDER BY META().id LIMIT $4")
+    Flux<UserRegisterState> findIncomplete(Instant createdBefore, Integer countOfTypes, String afterId, int limit);
 
 }
\ No newline at end of file
@@ -0,0 +1,45 @@
+package org.shaktifdn.registration.response;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+import lombok.Builder;
+import lombok.Data;
+import lombok.extern.jackson.Jacksonized;
+import org.shaktifdn.registration.model.UserRegisterStateType;
+
+import java.time.Instant;
+import java.util.Set;
+
+/**
+ * Progress of an asynchronous onboarding: the state of the job, then the registration stages
+ * completed so far for the onboarded Shakti ID.
+ */
+@Data
+@Builder(toBuilder = true)
+@Jacksonized
+public class OnboardingJobStatus {
+
+    private String jobId;
+    private State state;
+    /**
+     * Shakti ID of the onboarded user, known once the job completed
+     */
+    private String shaktiId;
+    /**
+     * why the job failed
+     */
+    private String message;
+    private Instant acceptedAt;
+    private Set<UserRegisterStateType> stateTypes;
+
+    @JsonIgnore
+    public boolean isFinished() {
+        return state == State.COMPLETED || state == State.FAILED;
+    }
+
+    public enum State {
+        ACCEPTED,
+        RUNNING,
+        COMPLETED,
+        FAILED
+    }
+}
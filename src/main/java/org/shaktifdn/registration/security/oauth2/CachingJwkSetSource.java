@@ -0,0 +1,145 @@
+package org.shaktifdn.registration.security.oauth2;
+
+import com.nimbusds.jose.jwk.JWK;
+import com.nimbusds.jose.jwk.JWKMatcher;
+import com.nimbusds.jose.jwk.JWKSelector;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.shaktifdn.registration.config.AuthProperties;
+import org.springframework.core.ParameterizedTypeReference;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import javax.annotation.PostConstruct;
+import java.text.ParseException;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Function;
+
+/**
+ * JWK source for {@code NimbusReactiveJwtDecoder} that serves keys from memory. The JWK set is fetched
+ * once at startup and then periodically in the background.
+ * <p>
+ * A token signed with a key that is not known yet triggers a fetch, which concurrent callers share; such
+ * fetches happen at most once per {@link AuthProperties.Jwks#getMinRefreshInterval()}, so tokens with
+ * made-up key ids cannot flood the identity provider.
+ */
+@Slf4j
+public class CachingJwkSetSource implements Function<SignedJWT, Flux<JWK>> {
+
+    static final String METRIC_NAME = "registration.auth.jwks.refresh";
+    private static final String OPENID_CONFIGURATION = "/.well-known/openid-configuration";
+    private static final String JWKS_URI = "jwks_uri";
+
+    private final WebClient webClient;
+    private final AuthProperties.Jwks settings;
+    private final MeterRegistry meterRegistry;
+    private final Mono<String> jwkSetUri;
+    private final AtomicReference<JWKSet> jwkSet = new AtomicReference<>(new JWKSet());
+    private final AtomicReference<Mono<JWKSet>> refreshing = new AtomicReference<>();
+    private volatile Instant lastRefresh = Instant.EPOCH;
+
+    public CachingJwkSetSource(
+            String issuerUri,
+            WebClient webClient,
+            AuthProperties.Jwks settings,
+            MeterRegistry meterRegistry
+    ) {
+        this.webClient = webClient;
+        this.settings = settings;
+        this.meterRegistry = meterRegistry;
+        this.jwkSetUri = StringUtils.isNotBlank(settings.getJwkSetUri())
+                ? Mono.just(settings.getJwkSetUri())
+                : discover(issuerUri);
+    }
+
+    @Override
+    public Flux<JWK> apply(SignedJWT jwt) {
+        JWKMatcher matcher = JWKMatcher.forJWSHeader(jwt.getHeader());
+        if (matcher == null) {
+            return Flux.empty();
+        }
+        JWKSelector selector = new JWKSelector(matcher);
+        var keys = selector.select(jwkSet.get());
+        if (!keys.isEmpty()) {
+            return Flux.fromIterable(keys);
+        }
+        if (refreshing.get() == null
+                && Duration.between(lastRefresh, Instant.now()).compareTo(settings.getMinRefreshInterval()) < 0) {
+            log.debug("no key for kid {}, keys were refreshed at {}", jwt.getHeader().getKeyID(), lastRefresh);
+            return Flux.empty();
+        }
+        log.info("no key for kid {}, refreshing keys", jwt.getHeader().getKeyID());
+        return refresh().flatMapIterable(selector::select);
+    }
+
+    @PostConstruct
+    public void prefetch() {
+        refresh().subscribe(keys -> { }, e -> log.warn("could not prefetch JWK set, fetching on first request"));
+    }
+
+    @Scheduled(
+            fixedDelayString = "${registration.auth.jwks.refresh-interval:PT5M}",
+            initialDelayString = "${registration.auth.jwks.refresh-interval:PT5M}"
+    )
+    public void refreshCron() {
+        refresh().subscribe(keys -> { }, e -> log.warn("could not refresh JWK set, keeping {} known keys", jwkSet.get().size()));
+    }
+
+    /**
+     * Fetches the JWK set, joining a fetch already in flight. The known keys are kept when it fails.
+     */
+    public Mono<JWKSet> refresh() {
+        return Mono.defer(() -> refreshing.updateAndGet(current -> current != null ? current : newRefresh()));
+    }
+
+    private Mono<JWKSet> newRefresh() {
+        AtomicReference<Mono<JWKSet>> self = new AtomicReference<>();
+        Mono<JWKSet> refresh = jwkSetUri
+                .flatMap(uri -> webClient.get().uri(uri).retrieve().bodyToMono(String.class))
+                .map(CachingJwkSetSource::parse)
+                .doOnSubscribe(subscription -> lastRefresh = Instant.now())
+                .doOnNext(keys -> {
+                    jwkSet.set(keys);
+                    log.info("fetched JWK set with {} keys", keys.size());
+                    meterRegistry.counter(METRIC_NAME, "result", "success").increment();
+                })
+                .doOnError(e -> {
+                    log.error("error while fetching JWK set", e);
+                    meterRegistry.counter(METRIC_NAME, "result", "failed").increment();
+                })
+                // cleared before the result is delivered, so a caller seeing it can start the next refresh
+                .doOnTerminate(() -> refreshing.compareAndSet(self.get(), null))
+                .cache();
+        self.set(refresh);
+        return refresh;
+    }
+
+    private Mono<String> discover(String issuerUri) {
+        // only a found location is kept, a failed discovery is retried with the next fetch
+        return webClient
+                .get()
+                .uri(StringUtils.removeEnd(issuerUri, "/") + OPENID_CONFIGURATION)
+                .retrieve()
+                .bodyToMono(new ParameterizedTypeReference<Map<String, Object>>() {
+                })
+                .flatMap(configuration -> Mono.justOrEmpty((String) configuration.get(JWKS_URI)))
+                .switchIfEmpty(Mono.error(() -> new IllegalStateException("no " + JWKS_URI + " published by " + issuerUri)))
+                .cache(uri -> Duration.ofMillis(Long.MAX_VALUE), e -> Duration.ZERO, () -> Duration.ZERO);
+    }
+
+    private static JWKSet parse(String body) {
+        try {
+            return JWKSet.parse(body);
+        } catch (ParseException e) {
+            throw new IllegalStateException("invalid JWK set: " + e.getMessage(), e);
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package org.shaktifdn.registration.security.oauth2;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.shaktifdn.registration.cache.ReactiveCaches;
+import org.shaktifdn.registration.config.AuthProperties;
+import org.shaktifdn.registration.security.SecurityUtils;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.time.Instant;
+
+/**
+ * Keeps decoded and validated tokens for a short time, keyed by a hash of the token, so a bearer token
+ * sent again skips parsing, signature verification and validation. Entries never outlive the token and
+ * failed decodes are not kept.
+ */
+public class CachingReactiveJwtDecoder implements ReactiveJwtDecoder {
+
+    private final ReactiveJwtDecoder delegate;
+    private final AsyncCache<String, Jwt> validated;
+
+    public CachingReactiveJwtDecoder(ReactiveJwtDecoder delegate, AuthProperties.Jwks settings, MeterRegistry meterRegistry) {
+        this.delegate = delegate;
+        long ttl = settings.getValidatedTokenTtl().toNanos();
+        this.validated = Caffeine.newBuilder()
+                .maximumSize(settings.getValidatedTokenMaximumSize())
+                .expireAfter(new Expiry<String, Jwt>() {
+                    @Override
+                    public long expireAfterCreate(String key, Jwt jwt, long currentTime) {
+                        if (jwt.getExpiresAt() == null) {
+                            return ttl;
+                        }
+                        return Math.max(0, Math.min(ttl, Duration.between(Instant.now(), jwt.getExpiresAt()).toNanos()));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, jwt, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, Jwt jwt, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+        CaffeineCacheMetrics.monitor(meterRegistry, validated.synchronous(), "validatedToken");
+    }
+
+    @Override
+    public Mono<Jwt> decode(String token) {
+        return ReactiveCaches
+                .get(validated, SecurityUtils.tokenHash(token), key -> delegate.decode(token))
+                .filter(jwt -> jwt.getExpiresAt() == null || jwt.getExpiresAt().isAfter(Instant.now()))
+                // an entry read right at expiry is checked again, so the delegate rejects the token
+                .switchIfEmpty(Mono.defer(() -> delegate.decode(token)));
+    }
+}
@@ -0,0 +1,179 @@
+package org.shaktifdn.registration.service;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+import org.gluu.oxtrust.model.scim2.user.UserResource;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.GluuProperties;
+import org.shaktifdn.registration.exception.BadRequestException;
+import org.shaktifdn.registration.exception.ConflictRecordsException;
+import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
+import org.shaktifdn.registration.exception.RecordNotFoundException;
+import org.shaktifdn.registration.exception.ShaktiWebClientException;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.request.TokenRequest;
+import org.shaktifdn.registration.response.TokenResponse;
+import org.shaktifdn.registration.util.Utils;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import javax.ws.rs.core.Response;
+
+import static org.shaktifdn.registration.util.Utils.handleExternalServiceCallException;
+
+/**
+ * Token and user handling shared by the {@link GluuServiceApi} implementations; they differ in how the
+ * SCIM calls are made.
+ */
+@Slf4j
+@CircuitBreaker(name = "gluuService")
+public abstract class AbstractGluuService implements GluuServiceApi {
+
+    public static final String GLUU = "gluu";
+    public static final String GLUU_URL_AUTH_TKEN = "/oxauth/restv1/token";
+    public static final String GLUU_URL_IDENTITY = "/scim/restv1";
+    public static final String GLUU_URL_IDENTITY2 = "/identity/restv1";
+    protected static final String USER_NAME_EQ = "userName eq \"";
+    protected static final String USER_ATTRIBUTE_KEY = "urn:ietf:params:scim:schemas:extension:gluu:2.0:User";
+    protected static final String ATTRIBUTE_NOT_FOUND_FOR_S_AS_USER_NAME = "attribute not found for %s as user name";
+    protected static final String NO_RECORD_FOUND_FOR_S_AS_USER_NAME = "No record found for %s as user name";
+    private static final String GRANT_TYPE = "grant_type";
+    private static final String SCOPE = "scope";
+    private static final String USERNAME = "username";
+
+    protected final GluuProperties gluuProperties;
+    protected final WebClient extWebClient;
+
+    protected AbstractGluuService(
+            GluuProperties gluuProperties,
+            WebClient.Builder extWebClient,
+            WebClientRegistry webClientRegistry
+    ) {
+        this.gluuProperties = gluuProperties;
+        this.extWebClient = webClientRegistry.client(GLUU, extWebClient);
+    }
+
+    /**
+     * @return the SCIM response to the creation of the user
+     */
+    protected abstract Mono<Response> createScimUser(UserResource user);
+
+    /**
+     * @return the SCIM response to the removal of the user with the given SCIM id
+     */
+    protected abstract Mono<Response> deleteScimUser(String id);
+
+    @Override
+    public Mono<TokenResponse> getToken(TokenRequest tokenRequest) {
+        log.info("Gluu getToken request for user name : {}", tokenRequest.getUsername());
+        return generateToken(
+                Utils.encodeBase64(gluuProperties.getGluuClientId(), gluuProperties.getGluuClientSecret()),
+                gluuProperties.getGluuUri() + GLUU_URL_AUTH_TKEN,
+                tokenRequest,
+                TokenResponse.class
+        ).onErrorResume(e -> {
+            if (e.getMessage().contains("" + HttpStatus.UNAUTHORIZED.value())) {
+                return Mono.error(new BadRequestException("incorrect password for user name :" + tokenRequest.getUsername()));
+            } else {
+                log.error("Gluu get token failed for user name {} : ", tokenRequest.getUsername(), e);
+                return handleExternalServiceCallException(e, "Error on Glue getToken service call " + e.getMessage());
+            }
+        });
+    }
+
+    @Override
+    public Mono<Response> createUser(OnboardShaktiUserRequest onboardShakti, String ipAddress) {
+        log.info("Gluu createUser request: {}", onboardShakti.getEmail());
+
+        return Mono.defer(() -> createScimUser(Utils.createUserModel(onboardShakti, ipAddress)))
+                .flatMap(response -> {
+                    log.info("created user on gluu: user email id {}, status {}", onboardShakti.getEmail(), response.getStatus());
+                    HttpStatus status = HttpStatus.resolve(response.getStatus());
+                    if (status != null && status.is5xxServerError())
+                        return Mono.error(ExternalServiceDependencyFailure
+                                .builder()
+                                .httpStatus(status)
+                                .message(Utils.PLEASE_TRY_AGAIN_LATER)
+                                .build());
+                    else if (response.getStatus() != HttpStatus.CREATED.value())
+                        return Mono.error(new ShaktiWebClientException(HttpStatus.valueOf(response.getStatus()) + ""
+                                + " Response occurs from " + gluuProperties.getGluuUri() + GLUU_URL_IDENTITY2));
+                    else
+                        return Mono.just(response);
+                })
+                .onErrorResume(e -> {
+                    log.error("Gluu createUser error for user email :{}  ", onboardShakti.getEmail(), e);
+                    if (e.getMessage().contains(HttpStatus.CONFLICT.value() + "")) {
+                        return Mono.error(new ConflictRecordsException(onboardShakti.getEmail() + " is already registered in system"));
+                    } else {
+                        return handleExternalServiceCallException(e, "Error on Shakti create user service call " + e.getMessage());
+                    }
+                });
+    }
+
+    @Override
+    public Mono<Response> deleteUser(String email) {
+        log.info("Gluu deleteUser request: {}", email);
+
+        return getUser(email)
+                .flatMap(fetchedUser -> deleteScimUser(fetchedUser.getId()))
+                .flatMap(response -> {
+                    log.info("delete user on gluu: email {}, status {}", email, response.getStatus());
+                    if (response.getStatus() != HttpStatus.NO_CONTENT.value() &&
+                            response.getStatus() != HttpStatus.NOT_FOUND.value()) {
+                        return Mono.error(new ShaktiWebClientException("deleting user in Shakti failed"));
+                    } else {
+                        return Mono.just(response);
+                    }
+                })
+                .onErrorResume(e -> {
+                    if (e instanceof RecordNotFoundException) {
+                        return Mono.just(Response.ok().build());
+                    }
+                    log.error("Gluu deleteUser error for user email :{}  ", email, e);
+                    return handleExternalServiceCallException(e, "Error on Shakti delete user service call " + e.getMessage());
+                });
+    }
+
+    @Override
+    public Mono<Boolean> isEmailRegistered(String email) {
+        return getUser(email)
+                .map(userResource -> true)
+                .switchIfEmpty(Mono.just(false))
+                .onErrorResume(throwable -> {
+                    if (throwable instanceof RecordNotFoundException) {
+                        return Mono.just(false);
+                    }
+                    log.error("Gluu checkExistingUser error for user name {}", email, throwable);
+                    return handleExternalServiceCallException(throwable, "Error on Shakti isEmailRegistered service call " + throwable.getMessage());
+                });
+    }
+
+    @Override
+    @SuppressWarnings("SameParameterValue")
+    public <T> Mono<T> generateToken(String basicAuthToken, String url, TokenRequest tokenRequest, Class<T> response) {
+        MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+        formData.add(GRANT_TYPE, tokenRequest.getGrant_type());
+        formData.add(SCOPE, tokenRequest.getScope());
+        formData.add(USERNAME, tokenRequest.getUsername());
+        formData.add("password", tokenRequest.getPassword());
+
+        log.info("HTTP Post request url: {}", url);
+        log.info("HTTP Post request data: grant_type {} , scope {} , username {} ", formData.get(GRANT_TYPE), formData.get(SCOPE), formData.get(USERNAME));
+
+        return extWebClient
+                .post()
+                .uri(url)
+                .header(HttpHeaders.AUTHORIZATION, "Basic " + basicAuthToken)
+                .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_FORM_URLENCODED_VALUE)
+                .body(BodyInserters.fromValue(formData))
+                .retrieve()
+                .bodyToMono(response);
+    }
+}
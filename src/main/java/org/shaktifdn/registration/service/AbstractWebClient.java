@@ -1,8 +1,10 @@
 package org.shaktifdn.registration.service;
 
 
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.springframework.core.ParameterizedTypeReference;
 import org.springframework.http.HttpHeaders;
@@ -11,16 +13,37 @@ import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 
 import java.util.function.Consumer;
+import java.util.function.Supplier;
 
 @Slf4j
-@RequiredArgsConstructor
 public abstract class AbstractWebClient {
 
-    protected final WebClient.Builder loadBalanced;
+    protected final WebClient loadBalanced;
     protected final ServiceProperties serviceProperties;
+    protected final WebClientRegistry webClientRegistry;
+    protected final RequestCoalescer requestCoalescer;
+    protected final RequestHedger requestHedger;
+
+    /**
+     * @param downstream name of the called service, used to look up its client settings
+     */
+    protected AbstractWebClient(
+            String downstream,
+            WebClient.Builder loadBalanced,
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger
+    ) {
+        this.loadBalanced = webClientRegistry.client(downstream, loadBalanced);
+        this.serviceProperties = serviceProperties;
+        this.webClientRegistry = webClientRegistry;
+        this.requestCoalescer = requestCoalescer;
+        this.requestHedger = requestHedger;
+    }
 
     protected <T> Mono<T> get(String url, Consumer<HttpHeaders> headers, Class<T> response) {
-        return loadBalanced.build()
+        return loadBalanced
                 .get()
                 .uri(url)
                 .headers(headers)
@@ -28,7 +51,7 @@ public abstract class AbstractWebClient {
                 .bodyToMono(response);
     }
     protected <T> Mono<T> get(String url,  ParameterizedTypeReference<T> response) {
-        return loadBalanced.build()
+        return loadBalanced
                 .get()
                 .uri(url)
                 .retrieve()
@@ -39,8 +62,8 @@ public abstract class AbstractWebClient {
         return post(loadBalanced, url, request, response);
     }
 
-    protected <S, T> Mono<T> post(WebClient.Builder webClientBuilder, String url, S request, Class<T> response) {
-        return webClientBuilder.build()
+    protected <S, T> Mono<T> post(WebClient webClient, String url, S request, Class<T> response) {
+        return webClient
                 .post()
                 .uri(url)
                 .body(BodyInserters.fromValue(request))
@@ -48,4 +71,25 @@ public abstract class AbstractWebClient {
                 .bodyToMono(response);
     }
 
+    /**
+     * Shares one upstream call between concurrent callers of the same endpoint with the same key,
+     * when coalescing is enabled for that endpoint.
+     *
+     * @param endpoint endpoint id, as listed under {@code clients.coalescing.endpoints}
+     * @param key      everything that makes the request distinct
+     */
+    protected <T> Mono<T> coalesce(String endpoint, String key, Supplier<Mono<T>> call) {
+        return requestCoalescer.coalesce(endpoint, key, call);
+    }
+
+    /**
+     * Sends the call a second time when the first one is slow, when hedging is enabled for that
+     * endpoint. Only for calls that are safe to repeat.
+     *
+     * @param endpoint endpoint id, as listed under {@code clients.hedging.endpoints}
+     */
+    protected <T> Mono<T> hedge(String endpoint, Supplier<Mono<T>> call) {
+        return requestHedger.hedge(endpoint, call);
+    }
+
 }
@@ -3,6 +3,9 @@ package org.shaktifdn.registration.service;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.response.ShaktiResponse;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -21,24 +24,30 @@ import static org.shaktifdn.registration.util.Utils.handleExternalServiceCallExc
 public class BizVaultService extends AbstractWebClient {
 
     public static final String BIZVAULTS_EMAIL_REGISTRATION_STATUS = "/bizvaults/email/registration/status";
+    public static final String IS_EMAIL_REGISTERED_ENDPOINT = "bizVaultService.isEmailRegistered";
 
     public BizVaultService(
             @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
-            ServiceProperties serviceProperties
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger
     ) {
-        super(loadBalanced, serviceProperties);
+        super("bizVaultService", loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger);
     }
 
     public Mono<Boolean> isEmailRegistered(String email) {
         log.info("checking email registration status for email: {}", email);
 
-        return loadBalanced.build()
-                .get()
-                .uri(serviceProperties.getBizVaultService() +
-                        BIZVAULTS_EMAIL_REGISTRATION_STATUS + "?email=" + email.toLowerCase())
-                .retrieve()
-                .bodyToMono(new ParameterizedTypeReference<ShaktiResponse<LinkedHashMap<String, Object>>>() {
-                })
+        return hedge(
+                IS_EMAIL_REGISTERED_ENDPOINT,
+                () -> get(
+                        serviceProperties.getBizVaultService() +
+                                BIZVAULTS_EMAIL_REGISTRATION_STATUS + "?email=" + email.toLowerCase(),
+                        new ParameterizedTypeReference<ShaktiResponse<LinkedHashMap<String, Object>>>() {
+                        }
+                )
+        )
                 .map(response -> response.getStatus() && (Boolean) response.getData().get("bizVaultRegistered"))
                 .onErrorResume(e -> {
                     log.error("Error checking BizVault email status", e);
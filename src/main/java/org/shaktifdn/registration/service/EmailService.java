@@ -3,6 +3,10 @@ package org.shaktifdn.registration.service;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.shaktifdn.registration.cache.VerifiedContactCache;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.exception.*;
 import org.shaktifdn.registration.request.SendEmailOtpRequest;
@@ -24,6 +28,7 @@ public class EmailService extends AbstractWebClient {
     public static final String EMAIL_OTP_REQUEST = "/otp/request";
     public static final String EMAIL_OTP_VERIFY = "/otp/verify";
     public static final String EMAIL_OTP_INQUIRY = "/otp/inquire";
+    public static final String IS_OTP_VERIFIED_ENDPOINT = "emailService.isOtpVerified";
     private static final String RETRIES_LIMIT_REACHED = "Retries limit reached";
 
     private static final String EMAIL_BLOCKED = "Your email is blocked due to multiple failed attempts. Please try after sometime.";
@@ -34,11 +39,18 @@ public class EmailService extends AbstractWebClient {
     private static final String IS_NOT_A_VERIFIED_EMAIL = " is not a verified Email.";
     private static final String THERE_IS_SOME_ERROR_TO_SEND_OTP_TO_EMAIL = "There is some error to send otp to email ";
 
+    private final VerifiedContactCache verifiedContactCache;
+
     public EmailService(
             @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
-            ServiceProperties serviceProperties
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger,
+            VerifiedContactCache verifiedContactCache
     ) {
-        super(loadBalanced, serviceProperties);
+        super("emailService", loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger);
+        this.verifiedContactCache = verifiedContactCache;
     }
 
     public Mono<EmailServiceResponse> sendOtp(String email, String requestedFlow) {
@@ -110,6 +122,9 @@ public class EmailService extends AbstractWebClient {
         return post(serviceProperties.getEmailService() + EMAIL_OTP_VERIFY,
                 otpRequest, EmailServiceResponse.class)
                 .flatMap(verificationResponse -> getEmailVerificationResponse(otpRequest, verificationResponse))
+                .flatMap(verificationResponse -> verifiedContactCache
+                        .emailVerified(email, requestedFlow)
+                        .thenReturn(verificationResponse))
                 .onErrorResume(e -> {
                     log.error("error on email verify otp for email: {}", email, e);
                     return handleEmailOtpVerifyFailure(email, e);
@@ -167,10 +182,17 @@ public class EmailService extends AbstractWebClient {
                 .build();
         log.info("isOtpVerified request for user email id {}", otpRequest.getEmail());
 
-        return post(
-                serviceProperties.getEmailService() + EMAIL_OTP_INQUIRY,
-                otpRequest,
-                EmailServiceResponse.class
+        return coalesce(
+                IS_OTP_VERIFIED_ENDPOINT,
+                otpRequest.getEmail() + ":" + requestedFlow,
+                () -> hedge(
+                        IS_OTP_VERIFIED_ENDPOINT,
+                        () -> post(
+                                serviceProperties.getEmailService() + EMAIL_OTP_INQUIRY,
+                                otpRequest,
+                                EmailServiceResponse.class
+                        )
+                )
         ).flatMap(verificationResponse -> {
             log.info(
                     "Email: {}, requestedFlow: {} - response: {}",
@@ -0,0 +1,81 @@
+package org.shaktifdn.registration.service;
+
+import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
+import lombok.extern.slf4j.Slf4j;
+import org.gluu.oxtrust.model.scim2.user.UserResource;
+import org.shaktifdn.registration.client.Deadline;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.GluuProperties;
+import org.shaktifdn.registration.exception.RecordNotFoundException;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.context.annotation.Profile;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import javax.ws.rs.core.Response;
+import java.util.concurrent.TimeoutException;
+
+import static java.lang.String.format;
+
+/**
+ * {@link GluuServiceApi} backed by the non-blocking {@link GluuScimClient}; enabled with the
+ * {@code reactiveScim} profile in place of the RESTEasy based {@link GluuService}.
+ */
+@Service
+@Slf4j
+@CircuitBreaker(name = "gluuService")
+@Profile("reactiveScim")
+public class GluuReactiveService extends AbstractGluuService {
+
+    private final GluuScimClient client;
+
+    public GluuReactiveService(
+            GluuProperties gluuProperties,
+            @Qualifier("reactiveScimClient") GluuScimClient client,
+            @Qualifier("extWebClient") WebClient.Builder extWebClient,
+            WebClientRegistry webClientRegistry
+    ) {
+        super(gluuProperties, extWebClient, webClientRegistry);
+        this.client = client;
+    }
+
+    @Override
+    protected Mono<Response> createScimUser(UserResource user) {
+        return client.createUser(user);
+    }
+
+    @Override
+    protected Mono<Response> deleteScimUser(String id) {
+        return client.deleteUser(id);
+    }
+
+    @Override
+    public Mono<UserResource> getUser(String userName) {
+        String filter = USER_NAME_EQ + userName + "\"";
+        return client.searchUsers(filter, 1, 1)
+                .transform(search -> Deadline.timeout(
+                        search,
+                        SEARCH_USER_TIMEOUT,
+                        () -> new TimeoutException("Searching users timed out for user: " + userName)
+                ))
+                .map(resources -> {
+                    if (resources.isEmpty()) {
+                        throw new RecordNotFoundException(format(NO_RECORD_FOUND_FOR_S_AS_USER_NAME, userName));
+                    }
+                    log.info("Length of fetched users list size is in search user gluu flow : {} and filter: {} ", resources.size(), filter);
+                    UserResource fetchedUser = resources.get(0);
+                    if (!fetchedUser.getCustomAttributes()
+                            .containsKey(USER_ATTRIBUTE_KEY)) {
+                        throw new RecordNotFoundException(format(ATTRIBUTE_NOT_FOUND_FOR_S_AS_USER_NAME, userName));
+                    }
+                    return fetchedUser;
+                });
+    }
+
+    @Override
+    public boolean checkSearchUserResponseStatusCode(Response response) {
+        return response.getStatus() == HttpStatus.OK.value();
+    }
+}
@@ -0,0 +1,168 @@
+package org.shaktifdn.registration.service;
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.DeserializationFeature;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import lombok.extern.slf4j.Slf4j;
+import org.gluu.oxtrust.model.scim2.user.UserResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import javax.ws.rs.core.Response;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * Non-blocking SCIM 2.0 client for the Gluu identity API. Covers the subset of
+ * {@link gluu.scim2.client.rest.ClientSideService} used by the registration flow (create, search and
+ * delete users) on the WebClient event loop instead of a thread per call, and handles the UMA
+ * protection of the SCIM endpoints through {@link GluuUmaAuthenticator}.
+ */
+@Slf4j
+public class GluuScimClient {
+
+    static final String SCIM_USERS = "/scim/v2/Users";
+    static final MediaType SCIM_JSON = MediaType.parseMediaType("application/scim+json");
+    private static final String RESOURCES = "Resources";
+    private static final String CUSTOM_ATTRIBUTES = "customAttributes";
+    private static final String EXTENSION_PREFIX = "urn:";
+
+    private final WebClient webClient;
+    private final String usersUrl;
+    private final GluuUmaAuthenticator authenticator;
+    private final ObjectMapper objectMapper = new ObjectMapper()
+            .setSerializationInclusion(JsonInclude.Include.NON_NULL)
+            .configure(DeserializationFeature.FAIL_ON_UNKNOWN_PROPERTIES, false);
+
+    public GluuScimClient(WebClient webClient, String identityUrl, GluuUmaAuthenticator authenticator) {
+        this.webClient = webClient;
+        this.usersUrl = identityUrl + SCIM_USERS;
+        this.authenticator = authenticator;
+    }
+
+    /**
+     * @return a status-only response mirroring what the blocking client returns for a create
+     */
+    public Mono<Response> createUser(UserResource user) {
+        return Mono.fromCallable(() -> write(user))
+                .flatMap(body -> exchange(
+                        token -> webClient
+                                .post()
+                                .uri(usersUrl)
+                                .headers(headers -> bearer(headers, token))
+                                .contentType(SCIM_JSON)
+                                .accept(SCIM_JSON, MediaType.APPLICATION_JSON)
+                                .bodyValue(body),
+                        this::toStatusResponse
+                ));
+    }
+
+    public Mono<List<UserResource>> searchUsers(String filter, int startIndex, int count) {
+        return exchange(
+                token -> webClient
+                        .get()
+                        .uri(usersUrl + "?filter={filter}&startIndex={startIndex}&count={count}", filter, startIndex, count)
+                        .headers(headers -> bearer(headers, token))
+                        .accept(SCIM_JSON, MediaType.APPLICATION_JSON),
+                this::toSearchResult
+        );
+    }
+
+    public Mono<Response> deleteUser(String id) {
+        return exchange(
+                token -> webClient
+                        .delete()
+                        .uri(usersUrl + "/{id}", id)
+                        .headers(headers -> bearer(headers, token)),
+                this::toStatusResponse
+        );
+    }
+
+    private <T> Mono<T> exchange(
+            Function<String, WebClient.RequestHeadersSpec<?>> request,
+            Function<ClientResponse, Mono<T>> handler
+    ) {
+        return Mono.defer(() -> exchange(request, handler, authenticator.currentToken(), true));
+    }
+
+    private <T> Mono<T> exchange(
+            Function<String, WebClient.RequestHeadersSpec<?>> request,
+            Function<ClientResponse, Mono<T>> handler,
+            String token,
+            boolean challengeAllowed
+    ) {
+        return request.apply(token).exchangeToMono(response -> {
+            String challenge = response.headers().asHttpHeaders().getFirst(HttpHeaders.WWW_AUTHENTICATE);
+            if (challengeAllowed
+                    && response.statusCode() == HttpStatus.UNAUTHORIZED
+                    && authenticator.isUmaChallenge(challenge)) {
+                return response.releaseBody()
+                        .then(authenticator.authorize(challenge))
+                        .flatMap(rpt -> exchange(request, handler, rpt, false));
+            }
+            return handler.apply(response);
+        });
+    }
+
+    private Mono<List<UserResource>> toSearchResult(ClientResponse response) {
+        if (response.statusCode() != HttpStatus.OK) {
+            log.info("Gluu SCIM searchUsers response status code {}", response.rawStatusCode());
+            return response.createException().flatMap(Mono::error);
+        }
+        return response.bodyToMono(String.class).map(this::readResources);
+    }
+
+    private Mono<Response> toStatusResponse(ClientResponse response) {
+        return response.releaseBody().then(Mono.fromCallable(() -> Response.status(response.rawStatusCode()).build()));
+    }
+
+    private String write(UserResource user) throws JsonProcessingException {
+        ObjectNode node = objectMapper.valueToTree(user);
+        node.remove(CUSTOM_ATTRIBUTES);
+        for (Map.Entry<String, Object> extension : user.getCustomAttributes().entrySet()) {
+            node.set(extension.getKey(), objectMapper.valueToTree(extension.getValue()));
+        }
+        return objectMapper.writeValueAsString(node);
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<UserResource> readResources(String body) {
+        try {
+            JsonNode resources = objectMapper.readTree(body).path(RESOURCES);
+            List<UserResource> users = new ArrayList<>(resources.size());
+            for (JsonNode resource : resources) {
+                UserResource user = objectMapper.treeToValue(resource, UserResource.class);
+                Iterator<Map.Entry<String, JsonNode>> fields = resource.fields();
+                while (fields.hasNext()) {
+                    Map.Entry<String, JsonNode> field = fields.next();
+                    if (field.getKey().startsWith(EXTENSION_PREFIX) && field.getValue().isObject()) {
+                        user.getCustomAttributes().putIfAbsent(
+                                field.getKey(),
+                                objectMapper.convertValue(field.getValue(), Map.class)
+                        );
+                    }
+                }
+                users.add(user);
+            }
+            return users;
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException("Unable to read SCIM search response", e);
+        }
+    }
+
+    private static void bearer(HttpHeaders headers, String token) {
+        if (token != null) {
+            headers.setBearerAuth(token);
+        }
+    }
+}
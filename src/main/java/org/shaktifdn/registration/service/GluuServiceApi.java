@@ -7,8 +7,15 @@ import org.shaktifdn.registration.response.TokenResponse;
 import reactor.core.publisher.Mono;
 
 import javax.ws.rs.core.Response;
+import java.time.Duration;
 
 public interface GluuServiceApi {
+
+    /**
+     * timeout of a user search made outside of a request deadline
+     */
+    Duration SEARCH_USER_TIMEOUT = Duration.ofSeconds(5);
+
     Mono<TokenResponse> getToken(TokenRequest tokenRequest);
 
     Mono<Response> createUser(OnboardShaktiUserRequest onboardShakti, String ipAddress);
@@ -6,6 +6,8 @@ import lombok.extern.slf4j.Slf4j;
 import org.gluu.oxtrust.model.scim2.BaseScimResource;
 import org.gluu.oxtrust.model.scim2.ListResponse;
 import org.gluu.oxtrust.model.scim2.user.UserResource;
+import org.shaktifdn.registration.client.Deadline;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.config.GluuProperties;
 import org.shaktifdn.registration.exception.BadRequestException;
 import org.shaktifdn.registration.exception.ConflictRecordsException;
@@ -29,7 +31,6 @@ import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
 import javax.ws.rs.core.Response;
-import java.time.Duration;
 import java.util.List;
 import java.util.concurrent.TimeoutException;
 
@@ -55,18 +56,19 @@ public class GluuServiceDev implements GluuServiceApi {
     private final GluuProperties gluuProperties;
     private final ClientSideService client;
     private final Scheduler scheduler;
-    private final WebClient.Builder extWebClient;
+    private final WebClient extWebClient;
 
     public GluuServiceDev(
             GluuProperties gluuProperties,
             Scheduler scheduler,
             @Qualifier("scimClientDev") ClientSideService client,
-            @Qualifier("extWebClient") WebClient.Builder extWebClient
+            @Qualifier("extWebClient") WebClient.Builder extWebClient,
+            WebClientRegistry webClientRegistry
     ) {
         this.gluuProperties = gluuProperties;
         this.client = client;
         this.scheduler = scheduler;
-        this.extWebClient = extWebClient;
+        this.extWebClient = webClientRegistry.client(GluuService.GLUU, extWebClient);
     }
 
     @Override
@@ -163,7 +165,7 @@ public class GluuServiceDev implements GluuServiceApi {
         log.info("HTTP Post request url: {}", url);
         log.info("HTTP Post request data: grant_type {} , scope {} , username {} ", formData.get(GRANT_TYPE), formData.get(SCOPE), formData.get(USERNAME));
 
-        return extWebClient.build()
+        return extWebClient
                 .post()
                 .uri(url)
                 .header(HttpHeaders.AUTHORIZATION, "Basic " + basicAuthToken)
@@ -179,7 +181,11 @@ public class GluuServiceDev implements GluuServiceApi {
         return Mono.fromCallable(
                         () -> client.searchUsers(filter, 1, 1, null, null, null, null)
                 )
-                .timeout(Duration.ofSeconds(5), Mono.error(new TimeoutException("Searching users timed out for user: " + userName)))
+                .transform(search -> Deadline.timeout(
+                        search,
+                        SEARCH_USER_TIMEOUT,
+                        () -> new TimeoutException("Searching users timed out for user: " + userName)
+                ))
                 .subscribeOn(scheduler)
                 .filter(this::checkSearchUserResponseStatusCode)
                 .map(response -> {
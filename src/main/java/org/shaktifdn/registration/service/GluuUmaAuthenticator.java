@@ -0,0 +1,223 @@
+package org.shaktifdn.registration.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JOSEObjectType;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.JWSSigner;
+import com.nimbusds.jose.crypto.ECDSASigner;
+import com.nimbusds.jose.crypto.RSASSASigner;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.MediaType;
+import org.springframework.util.LinkedMultiValueMap;
+import org.springframework.util.MultiValueMap;
+import org.springframework.util.StringUtils;
+import org.springframework.web.reactive.function.BodyInserters;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.GeneralSecurityException;
+import java.security.Key;
+import java.security.KeyStore;
+import java.security.PrivateKey;
+import java.security.interfaces.ECPrivateKey;
+import java.security.interfaces.RSAPrivateKey;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Non-blocking counterpart of the UMA handshake performed by the Gluu SCIM client: answers a
+ * {@code WWW-Authenticate: UMA ... ticket=...} challenge by exchanging the ticket for an RPT at the
+ * authorization server, authenticating with a {@code private_key_jwt} assertion signed by the key
+ * from the UMA client keystore. The last RPT is kept and reused until the server challenges again.
+ */
+@Slf4j
+public class GluuUmaAuthenticator {
+
+    static final String UMA_SCHEME = "UMA";
+    private static final String UMA_CONFIGURATION = "/.well-known/uma2-configuration";
+    private static final String GRANT_TYPE_UMA_TICKET = "urn:ietf:params:oauth:grant-type:uma-ticket";
+    private static final String CLIENT_ASSERTION_TYPE = "urn:ietf:params:oauth:client-assertion-type:jwt-bearer";
+    private static final Pattern CHALLENGE_PARAM = Pattern.compile("(\\w+)=\"?([^\",]*)\"?");
+    private static final Duration ASSERTION_LIFETIME = Duration.ofMinutes(5);
+    private static final Duration CONFIGURATION_TTL = Duration.ofHours(1);
+
+    private final WebClient webClient;
+    private final String clientId;
+    private final String keyId;
+    private final JWSAlgorithm algorithm;
+    private final JWSSigner signer;
+    private final Map<String, Mono<String>> tokenEndpoints = new ConcurrentHashMap<>();
+    private final AtomicReference<String> rpt = new AtomicReference<>();
+
+    public GluuUmaAuthenticator(WebClient webClient, String clientId, PrivateKey privateKey, String keyId) {
+        this.webClient = webClient;
+        this.clientId = clientId;
+        this.keyId = keyId;
+        try {
+            if (privateKey instanceof RSAPrivateKey) {
+                this.algorithm = JWSAlgorithm.RS256;
+                this.signer = new RSASSASigner(privateKey);
+            } else if (privateKey instanceof ECPrivateKey) {
+                ECPrivateKey ecKey = (ECPrivateKey) privateKey;
+                this.algorithm = ecAlgorithm(ecKey);
+                this.signer = new ECDSASigner(ecKey);
+            } else {
+                throw new IllegalArgumentException("Unsupported UMA client key type: " + privateKey.getAlgorithm());
+            }
+        } catch (JOSEException e) {
+            throw new IllegalArgumentException("Invalid UMA client key", e);
+        }
+    }
+
+    /**
+     * Loads the UMA client key once, at startup, from the same JKS the blocking SCIM client uses.
+     * When no key id is configured the first private key entry of the keystore is used.
+     */
+    public static GluuUmaAuthenticator fromKeyStore(
+            WebClient webClient, String clientId, File keyStoreFile, String password, String keyId
+    ) {
+        try (InputStream in = new FileInputStream(keyStoreFile)) {
+            KeyStore keyStore = KeyStore.getInstance("JKS");
+            keyStore.load(in, password.toCharArray());
+            String alias = StringUtils.hasText(keyId) ? keyId : Collections.list(keyStore.aliases())
+                    .stream()
+                    .filter(a -> isKeyEntry(keyStore, a))
+                    .findFirst()
+                    .orElseThrow(() -> new IllegalStateException("No private key in " + keyStoreFile));
+            Key key = keyStore.getKey(alias, password.toCharArray());
+            if (!(key instanceof PrivateKey)) {
+                throw new IllegalStateException("No private key for alias " + alias + " in " + keyStoreFile);
+            }
+            return new GluuUmaAuthenticator(webClient, clientId, (PrivateKey) key, alias);
+        } catch (IOException | GeneralSecurityException e) {
+            throw new IllegalStateException("Unable to load UMA client keystore " + keyStoreFile, e);
+        }
+    }
+
+    public String currentToken() {
+        return rpt.get();
+    }
+
+    public boolean isUmaChallenge(String challenge) {
+        return challenge != null && challenge.regionMatches(true, 0, UMA_SCHEME, 0, UMA_SCHEME.length());
+    }
+
+    /**
+     * Obtains a fresh RPT for the ticket carried by the given challenge and keeps it for later calls.
+     */
+    public Mono<String> authorize(String challenge) {
+        Map<String, String> params = parseChallenge(challenge);
+        String asUri = params.get("as_uri");
+        String ticket = params.get("ticket");
+        if (!StringUtils.hasText(asUri) || !StringUtils.hasText(ticket)) {
+            return Mono.error(new IllegalStateException("Malformed UMA challenge: " + challenge));
+        }
+        return tokenEndpoint(asUri)
+                .flatMap(tokenEndpoint -> requestRpt(tokenEndpoint, ticket))
+                .doOnNext(token -> {
+                    log.debug("obtained new UMA RPT from {}", asUri);
+                    rpt.set(token);
+                });
+    }
+
+    static Map<String, String> parseChallenge(String challenge) {
+        Map<String, String> params = new HashMap<>();
+        Matcher matcher = CHALLENGE_PARAM.matcher(challenge.substring(Math.min(UMA_SCHEME.length(), challenge.length())));
+        while (matcher.find()) {
+            params.put(matcher.group(1), matcher.group(2).trim());
+        }
+        return params;
+    }
+
+    private Mono<String> tokenEndpoint(String asUri) {
+        String configurationUrl = asUri.endsWith(UMA_CONFIGURATION) ? asUri : stripSlash(asUri) + UMA_CONFIGURATION;
+        return tokenEndpoints.computeIfAbsent(configurationUrl, url -> webClient
+                .get()
+                .uri(url)
+                .accept(MediaType.APPLICATION_JSON)
+                .retrieve()
+                .bodyToMono(JsonNode.class)
+                .map(configuration -> configuration.path("token_endpoint").asText())
+                .filter(StringUtils::hasText)
+                .switchIfEmpty(Mono.error(new IllegalStateException("No token_endpoint in " + url)))
+                .cache(endpoint -> CONFIGURATION_TTL, e -> Duration.ZERO, () -> Duration.ZERO));
+    }
+
+    private Mono<String> requestRpt(String tokenEndpoint, String ticket) {
+        return Mono.fromCallable(() -> clientAssertion(tokenEndpoint))
+                .flatMap(assertion -> {
+                    MultiValueMap<String, String> formData = new LinkedMultiValueMap<>();
+                    formData.add("grant_type", GRANT_TYPE_UMA_TICKET);
+                    formData.add("ticket", ticket);
+                    formData.add("client_id", clientId);
+                    formData.add("client_assertion_type", CLIENT_ASSERTION_TYPE);
+                    formData.add("client_assertion", assertion);
+                    return webClient
+                            .post()
+                            .uri(tokenEndpoint)
+                            .contentType(MediaType.APPLICATION_FORM_URLENCODED)
+                            .accept(MediaType.APPLICATION_JSON)
+                            .body(BodyInserters.fromFormData(formData))
+                            .retrieve()
+                            .bodyToMono(JsonNode.class);
+                })
+                .map(response -> response.path("access_token").asText())
+                .filter(StringUtils::hasText)
+                .switchIfEmpty(Mono.error(new IllegalStateException("No RPT returned by " + tokenEndpoint)));
+    }
+
+    private String clientAssertion(String audience) throws JOSEException {
+        Instant now = Instant.now();
+        JWTClaimsSet claims = new JWTClaimsSet.Builder()
+                .issuer(clientId)
+                .subject(clientId)
+                .audience(audience)
+                .jwtID(UUID.randomUUID().toString())
+                .issueTime(Date.from(now))
+                .expirationTime(Date.from(now.plus(ASSERTION_LIFETIME)))
+                .build();
+        SignedJWT jwt = new SignedJWT(
+                new JWSHeader.Builder(algorithm).keyID(keyId).type(JOSEObjectType.JWT).build(),
+                claims
+        );
+        jwt.sign(signer);
+        return jwt.serialize();
+    }
+
+    private static JWSAlgorithm ecAlgorithm(ECPrivateKey key) {
+        int fieldSize = key.getParams().getCurve().getField().getFieldSize();
+        if (fieldSize > 384) {
+            return JWSAlgorithm.ES512;
+        }
+        return fieldSize > 256 ? JWSAlgorithm.ES384 : JWSAlgorithm.ES256;
+    }
+
+    private static boolean isKeyEntry(KeyStore keyStore, String alias) {
+        try {
+            return keyStore.isKeyEntry(alias);
+        } catch (GeneralSecurityException e) {
+            return false;
+        }
+    }
+
+    private static String stripSlash(String uri) {
+        return uri.endsWith("/") ? uri.substring(0, uri.length() - 1) : uri;
+    }
+}
@@ -3,6 +3,9 @@ package org.shaktifdn.registration.service;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.response.WalletStatusResponse;
 import org.springframework.beans.factory.annotation.Qualifier;
@@ -19,23 +22,34 @@ import static org.shaktifdn.registration.util.Utils.handleExternalServiceCallExc
 public class KycUserService extends AbstractWebClient {
 
     public static final String URL_KYC_WALLET = "/kyc/wallet";
+    public static final String IS_WALLET_EXISTS_ENDPOINT = "kycService.isWalletExists";
     private static final String EXCEPTION_CHECKING_WALLET_EXISTS_FOR_USER_ID = "exception checking wallet exists for user id {}";
 
     public KycUserService(
             @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
-            ServiceProperties serviceProperties
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger
     ) {
-        super(loadBalanced, serviceProperties);
+        super("kycService", loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger);
     }
 
     public Mono<Boolean> isWalletExists(String shaktiId) {
         log.info("Checking if wallet is exists for shakti id {} ", shaktiId);
-        return get(
-                serviceProperties.getKycService() + URL_KYC_WALLET,
-                httpHeaders -> {
-                    httpHeaders.add("shaktiID", shaktiId);
-                },
-                WalletStatusResponse.class
+        return coalesce(
+                IS_WALLET_EXISTS_ENDPOINT,
+                shaktiId,
+                () -> hedge(
+                        IS_WALLET_EXISTS_ENDPOINT,
+                        () -> get(
+                                serviceProperties.getKycService() + URL_KYC_WALLET,
+                                httpHeaders -> {
+                                    httpHeaders.add("shaktiID", shaktiId);
+                                },
+                                WalletStatusResponse.class
+                        )
+                )
         )
                 .flatMap(walletStatusResponse -> {
                     if (StringUtils.isBlank(walletStatusResponse.getWalletID())) {
@@ -3,6 +3,10 @@ package org.shaktifdn.registration.service;
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
 import org.jetbrains.annotations.NotNull;
+import org.shaktifdn.registration.cache.VerifiedContactCache;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.exception.*;
 import org.shaktifdn.registration.request.SendMobileOtpRequest;
@@ -24,14 +28,22 @@ public class MobileService extends AbstractWebClient {
     public static final String MOBILE_OTP_REQUEST = "/otp/request";
     public static final String MOBILE_OTP_VERIFY = "/otp/verify";
     public static final String MOBILE_OTP_INQUIRY = "/inquiry/mobile";
+    public static final String INQUIRE_ENDPOINT = "smsService.inquire";
     private static final String RETRIES_LIMIT_REACHED = "Retries limit reached";
     private static final String FAILED_WITH_ERROR_RESPONSE_FOR_MOBILE_NUMBER = "Mobile otp flow {} is failed with error response: {} for mobile number {} ";
 
+    private final VerifiedContactCache verifiedContactCache;
+
     public MobileService(
             @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
-            ServiceProperties serviceProperties
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger,
+            VerifiedContactCache verifiedContactCache
     ) {
-        super(loadBalanced, serviceProperties);
+        super("smsService", loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger);
+        this.verifiedContactCache = verifiedContactCache;
     }
 
     public Mono<SmsServiceResponse> send(String countryCode, String mobileNo, String requestedFlow) {
@@ -124,7 +136,9 @@ public class MobileService extends AbstractWebClient {
                         }
                     }
                     log.info("OTP verified: {}, {}", countryCode, mobileNo);
-                    return Mono.just(verificationResponse);
+                    return verifiedContactCache
+                            .mobileVerified(countryCode, mobileNo, requestedFlow)
+                            .thenReturn(verificationResponse);
                 })
                 .onErrorResume(e -> handleSmsOtpVerificationError(mobileNo, e));
     }
@@ -154,8 +168,15 @@ public class MobileService extends AbstractWebClient {
                         .build();
         log.info("checking mobile status in sms service for mobile number : {}", mobileNo);
 
-        return post(serviceProperties.getSmsService() + MOBILE_OTP_INQUIRY,
-                verificationMobileOtpRequest, SmsServiceResponse.class)
+        return coalesce(
+                INQUIRE_ENDPOINT,
+                countryCode + ":" + mobileNo + ":" + requestedFlow,
+                () -> hedge(
+                        INQUIRE_ENDPOINT,
+                        () -> post(serviceProperties.getSmsService() + MOBILE_OTP_INQUIRY,
+                                verificationMobileOtpRequest, SmsServiceResponse.class)
+                )
+        )
                 .flatMap(verificationResponse -> {
                     if (200 != verificationResponse.getCode()) {
                         log.error(FAILED_WITH_ERROR_RESPONSE_FOR_MOBILE_NUMBER, requestedFlow, verificationResponse, mobileNo);
@@ -0,0 +1,295 @@
+package org.shaktifdn.registration.service;
+
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.json.JsonObject;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.config.AsyncOnboardingProperties;
+import org.shaktifdn.registration.exception.RecordNotFoundException;
+import org.shaktifdn.registration.exception.ServiceOverloadedException;
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.shaktifdn.registration.repository.UserRegisterStateRepository;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.response.OnboardingJobStatus;
+import org.shaktifdn.registration.response.ResponseBean;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import org.springframework.stereotype.Service;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+
+import javax.annotation.PreDestroy;
+import java.time.Duration;
+import java.time.Instant;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static com.couchbase.client.java.kv.UpsertOptions.upsertOptions;
+
+/**
+ * Onboarding requested with {@code Prefer: respond-async}: the validated request is queued as a job
+ * and answered at once, and a bounded set of workers runs the same pipeline as the synchronous
+ * request. A full queue answers 503.
+ * <p>
+ * The request, which carries the password, stays in memory: only the state of the job is written,
+ * locally and to a Couchbase document expiring after the retention, so any replica answers status
+ * polls. The Shakti ID is chosen when the job is accepted, and the status adds the
+ * {@link UserRegisterState} stages of that ID as they complete. A job lost with its replica stays
+ * {@code ACCEPTED} until it expires; the client retries it with the same {@code Idempotency-Key}.
+ */
+@Service
+@Slf4j
+public class OnboardingJobs {
+
+    static final String TYPE = "OnboardingJob";
+    static final String METRIC_NAME = "registration.onboarding.jobs";
+    static final String QUEUED = "registration.onboarding.jobs.queued";
+    private static final String ID_PREFIX = TYPE + "::";
+
+    private final UserService userService;
+    private final UserRegisterStateRepository userRegisterStateRepository;
+    private final ReactiveCouchbaseTemplate couchbaseTemplate;
+    private final AsyncOnboardingProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final Cache<String, OnboardingJobStatus> jobs;
+    /**
+     * emits are serialized by {@link #enqueue(Job)} rather than by the sink, which would fail concurrent ones
+     */
+    private final Sinks.Many<Job> queue = Sinks.unsafe().many().unicast().onBackpressureBuffer();
+    private final AtomicInteger queued = new AtomicInteger();
+    private final Disposable workers;
+
+    public OnboardingJobs(
+            UserService userService,
+            UserRegisterStateRepository userRegisterStateRepository,
+            ReactiveCouchbaseTemplate couchbaseTemplate,
+            AsyncOnboardingProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.userService = userService;
+        this.userRegisterStateRepository = userRegisterStateRepository;
+        this.couchbaseTemplate = couchbaseTemplate;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.jobs = Caffeine.newBuilder()
+                .maximumSize(properties.getMaximumSize())
+                .expireAfterWrite(properties.getRetention())
+                .build();
+        Gauge.builder(QUEUED, queued, AtomicInteger::get)
+                .description("asynchronous onboarding jobs waiting for a worker")
+                .register(meterRegistry);
+        this.workers = queue.asFlux()
+                .flatMap(this::run, properties.getConcurrency())
+                .subscribe();
+    }
+
+    /**
+     * @return the accepted job, once its state is stored and it is queued; a job that cannot be queued
+     * gives its place in the queue back and is marked failed
+     */
+    public Mono<OnboardingJobStatus> submit(OnboardShaktiUserRequest request, String clientIpAddress, String idempotencyKey) {
+        return Mono.defer(() -> {
+            if (queued.incrementAndGet() > properties.getQueueSize()) {
+                queued.decrementAndGet();
+                counter("rejected").increment();
+                return Mono.error(new ServiceOverloadedException("onboarding"));
+            }
+            OnboardingJobStatus accepted = OnboardingJobStatus
+                    .builder()
+                    .jobId(UUID.randomUUID().toString())
+                    .state(OnboardingJobStatus.State.ACCEPTED)
+                    .acceptedAt(Instant.now())
+                    .build();
+            jobs.put(accepted.getJobId(), accepted);
+            AtomicBoolean enqueued = new AtomicBoolean();
+            return share(accepted)
+                    .then(Mono.fromSupplier(() -> {
+                        enqueue(new Job(accepted, request, clientIpAddress, idempotencyKey));
+                        enqueued.set(true);
+                        log.info("accepted onboarding job {} for user email id {}", accepted.getJobId(), request.getEmail());
+                        counter("accepted").increment();
+                        return accepted;
+                    }))
+                    .onErrorResume(e -> {
+                        if (enqueued.get()) {
+                            return Mono.error(e);
+                        }
+                        log.error("onboarding job {} could not be queued", accepted.getJobId(), e);
+                        return share(abandon(accepted))
+                                .onErrorResume(ignore -> Mono.empty())
+                                .then(Mono.error(e instanceof Sinks.EmissionException ? new ServiceOverloadedException("onboarding") : e));
+                    })
+                    .doOnCancel(() -> {
+                        if (!enqueued.get()) {
+                            abandon(accepted);
+                        }
+                    });
+        });
+    }
+
+    private OnboardingJobStatus abandon(OnboardingJobStatus accepted) {
+        queued.decrementAndGet();
+        OnboardingJobStatus failed = accepted
+                .toBuilder()
+                .state(OnboardingJobStatus.State.FAILED)
+                .message("onboarding job could not be queued")
+                .build();
+        jobs.put(accepted.getJobId(), failed);
+        counter("failed").increment();
+        return failed;
+    }
+
+    /**
+     * @return state of the job, with the registration stages completed so far
+     */
+    public Mono<OnboardingJobStatus> status(String jobId) {
+        return Mono.justOrEmpty(jobs.getIfPresent(jobId))
+                .switchIfEmpty(Mono.defer(() -> shared(jobId)))
+                .flatMap(status -> userRegisterStateRepository
+                        .findById(UserRegisterState.key(status.getShaktiId() != null ? status.getShaktiId() : jobId))
+                        .map(state -> status.toBuilder().stateTypes(state.getStateTypes()).build())
+                        .defaultIfEmpty(status))
+                .switchIfEmpty(Mono.error(new RecordNotFoundException("no onboarding job " + jobId)));
+    }
+
+    /**
+     * @return the status of the job each time it changes, until it finishes or the watch times out
+     */
+    public Flux<OnboardingJobStatus> watch(String jobId) {
+        return Flux.interval(Duration.ZERO, properties.getWatchInterval())
+                .concatMap(tick -> status(jobId))
+                .distinctUntilChanged()
+                .takeUntil(OnboardingJobStatus::isFinished)
+                .take(properties.getWatchTimeout());
+    }
+
+    @PreDestroy
+    public void dispose() {
+        workers.dispose();
+    }
+
+    /**
+     * Called from the request threads; the lock is only held to hand the job to the sink, emitNext would
+     * drop it silently once the workers are gone
+     */
+    private void enqueue(Job job) {
+        Sinks.EmitResult result;
+        synchronized (queue) {
+            result = queue.tryEmitNext(job);
+        }
+        result.orThrow();
+    }
+
+    private Mono<Void> run(Job job) {
+        queued.decrementAndGet();
+        String jobId = job.accepted.getJobId();
+        OnboardingJobStatus running = job.accepted.toBuilder().state(OnboardingJobStatus.State.RUNNING).build();
+        jobs.put(jobId, running);
+        return share(running)
+                .then(Mono.defer(() -> userService.saveOnboardShakti(job.request, job.clientIpAddress, job.idempotencyKey, jobId)))
+                .map(response -> job.accepted
+                        .toBuilder()
+                        .state(OnboardingJobStatus.State.COMPLETED)
+                        .shaktiId(shaktiId(response, jobId))
+                        .build())
+                .onErrorResume(e -> {
+                    log.warn("onboarding job {} failed: {}", jobId, e.getMessage());
+                    return Mono.just(job.accepted
+                            .toBuilder()
+                            .state(OnboardingJobStatus.State.FAILED)
+                            .message(e.getMessage())
+                            .build());
+                })
+                .flatMap(finished -> {
+                    jobs.put(jobId, finished);
+                    counter(finished.getState().name().toLowerCase()).increment();
+                    return share(finished);
+                })
+                // keeps the workers running whatever happens to one job
+                .onErrorResume(e -> {
+                    log.error("onboarding job {} could not be recorded", jobId, e);
+                    return Mono.empty();
+                });
+    }
+
+    /**
+     * @return Shakti ID of the onboarded user; a retry replayed by {@code OnboardingIdempotency} carries the one of the first attempt
+     */
+    private static String shaktiId(ResponseBean response, String jobId) {
+        return response.getDetails() instanceof OnboardShaktiUserRequest
+                ? ((OnboardShaktiUserRequest) response.getDetails()).getShaktiID()
+                : jobId;
+    }
+
+    private Mono<Void> share(OnboardingJobStatus status) {
+        if (!properties.isSharedEnabled()) {
+            return Mono.empty();
+        }
+        JsonObject document = JsonObject.create()
+                .put("_type", TYPE)
+                .put("state", status.getState().name())
+                .put("acceptedAt", status.getAcceptedAt().toString());
+        if (status.getShaktiId() != null) {
+            document.put("shaktiId", status.getShaktiId());
+        }
+        if (status.getMessage() != null) {
+            document.put("message", status.getMessage());
+        }
+        return Mono.defer(() -> collection().upsert(
+                        ID_PREFIX + status.getJobId(),
+                        document,
+                        upsertOptions().expiry(properties.getRetention())
+                ))
+                .doOnError(e -> log.warn("could not share onboarding job {}", status.getJobId(), e))
+                .onErrorResume(e -> Mono.empty())
+                .then();
+    }
+
+    private Mono<OnboardingJobStatus> shared(String jobId) {
+        if (!properties.isSharedEnabled()) {
+            return Mono.empty();
+        }
+        return Mono.defer(() -> collection().get(ID_PREFIX + jobId))
+                .map(result -> {
+                    JsonObject document = result.contentAsObject();
+                    return OnboardingJobStatus
+                            .builder()
+                            .jobId(jobId)
+                            .state(OnboardingJobStatus.State.valueOf(document.getString("state")))
+                            .shaktiId(document.getString("shaktiId"))
+                            .message(document.getString("message"))
+                            .acceptedAt(Instant.parse(document.getString("acceptedAt")))
+                            .build();
+                })
+                .onErrorResume(DocumentNotFoundException.class, e -> Mono.empty());
+    }
+
+    private Counter counter(String result) {
+        return meterRegistry.counter(METRIC_NAME, "result", result);
+    }
+
+    private ReactiveCollection collection() {
+        return couchbaseTemplate.getCouchbaseClientFactory().getDefaultCollection().reactive();
+    }
+
+    private static final class Job {
+        private final OnboardingJobStatus accepted;
+        private final OnboardShaktiUserRequest request;
+        private final String clientIpAddress;
+        private final String idempotencyKey;
+
+        private Job(OnboardingJobStatus accepted, OnboardShaktiUserRequest request, String clientIpAddress, String idempotencyKey) {
+            this.accepted = accepted;
+            this.request = request;
+            this.clientIpAddress = clientIpAddress;
+            this.idempotencyKey = idempotencyKey;
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package org.shaktifdn.registration.service;
+
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.client.Deadline;
+import org.shaktifdn.registration.config.OnboardingSagaProperties;
+import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
+import org.shaktifdn.registration.exception.ServiceOverloadedException;
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.shaktifdn.registration.repository.UserRegisterStateRepository;
+import org.springframework.stereotype.Component;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.retry.Retry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Supplier;
+
+/**
+ * Runs the onboarding steps that follow the validation of the request. A step failing with a
+ * transient error is retried alone with backoff, so the steps already done, the SCIM create above
+ * all, are not run again. Once the {@link UserRegisterState} of the user is written it logs the
+ * completed steps.
+ * <p>
+ * When a step fails for good the steps done so far are undone at once, the most recent first, and the
+ * state is removed last. Compensation runs without the request deadline, which has often passed by
+ * then, under its own timeout. A compensation that fails leaves the state in place for
+ * {@link UserRegistrationFailedService}, as does an onboarding cancelled by its caller.
+ */
+@Component
+@Slf4j
+public class OnboardingSaga {
+
+    static final String METRIC_NAME = "registration.onboarding.saga";
+
+    private final UserRegisterStateRepository userRegisterStateRepository;
+    private final OnboardingSagaProperties properties;
+    private final MeterRegistry meterRegistry;
+
+    public OnboardingSaga(
+            UserRegisterStateRepository userRegisterStateRepository,
+            OnboardingSagaProperties properties,
+            MeterRegistry meterRegistry
+    ) {
+        this.userRegisterStateRepository = userRegisterStateRepository;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+    }
+
+    /**
+     * @param shaktiId Shakti ID of the user being onboarded
+     */
+    public Execution start(String shaktiId) {
+        return new Execution(shaktiId);
+    }
+
+    /**
+     * @return true when trying the step again may succeed
+     */
+    static boolean isTransient(Throwable throwable) {
+        if (throwable instanceof ServiceOverloadedException || throwable instanceof TimeoutException) {
+            return true;
+        }
+        return throwable instanceof ExternalServiceDependencyFailure
+                && ((ExternalServiceDependencyFailure) throwable).getHttpStatus() != null
+                && ((ExternalServiceDependencyFailure) throwable).getHttpStatus().is5xxServerError();
+    }
+
+    /**
+     * @return true when the downstream may have done what it was asked although the call failed
+     */
+    static boolean isUncertain(Throwable throwable) {
+        return throwable instanceof TimeoutException || throwable instanceof ExternalServiceDependencyFailure;
+    }
+
+    private void count(String step, String result) {
+        meterRegistry.counter(METRIC_NAME, "step", step, "result", result).increment();
+    }
+
+    /**
+     * Steps of one onboarding
+     */
+    public final class Execution {
+
+        private final String shaktiId;
+        private final Set<String> completedSteps = ConcurrentHashMap.newKeySet();
+        private final Set<String> uncertainSteps = ConcurrentHashMap.newKeySet();
+        private final List<Compensation> compensations = Collections.synchronizedList(new ArrayList<>());
+        private volatile boolean logged;
+
+        private Execution(String shaktiId) {
+            this.shaktiId = shaktiId;
+        }
+
+        /**
+         * Runs a step that needs no undoing, retried while it fails with a transient error
+         */
+        public <T> Mono<T> step(String step, Supplier<Mono<T>> action) {
+            return step(step, action, null);
+        }
+
+        /**
+         * Runs a step that needs no undoing and must not be sent twice, such as a POST that is not
+         * idempotent
+         */
+        public <T> Mono<T> stepOnce(String step, Supplier<Mono<T>> action) {
+            return run(step, action, null, false);
+        }
+
+        /**
+         * Runs a step, retried while it fails with a transient error. A step that is not idempotent
+         * checks {@link #wasUncertain(String)} to recognize its own earlier attempt.
+         *
+         * @param compensation undoes the step; run when the onboarding fails after the step completed
+         *                     or after a failure that may have been applied all the same
+         */
+        public <T> Mono<T> step(String step, Supplier<Mono<T>> action, Supplier<Mono<?>> compensation) {
+            return run(step, action, compensation, true);
+        }
+
+        /**
+         * @return true when an attempt of the step failed in a way that may have been applied
+         */
+        public boolean wasUncertain(String step) {
+            return uncertainSteps.contains(step);
+        }
+
+        private <T> Mono<T> run(String step, Supplier<Mono<T>> action, Supplier<Mono<?>> compensation, boolean retried) {
+            Mono<T> attempts = Mono.defer(action)
+                    .doOnError(e -> {
+                        if (isUncertain(e)) {
+                            uncertainSteps.add(step);
+                            if (compensation != null) {
+                                compensateLater(step, compensation);
+                            }
+                        }
+                    });
+            if (!retried) {
+                return attempts.delayUntil(result -> completed(step, compensation));
+            }
+            return Mono.deferContextual(context -> attempts
+                            .retryWhen(Retry
+                                    .backoff(properties.getRetries(), properties.getBackoff())
+                                    .maxBackoff(properties.getMaxBackoff())
+                                    .filter(e -> isTransient(e)
+                                            && Deadline.from(context).map(deadline -> !deadline.isExpired()).orElse(true))
+                                    .doBeforeRetry(signal -> {
+                                        log.info("retrying onboarding step {} of {}: {}", step, shaktiId, signal.failure().toString());
+                                        count(step, "retried");
+                                    })
+                                    .onRetryExhaustedThrow((spec, signal) -> signal.failure())))
+                    .delayUntil(result -> completed(step, compensation));
+        }
+
+        private Mono<Void> completed(String step, Supplier<Mono<?>> compensation) {
+            if (compensation != null) {
+                compensateLater(step, compensation);
+            }
+            completedSteps.add(step);
+            return logged ? record(List.of(step)) : Mono.empty();
+        }
+
+        /**
+         * Starts logging the completed steps in the state; later steps are added to it as they complete.
+         *
+         * @return the state, with the steps completed so far
+         */
+        public UserRegisterState log(UserRegisterState userRegisterState) {
+            userRegisterState.getCompletedSteps().addAll(completedSteps);
+            logged = true;
+            return userRegisterState;
+        }
+
+        /**
+         * Undoes the steps done so far, the most recent first, and removes the state once they all are.
+         * It never fails: the failure of a compensation is logged and counted.
+         */
+        public Mono<Void> compensate(Throwable cause) {
+            return Mono.defer(() -> {
+                List<Compensation> pending;
+                synchronized (compensations) {
+                    pending = new ArrayList<>(compensations);
+                }
+                if (!properties.isCompensationEnabled() || pending.isEmpty()) {
+                    return Mono.empty();
+                }
+                Collections.reverse(pending);
+                log.info("compensating onboarding of {} after {}", shaktiId, cause.toString());
+                return Flux.fromIterable(pending)
+                        .concatMap(compensation -> Mono.defer(compensation.action)
+                                .doOnSuccess(ignore -> count(compensation.step, "compensated"))
+                                .then())
+                        .then(Mono.defer(() -> logged
+                                ? userRegisterStateRepository.deleteById(UserRegisterState.key(shaktiId))
+                                : Mono.empty()))
+                        .timeout(properties.getCompensationTimeout())
+                        .contextWrite(context -> context.delete(Deadline.class))
+                        .onErrorResume(e -> {
+                            log.error("could not compensate onboarding of {}, left to the cleanup of failed registrations", shaktiId, e);
+                            count("compensation", "failed");
+                            return Mono.empty();
+                        });
+            });
+        }
+
+        private void compensateLater(String step, Supplier<Mono<?>> action) {
+            synchronized (compensations) {
+                if (compensations.stream().noneMatch(compensation -> compensation.step.equals(step))) {
+                    compensations.add(new Compensation(step, action));
+                }
+            }
+        }
+
+        private Mono<Void> record(List<String> steps) {
+            return Mono.defer(() -> userRegisterStateRepository.addCompletedSteps(UserRegisterState.key(shaktiId), steps))
+                    .onErrorResume(e -> {
+                        log.warn("could not log onboarding steps {} of {}", steps, shaktiId, e);
+                        return Mono.empty();
+                    });
+        }
+    }
+
+    private static final class Compensation {
+        private final String step;
+        private final Supplier<Mono<?>> action;
+
+        private Compensation(String step, Supplier<Mono<?>> action) {
+            this.step = step;
+            this.action = action;
+        }
+    }
+}
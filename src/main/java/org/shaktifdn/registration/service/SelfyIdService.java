@@ -3,6 +3,7 @@ package org.shaktifdn.registration.service;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.exception.SelfyIdBadRequestException;
 import org.shaktifdn.registration.request.WalletBytesEncryptRequest;
@@ -23,20 +24,24 @@ import static org.shaktifdn.registration.util.Utils.handleExternalServiceCallExc
 @Slf4j
 public class SelfyIdService {
 
+    public static final String SELFYID_ENCRYPT = "/selfyid/encrypt";
+
     private final WebClient webClient;
+    private final ServiceProperties serviceProperties;
 
     public SelfyIdService(
             @Qualifier("loadBalanced")
                     WebClient.Builder webClient,
-            ServiceProperties serviceProperties) {
-        this.webClient = webClient
-                .baseUrl(serviceProperties.getSelfyIdService() + "/selfyid/encrypt")
-                .build();
+            ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry) {
+        this.webClient = webClientRegistry.client("selfyIdService", webClient);
+        this.serviceProperties = serviceProperties;
     }
 
     public Mono<WalletBytesEncryptResponse> encrypt(WalletBytesEncryptRequest request) {
         return webClient
                 .post()
+                .uri(serviceProperties.getSelfyIdService() + SELFYID_ENCRYPT)
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(request)
                 .retrieve()
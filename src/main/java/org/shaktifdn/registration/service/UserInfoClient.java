@@ -1,53 +1,89 @@
 package org.shaktifdn.registration.service;
 
-import lombok.AllArgsConstructor;
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.Expiry;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import lombok.Value;
 import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.cache.ReactiveCaches;
+import org.shaktifdn.registration.config.AuthProperties;
 import org.shaktifdn.registration.exception.UnauthorizedException;
 import org.shaktifdn.registration.response.UserDetail;
 import org.shaktifdn.registration.security.SecurityUtils;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.security.oauth2.client.registration.ClientRegistration;
 import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
 import org.springframework.security.oauth2.client.userinfo.DefaultReactiveOAuth2UserService;
 import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
+import org.springframework.security.oauth2.client.userinfo.ReactiveOAuth2UserService;
 import org.springframework.security.oauth2.core.OAuth2AccessToken;
 import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.jwt.Jwt;
 import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
 
+import java.time.Duration;
+import java.time.Instant;
+import java.util.Map;
 import java.util.Objects;
 
 import static org.shaktifdn.registration.util.Utils.handleExternalServiceCallException;
 
+/**
+ * Resolves the {@link UserDetail} of the authenticated user from the Gluu userinfo endpoint.
+ * <p>
+ * Answers are cached by a hash of the access token and dropped when the token expires, so repeated
+ * calls with the same token reach Gluu once. When enabled, shakti id and email are taken from the
+ * token claims instead, if the token carries both.
+ */
 @Service
 @Slf4j
-@AllArgsConstructor
 public class UserInfoClient {
+    static final String METRIC_NAME = "registration.userinfo.lookup";
     private static final String SHAKTI_ID = "shaktiID";
     private static final String EMAIL = "email";
     private static final String MOBILE_NUMBER = "phone_mobile_number";
     private static final String CLIENT_ID = "gluu";
-    private final DefaultReactiveOAuth2UserService defaultReactiveOAuth2UserService
-            = new DefaultReactiveOAuth2UserService();
-    private final ReactiveClientRegistrationRepository clientRegistrations;
+
+    private final ReactiveOAuth2UserService<OAuth2UserRequest, OAuth2User> userService;
+    private final AuthProperties.UserInfo settings;
+    private final MeterRegistry meterRegistry;
+    private final Mono<ClientRegistration> clientRegistration;
+    private final AsyncCache<String, CachedUserDetail> cache;
+
+    @Autowired
+    public UserInfoClient(
+            ReactiveClientRegistrationRepository clientRegistrations,
+            AuthProperties authProperties,
+            MeterRegistry meterRegistry
+    ) {
+        this(new DefaultReactiveOAuth2UserService(), clientRegistrations, authProperties, meterRegistry);
+    }
+
+    UserInfoClient(
+            ReactiveOAuth2UserService<OAuth2UserRequest, OAuth2User> userService,
+            ReactiveClientRegistrationRepository clientRegistrations,
+            AuthProperties authProperties,
+            MeterRegistry meterRegistry
+    ) {
+        this.userService = userService;
+        this.settings = authProperties.getUserInfo();
+        this.meterRegistry = meterRegistry;
+        // registrations are fixed at startup, only a found one is kept
+        this.clientRegistration = Mono
+                .defer(() -> clientRegistrations.findByRegistrationId(CLIENT_ID))
+                .cache(registration -> Duration.ofMillis(Long.MAX_VALUE), error -> Duration.ZERO, () -> Duration.ZERO);
+        this.cache = build(settings);
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "userInfo");
+    }
 
     public Mono<UserDetail> getShaktiId() {
         return SecurityUtils.getAuthentication()
                 .map(authentication -> (JwtAuthenticationToken) authentication)
-                .flatMap(jwtAuthenticationToken ->
-                        clientRegistrations.findByRegistrationId(CLIENT_ID)
-                                .map(clientRegistration ->
-                                        geAuth2UserRequest(jwtAuthenticationToken, clientRegistration))
-                                .map(defaultReactiveOAuth2UserService::loadUser)
-                                .flatMap(oAuth2UserMono -> oAuth2UserMono.map(OAuth2User::getAttributes))
-                                .map(this::toUserDetail)
-                                .onErrorResume(throwable -> {
-                                    log.error("User not found in Glue database", throwable);
-                                    return Mono.error(
-                                            () -> new UnauthorizedException("User not found in Glue database")
-                                    );
-                                })
-                )
+                .flatMap(jwtAuthenticationToken -> userDetail(jwtAuthenticationToken.getToken()))
                 .switchIfEmpty(Mono.error(new UnauthorizedException("authentication not found")))
                 .onErrorResume(throwable -> {
                     log.error("Get Shakti id service call failure ", throwable);
@@ -55,20 +91,49 @@ public class UserInfoClient {
                 });
     }
 
-    private OAuth2UserRequest geAuth2UserRequest(
-            JwtAuthenticationToken jwtAuthenticationToken,
-            ClientRegistration clientRegistration) {
+    private Mono<UserDetail> userDetail(Jwt jwt) {
+        if (settings.isClaimsEnabled() && jwt.getClaims().get(SHAKTI_ID) != null && jwt.getClaims().get(EMAIL) != null) {
+            meterRegistry.counter(METRIC_NAME, "source", "claims").increment();
+            return Mono.just(toUserDetail(jwt.getClaims()));
+        }
+        if (!settings.isCacheEnabled()) {
+            return loadUserInfo(jwt);
+        }
+        return ReactiveCaches
+                .get(
+                        cache,
+                        SecurityUtils.tokenHash(jwt.getTokenValue()),
+                        key -> loadUserInfo(jwt).map(userDetail -> new CachedUserDetail(userDetail, jwt.getExpiresAt()))
+                )
+                .map(CachedUserDetail::getUserDetail);
+    }
+
+    private Mono<UserDetail> loadUserInfo(Jwt jwt) {
+        return clientRegistration
+                .flatMap(registration -> userService.loadUser(geAuth2UserRequest(jwt, registration)))
+                .map(OAuth2User::getAttributes)
+                .map(this::toUserDetail)
+                .doOnNext(userDetail -> meterRegistry.counter(METRIC_NAME, "source", "userinfo").increment())
+                .onErrorResume(throwable -> {
+                    log.error("User not found in Glue database", throwable);
+                    return Mono.error(
+                            () -> new UnauthorizedException("User not found in Glue database")
+                    );
+                });
+    }
+
+    private OAuth2UserRequest geAuth2UserRequest(Jwt jwt, ClientRegistration clientRegistration) {
         return new OAuth2UserRequest(
                 clientRegistration,
                 new OAuth2AccessToken(
                         OAuth2AccessToken.TokenType.BEARER,
-                        jwtAuthenticationToken.getToken().getTokenValue(),
-                        jwtAuthenticationToken.getToken().getIssuedAt(),
-                        jwtAuthenticationToken.getToken().getExpiresAt())
+                        jwt.getTokenValue(),
+                        jwt.getIssuedAt(),
+                        jwt.getExpiresAt())
         );
     }
 
-    private UserDetail toUserDetail(java.util.Map<String, Object> userAttributesMap) {
+    private UserDetail toUserDetail(Map<String, Object> userAttributesMap) {
         return UserDetail
                 .builder()
                 .shaktiId(Objects.requireNonNull(userAttributesMap.get(SHAKTI_ID)).toString())
@@ -76,4 +141,38 @@ public class UserInfoClient {
                 .mobileNo(Objects.toString(userAttributesMap.get(MOBILE_NUMBER)))
                 .build();
     }
-}
\ No newline at end of file
+
+    private static AsyncCache<String, CachedUserDetail> build(AuthProperties.UserInfo settings) {
+        long maxTtl = settings.getMaxTtl().toNanos();
+        return Caffeine.newBuilder()
+                .maximumSize(settings.getMaximumSize())
+                .expireAfter(new Expiry<String, CachedUserDetail>() {
+                    @Override
+                    public long expireAfterCreate(String key, CachedUserDetail value, long currentTime) {
+                        if (value.getTokenExpiresAt() == null) {
+                            return maxTtl;
+                        }
+                        long untilExpiry = Duration.between(Instant.now(), value.getTokenExpiresAt()).toNanos();
+                        return Math.max(0, Math.min(maxTtl, untilExpiry));
+                    }
+
+                    @Override
+                    public long expireAfterUpdate(String key, CachedUserDetail value, long currentTime, long currentDuration) {
+                        return expireAfterCreate(key, value, currentTime);
+                    }
+
+                    @Override
+                    public long expireAfterRead(String key, CachedUserDetail value, long currentTime, long currentDuration) {
+                        return currentDuration;
+                    }
+                })
+                .recordStats()
+                .buildAsync();
+    }
+
+    @Value
+    private static class CachedUserDetail {
+        UserDetail userDetail;
+        Instant tokenExpiresAt;
+    }
+}
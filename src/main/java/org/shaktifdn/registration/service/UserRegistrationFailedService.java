@@ -1,106 +1,279 @@
 package org.shaktifdn.registration.service;
 
+import com.couchbase.client.java.json.JsonArray;
+import com.couchbase.client.java.query.QueryOptions;
 import com.couchbase.client.java.query.QueryStatus;
 import com.couchbase.client.java.query.ReactiveQueryResult;
-import lombok.RequiredArgsConstructor;
+import io.github.resilience4j.ratelimiter.RateLimiter;
+import io.github.resilience4j.ratelimiter.RateLimiterConfig;
+import io.github.resilience4j.reactor.ratelimiter.operator.RateLimiterOperator;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
 import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.EnumUtils;
 import org.jetbrains.annotations.NotNull;
+import org.shaktifdn.registration.cache.EmailRegistrationCache;
+import org.shaktifdn.registration.config.FailedRegistrationCleanupProperties;
+import org.shaktifdn.registration.lease.LeaderLease;
+import org.shaktifdn.registration.model.CleanupCheckpoint;
 import org.shaktifdn.registration.model.UserRegisterState;
 import org.shaktifdn.registration.model.UserRegisterStateType;
+import org.shaktifdn.registration.repository.CleanupCheckpointRepository;
 import org.shaktifdn.registration.repository.UserRegisterStateRepository;
-import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
 import org.springframework.scheduling.annotation.Async;
 import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
+import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
 import java.time.Duration;
-import java.time.OffsetDateTime;
+import java.time.Instant;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
 
 @Service
-@RequiredArgsConstructor
 @Slf4j
 public class UserRegistrationFailedService {
 
-    private static final String DELETE_KYC_USER = "DELETE FROM `services` where `_type`=\"kycuser\" and `shaktiID`=\"?\"";
-    private static final String DELETE_SELFY_ID = "DELETE FROM `services` where `_type`=\"selfy_id\" and `shaktiID`=\"?\"";
-    private static final String DELETE_BOUNTY = "DELETE FROM `services` where `_type`=\"genesis_bonus_bounty\" and `shaktiID`=\"?\"";
-    private static final String DELETE_USER_REGISTER_STATE_DETAIL = "DELETE FROM `services` where `_type`=\"UserRegisterStateDetail\" and `userRegisterStateId`=\"?\"";
-    private static final String DELETE_USER_REGISTER_STATE = "DELETE FROM `services` where `_type`=\"UserRegisterState\" and `shaktiId`=\"?\"";
-    private static final String DELETE_FROM_NOTIFICATION = "DELETE FROM `services` where `_type`=\"UserToken\" and `shaktiId`=\"?\"";
+    /*
+     One prepared statement removes every document tied to a registration, the state itself is removed last by key.
+     */
+    private static final String DELETE_RELATED = "DELETE FROM `services` WHERE" +
+            " (`_type` IN [\"kycuser\", \"selfy_id\", \"genesis_bonus_bounty\"] AND `shaktiID` = $1)" +
+            " OR (`_type` = \"UserToken\" AND `shaktiId` = $1)" +
+            " OR (`_type` = \"UserRegisterStateDetail\" AND `userRegisterStateId` = $2)";
+    /*
+     Types of a state written before UserRegisterState#stateTypes, requires this index
+     CREATE INDEX adv_userRegisterStateId_type ON `services`(`userRegisterStateId`) WHERE `_type` = 'UserRegisterStateDetail'
+     */
+    private static final String SELECT_LEGACY_STATE_TYPES = "SELECT RAW DISTINCT `stateType` FROM `services`" +
+            " WHERE `_type` = \"UserRegisterStateDetail\" AND `userRegisterStateId` = $1";
+
+    static final String QUERY_TIMER = "registration.cleanup.query";
+    static final String CHECKPOINT = "failedRegistrations";
+    static final String METRIC_NAME = "registration.cleanup.items";
 
     private final UserRegisterStateRepository userRegisterStateRepository;
+    private final CleanupCheckpointRepository cleanupCheckpointRepository;
     private final Scheduler scheduler;
     private final ReactiveCouchbaseTemplate couchbaseTemplate;
     private final GluuServiceApi gluuService;
+    private final EmailRegistrationCache emailRegistrationCache;
+    private final FailedRegistrationCleanupProperties properties;
+    private final MeterRegistry meterRegistry;
+    private final RateLimiter rateLimiter;
+    private final LeaderLease leaderLease;
 
-    @Value("${user.registration.failed.cleanup-after}")
-    private Duration afterDuration;
+    public UserRegistrationFailedService(
+            UserRegisterStateRepository userRegisterStateRepository,
+            CleanupCheckpointRepository cleanupCheckpointRepository,
+            Scheduler scheduler,
+            ReactiveCouchbaseTemplate couchbaseTemplate,
+            GluuServiceApi gluuService,
+            EmailRegistrationCache emailRegistrationCache,
+            FailedRegistrationCleanupProperties properties,
+            MeterRegistry meterRegistry,
+            LeaderLease failedRegistrationCleanupLease
+    ) {
+        this.userRegisterStateRepository = userRegisterStateRepository;
+        this.cleanupCheckpointRepository = cleanupCheckpointRepository;
+        this.scheduler = scheduler;
+        this.couchbaseTemplate = couchbaseTemplate;
+        this.gluuService = gluuService;
+        this.emailRegistrationCache = emailRegistrationCache;
+        this.properties = properties;
+        this.meterRegistry = meterRegistry;
+        this.leaderLease = failedRegistrationCleanupLease;
+        this.rateLimiter = RateLimiter.of(
+                CHECKPOINT,
+                RateLimiterConfig.custom()
+                        .limitForPeriod(properties.getRatePerSecond())
+                        .limitRefreshPeriod(Duration.ofSeconds(1))
+                        // permits are reserved and waited for without blocking; this only bounds the queue
+                        .timeoutDuration(Duration.ofMinutes(5))
+                        .build()
+        );
+    }
 
     @Scheduled(fixedRateString = "${user.registration.failed.cleanup-after}", initialDelay = 60000)
     @Async
     public void cleanupCron() {
-        cleanup()
+        leaderLease
+                .runExclusively(cleanup())
                 .subscribeOn(scheduler)
                 .subscribe();
     }
 
+    /**
+     * Removes registrations left incomplete, one page of candidates at a time. The id of the last
+     * candidate of each page is checkpointed, so a run interrupted by a restart resumes where it
+     * stopped; the checkpoint is removed once the run reaches the last page.
+     */
     public Mono<Boolean> cleanup() {
         log.info("cleaning up 'failed' User Registrations");
-        var beforeTime = OffsetDateTime.now().minus(afterDuration);
-        log.info("getting all failed before: {}", beforeTime);
+        return cleanupCheckpointRepository
+                .findById(CleanupCheckpoint.key(CHECKPOINT))
+                .doOnNext(checkpoint -> log.info("resuming cleanup of registrations failed before {} after {}",
+                        checkpoint.getModifiedBefore(), checkpoint.getLastId()))
+                .switchIfEmpty(Mono.fromSupplier(() -> {
+                    Instant beforeTime = Instant.now().minus(properties.getCleanupAfter());
+                    log.info("getting all failed before: {}", beforeTime);
+                    return CleanupCheckpoint.start(CHECKPOINT, beforeTime);
+                }))
+                .flatMap(checkpoint -> cleanupPage(checkpoint)
+                        .expand(count -> count < properties.getPageSize() ? Mono.empty() : cleanupPage(checkpoint))
+                        .then(cleanupCheckpointRepository.deleteById(checkpoint.getId())))
+                .thenReturn(true);
+    }
 
+    private Mono<Integer> cleanupPage(CleanupCheckpoint checkpoint) {
         return userRegisterStateRepository
-                .findByIncomplete(
-                        beforeTime.toInstant(),
-                        UserRegisterStateType.values().length
+                .findIncomplete(
+                        checkpoint.getModifiedBefore(),
+                        UserRegisterStateType.values().length,
+                        checkpoint.getLastId(),
+                        properties.getPageSize()
                 )
-                .flatMap(this::cleanup)
                 .collectList()
-                .map(list -> true);
+                .flatMap(page -> {
+                    if (page.isEmpty()) {
+                        return Mono.just(0);
+                    }
+                    log.info("cleaning up {} failed registrations after {}", page.size(), checkpoint.getLastId());
+                    checkpoint.setLastId(page.get(page.size() - 1).getId());
+                    checkpoint.setUpdatedAt(Instant.now());
+                    return cleanup(page)
+                            .then(cleanupCheckpointRepository.save(checkpoint))
+                            .thenReturn(page.size());
+                });
     }
 
-    private Mono<Boolean> cleanup(UserRegisterState userRegisterState) {
-        log.info("cleaning up: {}", userRegisterState);
-        return Mono.zip(
-                        gluuService.deleteUser(userRegisterState.getEmail()).map(response -> true),
-                        executeQuery(DELETE_KYC_USER.replaceAll("\\?", userRegisterState.getShaktiId())),
-                        executeQuery(DELETE_SELFY_ID.replaceAll("\\?", userRegisterState.getShaktiId())),
-                        executeQuery(DELETE_BOUNTY.replaceAll("\\?", userRegisterState.getShaktiId())),
-                        executeQuery(DELETE_FROM_NOTIFICATION.replaceAll("\\?", userRegisterState.getShaktiId())),
-                        executeQuery(DELETE_USER_REGISTER_STATE_DETAIL.replaceAll("\\?", userRegisterState.getId()))
+    /**
+     * Each downstream gets its own concurrency limit: candidates are re-read, removed from Gluu and
+     * then have their Couchbase documents deleted, in separate stages.
+     */
+    private Mono<Void> cleanup(List<UserRegisterState> page) {
+        return Flux.fromIterable(page)
+                .flatMap(this::reload, properties.getCouchbaseConcurrency())
+                .flatMap(
+                        state -> deleteFromGluu(state)
+                                .transformDeferred(RateLimiterOperator.of(rateLimiter))
+                                .flatMap(deleted -> deleted ? Mono.just(state) : this.<UserRegisterState>failed()),
+                        properties.getGluuConcurrency()
                 )
-                .flatMap(tuple -> {
-                    log.info("status: {}", tuple);
-                    if (tuple.getT1() && tuple.getT2() && tuple.getT3() && tuple.getT4() && tuple.getT5()) {
-                        return executeQuery(
-                                DELETE_USER_REGISTER_STATE.replaceAll("\\?",
-                                        userRegisterState.getShaktiId())
-                        );
-                    } else {
-                        log.error("failed deleting:{}", userRegisterState);
-                        return Mono.just(false);
-                    }
-                })
-                .onErrorResume(throwable -> {
-                    log.error("error on deleting failed registation: {}", userRegisterState, throwable);
-                    return Mono.just(false);
-                });
+                .flatMap(this::deleteFromCouchbase, properties.getCouchbaseConcurrency())
+                .then();
     }
 
-    @NotNull
-    private Mono<Boolean> executeQuery(String query) {
+    /**
+     * @return the current state, or empty when it is gone or got completed since the page was read
+     */
+    private Mono<UserRegisterState> reload(UserRegisterState candidate) {
+        return userRegisterStateRepository
+                .findById(candidate.getId())
+                .flatMap(this::addLegacyStateTypes)
+                .filter(state -> state.getStateTypes().size() < UserRegisterStateType.values().length)
+                .switchIfEmpty(Mono.fromRunnable(() -> {
+                    log.debug("skipping {}, no longer incomplete", candidate.getId());
+                    count("skipped");
+                }))
+                .onErrorResume(throwable -> this.<UserRegisterState>failed(candidate, throwable));
+    }
+
+    /**
+     * A state written before {@link UserRegisterState#getStateTypes()} is not keyed by
+     * {@link UserRegisterState#key(String)}. It may have got some of its types in the state since, but
+     * the others are in detail documents, so both are merged.
+     */
+    private Mono<UserRegisterState> addLegacyStateTypes(UserRegisterState userRegisterState) {
+        if (userRegisterState.getId().startsWith(UserRegisterState.key(""))) {
+            return Mono.just(userRegisterState);
+        }
         return couchbaseTemplate
                 .getCouchbaseClientFactory()
                 .getCluster()
                 .reactive()
-                .query(query)
-                .flatMap(ReactiveQueryResult::metaData)
-                .map(metaData -> {
-                    log.trace("result: {} - {}", query, metaData.status());
-                    return metaData.status() == QueryStatus.SUCCESS;
+                .query(SELECT_LEGACY_STATE_TYPES, QueryOptions.queryOptions().adhoc(false).parameters(JsonArray.from(userRegisterState.getId())))
+                .flatMapMany(result -> result.rowsAs(String.class))
+                .filter(stateType -> EnumUtils.isValidEnum(UserRegisterStateType.class, stateType))
+                .map(UserRegisterStateType::valueOf)
+                .collectList()
+                .map(stateTypes -> {
+                    log.debug("legacy state {} has {}", userRegisterState.getId(), stateTypes);
+                    userRegisterState.getStateTypes().addAll(stateTypes);
+                    return userRegisterState;
                 });
     }
+
+    private Mono<Boolean> deleteFromGluu(UserRegisterState userRegisterState) {
+        log.info("cleaning up: {}", userRegisterState);
+        return gluuService.deleteUser(userRegisterState.getEmail())
+                .doFinally(signal -> emailRegistrationCache.invalidate(userRegisterState.getEmail()))
+                .map(response -> true)
+                .onErrorResume(throwable -> {
+                    log.error("error on deleting failed registation from gluu: {}", userRegisterState, throwable);
+                    return Mono.just(false);
+                });
+    }
+
+    private Mono<Boolean> deleteFromCouchbase(UserRegisterState userRegisterState) {
+        return executeQuery(
+                "deleteRelated",
+                DELETE_RELATED,
+                JsonArray.from(userRegisterState.getShaktiId(), userRegisterState.getId())
+        )
+                .flatMap(deleted -> {
+                    log.info("status: {} - {}", userRegisterState.getId(), deleted);
+                    if (deleted) {
+                        return userRegisterStateRepository.deleteById(userRegisterState.getId())
+                                .doOnSuccess(ignore -> count("processed"))
+                                .thenReturn(true);
+                    }
+                    log.error("failed deleting:{}", userRegisterState);
+                    return failed().thenReturn(false);
+                })
+                .onErrorResume(throwable -> failed(userRegisterState, throwable).thenReturn(false));
+    }
+
+    private <T> Mono<T> failed() {
+        count("failed");
+        return Mono.empty();
+    }
+
+    private <T> Mono<T> failed(UserRegisterState userRegisterState, Throwable throwable) {
+        log.error("error on deleting failed registation: {}", userRegisterState, throwable);
+        return failed();
+    }
+
+    private void count(String result) {
+        meterRegistry.counter(METRIC_NAME, "result", result).increment();
+    }
+
+    /**
+     * Runs a prepared statement; the plan is cached by the query service and the statement latency
+     * is recorded as {@value #QUERY_TIMER} tagged with the statement name.
+     */
+    @NotNull
+    private Mono<Boolean> executeQuery(String name, String statement, JsonArray parameters) {
+        Timer timer = Timer.builder(QUERY_TIMER)
+                .tag("statement", name)
+                .publishPercentileHistogram()
+                .register(meterRegistry);
+        return Mono.defer(() -> {
+            long start = System.nanoTime();
+            return couchbaseTemplate
+                    .getCouchbaseClientFactory()
+                    .getCluster()
+                    .reactive()
+                    .query(statement, QueryOptions.queryOptions().adhoc(false).parameters(parameters))
+                    .flatMap(ReactiveQueryResult::metaData)
+                    .map(metaData -> {
+                        log.trace("result: {} - {}", name, metaData.status());
+                        return metaData.status() == QueryStatus.SUCCESS;
+                    })
+                    .doFinally(signal -> timer.record(System.nanoTime() - start, TimeUnit.NANOSECONDS));
+        });
+    }
 }
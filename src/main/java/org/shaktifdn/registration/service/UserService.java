@@ -2,29 +2,40 @@ package org.shaktifdn.registration.service;
 
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
+import org.gluu.oxtrust.model.scim2.user.UserResource;
+import org.shaktifdn.registration.cache.EmailRegistrationCache;
+import org.shaktifdn.registration.cache.OnboardingIdempotency;
+import org.shaktifdn.registration.cache.VerifiedContactCache;
 import org.shaktifdn.registration.constant.Constant;
 import org.shaktifdn.registration.exception.BadRequestException;
+import org.shaktifdn.registration.exception.ConflictRecordsException;
 import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
+import org.shaktifdn.registration.exception.RecordNotFoundException;
 import org.shaktifdn.registration.exception.ShaktiWebClientException;
 import org.shaktifdn.registration.exception.UserAlreadyRegisteredException;
 import org.shaktifdn.registration.message.CreateUserMessage;
+import org.shaktifdn.registration.message.CreateUserOutbox;
+import org.shaktifdn.registration.metrics.OnboardingMetrics;
+import org.shaktifdn.registration.model.OutboxMessage;
 import org.shaktifdn.registration.model.UserRegisterState;
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
 import org.shaktifdn.registration.model.UserRegisterStateType;
-import org.shaktifdn.registration.repository.UserRegisterStateDetailRepository;
 import org.shaktifdn.registration.repository.UserRegisterStateRepository;
 import org.shaktifdn.registration.request.NewUserWalletAccessRequest;
 import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
 import org.shaktifdn.registration.request.WalletBytesEncryptRequest;
 import org.shaktifdn.registration.response.ResponseBean;
 import org.shaktifdn.registration.response.WalletBytesEncryptResponse;
+import org.shaktifdn.registration.util.Utils;
 import org.springframework.http.HttpStatus;
 import org.springframework.stereotype.Service;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 import reactor.util.function.Tuple2;
+import reactor.util.function.Tuple3;
 
+import javax.ws.rs.core.Response;
+import java.util.List;
 import java.util.UUID;
+import java.util.function.Supplier;
 
 import static org.shaktifdn.registration.constant.Constant.EMAIL_REGISTERATION_FLOW;
 
@@ -32,15 +43,28 @@ import static org.shaktifdn.registration.constant.Constant.EMAIL_REGISTERATION_F
 @Slf4j
 public class UserService {
 
+    static final String STAGE_REGISTRATION_CHECK = "registrationCheck";
+    static final String STAGE_EMAIL_VERIFICATION = "emailVerification";
+    static final String STAGE_MOBILE_VERIFICATION = "mobileVerification";
+    static final String STAGE_GLUU_CREATE = "gluuCreate";
+    static final String STAGE_STATE_WRITE = "stateWrite";
+    static final String STAGE_SELFYID_ENCRYPT = "selfyIdEncrypt";
+    static final String STAGE_WALLET_DEVICE_ACCESS = "walletDeviceAccess";
+    static final String STAGE_USER_CREATED_MESSAGE = "userCreatedMessage";
+
     private final EmailService emailService;
     private final MobileService mobileService;
     private final GluuServiceApi gluuService;
     private final SelfyIdService selfyIdService;
     private final UserRegisterStateRepository userRegisterStateRepository;
-    private final UserRegisterStateDetailRepository userRegisterStateDetailRepository;
     private final BizVaultService bizVaultService;
     private final WalletService walletService;
-    private final Sinks.Many<CreateUserMessage> createUserMessageSink;
+    private final CreateUserOutbox createUserOutbox;
+    private final EmailRegistrationCache emailRegistrationCache;
+    private final VerifiedContactCache verifiedContactCache;
+    private final OnboardingMetrics onboardingMetrics;
+    private final OnboardingIdempotency onboardingIdempotency;
+    private final OnboardingSaga onboardingSaga;
 
     public UserService(
             EmailService emailService,
@@ -48,20 +72,28 @@ public class UserService {
             GluuServiceApi gluuService,
             SelfyIdService selfyIdService,
             UserRegisterStateRepository userRegisterStateRepository,
-            UserRegisterStateDetailRepository userRegisterStateDetailRepository,
             BizVaultService bizVaultService,
             WalletService walletService,
-            Sinks.Many<CreateUserMessage> createUserMessageSink
+            CreateUserOutbox createUserOutbox,
+            EmailRegistrationCache emailRegistrationCache,
+            VerifiedContactCache verifiedContactCache,
+            OnboardingMetrics onboardingMetrics,
+            OnboardingIdempotency onboardingIdempotency,
+            OnboardingSaga onboardingSaga
     ) {
         this.emailService = emailService;
         this.mobileService = mobileService;
         this.gluuService = gluuService;
         this.selfyIdService = selfyIdService;
         this.userRegisterStateRepository = userRegisterStateRepository;
-        this.userRegisterStateDetailRepository = userRegisterStateDetailRepository;
         this.bizVaultService = bizVaultService;
         this.walletService = walletService;
-        this.createUserMessageSink = createUserMessageSink;
+        this.createUserOutbox = createUserOutbox;
+        this.emailRegistrationCache = emailRegistrationCache;
+        this.verifiedContactCache = verifiedContactCache;
+        this.onboardingMetrics = onboardingMetrics;
+        this.onboardingIdempotency = onboardingIdempotency;
+        this.onboardingSaga = onboardingSaga;
     }
 
     /**
@@ -72,11 +104,36 @@ public class UserService {
      * @return Mono of Response Bean
      */
     public Mono<ResponseBean> saveOnboardShakti(OnboardShaktiUserRequest onboardShakti, String clientIpAddress) {
+        return saveOnboardShakti(onboardShakti, clientIpAddress, null);
+    }
+
+    /**
+     * Onboards the user once per idempotency key, see {@link OnboardingIdempotency}: retries attach to
+     * the onboarding in progress or get its response replayed
+     *
+     * @param idempotencyKey Idempotency-Key header, or null to key by device and email
+     */
+    public Mono<ResponseBean> saveOnboardShakti(OnboardShaktiUserRequest onboardShakti, String clientIpAddress, String idempotencyKey) {
+        return saveOnboardShakti(onboardShakti, clientIpAddress, idempotencyKey, UUID.randomUUID().toString());
+    }
+
+    /**
+     * @param shaktiId Shakti ID given to the new user, chosen up front by asynchronous onboarding so its
+     *                 progress can be looked up while it runs
+     */
+    public Mono<ResponseBean> saveOnboardShakti(
+            OnboardShaktiUserRequest onboardShakti,
+            String clientIpAddress,
+            String idempotencyKey,
+            String shaktiId
+    ) {
         onboardShakti.setEmail(onboardShakti.getEmail().toLowerCase());
-        if (isMobileClient(onboardShakti)) {
-            return onboardMobileUser(onboardShakti, clientIpAddress);
-        }
-        return onboardWebBrowserUser(onboardShakti, clientIpAddress);
+        return onboardingIdempotency.onboard(idempotencyKey, onboardShakti, () -> {
+            if (isMobileClient(onboardShakti)) {
+                return onboardMobileUser(onboardShakti, clientIpAddress, shaktiId);
+            }
+            return onboardWebBrowserUser(onboardShakti, clientIpAddress, shaktiId);
+        });
     }
 
 
@@ -87,11 +144,7 @@ public class UserService {
      * @return Mono of response bean
      */
     public Mono<Boolean> checkEmailIsRegistered(String email) {
-        return Mono.zip(
-                        gluuService.isEmailRegistered(email.toLowerCase()),
-                        bizVaultService.isEmailRegistered(email.toLowerCase())
-                )
-                .map(tuple -> tuple.getT1() || tuple.getT2())
+        return isEmailRegistered(email.toLowerCase())
                 .onErrorResume(throwable -> {
                             log.error("error  while checking Email registration {}", email, throwable);
                             return Mono.error(throwable);
@@ -106,12 +159,18 @@ public class UserService {
     }
 
     /**
-     * Check emailId is verified, calling the email service from onboard
+     * Check emailId is verified, calling the email service from onboard unless the OTP was confirmed
+     * recently
      *
      * @param onboardShakti shakti request
      */
     private Mono<OnboardShaktiUserRequest> checkEmail(OnboardShaktiUserRequest onboardShakti) {
-        return emailService.isOtpVerified(onboardShakti.getEmail().toLowerCase(), EMAIL_REGISTERATION_FLOW)
+        String email = onboardShakti.getEmail().toLowerCase();
+        return verifiedContactCache
+                .isEmailVerified(email, EMAIL_REGISTERATION_FLOW)
+                .flatMap(verified -> verified
+                        ? Mono.just(true)
+                        : emailService.isOtpVerified(email, EMAIL_REGISTERATION_FLOW))
                 .flatMap(status -> {
                     if (status) {
                         onboardShakti.setEmailVerified(true);
@@ -128,12 +187,29 @@ public class UserService {
     }
 
     /**
-     * Check mobile is verified, calling the SMS OTP service from onboard
+     * Check mobile is verified, calling the SMS OTP service from onboard unless the OTP was confirmed
+     * recently
      *
      * @param onboardShakti Onboard shakti model
      * @return Mono of OnboardShaktiModel
      */
     private Mono<OnboardShaktiUserRequest> checkMobile(OnboardShaktiUserRequest onboardShakti) {
+        return verifiedContactCache
+                .isMobileVerified(
+                        onboardShakti.getCountryCode(),
+                        onboardShakti.getMobileNo(),
+                        Constant.MOBILE_REGISTERATION_FLOW
+                )
+                .flatMap(verified -> {
+                    if (verified) {
+                        onboardShakti.setMobileVerified(true);
+                        return Mono.just(onboardShakti);
+                    }
+                    return inquireMobile(onboardShakti);
+                });
+    }
+
+    private Mono<OnboardShaktiUserRequest> inquireMobile(OnboardShaktiUserRequest onboardShakti) {
         return mobileService
                 .inquire(
                         onboardShakti.getMobileNo(),
@@ -164,69 +240,147 @@ public class UserService {
                 });
     }
 
-    private Mono<ResponseBean> onboardUser(OnboardShaktiUserRequest onboardShakti, Boolean isMobileUser, String ipAddress) {
-        return Mono.zip(
-                        gluuService
-                                .isEmailRegistered(onboardShakti.getEmail()),
-                        bizVaultService.isEmailRegistered(onboardShakti.getEmail())
+    /**
+     * Checks the request, then runs the onboarding steps as an {@link OnboardingSaga}: they are retried
+     * on transient errors and undone as soon as the onboarding fails
+     */
+    private Mono<ResponseBean> onboardUser(OnboardShaktiUserRequest onboardShakti, Boolean isMobileUser, String ipAddress, String shaktiId) {
+        String flow = OnboardingMetrics.flow(isMobileUser);
+        OnboardingSaga.Execution saga = onboardingSaga.start(shaktiId);
+        // independent checks run at once, the first failure cancels the others
+        return onboardingMetrics.flow(flow, () -> Mono.zip(
+                        stage(STAGE_REGISTRATION_CHECK, flow, () -> checkNotRegistered(onboardShakti)),
+                        stage(STAGE_EMAIL_VERIFICATION, flow, () -> checkEmail(onboardShakti)),
+                        stage(STAGE_MOBILE_VERIFICATION, flow, () -> checkMobile(onboardShakti))
                 )
-                .map(tuple -> tuple.getT1() || tuple.getT2())
-                .flatMap(status -> {
-                    if (status) {
-                        return Mono.error(new UserAlreadyRegisteredException(
-                                onboardShakti.getEmail() + " email is already registered"
-                        ));
-                    }
-                    return Mono.zip(
-                                    checkEmail(onboardShakti),
-                                    checkMobile(onboardShakti)
-                            )
-                            .map(Tuple2::getT1);
-                })
-                .flatMap(this::addShaktiId)
-                .flatMap(onboardShaktiModel -> createGluuUser(isMobileUser, onboardShaktiModel, ipAddress))
+                .map(Tuple3::getT2)
+                .flatMap(onboardShaktiModel -> addShaktiId(onboardShaktiModel, shaktiId))
+                .flatMap(onboardShaktiModel -> createGluuUser(isMobileUser, onboardShaktiModel, ipAddress, saga))
                 .switchIfEmpty(Mono.error(new ExternalServiceDependencyFailure(HttpStatus.FAILED_DEPENDENCY, "Error while adding the user to the authentication server records")))
                 .zipWhen(onboardShaktiModel -> Mono.zip(
-                                encryptWalletBytes(isMobileUser, onboardShaktiModel),
-                                walletService.userDeviceAccessRegister(
-                                        NewUserWalletAccessRequest
-                                                .builder()
-                                                .shaktiId(onboardShaktiModel.getShaktiID())
-                                                .deviceId(onboardShakti.getDeviceId())
-                                                .ipAddress(ipAddress)
-                                                .location(onboardShakti.getGeojson() != null ? (onboardShakti.getGeojson().getLatitude() + "," + onboardShakti.getGeojson().getLongitude()) : "")
-                                                .build()
-                                )
+                                stage(STAGE_SELFYID_ENCRYPT, flow, () -> saga.step(
+                                        STAGE_SELFYID_ENCRYPT,
+                                        () -> encryptWalletBytes(isMobileUser, onboardShaktiModel)
+                                )),
+                                // a POST that is not idempotent, not sent again
+                                stage(STAGE_WALLET_DEVICE_ACCESS, flow, () -> saga.stepOnce(
+                                        STAGE_WALLET_DEVICE_ACCESS,
+                                        () -> walletService.userDeviceAccessRegister(
+                                                NewUserWalletAccessRequest
+                                                        .builder()
+                                                        .shaktiId(onboardShaktiModel.getShaktiID())
+                                                        .deviceId(onboardShakti.getDeviceId())
+                                                        .ipAddress(ipAddress)
+                                                        .location(onboardShakti.getGeojson() != null ? (onboardShakti.getGeojson().getLatitude() + "," + onboardShakti.getGeojson().getLongitude()) : "")
+                                                        .build()
+                                        )
+                                ))
                         ).map(Tuple2::getT1)
                 )
-                .doOnNext(tuple -> sendUserCreatedMessage(tuple.getT1(), tuple.getT2()))
+                .flatMap(tuple -> stage(STAGE_USER_CREATED_MESSAGE, flow, () -> saga.step(
+                                STAGE_USER_CREATED_MESSAGE,
+                                () -> sendUserCreatedMessage(tuple.getT1(), tuple.getT2())
+                        ))
+                        .thenReturn(tuple))
                 .flatMap(tuple -> Mono.just(new ResponseBean(201, tuple.getT1())))
-                .switchIfEmpty(Mono.error(new ExternalServiceDependencyFailure(HttpStatus.FAILED_DEPENDENCY, "No response from selfyid")))
+                .switchIfEmpty(Mono.error(new ExternalServiceDependencyFailure(HttpStatus.FAILED_DEPENDENCY, "No response from selfyid"))))
                 .onErrorResume(e -> {
                     log.error(
                             "An error has been thrown from the {} on board flow for user email id {}",
                             isMobileUser ? "mobile" : "web",
                             onboardShakti.getEmail(), e);
-                    return Mono.error(e);
+                    return saga.compensate(e).then(Mono.error(e));
                 });
     }
 
-    private Mono<OnboardShaktiUserRequest> createGluuUser(Boolean isMobileUser, OnboardShaktiUserRequest onboardShaktiModel, String ipAddress) {
-        return gluuService
-                .createUser(onboardShaktiModel, ipAddress)
-                .flatMap(response -> {
+    private Mono<Boolean> checkNotRegistered(OnboardShaktiUserRequest onboardShakti) {
+        return isEmailRegistered(onboardShakti.getEmail())
+                .flatMap(status -> {
+                    if (status) {
+                        return Mono.error(new UserAlreadyRegisteredException(
+                                onboardShakti.getEmail() + " email is already registered"
+                        ));
+                    }
+                    return Mono.just(false);
+                });
+    }
+
+    /**
+     * Runs one onboarding stage, recording its duration, outcome and span with {@link OnboardingMetrics}
+     */
+    private <T> Mono<T> stage(String name, String flow, Supplier<Mono<T>> stage) {
+        return onboardingMetrics.stage(name, flow, stage);
+    }
+
+    /**
+     * Registration status in Gluu or BizVault, answered from {@link EmailRegistrationCache} when possible
+     *
+     * @param email lowercased email
+     * @return true when registered in any of them
+     */
+    private Mono<Boolean> isEmailRegistered(String email) {
+        return Mono.zip(
+                        emailRegistrationCache.isRegisteredInGluu(email, gluuService::isEmailRegistered),
+                        emailRegistrationCache.isRegisteredInBizVault(email, bizVaultService::isEmailRegistered)
+                )
+                .map(tuple -> tuple.getT1() || tuple.getT2());
+    }
+
+    /**
+     * Creates the user in Gluu, deleted again if the onboarding fails, and writes the state that logs the
+     * onboarding steps. The SCIM create is not idempotent: a retry answered 409 after an attempt that may
+     * have gone through succeeds when the user found carries the Shakti ID of this onboarding, and only
+     * such a user is deleted.
+     */
+    private Mono<OnboardShaktiUserRequest> createGluuUser(
+            Boolean isMobileUser,
+            OnboardShaktiUserRequest onboardShaktiModel,
+            String ipAddress,
+            OnboardingSaga.Execution saga
+    ) {
+        String flow = OnboardingMetrics.flow(isMobileUser);
+        return stage(STAGE_GLUU_CREATE, flow, () -> saga.step(
+                STAGE_GLUU_CREATE,
+                () -> gluuService
+                        .createUser(onboardShaktiModel, ipAddress)
+                        .onErrorResume(ConflictRecordsException.class, e -> saga.wasUncertain(STAGE_GLUU_CREATE)
+                                ? findOwnGluuUser(onboardShaktiModel)
+                                .map(userResource -> Response.status(Response.Status.CREATED).build())
+                                .switchIfEmpty(Mono.error(e))
+                                : Mono.error(e))
+                        .doFinally(signal -> emailRegistrationCache.invalidate(onboardShaktiModel.getEmail())),
+                () -> findOwnGluuUser(onboardShaktiModel)
+                        .flatMap(userResource -> gluuService.deleteUser(onboardShaktiModel.getEmail()))
+                        .doFinally(signal -> emailRegistrationCache.invalidate(onboardShaktiModel.getEmail()))
+        ))
+                .flatMap(response -> stage(STAGE_STATE_WRITE, flow, () -> {
                     log.info("Creating user state for new registered user for email {} ", onboardShaktiModel.getEmail());
                     UserRegisterState userRegisterState =
                             UserRegisterState.create(onboardShaktiModel, isMobileUser);
-                    return userRegisterStateRepository
-                            .save(userRegisterState)
-                            .flatMap(state -> userRegisterStateDetailRepository.save(
-                                    UserRegisterStateDetail.create(state, UserRegisterStateType.GLUU_CREATED)
-                            ));
-                })
+                    userRegisterState.getStateTypes().add(UserRegisterStateType.GLUU_CREATED);
+                    return userRegisterStateRepository.save(saga.log(userRegisterState));
+                }))
                 .then(Mono.just(onboardShaktiModel));
     }
 
+    /**
+     * @return the Gluu user of the email when it was created by this onboarding, empty when there is none
+     * or it belongs to another registration
+     */
+    private Mono<UserResource> findOwnGluuUser(OnboardShaktiUserRequest onboardShaktiModel) {
+        return gluuService
+                .getUser(onboardShaktiModel.getEmail())
+                .onErrorResume(RecordNotFoundException.class, e -> Mono.empty())
+                .filter(userResource -> {
+                    if (onboardShaktiModel.getShaktiID().equals(Utils.shaktiId(userResource))) {
+                        return true;
+                    }
+                    log.warn("Gluu user {} was not created by the onboarding of {}, left alone",
+                            onboardShaktiModel.getEmail(), onboardShaktiModel.getShaktiID());
+                    return false;
+                });
+    }
+
     private Mono<WalletBytesEncryptResponse> encryptWalletBytes(
             Boolean isMobileUser,
             OnboardShaktiUserRequest onboardShaktiModel
@@ -246,12 +400,15 @@ public class UserService {
         }
     }
 
-    private void sendUserCreatedMessage(
+    /**
+     * Stores the message in the outbox; it is published to Kafka by {@link CreateUserOutbox}
+     */
+    private Mono<OutboxMessage> sendUserCreatedMessage(
             OnboardShaktiUserRequest onboardShaktiUserRequest,
             WalletBytesEncryptResponse walletBytesEncryptResponse
     ) {
         log.info("Sending create user message user email id {} ", onboardShaktiUserRequest.getEmail());
-        createUserMessageSink.tryEmitNext(
+        return createUserOutbox.enqueue(
                 CreateUserMessage
                         .builder()
                         .shaktiId(onboardShaktiUserRequest.getShaktiID())
@@ -273,9 +430,9 @@ public class UserService {
      * @param onboardShakti the on-boarding user model
      * @return the confirmation response of successful or failed on-boarding
      */
-    private Mono<ResponseBean> onboardWebBrowserUser(OnboardShaktiUserRequest onboardShakti, String ipAddress) {
+    private Mono<ResponseBean> onboardWebBrowserUser(OnboardShaktiUserRequest onboardShakti, String ipAddress, String shaktiId) {
         log.info("Starting web customer on boarding flow for email id {}", onboardShakti.getEmail());
-        return onboardUser(onboardShakti, false, ipAddress);
+        return onboardUser(onboardShakti, false, ipAddress, shaktiId);
     }
 
     /**
@@ -284,25 +441,23 @@ public class UserService {
      * @param onboardShakti the on-boarding user model
      * @return the confirmation response of successful or failed on-boarding
      */
-    private Mono<ResponseBean> onboardMobileUser(OnboardShaktiUserRequest onboardShakti, String ipAddress) {
+    private Mono<ResponseBean> onboardMobileUser(OnboardShaktiUserRequest onboardShakti, String ipAddress, String shaktiId) {
         log.info("Starting mobile customer on boarding flow for email id {}", onboardShakti.getEmail());
-        return onboardUser(onboardShakti, true, ipAddress)
-                .doOnNext(responseBean ->
-                        userRegisterStateRepository
-                                .findByShaktiId(onboardShakti.getShaktiID())
-                                .flatMap(userRegisterState -> {
-                                    log.info("Updating user state for wallet creation for email {} ", onboardShakti.getEmail());
-                                    return userRegisterStateDetailRepository.save(
-                                            UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.WALLET_CREATED)
-                                    );
-                                })
-                                .subscribe()
-                );
+        return onboardUser(onboardShakti, true, ipAddress, shaktiId)
+                .doOnNext(responseBean -> {
+                    log.info("Updating user state for wallet creation for email {} ", onboardShakti.getEmail());
+                    stage(STAGE_STATE_WRITE, OnboardingMetrics.flow(true), () -> userRegisterStateRepository
+                            .addStateTypes(
+                                    UserRegisterState.key(onboardShakti.getShaktiID()),
+                                    List.of(UserRegisterStateType.WALLET_CREATED)
+                            ))
+                            .subscribe();
+                });
     }
 
 
-    private Mono<OnboardShaktiUserRequest> addShaktiId(OnboardShaktiUserRequest onboardShaktiUserRequest) {
-        onboardShaktiUserRequest.setShaktiID(UUID.randomUUID().toString());
+    private Mono<OnboardShaktiUserRequest> addShaktiId(OnboardShaktiUserRequest onboardShaktiUserRequest, String shaktiId) {
+        onboardShaktiUserRequest.setShaktiID(shaktiId);
         return Mono.just(onboardShaktiUserRequest);
     }
 
@@ -2,13 +2,14 @@ package org.shaktifdn.registration.service;
 
 import io.github.resilience4j.circuitbreaker.annotation.CircuitBreaker;
 import lombok.extern.slf4j.Slf4j;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.enums.AccountType;
 import org.shaktifdn.registration.exception.RecordNotFoundException;
 import org.shaktifdn.registration.exception.WalletAlreadyExistsException;
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
 import org.shaktifdn.registration.model.UserRegisterStateType;
-import org.shaktifdn.registration.repository.UserRegisterStateDetailRepository;
 import org.shaktifdn.registration.repository.UserRegisterStateRepository;
 import org.shaktifdn.registration.request.CreateWalletRequest;
 import org.shaktifdn.registration.request.NewUserWalletAccessRequest;
@@ -23,7 +24,6 @@ import org.springframework.web.reactive.function.client.WebClient;
 import reactor.core.publisher.Mono;
 import reactor.core.scheduler.Scheduler;
 
-import java.util.ArrayList;
 import java.util.List;
 
 import static org.shaktifdn.registration.util.Utils.handleExternalServiceCallException;
@@ -36,32 +36,33 @@ public class WalletService extends AbstractWebClient {
     public static final String URL_WALLETS = "/wallets";
     public static final String URL_WALLETS_PASSPHRASE = "/wallets/passphrase";
     public static final String URL_WALLET_DEVICE_ACCESS_REGISTRATION = "/wallet/user/device/access/new";
+    private static final String WALLET_SERVICE = "walletService";
 
     private final UserInfoClient userInfoClient;
     private final KycUserService kycUserService;
     private final UserRegisterStateRepository userRegisterStateRepository;
-    private final UserRegisterStateDetailRepository userRegisterStateDetailRepository;
     private final Scheduler scheduler;
-    private final WebClient.Builder loadBalancedSameBearerToken;
+    private final WebClient loadBalancedSameBearerToken;
 
     public WalletService(
             @Qualifier("loadBalanced") WebClient.Builder loadBalanced,
             @Qualifier("loadBalancedSameBearerToken") WebClient.Builder loadBalancedSameBearerToken,
             ServiceProperties serviceProperties,
+            WebClientRegistry webClientRegistry,
+            RequestCoalescer requestCoalescer,
+            RequestHedger requestHedger,
             UserInfoClient userInfoClient,
             KycUserService kycUserService,
             UserRegisterStateRepository userRegisterStateRepository,
-            UserRegisterStateDetailRepository userRegisterStateDetailRepository,
             Scheduler scheduler
     ) {
-        super(loadBalanced, serviceProperties);
+        super(WALLET_SERVICE, loadBalanced, serviceProperties, webClientRegistry, requestCoalescer, requestHedger);
 
         this.userInfoClient = userInfoClient;
         this.kycUserService = kycUserService;
         this.userRegisterStateRepository = userRegisterStateRepository;
-        this.userRegisterStateDetailRepository = userRegisterStateDetailRepository;
         this.scheduler = scheduler;
-        this.loadBalancedSameBearerToken = loadBalancedSameBearerToken;
+        this.loadBalancedSameBearerToken = webClientRegistry.client(WALLET_SERVICE, loadBalancedSameBearerToken);
     }
 
     public Mono<CreateWalletResponse> create(WalletRequest walletRequest) {
@@ -88,17 +89,13 @@ public class WalletService extends AbstractWebClient {
                             .publishOn(scheduler)
                             .doOnNext(response -> {
                                 log.info("create UserRegisterState for user: {}", userDetail);
+                                // resolved by lookup, states from before the Shakti ID keys have a random id
                                 userRegisterStateRepository
                                         .findByShaktiId(userDetail.getShaktiId())
-                                        .flatMap(userRegisterState -> {
-                                            List<UserRegisterStateDetail> details = new ArrayList<>();
-                                            details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.WALLET_CREATED));
-                                            details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.KYC_USER_WALLET_UPDATED));
-                                            return userRegisterStateDetailRepository
-                                                    .saveAll(details)
-                                                    .collectList()
-                                                    .map(ignore -> userRegisterState);
-                                        })
+                                        .flatMap(userRegisterState -> userRegisterStateRepository.addStateTypes(
+                                                userRegisterState.getId(),
+                                                List.of(UserRegisterStateType.WALLET_CREATED, UserRegisterStateType.KYC_USER_WALLET_UPDATED)
+                                        ))
                                         .subscribe();
                             });
                 });
@@ -7,6 +7,7 @@ import org.gluu.oxtrust.model.scim2.user.Email;
 import org.gluu.oxtrust.model.scim2.user.PhoneNumber;
 import org.gluu.oxtrust.model.scim2.user.UserResource;
 import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
+import org.shaktifdn.registration.exception.ServiceOverloadedException;
 import org.shaktifdn.registration.exception.ShaktiWebClientException;
 import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
@@ -19,6 +20,8 @@ import java.util.concurrent.TimeoutException;
 public class Utils {
 
     public static final String PLEASE_TRY_AGAIN_LATER = "An error has been occurred during the request processing , please try again later.";
+    private static final String GLUU_USER_EXTENSION = "urn:ietf:params:scim:schemas:extension:gluu:2.0:User";
+    private static final String SHAKTI_ID = "shaktiID";
 
     private Utils() {
     }
@@ -44,14 +47,14 @@ public class Utils {
         phoneNumbers.add(phoneNumber);
 
         LinkedHashMap<String, Object> customAttribute = new LinkedHashMap<>();
-        customAttribute.put("shaktiID", onboardShakti.getShaktiID());
+        customAttribute.put(SHAKTI_ID, onboardShakti.getShaktiID());
         customAttribute.put("primaryMobileCountryCode", onboardShakti.getCountryCode());
         if (StringUtils.isNotBlank(ipAddress)) {
             customAttribute.put("IPAddress", ipAddress);
         }
         Set<String> schema = new HashSet<>();
         schema.add("urn:ietf:params:scim:schemas:core:2.0:User");
-        schema.add("urn:ietf:params:scim:schemas:extension:gluu:2.0:User");
+        schema.add(GLUU_USER_EXTENSION);
 
 
         UserResource userResource = new UserResource();
@@ -63,12 +66,24 @@ public class Utils {
         userResource.setPhoneNumbers(phoneNumbers);
         userResource.setUserName(onboardShakti.getEmail());
         userResource.setSchemas(schema);
-        userResource.getCustomAttributes().put("urn:ietf:params:scim:schemas:extension:gluu:2.0:User", customAttribute);
+        userResource.getCustomAttributes().put(GLUU_USER_EXTENSION, customAttribute);
 
         return userResource;
 
     }
 
+    /**
+     * @return Shakti ID given to the Gluu user by {@link #createUserModel}, or null
+     */
+    public static String shaktiId(UserResource userResource) {
+        Object extension = userResource.getCustomAttributes().get(GLUU_USER_EXTENSION);
+        if (!(extension instanceof Map)) {
+            return null;
+        }
+        Object shaktiId = ((Map<?, ?>) extension).get(SHAKTI_ID);
+        return shaktiId != null ? shaktiId.toString() : null;
+    }
+
     public static <T> Mono<T> handleExternalServiceCallException(Throwable throwable, String message) {
         if (throwable instanceof WebClientResponseException) {
             WebClientResponseException exception = (WebClientResponseException) throwable;
@@ -81,10 +96,16 @@ public class Utils {
                         .build());
             }
         }
+        if (throwable instanceof ExternalServiceDependencyFailure) {
+            return Mono.error(throwable);
+        }
         if (throwable instanceof TimeoutException) {
             log.info("Time out exception is thrown away with message: {}", message);
             return Mono.error(throwable);
         }
+        if (throwable instanceof ServiceOverloadedException) {
+            return Mono.error(throwable);
+        }
         return Mono.error(new ShaktiWebClientException(message));
 
     }
@@ -1,5 +1,14 @@
 package org.shaktifdn.registration;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.CoalescingProperties;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.HedgingProperties;
+import org.shaktifdn.registration.config.ServiceProperties;
 import org.springframework.boot.test.context.TestConfiguration;
 import org.springframework.context.annotation.Bean;
 import org.springframework.web.reactive.function.client.WebClient;
@@ -23,4 +32,19 @@ public class RegistrationTestConfiguration {
     public WebClient.Builder loadBalancedSameBearerToken() {
         return WebClient.builder();
     }
+
+    @Bean
+    public WebClientRegistry webClientRegistry() {
+        return new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry()));
+    }
+
+    @Bean
+    public RequestCoalescer requestCoalescer() {
+        return new RequestCoalescer(new CoalescingProperties(), new SimpleMeterRegistry());
+    }
+
+    @Bean
+    public RequestHedger requestHedger() {
+        return new RequestHedger(new HedgingProperties(), new SimpleMeterRegistry());
+    }
 }
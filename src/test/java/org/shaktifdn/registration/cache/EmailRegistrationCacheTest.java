@@ -0,0 +1,144 @@
+package org.shaktifdn.registration.cache;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.client.Deadline;
+import org.shaktifdn.registration.config.RegistrationCacheProperties;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class EmailRegistrationCacheTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private EmailRegistrationCache cache;
+
+    @BeforeEach
+    void setUp() {
+        RegistrationCacheProperties properties = new RegistrationCacheProperties();
+        properties.getEmailRegistration().setNegativeTtl(Duration.ZERO);
+        cache = new EmailRegistrationCache(properties, meterRegistry);
+    }
+
+    @Test
+    void shouldShareInFlightLookup() {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<Boolean> slowLookup = Mono.delay(Duration.ofMillis(100)).map(ignore -> true);
+
+        StepVerifier
+                .create(Mono.zip(
+                        cache.isRegisteredInGluu("a@a.com", email -> slowLookup.doOnSubscribe(s -> calls.incrementAndGet())),
+                        cache.isRegisteredInGluu("A@a.com", email -> slowLookup.doOnSubscribe(s -> calls.incrementAndGet()))
+                ))
+                .assertNext(tuple -> assertThat(tuple.getT1() && tuple.getT2()).isTrue())
+                .verifyComplete();
+
+        assertThat(calls).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "emailRegistration.gluu").tag("result", "hit")
+                .functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRunLookupWithCallerContext() {
+        StepVerifier
+                .create(cache.isRegisteredInGluu("a@a.com", email -> Mono.deferContextual(context -> Mono.just(context.hasKey("trace"))))
+                        .contextWrite(context -> context.put("trace", "t-1")))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldRunLookupUnderCallerDeadline() {
+        StepVerifier
+                .create(cache.isRegisteredInGluu("a@a.com", email -> Mono.deferContextual(context -> Mono.just(Deadline.from(context).isPresent())))
+                        .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofSeconds(5)))))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldStopWaitingForSharedLookupAtOwnDeadline() {
+        Mono<Boolean> slowLookup = Mono.delay(Duration.ofMillis(300)).map(ignore -> true);
+
+        StepVerifier
+                .create(Mono.zip(
+                        cache.isRegisteredInGluu("a@a.com", email -> slowLookup),
+                        cache.isRegisteredInGluu("a@a.com", email -> slowLookup)
+                                .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofMillis(50))))
+                                .onErrorReturn(TimeoutException.class, false)
+                ))
+                .assertNext(tuple -> {
+                    assertThat(tuple.getT1()).isTrue();
+                    assertThat(tuple.getT2()).isFalse();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldKeepSharedLookupWhenOneCallerCancels() {
+        AtomicInteger calls = new AtomicInteger();
+        Mono<Boolean> slowLookup = Mono.delay(Duration.ofMillis(100)).map(ignore -> true)
+                .doOnSubscribe(s -> calls.incrementAndGet());
+
+        StepVerifier
+                .create(cache.isRegisteredInGluu("a@a.com", email -> slowLookup))
+                .thenCancel()
+                .verify();
+        StepVerifier
+                .create(cache.isRegisteredInGluu("a@a.com", email -> slowLookup))
+                .expectNext(true)
+                .verifyComplete();
+
+        assertThat(calls).hasValue(1);
+    }
+
+    @Test
+    void shouldNotKeepNegativeAnswerBeyondTtl() {
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier
+                .create(cache.isRegisteredInBizVault("a@a.com", email -> Mono.fromCallable(() -> calls.incrementAndGet() > 1))
+                        .then(cache.isRegisteredInBizVault("a@a.com", email -> Mono.fromCallable(() -> calls.incrementAndGet() > 1))))
+                .expectNext(true)
+                .verifyComplete();
+
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void shouldInvalidate() {
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier
+                .create(cache.isRegisteredInGluu("a@a.com", email -> Mono.fromCallable(() -> calls.incrementAndGet() > 0))
+                        .doOnNext(ignore -> cache.invalidate("A@A.COM"))
+                        .then(cache.isRegisteredInGluu("a@a.com", email -> Mono.fromCallable(() -> calls.incrementAndGet() > 0))))
+                .expectNext(true)
+                .verifyComplete();
+
+        assertThat(calls).hasValue(2);
+    }
+
+    @Test
+    void shouldNotCacheFailures() {
+        AtomicInteger calls = new AtomicInteger();
+
+        StepVerifier
+                .create(cache.isRegisteredInGluu("a@a.com", email -> Mono.<Boolean>error(new IllegalStateException("down"))
+                                .doOnSubscribe(s -> calls.incrementAndGet()))
+                        .onErrorResume(e -> cache.isRegisteredInGluu("a@a.com", email -> {
+                            calls.incrementAndGet();
+                            return Mono.just(false);
+                        })))
+                .expectNext(false)
+                .verifyComplete();
+
+        assertThat(calls).hasValue(2);
+    }
+}
@@ -0,0 +1,214 @@
+package org.shaktifdn.registration.cache;
+
+import com.couchbase.client.core.error.DocumentExistsException;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.json.JsonObject;
+import com.couchbase.client.java.kv.GetResult;
+import com.couchbase.client.java.kv.InsertOptions;
+import com.couchbase.client.java.kv.MutationResult;
+import com.couchbase.client.java.kv.UpsertOptions;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.shaktifdn.registration.config.RegistrationCacheProperties;
+import org.shaktifdn.registration.exception.BadRequestException;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.response.ResponseBean;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OnboardingIdempotencyTest {
+
+    private final ReactiveCouchbaseTemplate couchbaseTemplate = mock(ReactiveCouchbaseTemplate.class, RETURNS_DEEP_STUBS);
+    private final ReactiveCollection collection = mock(ReactiveCollection.class);
+    private final ObjectMapper objectMapper = new ObjectMapper();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AtomicInteger runs = new AtomicInteger();
+    private OnboardingIdempotency idempotency;
+
+    @BeforeEach
+    void setUp() {
+        when(couchbaseTemplate.getCouchbaseClientFactory().getDefaultCollection().reactive()).thenReturn(collection);
+        when(collection.insert(anyString(), any(), any(InsertOptions.class)))
+                .thenReturn(Mono.just(mock(MutationResult.class)));
+        when(collection.upsert(anyString(), any(), any(UpsertOptions.class)))
+                .thenReturn(Mono.just(mock(MutationResult.class)));
+        when(collection.remove(anyString())).thenReturn(Mono.just(mock(MutationResult.class)));
+        RegistrationCacheProperties properties = new RegistrationCacheProperties();
+        properties.getIdempotency().setFingerprintKey("fingerprint-key");
+        idempotency = new OnboardingIdempotency(couchbaseTemplate, objectMapper, properties, meterRegistry);
+    }
+
+    @Test
+    void shouldReplayCompletedOnboardingWithoutStoringSecrets() {
+        StepVerifier
+                .create(idempotency.onboard("key-1", request("9876549876"), succeeding()))
+                .expectNextMatches(response -> response.getStatus() == 201)
+                .verifyComplete();
+        StepVerifier
+                .create(idempotency.onboard("key-1", request("9876549876"), succeeding()))
+                .assertNext(response -> {
+                    assertThat(response.getStatus()).isEqualTo(201);
+                    OnboardShaktiUserRequest details = (OnboardShaktiUserRequest) response.getDetails();
+                    assertThat(details.getShaktiID()).isEqualTo("shakti-1");
+                    assertThat(details.getPassword()).isEqualTo("Qwert@123");
+                })
+                .verifyComplete();
+
+        assertThat(runs).hasValue(1);
+        ArgumentCaptor<JsonObject> stored = ArgumentCaptor.forClass(JsonObject.class);
+        verify(collection).upsert(anyString(), stored.capture(), any(UpsertOptions.class));
+        assertThat(stored.getValue().getString("state")).isEqualTo("COMPLETED");
+        assertThat(stored.getValue().toString()).doesNotContain("Qwert@123", "123456");
+        assertThat(meterRegistry.counter(OnboardingIdempotency.METRIC_NAME, "result", "replayed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldAttachRetryToOnboardingInProgress() {
+        Sinks.One<ResponseBean> pending = Sinks.one();
+        Supplier<Mono<ResponseBean>> onboarding = () -> {
+            runs.incrementAndGet();
+            return pending.asMono();
+        };
+        Mono<ResponseBean> first = idempotency.onboard(null, request("9876549876"), onboarding);
+        Mono<ResponseBean> retry = idempotency.onboard(null, request("9876549876"), onboarding);
+
+        StepVerifier
+                .create(Mono.zip(first, retry))
+                .then(() -> pending.tryEmitValue(new ResponseBean(201, request("9876549876"))))
+                .assertNext(responses -> assertThat(responses.getT1()).isSameAs(responses.getT2()))
+                .verifyComplete();
+
+        assertThat(runs).hasValue(1);
+        assertThat(meterRegistry.counter(OnboardingIdempotency.METRIC_NAME, "result", "attached").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReplayOnboardingCompletedByAnotherReplica() throws Exception {
+        OnboardShaktiUserRequest stored = request("9876549876");
+        stored.setShaktiID("shakti-1");
+        stored.setPassword(null);
+        stored.setPin(null);
+        GetResult result = mock(GetResult.class);
+        when(result.contentAsObject()).thenReturn(JsonObject.create()
+                .put("state", "COMPLETED")
+                .put("fingerprint", idempotency.fingerprint(request("9876549876")))
+                .put("response", objectMapper.writeValueAsString(new ResponseBean(201, stored))));
+        when(collection.insert(anyString(), any(), any(InsertOptions.class)))
+                .thenReturn(Mono.error(new DocumentExistsException(null)));
+        when(collection.get(anyString())).thenReturn(Mono.just(result));
+
+        StepVerifier
+                .create(idempotency.onboard("key-1", request("9876549876"), succeeding()))
+                .assertNext(response -> {
+                    OnboardShaktiUserRequest details = (OnboardShaktiUserRequest) response.getDetails();
+                    assertThat(details.getShaktiID()).isEqualTo("shakti-1");
+                    assertThat(details.getPassword()).isEqualTo("Qwert@123");
+                })
+                .verifyComplete();
+
+        assertThat(runs).hasValue(0);
+    }
+
+    @Test
+    void shouldRejectKeyReusedForAnotherRequest() {
+        StepVerifier
+                .create(idempotency.onboard("key-1", request("9876549876"), succeeding()))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier
+                .create(idempotency.onboard("key-1", request("1234567890"), succeeding()))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void shouldRejectRetryWithAnotherPassword() {
+        OnboardShaktiUserRequest retry = request("9876549876");
+        retry.setPassword("Asdfg@456");
+
+        StepVerifier
+                .create(idempotency.onboard(null, request("9876549876"), succeeding()))
+                .expectNextCount(1)
+                .verifyComplete();
+        StepVerifier
+                .create(idempotency.onboard(null, retry, succeeding()))
+                .expectError(BadRequestException.class)
+                .verify();
+
+        assertThat(runs).hasValue(1);
+    }
+
+    @Test
+    void shouldReleaseKeyWhenOnboardingFails() {
+        Supplier<Mono<ResponseBean>> failing = () -> {
+            runs.incrementAndGet();
+            return Mono.error(new IllegalStateException("gluu down"));
+        };
+
+        StepVerifier
+                .create(idempotency.onboard("key-1", request("9876549876"), failing))
+                .expectError(IllegalStateException.class)
+                .verify();
+        StepVerifier
+                .create(idempotency.onboard("key-1", request("9876549876"), succeeding()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(runs).hasValue(2);
+        verify(collection).remove(eq(OnboardingIdempotency.key("key-1", request("9876549876"))));
+    }
+
+    @Test
+    void shouldOnboardUnguardedWhenCouchbaseFails() {
+        when(collection.insert(anyString(), any(), any(InsertOptions.class)))
+                .thenReturn(Mono.error(new IllegalStateException("couchbase down")));
+
+        StepVerifier
+                .create(idempotency.onboard("key-1", request("9876549876"), succeeding()))
+                .expectNextMatches(response -> response.getStatus() == 201)
+                .verifyComplete();
+
+        assertThat(runs).hasValue(1);
+        assertThat(meterRegistry.counter(OnboardingIdempotency.METRIC_NAME, "result", "error").count()).isEqualTo(1);
+    }
+
+    private Supplier<Mono<ResponseBean>> succeeding() {
+        return () -> Mono.fromSupplier(() -> {
+            runs.incrementAndGet();
+            OnboardShaktiUserRequest onboarded = request("9876549876");
+            onboarded.setShaktiID("shakti-1");
+            return new ResponseBean(201, onboarded);
+        });
+    }
+
+    private static OnboardShaktiUserRequest request(String mobileNo) {
+        return OnboardShaktiUserRequest
+                .builder()
+                .email("a@a.com")
+                .countryCode("+1")
+                .mobileNo(mobileNo)
+                .password("Qwert@123")
+                .deviceId("1234")
+                .pin("123456")
+                .build();
+    }
+}
@@ -0,0 +1,104 @@
+package org.shaktifdn.registration.cache;
+
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.json.JsonObject;
+import com.couchbase.client.java.kv.GetResult;
+import com.couchbase.client.java.kv.MutationResult;
+import com.couchbase.client.java.kv.UpsertOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.RegistrationCacheProperties;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class VerifiedContactCacheTest {
+
+    private final ReactiveCouchbaseTemplate couchbaseTemplate = mock(ReactiveCouchbaseTemplate.class, RETURNS_DEEP_STUBS);
+    private final ReactiveCollection collection = mock(ReactiveCollection.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private VerifiedContactCache cache;
+
+    @BeforeEach
+    void setUp() {
+        when(couchbaseTemplate.getCouchbaseClientFactory().getDefaultCollection().reactive()).thenReturn(collection);
+        cache = new VerifiedContactCache(couchbaseTemplate, new RegistrationCacheProperties(), meterRegistry);
+    }
+
+    @Test
+    void shouldAnswerFromLocalTierAfterVerification() {
+        when(collection.upsert(anyString(), any(), any(UpsertOptions.class)))
+                .thenReturn(Mono.just(mock(MutationResult.class)));
+
+        StepVerifier
+                .create(cache.emailVerified("A@a.com", "flow").then(cache.isEmailVerified("a@a.com", "flow")))
+                .expectNext(true)
+                .verifyComplete();
+
+        verify(collection).upsert(eq("VerifiedContact::email:flow:a@a.com"), any(), any(UpsertOptions.class));
+        verify(collection, never()).get(anyString());
+        assertThat(meterRegistry.counter(VerifiedContactCache.METRIC_NAME, "source", "local").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldAnswerFromSharedTier() {
+        GetResult result = mock(GetResult.class);
+        when(result.contentAsObject())
+                .thenReturn(JsonObject.create().put("expiresAt", Instant.now().plusSeconds(60).toString()));
+        when(collection.get("VerifiedContact::mobile:flow:+1:123")).thenReturn(Mono.just(result));
+
+        StepVerifier
+                .create(cache.isMobileVerified("+1", "123", "flow"))
+                .expectNext(true)
+                .verifyComplete();
+
+        assertThat(meterRegistry.counter(VerifiedContactCache.METRIC_NAME, "source", "shared").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldMissOnUnknownOrExpiredContact() {
+        GetResult expired = mock(GetResult.class);
+        when(expired.contentAsObject())
+                .thenReturn(JsonObject.create().put("expiresAt", Instant.now().minusSeconds(1).toString()));
+        when(collection.get("VerifiedContact::email:flow:a@a.com")).thenReturn(Mono.just(expired));
+        when(collection.get("VerifiedContact::email:flow:b@a.com")).thenReturn(Mono.error(new DocumentNotFoundException(null)));
+
+        StepVerifier
+                .create(cache.isEmailVerified("a@a.com", "flow").concatWith(cache.isEmailVerified("b@a.com", "flow")))
+                .expectNext(false, false)
+                .verifyComplete();
+
+        assertThat(meterRegistry.counter(VerifiedContactCache.METRIC_NAME, "source", "miss").count()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldFallBackWhenSharedTierFails() {
+        when(collection.get(anyString())).thenReturn(Mono.error(new IllegalStateException("couchbase down")));
+        when(collection.upsert(anyString(), any(), any(UpsertOptions.class)))
+                .thenReturn(Mono.error(new IllegalStateException("couchbase down")));
+
+        StepVerifier
+                .create(cache.isEmailVerified("a@a.com", "flow"))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier
+                .create(cache.mobileVerified("+1", "123", "flow"))
+                .verifyComplete();
+
+        assertThat(meterRegistry.counter(VerifiedContactCache.METRIC_NAME, "source", "error").count()).isEqualTo(1);
+    }
+}
@@ -0,0 +1,160 @@
+package org.shaktifdn.registration.client;
+
+import io.github.resilience4j.circuitbreaker.CircuitBreaker;
+import io.github.resilience4j.circuitbreaker.CircuitBreakerConfig;
+import io.github.resilience4j.reactor.circuitbreaker.operator.CircuitBreakerOperator;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.exception.ServiceOverloadedException;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.boot.env.YamlPropertySourceLoader;
+import org.springframework.core.env.PropertySource;
+import org.springframework.core.io.ClassPathResource;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.ExchangeFilterFunction;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Sinks;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ConcurrencyLimitersTest {
+
+    private ConcurrencyLimitProperties properties;
+    private SimpleMeterRegistry meterRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties = new ConcurrencyLimitProperties();
+        properties.setInitialLimit(2);
+        properties.setMinLimit(1);
+        properties.setMaxLimit(4);
+        properties.setBackoffRatio(0.5);
+        properties.setDecreaseInterval(Duration.ZERO);
+        meterRegistry = new SimpleMeterRegistry();
+    }
+
+    @Test
+    void shouldRejectCallsOverTheLimit() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("emailService", properties);
+
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isTrue();
+        assertThat(limiter.tryAcquire()).isFalse();
+        assertThat(limiter.getInFlight()).isEqualTo(2);
+        assertThat(limiter.getRejected()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldGrowWhileFastAndShrinkOnDrops() {
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("emailService", properties);
+
+        limiter.tryAcquire();
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+        assertThat(limiter.getLimit()).isEqualTo(3);
+
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), true);
+        assertThat(limiter.getLimit()).isEqualTo(1);
+
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), true);
+        assertThat(limiter.getLimit()).isEqualTo(1);
+        assertThat(limiter.getInFlight()).isZero();
+    }
+
+    @Test
+    void shouldShrinkWhenRecentLatencyRises() {
+        properties.setInitialLimit(4);
+        properties.setShortWindow(1);
+        AdaptiveConcurrencyLimiter limiter = new AdaptiveConcurrencyLimiter("gluu", properties);
+
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(10), false);
+        limiter.tryAcquire();
+        limiter.release(TimeUnit.MILLISECONDS.toNanos(100), false);
+
+        assertThat(limiter.getLimit()).isEqualTo(2);
+    }
+
+    @Test
+    void shouldShedWithServiceOverloadedAndPublishMetrics() {
+        properties.setInitialLimit(1);
+        ConcurrencyLimiters limiters = new ConcurrencyLimiters(properties, meterRegistry);
+        ExchangeFilterFunction filter = limiters.filter("bizvault");
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://bizvault/check")).build();
+        Sinks.One<ClientResponse> pending = Sinks.one();
+
+        StepVerifier.create(filter.filter(request, r -> pending.asMono()))
+                .then(() -> StepVerifier.create(filter.filter(request, r -> Mono.just(ClientResponse.create(HttpStatus.OK).build())))
+                        .expectError(ServiceOverloadedException.class)
+                        .verify())
+                .then(() -> pending.tryEmitValue(ClientResponse.create(HttpStatus.OK).build()))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(limiters.limiter("bizvault").getInFlight()).isZero();
+        assertThat(meterRegistry.get(ConcurrencyLimiters.REJECTED).tag("downstream", "bizvault").functionCounter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get(ConcurrencyLimiters.LIMIT).tag("downstream", "bizvault").gauge().value())
+                .isEqualTo(2);
+        assertThat(limiters.status()).containsKey("bizvault");
+    }
+
+    @Test
+    void shouldPassThroughWhenDisabled() {
+        properties.setEnabled(false);
+        ConcurrencyLimiters limiters = new ConcurrencyLimiters(properties, meterRegistry);
+        ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://bizvault/check")).build();
+
+        StepVerifier.create(limiters.filter("bizvault").filter(request, r -> Mono.just(ClientResponse.create(HttpStatus.OK).build())))
+                .expectNextCount(1)
+                .verifyComplete();
+        assertThat(limiters.status()).isEmpty();
+    }
+
+    @Test
+    void shouldNotCountShedCallsAsCircuitBreakerFailures() throws Exception {
+        List<PropertySource<?>> application = new YamlPropertySourceLoader()
+                .load("application", new ClassPathResource("application.yml"));
+        String[] names = new Binder(ConfigurationPropertySources.from(application))
+                .bind("resilience4j.circuitbreaker.configs.default.ignore-exceptions", String[].class)
+                .orElse(new String[0]);
+        List<Class<?>> ignored = new ArrayList<>();
+        for (String name : names) {
+            ignored.add(Class.forName(name));
+        }
+        CircuitBreaker circuitBreaker = CircuitBreaker.of("gluuService", CircuitBreakerConfig.custom()
+                .ignoreException(e -> ignored.stream().anyMatch(type -> type.isInstance(e)))
+                .minimumNumberOfCalls(1)
+                .build());
+
+        for (int i = 0; i < 10; i++) {
+            StepVerifier
+                    .create(Mono.error(new ServiceOverloadedException("gluu")).transformDeferred(CircuitBreakerOperator.of(circuitBreaker)))
+                    .expectError(ServiceOverloadedException.class)
+                    .verify();
+        }
+
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isZero();
+        assertThat(circuitBreaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        StepVerifier
+                .create(Mono.error(new IllegalStateException("gluu down")).transformDeferred(CircuitBreakerOperator.of(circuitBreaker)))
+                .expectError(IllegalStateException.class)
+                .verify();
+        assertThat(circuitBreaker.getMetrics().getNumberOfFailedCalls()).isEqualTo(1);
+    }
+}
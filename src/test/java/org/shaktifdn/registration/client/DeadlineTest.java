@@ -0,0 +1,129 @@
+package org.shaktifdn.registration.client;
+
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.DeadlineProperties;
+import org.shaktifdn.registration.controller.RequestDeadlineWebFilter;
+import org.springframework.http.HttpMethod;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.reactive.function.client.ClientRequest;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.net.URI;
+import java.time.Duration;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DeadlineTest {
+
+    private final ClientRequest request = ClientRequest.create(HttpMethod.GET, URI.create("http://kycService/kyc/wallet")).build();
+
+    @Test
+    void shouldForwardTheTimeLeft() {
+        AtomicReference<ClientRequest> sent = new AtomicReference<>();
+
+        StepVerifier
+                .create(Deadline.exchangeFilter()
+                        .filter(request, r -> {
+                            sent.set(r);
+                            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                        })
+                        .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofSeconds(2)))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        long forwarded = Long.parseLong(sent.get().headers().getFirst(Deadline.HEADER));
+        assertThat(forwarded).isBetween(1L, 2000L);
+    }
+
+    @Test
+    void shouldCutOffCallsAtTheDeadline() {
+        StepVerifier
+                .create(Deadline.exchangeFilter()
+                        .filter(request, r -> Mono.delay(Duration.ofSeconds(5)).thenReturn(ClientResponse.create(HttpStatus.OK).build()))
+                        .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofMillis(50)))))
+                .expectError(TimeoutException.class)
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldNotCallWhenTheDeadlinePassed() {
+        AtomicReference<ClientRequest> sent = new AtomicReference<>();
+
+        StepVerifier
+                .create(Deadline.exchangeFilter()
+                        .filter(request, r -> {
+                            sent.set(r);
+                            return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                        })
+                        .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ZERO))))
+                .expectError(TimeoutException.class)
+                .verify();
+
+        assertThat(sent.get()).isNull();
+    }
+
+    @Test
+    void shouldPassThroughWithoutDeadline() {
+        AtomicReference<ClientRequest> sent = new AtomicReference<>();
+
+        StepVerifier
+                .create(Deadline.exchangeFilter().filter(request, r -> {
+                    sent.set(r);
+                    return Mono.just(ClientResponse.create(HttpStatus.OK).build());
+                }))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        assertThat(sent.get().headers().containsKey(Deadline.HEADER)).isFalse();
+    }
+
+    @Test
+    void shouldTimeOutWithTheFallbackOutsideOfARequest() {
+        StepVerifier
+                .create(Deadline.timeout(Mono.never(), Duration.ofMillis(50), () -> new TimeoutException("search")))
+                .expectErrorMessage("search")
+                .verify(Duration.ofSeconds(1));
+    }
+
+    @Test
+    void shouldStartTheDeadlineWithTheShorterBudget() {
+        DeadlineProperties properties = new DeadlineProperties();
+        properties.setTimeout(Duration.ofSeconds(10));
+        RequestDeadlineWebFilter filter = new RequestDeadlineWebFilter(properties);
+        AtomicReference<Duration> remaining = new AtomicReference<>();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest
+                .get("/users/status")
+                .header(Deadline.HEADER, "3000"));
+
+        StepVerifier
+                .create(filter.filter(exchange, e -> Mono.deferContextual(context -> {
+                    remaining.set(Deadline.from(context).map(Deadline::remaining).orElse(null));
+                    return Mono.empty();
+                })))
+                .verifyComplete();
+
+        assertThat(remaining.get()).isBetween(Duration.ofSeconds(2), Duration.ofSeconds(3));
+    }
+
+    @Test
+    void shouldNotStartADeadlineForOtherPaths() {
+        RequestDeadlineWebFilter filter = new RequestDeadlineWebFilter(new DeadlineProperties());
+        AtomicReference<Boolean> present = new AtomicReference<>();
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/actuator/health"));
+
+        StepVerifier
+                .create(filter.filter(exchange, e -> Mono.deferContextual(context -> {
+                    present.set(Deadline.from(context).isPresent());
+                    return Mono.empty();
+                })))
+                .verifyComplete();
+
+        assertThat(present.get()).isFalse();
+    }
+}
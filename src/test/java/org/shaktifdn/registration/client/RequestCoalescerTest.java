@@ -0,0 +1,105 @@
+package org.shaktifdn.registration.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.CoalescingProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestCoalescerTest {
+
+    private static final String ENDPOINT = "emailService.isOtpVerified";
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private RequestCoalescer coalescer;
+
+    @BeforeEach
+    void setUp() {
+        CoalescingProperties properties = new CoalescingProperties();
+        properties.setEndpoints(Set.of(ENDPOINT));
+        coalescer = new RequestCoalescer(properties, meterRegistry);
+    }
+
+    @Test
+    void shouldCollapseConcurrentCalls() {
+        AtomicInteger upstream = new AtomicInteger();
+
+        StepVerifier
+                .create(Flux.range(0, 5)
+                        .flatMap(i -> coalescer.coalesce(ENDPOINT, "a@a.com", () -> Mono.delay(Duration.ofMillis(100))
+                                .doOnSubscribe(s -> upstream.incrementAndGet())
+                                .map(ignore -> true)))
+                        .count())
+                .expectNext(5L)
+                .verifyComplete();
+
+        assertThat(upstream).hasValue(1);
+        assertThat(meterRegistry.get(RequestCoalescer.METRIC_NAME).tag("result", "collapsed").counter().count())
+                .isEqualTo(4);
+    }
+
+    @Test
+    void shouldNotCollapseDifferentKeysOrSequentialCalls() {
+        AtomicInteger upstream = new AtomicInteger();
+
+        StepVerifier
+                .create(coalescer.coalesce(ENDPOINT, "a@a.com", () -> Mono.fromCallable(upstream::incrementAndGet))
+                        .then(coalescer.coalesce(ENDPOINT, "a@a.com", () -> Mono.fromCallable(upstream::incrementAndGet)))
+                        .then(coalescer.coalesce(ENDPOINT, "b@a.com", () -> Mono.fromCallable(upstream::incrementAndGet))))
+                .expectNext(3)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldShareErrorsWithoutKeepingThem() {
+        AtomicInteger upstream = new AtomicInteger();
+
+        StepVerifier
+                .create(coalescer.coalesce(ENDPOINT, "a@a.com", () -> Mono.<Integer>error(new IllegalStateException("down"))
+                                .doOnSubscribe(s -> upstream.incrementAndGet()))
+                        .onErrorResume(e -> coalescer.coalesce(ENDPOINT, "a@a.com", () -> Mono.fromCallable(upstream::incrementAndGet))))
+                .expectNext(2)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldStopWaitingForJoinedCallAtOwnDeadline() {
+        Mono<Boolean> slowCall = Mono.delay(Duration.ofMillis(300)).map(ignore -> true);
+
+        StepVerifier
+                .create(Mono.zip(
+                        coalescer.coalesce(ENDPOINT, "a@a.com", () -> slowCall),
+                        coalescer.coalesce(ENDPOINT, "a@a.com", () -> slowCall)
+                                .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ofMillis(50))))
+                                .onErrorReturn(TimeoutException.class, false)
+                ))
+                .assertNext(tuple -> {
+                    assertThat(tuple.getT1()).isTrue();
+                    assertThat(tuple.getT2()).isFalse();
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldPassThroughWhenNotEnabled() {
+        AtomicInteger upstream = new AtomicInteger();
+
+        StepVerifier
+                .create(Flux.range(0, 3)
+                        .flatMap(i -> coalescer.coalesce("smsService.inquire", "k", () -> Mono.delay(Duration.ofMillis(50))
+                                .doOnSubscribe(s -> upstream.incrementAndGet())))
+                        .count())
+                .expectNext(3L)
+                .verifyComplete();
+
+        assertThat(upstream).hasValue(3);
+    }
+}
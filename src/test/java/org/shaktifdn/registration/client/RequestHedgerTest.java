@@ -0,0 +1,122 @@
+package org.shaktifdn.registration.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.HedgingProperties;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RequestHedgerTest {
+
+    private static final String ENDPOINT = "kycService.isWalletExists";
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private HedgingProperties properties;
+    private RequestHedger hedger;
+
+    @BeforeEach
+    void setUp() {
+        properties = new HedgingProperties();
+        properties.setEndpoints(Set.of(ENDPOINT));
+        properties.setMinSamples(16);
+        properties.setMinDelay(Duration.ofMillis(10));
+        properties.setBudgetRatio(1.0);
+        hedger = new RequestHedger(properties, meterRegistry);
+    }
+
+    @Test
+    void shouldTakeTheHedgedResponseWhenTheFirstIsSlow() {
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(hedger.hedge(ENDPOINT, () -> attempts.incrementAndGet() == 1
+                        ? Mono.delay(Duration.ofSeconds(5)).thenReturn("slow")
+                        : Mono.just("fast")))
+                .expectNext("fast")
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(2);
+        assertThat(meterRegistry.get(RequestHedger.METRIC_NAME).tag("result", "hedged").counter().count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get(RequestHedger.METRIC_NAME).tag("result", "won").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotHedgeBeforeLatencyIsKnown() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(hedger.hedge(ENDPOINT, () -> Mono.delay(Duration.ofMillis(100))
+                        .doOnSubscribe(s -> attempts.incrementAndGet())
+                        .thenReturn("slow")))
+                .expectNext("slow")
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void shouldNotHedgeOverBudget() {
+        properties.setBudgetRatio(0);
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(hedger.hedge(ENDPOINT, () -> Mono.delay(Duration.ofMillis(100))
+                        .doOnSubscribe(s -> attempts.incrementAndGet())
+                        .thenReturn("slow")))
+                .expectNext("slow")
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(1);
+        assertThat(meterRegistry.get(RequestHedger.METRIC_NAME).tag("result", "over_budget").counter().count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldIgnoreAFailedHedge() {
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(hedger.hedge(ENDPOINT, () -> attempts.incrementAndGet() == 1
+                        ? Mono.delay(Duration.ofMillis(100)).thenReturn("slow")
+                        : Mono.<String>error(new IllegalStateException("down"))))
+                .expectNext("slow")
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(2);
+    }
+
+    @Test
+    void shouldPassThroughWhenNotEnabled() {
+        warmUp();
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(hedger.hedge("smsService.inquire", () -> Mono.delay(Duration.ofMillis(100))
+                        .doOnSubscribe(s -> attempts.incrementAndGet())))
+                .expectNext(0L)
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    private void warmUp() {
+        StepVerifier
+                .create(Flux.range(0, properties.getMinSamples())
+                        .concatMap(i -> hedger.hedge(ENDPOINT, () -> Mono.just(i)))
+                        .count())
+                .expectNext((long) properties.getMinSamples())
+                .verifyComplete();
+    }
+}
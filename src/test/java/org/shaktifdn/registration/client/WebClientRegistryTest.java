@@ -0,0 +1,43 @@
+package org.shaktifdn.registration.client;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.ServiceProperties;
+import org.springframework.web.reactive.function.client.WebClient;
+
+import java.time.Duration;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WebClientRegistryTest {
+
+    @Test
+    void shouldReuseClientPerDownstreamAndTemplate() {
+        WebClientRegistry registry = new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry()));
+        WebClient.Builder template = WebClient.builder();
+
+        WebClient client = registry.client("emailService", template);
+
+        assertThat(registry.client("emailService", template)).isSameAs(client);
+        assertThat(registry.client("smsService", template)).isNotSameAs(client);
+        assertThat(registry.client("emailService", WebClient.builder())).isNotSameAs(client);
+    }
+
+    @Test
+    void shouldMergeDownstreamOverridesWithDefaults() {
+        ServiceProperties properties = new ServiceProperties();
+        properties.getClientDefaults().setResponseTimeout(Duration.ofSeconds(10));
+        properties.getClientDefaults().setMaxConnections(100);
+        ServiceProperties.ClientSettings gluu = new ServiceProperties.ClientSettings();
+        gluu.setResponseTimeout(Duration.ofSeconds(15));
+        gluu.setMaxConnections(20);
+        properties.setClientSettings(Map.of("gluu", gluu));
+
+        assertThat(properties.settingsFor("gluu").getResponseTimeout()).isEqualTo(Duration.ofSeconds(15));
+        assertThat(properties.settingsFor("gluu").getMaxConnections()).isEqualTo(20);
+        assertThat(properties.settingsFor("emailService").getResponseTimeout()).isEqualTo(Duration.ofSeconds(10));
+        assertThat(properties.settingsFor("emailService").getMaxConnections()).isEqualTo(100);
+    }
+}
@@ -3,14 +3,18 @@ package org.shaktifdn.registration.controller;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.shaktifdn.registration.AbstractTest;
+import org.shaktifdn.registration.cache.OnboardingIdempotency;
 import org.shaktifdn.registration.exception.ConflictRecordsException;
 import org.shaktifdn.registration.exception.RecordNotFoundException;
 import org.shaktifdn.registration.exception.SelfyIdBadRequestException;
 import org.shaktifdn.registration.exception.ShaktiWebClientException;
+import org.shaktifdn.registration.model.UserRegisterStateType;
 import org.shaktifdn.registration.request.GeoJSONModel;
 import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.response.OnboardingJobStatus;
 import org.shaktifdn.registration.response.ResponseBean;
 import org.shaktifdn.registration.service.IpAddressService;
+import org.shaktifdn.registration.service.OnboardingJobs;
 import org.shaktifdn.registration.service.UserService;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.reactive.WebFluxTest;
@@ -22,9 +26,11 @@ import org.springframework.test.web.reactive.server.WebTestClient;
 import reactor.core.publisher.Mono;
 
 import javax.ws.rs.core.UriBuilder;
+import java.util.Set;
 
 import static org.mockito.ArgumentMatchers.*;
 import static org.mockito.BDDMockito.given;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -42,6 +48,9 @@ public class UserControllerTest extends AbstractTest {
     @MockBean
     private IpAddressService ipAddressService;
 
+    @MockBean
+    private OnboardingJobs onboardingJobs;
+
     @BeforeEach
     void setup() {
         when(ipAddressService.getClientIpAddress(anyString(), any(ServerHttpRequest.class))).thenReturn(IP_ADDRESS);
@@ -53,28 +62,28 @@ public class UserControllerTest extends AbstractTest {
         OnboardShaktiUserRequest request = new OnboardShaktiUserRequest("1", "amitzkumar001@gmail.com", "127.0.0.1",
                 "+1", "9876549876", true, false, "Qwert@123", "1234", "123456",
                 new GeoJSONModel(2, 24), "fd", null, null, null, null);
-        when(userService.saveOnboardShakti(eq(request), anyString()))
+        when(userService.saveOnboardShakti(eq(request), anyString(), isNull()))
                 .thenReturn(Mono.just(new ResponseBean()));
         webTestClient
                 .post().uri("/users")
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(request)
                 .exchange().expectStatus().isOk();
-        verify(userService).saveOnboardShakti(eq(request), anyString());
+        verify(userService).saveOnboardShakti(eq(request), anyString(), isNull());
     }
     @Test
     public void saveOnboardShaktiTestWithPeriodInPassword() {
         OnboardShaktiUserRequest request = new OnboardShaktiUserRequest("1", "amitzkumar001@gmail.com", "127.0.0.1",
                 "+1", "9876549876", true, false, "Qwert.123", "1234", "123456",
                 new GeoJSONModel(2, 24), "fd", null, null, null, null);
-        when(userService.saveOnboardShakti(eq(request), anyString()))
+        when(userService.saveOnboardShakti(eq(request), anyString(), isNull()))
                 .thenReturn(Mono.just(new ResponseBean()));
         webTestClient
                 .post().uri("/users")
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(request)
                 .exchange().expectStatus().isOk();
-        verify(userService).saveOnboardShakti(eq(request), anyString());
+        verify(userService).saveOnboardShakti(eq(request), anyString(), isNull());
     }
 
     @Test
@@ -83,7 +92,7 @@ public class UserControllerTest extends AbstractTest {
                 "+1", "9876549876", true, false, "Qwert@123", "1234", "123456",
                 new GeoJSONModel(2, 24), "fd", null, null, null, null);
 
-        when(userService.saveOnboardShakti(eq(request), anyString()))
+        when(userService.saveOnboardShakti(eq(request), anyString(), isNull()))
                 .thenReturn(Mono.error(new ConflictRecordsException("test")));
         webTestClient
                 .post().uri("/users")
@@ -92,7 +101,7 @@ public class UserControllerTest extends AbstractTest {
                 .exchange().expectStatus().is4xxClientError()
                 .expectBody()
                 .jsonPath("$.status").isEqualTo(false);
-        verify(userService).saveOnboardShakti(eq(request), anyString());
+        verify(userService).saveOnboardShakti(eq(request), anyString(), isNull());
     }
 
     @Test
@@ -101,7 +110,7 @@ public class UserControllerTest extends AbstractTest {
                 "+1", "9876549876", true, false, "Qwert@123", "1234", "123456",
                 new GeoJSONModel(2, 24), "fd", null, null, null, null);
 
-        when(userService.saveOnboardShakti(eq(request), anyString()))
+        when(userService.saveOnboardShakti(eq(request), anyString(), isNull()))
                 .thenReturn(Mono.error(new RecordNotFoundException("test")));
         webTestClient
                 .post().uri("/users")
@@ -110,7 +119,7 @@ public class UserControllerTest extends AbstractTest {
                 .exchange().expectStatus().isNotFound()
                 .expectBody()
                 .jsonPath("$.status").isEqualTo(false);
-        verify(userService).saveOnboardShakti(eq(request), anyString());
+        verify(userService).saveOnboardShakti(eq(request), anyString(), isNull());
     }
 
     @Test
@@ -119,14 +128,14 @@ public class UserControllerTest extends AbstractTest {
                 "+1", "9876549876", true, false, "Qwert@123", "1234", "123456",
                 new GeoJSONModel(2, 24), "fd", null, null, null, null);
 
-        when(userService.saveOnboardShakti(eq(request), anyString()))
+        when(userService.saveOnboardShakti(eq(request), anyString(), isNull()))
                 .thenReturn(Mono.error(new ShaktiWebClientException("test")));
         webTestClient
                 .post().uri("/users")
                 .contentType(MediaType.APPLICATION_JSON)
                 .bodyValue(request)
                 .exchange().expectStatus().is4xxClientError();
-        verify(userService).saveOnboardShakti(eq(request), anyString());
+        verify(userService).saveOnboardShakti(eq(request), anyString(), isNull());
     }
 
     @Test
@@ -135,7 +144,7 @@ public class UserControllerTest extends AbstractTest {
                 "+1", "9876549876", true, false, "Qwert@123", "1234", "123456",
                 new GeoJSONModel(2, 24), "fd", null, null, null, null);
 
-        when(userService.saveOnboardShakti(eq(request), anyString()))
+        when(userService.saveOnboardShakti(eq(request), anyString(), isNull()))
                 .thenReturn(Mono.error(new SelfyIdBadRequestException("test")));
         webTestClient
                 .post().uri("/users")
@@ -144,7 +153,7 @@ public class UserControllerTest extends AbstractTest {
                 .exchange().expectStatus().isBadRequest()
                 .expectBody()
                 .jsonPath("$.status").isEqualTo(false);
-        verify(userService).saveOnboardShakti(eq(request), anyString());
+        verify(userService).saveOnboardShakti(eq(request), anyString(), isNull());
     }
 
     @Test
@@ -153,7 +162,7 @@ public class UserControllerTest extends AbstractTest {
                 "+1", "9876549876", true, false, "Qwert@123", "1234", "123456",
                 new GeoJSONModel(2, 24), "fd", null, null, null, null);
 
-        when(userService.saveOnboardShakti(eq(request), anyString()))
+        when(userService.saveOnboardShakti(eq(request), anyString(), isNull()))
                 .thenReturn(Mono.error(new ShaktiWebClientException("test")));
         webTestClient
                 .post().uri("/users")
@@ -162,7 +171,71 @@ public class UserControllerTest extends AbstractTest {
                 .exchange().expectStatus().is4xxClientError()
                 .expectBody()
                 .jsonPath("$.status").isEqualTo(false);
-        verify(userService).saveOnboardShakti(eq(request), anyString());
+        verify(userService).saveOnboardShakti(eq(request), anyString(), isNull());
+    }
+
+    @Test
+    public void shouldPassIdempotencyKey() {
+        OnboardShaktiUserRequest request = new OnboardShaktiUserRequest("1", "amitzkumar001@gmail.com", "127.0.0.1",
+                "+1", "9876549876", true, false, "Qwert@123", "1234", "123456",
+                new GeoJSONModel(2, 24), "fd", null, null, null, null);
+        when(userService.saveOnboardShakti(eq(request), anyString(), eq("retry-1")))
+                .thenReturn(Mono.just(new ResponseBean()));
+        webTestClient
+                .post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(OnboardingIdempotency.HEADER, "retry-1")
+                .bodyValue(request)
+                .exchange().expectStatus().isOk();
+        verify(userService).saveOnboardShakti(eq(request), anyString(), eq("retry-1"));
+    }
+
+    @Test
+    public void shouldAcceptAsynchronousOnboarding() {
+        OnboardShaktiUserRequest request = new OnboardShaktiUserRequest("1", "amitzkumar001@gmail.com", "127.0.0.1",
+                "+1", "9876549876", true, false, "Qwert@123", "1234", "123456",
+                new GeoJSONModel(2, 24), "fd", null, null, null, null);
+        when(onboardingJobs.submit(eq(request), anyString(), isNull()))
+                .thenReturn(Mono.just(OnboardingJobStatus
+                        .builder()
+                        .jobId("job-1")
+                        .state(OnboardingJobStatus.State.ACCEPTED)
+                        .build()));
+        webTestClient
+                .post().uri("/users")
+                .contentType(MediaType.APPLICATION_JSON)
+                .header("Prefer", "respond-async")
+                .bodyValue(request)
+                .exchange().expectStatus().isAccepted()
+                .expectHeader().location("/users/onboarding/job-1")
+                .expectBody()
+                .jsonPath("$.data.jobId").isEqualTo("job-1")
+                .jsonPath("$.data.state").isEqualTo("ACCEPTED");
+        verify(userService, never()).saveOnboardShakti(any(), anyString(), any());
+    }
+
+    @Test
+    public void shouldAnswerOnboardingStatus() {
+        given(onboardingJobs.status("job-1")).willReturn(Mono.just(OnboardingJobStatus
+                .builder()
+                .jobId("job-1")
+                .state(OnboardingJobStatus.State.RUNNING)
+                .stateTypes(Set.of(UserRegisterStateType.GLUU_CREATED))
+                .build()));
+        webTestClient
+                .get().uri("/users/onboarding/job-1")
+                .exchange().expectStatus().isOk()
+                .expectBody()
+                .jsonPath("$.message").isEqualTo("RUNNING")
+                .jsonPath("$.data.stateTypes[0]").isEqualTo("GLUU_CREATED");
+    }
+
+    @Test
+    public void shouldAnswerNotFoundForUnknownOnboardingJob() {
+        given(onboardingJobs.status("job-1")).willReturn(Mono.error(new RecordNotFoundException("no onboarding job job-1")));
+        webTestClient
+                .get().uri("/users/onboarding/job-1")
+                .exchange().expectStatus().isNotFound();
     }
 
     @Test
@@ -0,0 +1,56 @@
+package org.shaktifdn.registration.lease;
+
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.AbstractIntegrationTest;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class LeaderLeaseTest extends AbstractIntegrationTest {
+
+    @Autowired
+    private ReactiveCouchbaseTemplate couchbaseTemplate;
+
+    @Test
+    void shouldGrantLeaseToOneOwnerAtATime() {
+        String name = "test-" + UUID.randomUUID();
+        LeaderLease first = lease(name, "first");
+        LeaderLease second = lease(name, "second");
+
+        StepVerifier.create(first.tryAcquire()).expectNext(true).verifyComplete();
+        StepVerifier.create(second.tryAcquire()).expectNext(false).verifyComplete();
+        // renewal by the holder
+        StepVerifier.create(first.tryAcquire()).expectNext(true).verifyComplete();
+        StepVerifier.create(second.status())
+                .assertNext(status -> {
+                    assertThat(status.get("owner")).isEqualTo("first");
+                    assertThat(status.get("leader")).isEqualTo(false);
+                })
+                .verifyComplete();
+
+        StepVerifier.create(first.release()).verifyComplete();
+        StepVerifier.create(second.tryAcquire()).expectNext(true).verifyComplete();
+        StepVerifier.create(second.release()).verifyComplete();
+    }
+
+    @Test
+    void shouldSkipTaskWhenLeaseIsHeldElsewhere() {
+        String name = "test-" + UUID.randomUUID();
+        LeaderLease first = lease(name, "first");
+        LeaderLease second = lease(name, "second");
+
+        StepVerifier.create(first.tryAcquire()).expectNext(true).verifyComplete();
+        StepVerifier.create(second.runExclusively(Mono.just("ran"))).verifyComplete();
+        StepVerifier.create(first.runExclusively(Mono.just("ran"))).expectNext("ran").verifyComplete();
+    }
+
+    private LeaderLease lease(String name, String owner) {
+        return new LeaderLease(name, owner, couchbaseTemplate, Duration.ofMinutes(1), Duration.ofSeconds(20));
+    }
+}
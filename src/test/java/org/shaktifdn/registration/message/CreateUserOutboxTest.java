@@ -0,0 +1,122 @@
+package org.shaktifdn.registration.message;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.shaktifdn.registration.config.OutboxProperties;
+import org.shaktifdn.registration.model.OutboxMessage;
+import org.shaktifdn.registration.repository.OutboxMessageRepository;
+import org.springframework.cloud.stream.function.StreamBridge;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.messaging.Message;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.time.Instant;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CreateUserOutboxTest {
+
+    private final OutboxMessageRepository repository = mock(OutboxMessageRepository.class);
+    private final StreamBridge streamBridge = mock(StreamBridge.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private CreateUserOutbox outbox;
+
+    @BeforeEach
+    void setUp() {
+        outbox = new CreateUserOutbox(repository, streamBridge, new OutboxProperties(), Schedulers.immediate(), meterRegistry);
+        when(repository.save(any(OutboxMessage.class)))
+                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
+        when(repository.delete(any(OutboxMessage.class))).thenReturn(Mono.empty());
+    }
+
+    @Test
+    void shouldPublishAndDeleteDueMessage() {
+        OutboxMessage message = message();
+        when(repository.findDue(any(), anyInt())).thenReturn(Flux.just(message));
+        ArgumentCaptor<Message<?>> captor = ArgumentCaptor.forClass(Message.class);
+        when(streamBridge.send(eq(CreateUserOutbox.BINDING), captor.capture())).thenReturn(true);
+
+        StepVerifier
+                .create(outbox.relay())
+                .expectNext(1L)
+                .verifyComplete();
+
+        verify(repository).delete(message);
+        assertThat(captor.getValue().getPayload()).isEqualTo(message.getPayload());
+        assertThat(captor.getValue().getHeaders().get(CreateUserOutbox.DEDUP_KEY_HEADER)).isEqualTo("CreateUserMessage::sk-1");
+        assertThat(meterRegistry.counter(CreateUserOutbox.METRIC_NAME, "result", "sent").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRescheduleOnSendFailure() {
+        OutboxMessage message = message();
+        when(repository.findDue(any(), anyInt())).thenReturn(Flux.just(message));
+        when(streamBridge.send(eq(CreateUserOutbox.BINDING), any(Message.class)))
+                .thenThrow(new IllegalStateException("broker down"));
+
+        StepVerifier
+                .create(outbox.relay())
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(repository, never()).delete(any(OutboxMessage.class));
+        assertThat(message.getAttempts()).isEqualTo(1);
+        assertThat(message.getLastError()).contains("broker down");
+        assertThat(message.getNextAttemptAt()).isAfter(Instant.now());
+        assertThat(meterRegistry.counter(CreateUserOutbox.METRIC_NAME, "result", "failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldSkipMessageClaimedByAnotherRelay() {
+        OutboxMessage message = message();
+        when(repository.findDue(any(), anyInt())).thenReturn(Flux.just(message));
+        doReturn(Mono.error(new OptimisticLockingFailureException("cas mismatch")))
+                .when(repository).save(any(OutboxMessage.class));
+
+        StepVerifier
+                .create(outbox.relay())
+                .expectNext(0L)
+                .verifyComplete();
+
+        verify(streamBridge, never()).send(any(), any(Message.class));
+    }
+
+    @Test
+    void shouldKeepMessageAlreadyStoredForShaktiId() {
+        when(repository.save(any(OutboxMessage.class))).thenReturn(Mono.error(new DuplicateKeyException("exists")));
+
+        StepVerifier
+                .create(outbox.enqueue(message().getPayload()))
+                .assertNext(message -> assertThat(message.getId()).isEqualTo("CreateUserMessage::sk-1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldCapBackoff() {
+        assertThat(outbox.backoff(1)).isEqualTo(Duration.ofSeconds(1));
+        assertThat(outbox.backoff(4)).isEqualTo(Duration.ofSeconds(8));
+        assertThat(outbox.backoff(30)).isEqualTo(Duration.ofMinutes(5));
+    }
+
+    private static OutboxMessage message() {
+        return OutboxMessage.create(
+                CreateUserOutbox.BINDING,
+                CreateUserMessage.builder().shaktiId("sk-1").email("a@aa.com").build()
+        );
+    }
+}
@@ -1,11 +1,10 @@
 package org.shaktifdn.registration.message;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
+import org.shaktifdn.registration.config.MessageBatchProperties;
 import org.shaktifdn.registration.model.UserRegisterState;
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
 import org.shaktifdn.registration.model.UserRegisterStateType;
-import org.shaktifdn.registration.repository.UserRegisterStateDetailRepository;
 import org.shaktifdn.registration.repository.UserRegisterStateRepository;
 import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -19,21 +18,20 @@ import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
-import java.util.Collection;
-import java.util.List;
+import java.util.Set;
 import java.util.function.Function;
 
-import static org.assertj.core.api.Assertions.assertThat;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 @ActiveProfiles("test")
 @SpringBootTest
 @TestPropertySource("classpath:application-test.yml")
-@ContextConfiguration(classes = {MessageHandler.class})
+@ContextConfiguration(classes = {MessageHandler.class, MessageBatchProperties.class, SimpleMeterRegistry.class})
 class MessageHandlerTest {
 
     @Autowired
@@ -42,9 +40,6 @@ class MessageHandlerTest {
     @MockBean
     private UserRegisterStateRepository userRegisterStateRepository;
 
-    @MockBean
-    private UserRegisterStateDetailRepository userRegisterStateDetailRepository;
-
     @Test
     void kycUserCreated() {
 
@@ -55,14 +50,13 @@ class MessageHandlerTest {
                 .build();
 
         UserRegisterState userRegisterState = UserRegisterState.create(
-                OnboardShaktiUserRequest.builder().build(),
+                OnboardShaktiUserRequest.builder().shaktiID(message.getShaktiId()).build(),
                 false
         );
-        when(userRegisterStateRepository.findByShaktiId(message.getShaktiId()))
-                .thenReturn(Mono.just(userRegisterState));
-        ArgumentCaptor<List<UserRegisterStateDetail>> captor = ArgumentCaptor.forClass(List.class);
-        when(userRegisterStateDetailRepository.saveAll(captor.capture()))
-                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
+        when(userRegisterStateRepository.findAllByShaktiIdIn(anyCollection()))
+                .thenReturn(Flux.just(userRegisterState));
+        when(userRegisterStateRepository.addStateTypes(any(), any()))
+                .thenReturn(Mono.empty());
         //noinspection unchecked
         Function<Flux<KYCUserCreatedMessage>, Flux<Void>> fn
                 = context.getBean("kycUserCreated", Function.class);
@@ -71,11 +65,11 @@ class MessageHandlerTest {
                 .create(fn.apply(Flux.just(message)))
                 .verifyComplete();
 
-        verify(userRegisterStateRepository).findByShaktiId(message.getShaktiId());
-        verify(userRegisterStateDetailRepository).saveAll(anyCollection());
-        assertThat(captor.getValue().size()).isEqualTo(1);
-        assertThat(captor.getValue().get(0).getUserRegisterStateId()).isEqualTo(userRegisterState.getId());
-        assertThat(captor.getValue().get(0).getStateType()).isEqualTo(UserRegisterStateType.KYC_USER_CREATED);
+        verify(userRegisterStateRepository).findAllByShaktiIdIn(Set.of(message.getShaktiId()));
+        verify(userRegisterStateRepository).addStateTypes(
+                userRegisterState.getId(),
+                Set.of(UserRegisterStateType.KYC_USER_CREATED)
+        );
     }
 
     @Test
@@ -88,14 +82,13 @@ class MessageHandlerTest {
                 .build();
 
         UserRegisterState userRegisterState = UserRegisterState.create(
-                OnboardShaktiUserRequest.builder().build(),
+                OnboardShaktiUserRequest.builder().shaktiID(message.getShaktiId()).build(),
                 true
         );
-        when(userRegisterStateRepository.findByShaktiId(message.getShaktiId()))
-                .thenReturn(Mono.just(userRegisterState));
-        ArgumentCaptor<List<UserRegisterStateDetail>> captor = ArgumentCaptor.forClass(List.class);
-        when(userRegisterStateDetailRepository.saveAll(captor.capture()))
-                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
+        when(userRegisterStateRepository.findAllByShaktiIdIn(anyCollection()))
+                .thenReturn(Flux.just(userRegisterState));
+        when(userRegisterStateRepository.addStateTypes(any(), any()))
+                .thenReturn(Mono.empty());
         //noinspection unchecked
         Function<Flux<KYCUserCreatedMessage>, Flux<Void>> fn
                 = context.getBean("kycUserCreated", Function.class);
@@ -104,13 +97,11 @@ class MessageHandlerTest {
                 .create(fn.apply(Flux.just(message)))
                 .verifyComplete();
 
-        verify(userRegisterStateRepository).findByShaktiId(message.getShaktiId());
-        verify(userRegisterStateDetailRepository).saveAll(anyCollection());
-        assertThat(captor.getValue().size()).isEqualTo(2);
-        assertThat(captor.getValue().get(0).getUserRegisterStateId()).isEqualTo(userRegisterState.getId());
-        assertThat(captor.getValue().get(1).getUserRegisterStateId()).isEqualTo(userRegisterState.getId());
-        assertThat(captor.getValue().get(0).getStateType()).isEqualTo(UserRegisterStateType.KYC_USER_CREATED);
-        assertThat(captor.getValue().get(1).getStateType()).isEqualTo(UserRegisterStateType.KYC_USER_WALLET_UPDATED);
+        verify(userRegisterStateRepository).findAllByShaktiIdIn(Set.of(message.getShaktiId()));
+        verify(userRegisterStateRepository).addStateTypes(
+                userRegisterState.getId(),
+                Set.of(UserRegisterStateType.KYC_USER_CREATED, UserRegisterStateType.KYC_USER_WALLET_UPDATED)
+        );
     }
 
     @Test
@@ -122,8 +113,8 @@ class MessageHandlerTest {
                 .email("a@aa.com")
                 .build();
 
-        when(userRegisterStateRepository.findByShaktiId(message.getShaktiId()))
-                .thenReturn(Mono.error(new RuntimeException("unit-test")));
+        when(userRegisterStateRepository.findAllByShaktiIdIn(anyCollection()))
+                .thenReturn(Flux.error(new RuntimeException("unit-test")));
         //noinspection unchecked
         Function<Flux<KYCUserCreatedMessage>, Flux<Void>> fn
                 = context.getBean("kycUserCreated", Function.class);
@@ -132,8 +123,8 @@ class MessageHandlerTest {
                 .create(fn.apply(Flux.just(message)))
                 .verifyComplete();
 
-        verify(userRegisterStateRepository).findByShaktiId(message.getShaktiId());
-        verify(userRegisterStateDetailRepository, never()).save(any());
+        verify(userRegisterStateRepository).findAllByShaktiIdIn(Set.of(message.getShaktiId()));
+        verify(userRegisterStateRepository, never()).addStateTypes(any(), any());
     }
 
     @Test
@@ -144,15 +135,15 @@ class MessageHandlerTest {
                 .shaktiId("sk-1")
                 .genesisBonusBountyId("1")
                 .build();
+
         UserRegisterState userRegisterState = UserRegisterState.create(
-                OnboardShaktiUserRequest.builder().build(),
+                OnboardShaktiUserRequest.builder().shaktiID(message.getShaktiId()).build(),
                 false
         );
-        when(userRegisterStateRepository.findByShaktiId(message.getShaktiId()))
-                .thenReturn(Mono.just(userRegisterState));
-        ArgumentCaptor<UserRegisterStateDetail> captor = ArgumentCaptor.forClass(UserRegisterStateDetail.class);
-        when(userRegisterStateDetailRepository.save(captor.capture()))
-                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
+        when(userRegisterStateRepository.findAllByShaktiIdIn(anyCollection()))
+                .thenReturn(Flux.just(userRegisterState));
+        when(userRegisterStateRepository.addStateTypes(any(), any()))
+                .thenReturn(Mono.empty());
         //noinspection unchecked
         Function<Flux<BountyReferralCreatedMessage>, Flux<Void>> fn
                 = context.getBean("bountyReferralCreated", Function.class);
@@ -161,10 +152,11 @@ class MessageHandlerTest {
                 .create(fn.apply(Flux.just(message)))
                 .verifyComplete();
 
-        verify(userRegisterStateRepository).findByShaktiId(message.getShaktiId());
-        verify(userRegisterStateDetailRepository).save(any());
-        assertThat(captor.getValue().getUserRegisterStateId()).isEqualTo(userRegisterState.getId());
-        assertThat(captor.getValue().getStateType()).isEqualTo(UserRegisterStateType.BOUNTY_CREATED);
+        verify(userRegisterStateRepository).findAllByShaktiIdIn(Set.of(message.getShaktiId()));
+        verify(userRegisterStateRepository).addStateTypes(
+                userRegisterState.getId(),
+                Set.of(UserRegisterStateType.BOUNTY_CREATED)
+        );
     }
 
     @Test
@@ -176,8 +168,8 @@ class MessageHandlerTest {
                 .genesisBonusBountyId("1")
                 .build();
 
-        when(userRegisterStateRepository.findByShaktiId(message.getShaktiId()))
-                .thenReturn(Mono.error(new RuntimeException("unit-test")));
+        when(userRegisterStateRepository.findAllByShaktiIdIn(anyCollection()))
+                .thenReturn(Flux.error(new RuntimeException("unit-test")));
         //noinspection unchecked
         Function<Flux<BountyReferralCreatedMessage>, Flux<Void>> fn
                 = context.getBean("bountyReferralCreated", Function.class);
@@ -186,8 +178,8 @@ class MessageHandlerTest {
                 .create(fn.apply(Flux.just(message)))
                 .verifyComplete();
 
-        verify(userRegisterStateRepository).findByShaktiId(message.getShaktiId());
-        verify(userRegisterStateRepository, never()).save(any());
+        verify(userRegisterStateRepository).findAllByShaktiIdIn(Set.of(message.getShaktiId()));
+        verify(userRegisterStateRepository, never()).addStateTypes(any(), any());
     }
 
     @Test
@@ -198,15 +190,15 @@ class MessageHandlerTest {
                 .shaktiId("sk-1")
                 .email("aa@aa.com")
                 .build();
+
         UserRegisterState userRegisterState = UserRegisterState.create(
-                OnboardShaktiUserRequest.builder().build(),
+                OnboardShaktiUserRequest.builder().shaktiID(message.getShaktiId()).build(),
                 false
         );
-        when(userRegisterStateRepository.findByShaktiId(message.getShaktiId()))
-                .thenReturn(Mono.just(userRegisterState));
-        ArgumentCaptor<UserRegisterStateDetail> captor = ArgumentCaptor.forClass(UserRegisterStateDetail.class);
-        when(userRegisterStateDetailRepository.save(captor.capture()))
-                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
+        when(userRegisterStateRepository.findAllByShaktiIdIn(anyCollection()))
+                .thenReturn(Flux.just(userRegisterState));
+        when(userRegisterStateRepository.addStateTypes(any(), any()))
+                .thenReturn(Mono.empty());
         //noinspection unchecked
         Function<Flux<SelfyIdCreatedMessage>, Flux<Void>> fn
                 = context.getBean("selfyIdCreated", Function.class);
@@ -215,10 +207,11 @@ class MessageHandlerTest {
                 .create(fn.apply(Flux.just(message)))
                 .verifyComplete();
 
-        verify(userRegisterStateRepository).findByShaktiId(message.getShaktiId());
-        verify(userRegisterStateDetailRepository).save(any());
-        assertThat(captor.getValue().getUserRegisterStateId()).isEqualTo(userRegisterState.getId());
-        assertThat(captor.getValue().getStateType()).isEqualTo(UserRegisterStateType.SELFY_ID_ENCRYPTED);
+        verify(userRegisterStateRepository).findAllByShaktiIdIn(Set.of(message.getShaktiId()));
+        verify(userRegisterStateRepository).addStateTypes(
+                userRegisterState.getId(),
+                Set.of(UserRegisterStateType.SELFY_ID_ENCRYPTED)
+        );
     }
 
     @Test
@@ -230,8 +223,8 @@ class MessageHandlerTest {
                 .email("aa@aa.com")
                 .build();
 
-        when(userRegisterStateRepository.findByShaktiId(message.getShaktiId()))
-                .thenReturn(Mono.error(new RuntimeException("unit-test")));
+        when(userRegisterStateRepository.findAllByShaktiIdIn(anyCollection()))
+                .thenReturn(Flux.error(new RuntimeException("unit-test")));
         //noinspection unchecked
         Function<Flux<SelfyIdCreatedMessage>, Flux<Void>> fn
                 = context.getBean("selfyIdCreated", Function.class);
@@ -240,8 +233,41 @@ class MessageHandlerTest {
                 .create(fn.apply(Flux.just(message)))
                 .verifyComplete();
 
-        verify(userRegisterStateRepository).findByShaktiId(message.getShaktiId());
-        verify(userRegisterStateRepository, never()).save(any());
+        verify(userRegisterStateRepository).findAllByShaktiIdIn(Set.of(message.getShaktiId()));
+        verify(userRegisterStateRepository, never()).addStateTypes(any(), any());
+    }
+
+    @Test
+    void kycUserCreated_batch() {
+
+        UserRegisterState first = UserRegisterState.create(
+                OnboardShaktiUserRequest.builder().shaktiID("sk-1").build(),
+                false
+        );
+        UserRegisterState second = UserRegisterState.create(
+                OnboardShaktiUserRequest.builder().shaktiID("sk-2").build(),
+                false
+        );
+        when(userRegisterStateRepository.findAllByShaktiIdIn(anyCollection()))
+                .thenReturn(Flux.just(first, second));
+        when(userRegisterStateRepository.addStateTypes(any(), any()))
+                .thenReturn(Mono.empty());
+        //noinspection unchecked
+        Function<Flux<KYCUserCreatedMessage>, Flux<Void>> fn
+                = context.getBean("kycUserCreated", Function.class);
+
+        StepVerifier
+                .create(fn.apply(Flux.just(
+                        KYCUserCreatedMessage.builder().shaktiId("sk-1").build(),
+                        KYCUserCreatedMessage.builder().shaktiId("sk-2").build(),
+                        KYCUserCreatedMessage.builder().shaktiId("sk-3").build()
+                )))
+                .verifyComplete();
+
+        verify(userRegisterStateRepository, times(1)).findAllByShaktiIdIn(anyCollection());
+        verify(userRegisterStateRepository).addStateTypes(first.getId(), Set.of(UserRegisterStateType.KYC_USER_CREATED));
+        verify(userRegisterStateRepository).addStateTypes(second.getId(), Set.of(UserRegisterStateType.KYC_USER_CREATED));
+        verify(userRegisterStateRepository, times(2)).addStateTypes(any(), any());
     }
 
-}
\ No newline at end of file
+}
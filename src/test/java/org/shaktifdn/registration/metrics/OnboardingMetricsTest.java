@@ -0,0 +1,69 @@
+package org.shaktifdn.registration.metrics;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.opentracing.Tracer;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.exception.UserAlreadyRegisteredException;
+import org.springframework.beans.factory.support.StaticListableBeanFactory;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class OnboardingMetricsTest {
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OnboardingMetrics onboardingMetrics;
+
+    @BeforeEach
+    void setUp() {
+        onboardingMetrics = new OnboardingMetrics(meterRegistry, new StaticListableBeanFactory().getBeanProvider(Tracer.class));
+    }
+
+    @Test
+    void shouldTimeStagesByFlowAndOutcome() {
+        StepVerifier
+                .create(onboardingMetrics.flow(OnboardingMetrics.FLOW_WEB, () -> onboardingMetrics
+                        .stage("gluuCreate", OnboardingMetrics.FLOW_WEB, () -> Mono.delay(Duration.ofMillis(20)))
+                        .then(onboardingMetrics.stage("registrationCheck", OnboardingMetrics.FLOW_WEB,
+                                () -> Mono.error(new UserAlreadyRegisteredException("registered"))))))
+                .expectError(UserAlreadyRegisteredException.class)
+                .verify();
+
+        assertThat(meterRegistry.get(OnboardingMetrics.STAGE_TIMER)
+                .tags("stage", "gluuCreate", "flow", "web", "outcome", "success", "exception", "none")
+                .timer()
+                .totalTime(TimeUnit.MILLISECONDS))
+                .isGreaterThanOrEqualTo(20);
+        assertThat(meterRegistry.get(OnboardingMetrics.STAGE_TIMER)
+                .tags("stage", "registrationCheck", "outcome", "failure", "exception", "UserAlreadyRegisteredException")
+                .timer()
+                .count())
+                .isEqualTo(1);
+        assertThat(meterRegistry.get(OnboardingMetrics.FLOW_TIMER)
+                .tags("flow", "web", "outcome", "failure")
+                .timer()
+                .count())
+                .isEqualTo(1);
+    }
+
+    @Test
+    void shouldSummarizeLivePercentiles() {
+        StepVerifier
+                .create(onboardingMetrics.stage("selfyIdEncrypt", OnboardingMetrics.FLOW_MOBILE, () -> Mono.just(1)))
+                .expectNext(1)
+                .verifyComplete();
+
+        Map<String, Map<String, Object>> summary = onboardingMetrics.summary();
+
+        assertThat(summary).containsOnlyKeys("selfyIdEncrypt/mobile/success/none");
+        assertThat(summary.get("selfyIdEncrypt/mobile/success/none"))
+                .containsKeys("count", "meanMs", "p50Ms", "p99Ms", "maxMs")
+                .containsEntry("count", 1L);
+    }
+}
@@ -0,0 +1,69 @@
+package org.shaktifdn.registration.repository;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import org.springframework.data.couchbase.core.query.Query;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserRegisterStateLookupImplTest {
+
+    private final ReactiveCouchbaseTemplate couchbaseTemplate = mock(ReactiveCouchbaseTemplate.class, RETURNS_DEEP_STUBS);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    @Test
+    void shouldFindByKey() {
+        UserRegisterState state = UserRegisterState.create(OnboardShaktiUserRequest.builder().shaktiID("sk-1").build(), false);
+        when(couchbaseTemplate.findById(UserRegisterState.class).one("UserRegisterState::sk-1"))
+                .thenReturn(Mono.just(state));
+
+        StepVerifier
+                .create(new UserRegisterStateLookupImpl(couchbaseTemplate, meterRegistry, true).findByShaktiId("sk-1"))
+                .expectNext(state)
+                .verifyComplete();
+
+        verify(couchbaseTemplate, never()).findByQuery(UserRegisterState.class);
+        assertThat(meterRegistry.counter(UserRegisterStateLookupImpl.METRIC_NAME, "source", "kv").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldFallBackToQueryForLegacyDocuments() {
+        UserRegisterState state = UserRegisterState.create(OnboardShaktiUserRequest.builder().shaktiID("sk-1").build(), false);
+        state.setId("0b7f5e2c-legacy");
+        when(couchbaseTemplate.findById(UserRegisterState.class).one("UserRegisterState::sk-1"))
+                .thenReturn(Mono.empty());
+        when(couchbaseTemplate.findByQuery(UserRegisterState.class).matching(any(Query.class)).first())
+                .thenReturn(Mono.just(state));
+
+        StepVerifier
+                .create(new UserRegisterStateLookupImpl(couchbaseTemplate, meterRegistry, true).findByShaktiId("sk-1"))
+                .expectNext(state)
+                .verifyComplete();
+
+        assertThat(meterRegistry.counter(UserRegisterStateLookupImpl.METRIC_NAME, "source", "legacy").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotQueryWhenLegacyLookupDisabled() {
+        when(couchbaseTemplate.findById(UserRegisterState.class).one("UserRegisterState::sk-1"))
+                .thenReturn(Mono.empty());
+
+        StepVerifier
+                .create(new UserRegisterStateLookupImpl(couchbaseTemplate, meterRegistry, false).findByShaktiId("sk-1"))
+                .verifyComplete();
+
+        verify(couchbaseTemplate, never()).findByQuery(UserRegisterState.class);
+        assertThat(meterRegistry.counter(UserRegisterStateLookupImpl.METRIC_NAME, "source", "miss").count()).isEqualTo(1);
+    }
+}
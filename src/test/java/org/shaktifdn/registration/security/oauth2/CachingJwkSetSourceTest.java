@@ -0,0 +1,104 @@
+package org.shaktifdn.registration.security.oauth2;
+
+import com.nimbusds.jose.JOSEException;
+import com.nimbusds.jose.JWSAlgorithm;
+import com.nimbusds.jose.JWSHeader;
+import com.nimbusds.jose.jwk.JWKSet;
+import com.nimbusds.jose.jwk.RSAKey;
+import com.nimbusds.jose.jwk.gen.RSAKeyGenerator;
+import com.nimbusds.jwt.JWTClaimsSet;
+import com.nimbusds.jwt.SignedJWT;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.AuthProperties;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.web.reactive.function.client.ClientResponse;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CachingJwkSetSourceTest {
+
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+    private final AtomicReference<JWKSet> published = new AtomicReference<>();
+    private final AuthProperties.Jwks settings = new AuthProperties.Jwks();
+    private RSAKey first;
+    private RSAKey second;
+    private CachingJwkSetSource source;
+
+    @BeforeEach
+    void setUp() throws JOSEException {
+        first = new RSAKeyGenerator(2048).keyID("k1").generate();
+        second = new RSAKeyGenerator(2048).keyID("k2").generate();
+        published.set(new JWKSet(first.toPublicJWK()));
+        WebClient webClient = WebClient.builder()
+                .exchangeFunction(request -> {
+                    requested.add(request.url().getPath());
+                    String body = request.url().getPath().endsWith("openid-configuration")
+                            ? "{\"jwks_uri\":\"http://idp/jwks\"}"
+                            : published.get().toString();
+                    return Mono.delay(Duration.ofMillis(50)).map(ignore -> ClientResponse
+                            .create(HttpStatus.OK)
+                            .header(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE)
+                            .body(body)
+                            .build());
+                })
+                .build();
+        source = new CachingJwkSetSource("http://idp/", webClient, settings, new SimpleMeterRegistry());
+    }
+
+    @Test
+    void shouldServePrefetchedKeysFromMemory() {
+        StepVerifier.create(source.refresh()).expectNextCount(1).verifyComplete();
+
+        StepVerifier
+                .create(source.apply(jwt("k1")).concatWith(source.apply(jwt("k1"))))
+                .expectNext(first.toPublicJWK(), first.toPublicJWK())
+                .verifyComplete();
+
+        assertThat(requested).containsExactly("/.well-known/openid-configuration", "/jwks");
+    }
+
+    @Test
+    void shouldShareRefreshForUnknownKey() {
+        StepVerifier.create(source.refresh()).expectNextCount(1).verifyComplete();
+        settings.setMinRefreshInterval(Duration.ZERO);
+        published.set(new JWKSet(List.of(first.toPublicJWK(), second.toPublicJWK())));
+
+        StepVerifier
+                .create(Flux.merge(source.apply(jwt("k2")), source.apply(jwt("k2")), source.apply(jwt("k2"))))
+                .expectNextCount(3)
+                .verifyComplete();
+
+        assertThat(requested).containsExactly("/.well-known/openid-configuration", "/jwks", "/jwks");
+    }
+
+    @Test
+    void shouldNotRefreshAgainWithinMinInterval() {
+        StepVerifier.create(source.refresh()).expectNextCount(1).verifyComplete();
+
+        StepVerifier
+                .create(source.apply(jwt("unknown")))
+                .verifyComplete();
+
+        assertThat(requested).containsExactly("/.well-known/openid-configuration", "/jwks");
+    }
+
+    private static SignedJWT jwt(String kid) {
+        return new SignedJWT(
+                new JWSHeader.Builder(JWSAlgorithm.RS256).keyID(kid).build(),
+                new JWTClaimsSet.Builder().subject("user").build()
+        );
+    }
+}
@@ -0,0 +1,87 @@
+package org.shaktifdn.registration.security.oauth2;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.AuthProperties;
+import org.springframework.security.oauth2.jwt.BadJwtException;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.jwt.ReactiveJwtDecoder;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class CachingReactiveJwtDecoderTest {
+
+    private final ReactiveJwtDecoder delegate = mock(ReactiveJwtDecoder.class);
+    private final CachingReactiveJwtDecoder decoder =
+            new CachingReactiveJwtDecoder(delegate, new AuthProperties.Jwks(), new SimpleMeterRegistry());
+
+    @Test
+    void shouldDecodeRepeatedTokenOnce() {
+        Jwt jwt = jwt("token-1", Instant.now().plusSeconds(300));
+        when(delegate.decode("token-1")).thenReturn(Mono.just(jwt));
+
+        StepVerifier
+                .create(decoder.decode("token-1").then(decoder.decode("token-1")))
+                .expectNext(jwt)
+                .verifyComplete();
+
+        verify(delegate, times(1)).decode("token-1");
+    }
+
+    @Test
+    void shouldDecodeWithCallerContext() {
+        Jwt jwt = jwt("token-1", Instant.now().plusSeconds(300));
+        when(delegate.decode("token-1")).thenReturn(Mono.deferContextual(context -> context.hasKey("trace")
+                ? Mono.just(jwt)
+                : Mono.error(new IllegalStateException("no trace"))));
+
+        StepVerifier
+                .create(decoder.decode("token-1").contextWrite(context -> context.put("trace", "t-1")))
+                .expectNext(jwt)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldNotKeepExpiredToken() {
+        Jwt jwt = jwt("token-1", Instant.now().minusSeconds(1));
+        when(delegate.decode("token-1"))
+                .thenReturn(Mono.just(jwt))
+                .thenReturn(Mono.error(new BadJwtException("expired")));
+
+        StepVerifier
+                .create(decoder.decode("token-1"))
+                .expectError(BadJwtException.class)
+                .verify();
+    }
+
+    @Test
+    void shouldNotKeepRejectedToken() {
+        Jwt jwt = jwt("token-1", Instant.now().plusSeconds(300));
+        when(delegate.decode("token-1"))
+                .thenReturn(Mono.error(new BadJwtException("unknown key")))
+                .thenReturn(Mono.just(jwt));
+
+        StepVerifier
+                .create(decoder.decode("token-1").onErrorResume(BadJwtException.class, e -> decoder.decode("token-1")))
+                .expectNext(jwt)
+                .verifyComplete();
+
+        verify(delegate, times(2)).decode("token-1");
+    }
+
+    private static Jwt jwt(String tokenValue, Instant expiresAt) {
+        return Jwt.withTokenValue(tokenValue)
+                .header("alg", "RS256")
+                .claim("sub", "user")
+                .issuedAt(expiresAt.minusSeconds(600))
+                .expiresAt(expiresAt)
+                .build();
+    }
+}
@@ -2,6 +2,7 @@ package org.shaktifdn.registration.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.specto.hoverfly.junit.core.Hoverfly;
 import io.specto.hoverfly.junit.core.HoverflyConfig;
 import io.specto.hoverfly.junit.core.model.RequestFieldMatcher;
@@ -9,6 +10,13 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.shaktifdn.registration.AbstractTest;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.CoalescingProperties;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.HedgingProperties;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.response.BizVaultRegistrationStatus;
 import org.shaktifdn.registration.response.ShaktiResponse;
@@ -47,7 +55,10 @@ class BizVaultServiceTest extends AbstractTest {
         bizVaultServiceWebClient = new BizVaultService(
                 WebClient.builder()
                         .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE),
-                properties
+                properties,
+                new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry())),
+                new RequestCoalescer(new CoalescingProperties(), new SimpleMeterRegistry()),
+                new RequestHedger(new HedgingProperties(), new SimpleMeterRegistry())
         );
     }
 
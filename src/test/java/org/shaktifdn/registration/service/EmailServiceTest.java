@@ -2,6 +2,7 @@ package org.shaktifdn.registration.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.specto.hoverfly.junit.core.Hoverfly;
 import io.specto.hoverfly.junit.core.HoverflyConfig;
 import io.specto.hoverfly.junit.core.model.RequestFieldMatcher;
@@ -9,6 +10,14 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.shaktifdn.registration.AbstractTest;
+import org.shaktifdn.registration.cache.VerifiedContactCache;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.CoalescingProperties;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.HedgingProperties;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.exception.*;
 import org.shaktifdn.registration.request.SendEmailOtpRequest;
@@ -18,6 +27,7 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.Map;
@@ -26,13 +36,16 @@ import static io.specto.hoverfly.junit.core.HoverflyMode.SIMULATE;
 import static io.specto.hoverfly.junit.core.SimulationSource.dsl;
 import static io.specto.hoverfly.junit.dsl.HoverflyDsl.service;
 import static io.specto.hoverfly.junit.dsl.ResponseCreators.success;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class EmailServiceTest extends AbstractTest {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
     private Hoverfly hoverfly;
+    private final VerifiedContactCache verifiedContactCache = mock(VerifiedContactCache.class);
     private EmailService emailService;
 
     @BeforeEach
@@ -51,8 +64,13 @@ class EmailServiceTest extends AbstractTest {
         emailService = new EmailService(
                 WebClient.builder()
                         .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE),
-                properties
+                properties,
+                new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry())),
+                new RequestCoalescer(new CoalescingProperties(), new SimpleMeterRegistry()),
+                new RequestHedger(new HedgingProperties(), new SimpleMeterRegistry()),
+                verifiedContactCache
         );
+        when(verifiedContactCache.emailVerified(any(), any())).thenReturn(Mono.empty());
     }
 
     @AfterEach
@@ -177,6 +195,8 @@ class EmailServiceTest extends AbstractTest {
                 ))
                 .expectNext(response)
                 .verifyComplete();
+
+        verify(verifiedContactCache).emailVerified(request.getEmail(), request.getRequestedFlow());
     }
 
     @Test
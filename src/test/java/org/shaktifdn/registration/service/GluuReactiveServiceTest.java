@@ -0,0 +1,212 @@
+package org.shaktifdn.registration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.specto.hoverfly.junit.core.Hoverfly;
+import io.specto.hoverfly.junit.core.HoverflyConfig;
+import io.specto.hoverfly.junit.core.model.RequestFieldMatcher;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.GluuProperties;
+import org.shaktifdn.registration.config.ServiceProperties;
+import org.shaktifdn.registration.exception.ConflictRecordsException;
+import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
+import org.shaktifdn.registration.exception.ShaktiWebClientException;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.springframework.web.reactive.function.client.WebClient;
+import reactor.test.StepVerifier;
+
+import java.security.KeyPairGenerator;
+import java.security.NoSuchAlgorithmException;
+import java.util.Map;
+
+import static io.specto.hoverfly.junit.core.HoverflyMode.SIMULATE;
+import static io.specto.hoverfly.junit.core.SimulationSource.dsl;
+import static io.specto.hoverfly.junit.dsl.HoverflyDsl.service;
+import static io.specto.hoverfly.junit.dsl.ResponseBuilder.response;
+import static io.specto.hoverfly.junit.dsl.ResponseCreators.noContent;
+import static io.specto.hoverfly.junit.dsl.ResponseCreators.success;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class GluuReactiveServiceTest {
+
+    private static final String IP_ADDRESS = "0.0.0.0";
+    private static final String USERS = "/identity/restv1/scim/v2/Users";
+    private static final String SCIM_JSON = "application/scim+json";
+    private final GluuProperties gluuProperties = mock(GluuProperties.class);
+    private Hoverfly hoverfly;
+    private GluuServiceApi gluuService;
+
+    @BeforeEach
+    void setup() throws NoSuchAlgorithmException {
+        var localConfig = HoverflyConfig
+                .localConfigs()
+                .disableTlsVerification()
+                .asWebServer()
+                .proxyPort(18999);
+        hoverfly = new Hoverfly(localConfig, SIMULATE);
+        hoverfly.start();
+        when(gluuProperties.getGluuUri()).thenReturn("http://localhost:18999");
+
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        WebClient webClient = WebClient.builder().build();
+        GluuScimClient scimClient = new GluuScimClient(
+                webClient,
+                "http://localhost:18999" + GluuService.GLUU_URL_IDENTITY2,
+                new GluuUmaAuthenticator(webClient, "client", generator.generateKeyPair().getPrivate(), "kid")
+        );
+        gluuService = new GluuReactiveService(
+                gluuProperties,
+                scimClient,
+                WebClient.builder(),
+                new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry()))
+        );
+    }
+
+    @AfterEach
+    void tearDown() {
+        hoverfly.close();
+    }
+
+    @Test
+    void shouldCreateUser() {
+        hoverfly.simulate(dsl(
+                service(new RequestFieldMatcher<>(RequestFieldMatcher.MatcherType.REGEX, "*"))
+                        .post(USERS)
+                        .anyBody()
+                        .willReturn(response().status(201).header("Content-Type", SCIM_JSON).body("{}"))
+        ));
+
+        StepVerifier
+                .create(gluuService.createUser(request(), IP_ADDRESS))
+                .assertNext(response -> assertThat(response.getStatus()).isEqualTo(201))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldFailOnConflictCreateUser() {
+        hoverfly.simulate(dsl(
+                service(new RequestFieldMatcher<>(RequestFieldMatcher.MatcherType.REGEX, "*"))
+                        .post(USERS)
+                        .anyBody()
+                        .willReturn(response().status(409))
+        ));
+
+        StepVerifier
+                .create(gluuService.createUser(request(), IP_ADDRESS))
+                .expectError(ConflictRecordsException.class)
+                .verify();
+    }
+
+    @Test
+    void shouldFailWithDependencyFailureOnServerErrorCreateUser() {
+        hoverfly.simulate(dsl(
+                service(new RequestFieldMatcher<>(RequestFieldMatcher.MatcherType.REGEX, "*"))
+                        .post(USERS)
+                        .anyBody()
+                        .willReturn(response().status(503))
+        ));
+
+        StepVerifier
+                .create(gluuService.createUser(request(), IP_ADDRESS))
+                .expectError(ExternalServiceDependencyFailure.class)
+                .verify();
+    }
+
+    @Test
+    void shouldFailCreateUser() {
+        hoverfly.simulate(dsl(
+                service(new RequestFieldMatcher<>(RequestFieldMatcher.MatcherType.REGEX, "*"))
+                        .post(USERS)
+                        .anyBody()
+                        .willReturn(response().status(403))
+        ));
+
+        StepVerifier
+                .create(gluuService.createUser(request(), IP_ADDRESS))
+                .expectError(ShaktiWebClientException.class)
+                .verify();
+    }
+
+    @Test
+    void shouldCheckExistingUser() {
+        hoverfly.simulate(dsl(
+                service(new RequestFieldMatcher<>(RequestFieldMatcher.MatcherType.REGEX, "*"))
+                        .get(USERS)
+                        .anyQueryParams()
+                        .willReturn(success(searchResponse("u-1"), SCIM_JSON))
+        ));
+
+        StepVerifier
+                .create(gluuService.isEmailRegistered("test@s.com"))
+                .expectNext(true)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldCheckExistingUserFalse() {
+        hoverfly.simulate(dsl(
+                service(new RequestFieldMatcher<>(RequestFieldMatcher.MatcherType.REGEX, "*"))
+                        .get(USERS)
+                        .anyQueryParams()
+                        .willReturn(success("{\"totalResults\":0,\"Resources\":[]}", SCIM_JSON))
+        ));
+
+        StepVerifier
+                .create(gluuService.isEmailRegistered("test@s.com"))
+                .expectNext(false)
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldDeleteUser() {
+        hoverfly.simulate(dsl(
+                service(new RequestFieldMatcher<>(RequestFieldMatcher.MatcherType.REGEX, "*"))
+                        .get(USERS)
+                        .anyQueryParams()
+                        .willReturn(success(searchResponse("u-1"), SCIM_JSON))
+                        .delete(USERS + "/u-1")
+                        .willReturn(noContent())
+        ));
+
+        StepVerifier
+                .create(gluuService.deleteUser("test@s.com"))
+                .assertNext(response -> assertThat(response.getStatus()).isEqualTo(204))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldParseUmaChallenge() {
+        Map<String, String> params = GluuUmaAuthenticator.parseChallenge(
+                "UMA realm=\"Authorization required\", host_id=iam.shakticoin.com, " +
+                        "as_uri=https://iam.shakticoin.com, ticket=9f1c-42"
+        );
+
+        assertThat(params)
+                .containsEntry("as_uri", "https://iam.shakticoin.com")
+                .containsEntry("ticket", "9f1c-42")
+                .containsEntry("realm", "Authorization required");
+    }
+
+    private static OnboardShaktiUserRequest request() {
+        return OnboardShaktiUserRequest
+                .builder()
+                .email("test@s.com")
+                .shaktiID("test@s.com")
+                .password("password")
+                .mobileNo("+11231231234")
+                .pin("1234")
+                .build();
+    }
+
+    private static String searchResponse(String id) {
+        return "{\"totalResults\":1,\"Resources\":[{\"id\":\"" + id + "\",\"userName\":\"test@s.com\"," +
+                "\"" + GluuService.USER_ATTRIBUTE_KEY + "\":{\"shaktiID\":\"test@s.com\"}}]}";
+    }
+}
@@ -3,6 +3,7 @@ package org.shaktifdn.registration.service;
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import gluu.scim2.client.rest.ClientSideService;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.specto.hoverfly.junit.core.Hoverfly;
 import io.specto.hoverfly.junit.core.HoverflyConfig;
 import io.specto.hoverfly.junit.core.model.RequestFieldMatcher;
@@ -14,7 +15,11 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
 import org.shaktifdn.registration.config.GluuProperties;
+import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.exception.BadRequestException;
 import org.shaktifdn.registration.exception.ConflictRecordsException;
 import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
@@ -56,7 +61,8 @@ class GluuServiceTest {
                 gluuProperties,
                 Schedulers.boundedElastic(),
                 clientSideService,
-                WebClient.builder()
+                WebClient.builder(),
+                new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry()))
         );
         var localConfig = HoverflyConfig
                 .localConfigs()
@@ -187,6 +193,25 @@ class GluuServiceTest {
         assertThat(userCaptor.getValue().getPassword()).isEqualTo(request.getPassword());
     }
 
+    @Test
+    void shouldFailWithDependencyFailureOnServerErrorCreateUser() {
+        OnboardShaktiUserRequest request = OnboardShaktiUserRequest
+                .builder()
+                .email("test@s.com")
+                .shaktiID("test@s.com")
+                .password("password")
+                .build();
+        ServerResponse response = new ServerResponse();
+        response.setStatus(HttpStatus.SERVICE_UNAVAILABLE.value());
+        when(clientSideService.createUser(any(UserResource.class), any(), any()))
+                .thenReturn(response);
+        StepVerifier
+                .create(gluuService.createUser(request, IP_ADDRESS))
+                .expectErrorMatches(error -> error instanceof ExternalServiceDependencyFailure
+                        && ((ExternalServiceDependencyFailure) error).getHttpStatus() == HttpStatus.SERVICE_UNAVAILABLE)
+                .verify();
+    }
+
     @Test
     void shouldFailCreateUser() {
         OnboardShaktiUserRequest request = OnboardShaktiUserRequest
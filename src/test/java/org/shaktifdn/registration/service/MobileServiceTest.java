@@ -2,6 +2,7 @@ package org.shaktifdn.registration.service;
 
 import com.fasterxml.jackson.core.JsonProcessingException;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.specto.hoverfly.junit.core.Hoverfly;
 import io.specto.hoverfly.junit.core.HoverflyConfig;
 import io.specto.hoverfly.junit.core.model.RequestFieldMatcher;
@@ -9,6 +10,14 @@ import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.shaktifdn.registration.AbstractTest;
+import org.shaktifdn.registration.cache.VerifiedContactCache;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.RequestCoalescer;
+import org.shaktifdn.registration.client.RequestHedger;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.CoalescingProperties;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
+import org.shaktifdn.registration.config.HedgingProperties;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.exception.*;
 import org.shaktifdn.registration.request.SendMobileOtpRequest;
@@ -19,22 +28,28 @@ import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.MediaType;
 import org.springframework.web.reactive.function.client.WebClient;
+import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.Map;
+import java.util.concurrent.TimeUnit;
 
 import static io.specto.hoverfly.junit.core.HoverflyMode.SIMULATE;
 import static io.specto.hoverfly.junit.core.SimulationSource.dsl;
 import static io.specto.hoverfly.junit.dsl.HoverflyDsl.service;
 import static io.specto.hoverfly.junit.dsl.ResponseCreators.serverError;
 import static io.specto.hoverfly.junit.dsl.ResponseCreators.success;
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
 class MobileServiceTest extends AbstractTest {
 
     private final ObjectMapper objectMapper = new ObjectMapper();
     private Hoverfly hoverfly;
+    private final VerifiedContactCache verifiedContactCache = mock(VerifiedContactCache.class);
     private MobileService mobileService;
 
     @BeforeEach
@@ -53,8 +68,13 @@ class MobileServiceTest extends AbstractTest {
         mobileService = new MobileService(
                 WebClient.builder()
                         .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE),
-                properties
+                properties,
+                new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry())),
+                new RequestCoalescer(new CoalescingProperties(), new SimpleMeterRegistry()),
+                new RequestHedger(new HedgingProperties(), new SimpleMeterRegistry()),
+                verifiedContactCache
         );
+        when(verifiedContactCache.mobileVerified(any(), any(), any())).thenReturn(Mono.empty());
     }
 
     @AfterEach
@@ -188,6 +208,8 @@ class MobileServiceTest extends AbstractTest {
                 ))
                 .expectNext(response)
                 .verifyComplete();
+
+        verify(verifiedContactCache).mobileVerified(request.getCountryCode(), request.getMobileNo(), request.getRequestedFlow());
     }
 
     @Test
@@ -314,6 +336,56 @@ class MobileServiceTest extends AbstractTest {
                 .verifyComplete();
     }
 
+    @Test
+    void shouldNotShareInquiryOfAnotherCountryCode() throws JsonProcessingException {
+        // the same digits once country code and number are put together
+        VerificationMobileOtpRequest request = VerificationMobileOtpRequest
+                .builder()
+                .countryCode("+1")
+                .mobileNo("2345678901")
+                .requestedFlow("support")
+                .build();
+        VerificationMobileOtpRequest other = VerificationMobileOtpRequest
+                .builder()
+                .countryCode("+12")
+                .mobileNo("345678901")
+                .requestedFlow("support")
+                .build();
+        SmsServiceResponse response = SmsServiceResponse.builder().code(200).payload(Map.of("status", "VERIFIED")).build();
+        SmsServiceResponse otherResponse = SmsServiceResponse.builder().code(200).payload(Map.of("status", "NOT_VERIFIED")).build();
+
+        hoverfly.simulate(dsl(
+                service(new RequestFieldMatcher<>(RequestFieldMatcher.MatcherType.REGEX, "*"))
+                        .post(MobileService.MOBILE_OTP_INQUIRY)
+                        .body(objectMapper.writeValueAsString(request))
+                        .willReturn(
+                                success()
+                                        .body(objectMapper.writeValueAsString(response))
+                                        .header("Content-Type", "application/json; charset=utf-8")
+                                        .withDelay(300, TimeUnit.MILLISECONDS)
+                        )
+                        .post(MobileService.MOBILE_OTP_INQUIRY)
+                        .body(objectMapper.writeValueAsString(other))
+                        .willReturn(
+                                success()
+                                        .body(objectMapper.writeValueAsString(otherResponse))
+                                        .header("Content-Type", "application/json; charset=utf-8")
+                                        .withDelay(300, TimeUnit.MILLISECONDS)
+                        )
+        ));
+
+        StepVerifier
+                .create(Mono.zip(
+                        mobileService.inquire(request.getMobileNo(), request.getCountryCode(), request.getRequestedFlow()),
+                        mobileService.inquire(other.getMobileNo(), other.getCountryCode(), other.getRequestedFlow())
+                ))
+                .assertNext(responses -> {
+                    assertThat(responses.getT1()).isEqualTo(response);
+                    assertThat(responses.getT2()).isEqualTo(otherResponse);
+                })
+                .verifyComplete();
+    }
+
     @Test
     void shouldNotVerifyOtp() throws JsonProcessingException {
         VerificationMobileOtpRequest request = VerificationMobileOtpRequest
@@ -0,0 +1,216 @@
+package org.shaktifdn.registration.service;
+
+import com.couchbase.client.core.error.DocumentNotFoundException;
+import com.couchbase.client.java.ReactiveCollection;
+import com.couchbase.client.java.json.JsonObject;
+import com.couchbase.client.java.kv.GetResult;
+import com.couchbase.client.java.kv.MutationResult;
+import com.couchbase.client.java.kv.UpsertOptions;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.shaktifdn.registration.config.AsyncOnboardingProperties;
+import org.shaktifdn.registration.exception.RecordNotFoundException;
+import org.shaktifdn.registration.exception.ServiceOverloadedException;
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.shaktifdn.registration.model.UserRegisterStateType;
+import org.shaktifdn.registration.repository.UserRegisterStateRepository;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.shaktifdn.registration.response.OnboardingJobStatus;
+import org.shaktifdn.registration.response.ResponseBean;
+import org.springframework.data.couchbase.core.ReactiveCouchbaseTemplate;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.scheduler.Schedulers;
+import reactor.test.StepVerifier;
+
+import java.time.Instant;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.ArgumentMatchers.isNull;
+import static org.mockito.Mockito.RETURNS_DEEP_STUBS;
+import static org.mockito.Mockito.atLeastOnce;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OnboardingJobsTest {
+
+    private final UserService userService = mock(UserService.class);
+    private final UserRegisterStateRepository userRegisterStateRepository = mock(UserRegisterStateRepository.class);
+    private final ReactiveCouchbaseTemplate couchbaseTemplate = mock(ReactiveCouchbaseTemplate.class, RETURNS_DEEP_STUBS);
+    private final ReactiveCollection collection = mock(ReactiveCollection.class);
+    private final AsyncOnboardingProperties properties = new AsyncOnboardingProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private OnboardingJobs onboardingJobs;
+
+    @BeforeEach
+    void setUp() {
+        when(couchbaseTemplate.getCouchbaseClientFactory().getDefaultCollection().reactive()).thenReturn(collection);
+        when(collection.upsert(anyString(), any(), any(UpsertOptions.class)))
+                .thenReturn(Mono.just(mock(MutationResult.class)));
+        when(collection.get(anyString())).thenReturn(Mono.error(new DocumentNotFoundException(null)));
+        when(userRegisterStateRepository.findById(anyString())).thenReturn(Mono.empty());
+    }
+
+    @AfterEach
+    void tearDown() {
+        onboardingJobs.dispose();
+    }
+
+    @Test
+    void shouldRunAcceptedJobWithItsShaktiId() {
+        onboardingJobs = new OnboardingJobs(userService, userRegisterStateRepository, couchbaseTemplate, properties, meterRegistry);
+        when(userService.saveOnboardShakti(any(), eq("1.1.1.1"), eq("key-1"), anyString()))
+                .thenAnswer(invocation -> {
+                    OnboardShaktiUserRequest onboarded = request();
+                    onboarded.setShaktiID(invocation.getArgument(3));
+                    return Mono.just(new ResponseBean(201, onboarded));
+                });
+        UserRegisterState state = new UserRegisterState();
+        state.setStateTypes(Set.of(UserRegisterStateType.GLUU_CREATED));
+
+        OnboardingJobStatus accepted = onboardingJobs.submit(request(), "1.1.1.1", "key-1").block();
+
+        assertThat(accepted.getState()).isEqualTo(OnboardingJobStatus.State.ACCEPTED);
+        when(userRegisterStateRepository.findById(UserRegisterState.key(accepted.getJobId()))).thenReturn(Mono.just(state));
+        StepVerifier
+                .create(onboardingJobs.status(accepted.getJobId()))
+                .assertNext(status -> {
+                    assertThat(status.getState()).isEqualTo(OnboardingJobStatus.State.COMPLETED);
+                    assertThat(status.getShaktiId()).isEqualTo(accepted.getJobId());
+                    assertThat(status.getStateTypes()).containsExactly(UserRegisterStateType.GLUU_CREATED);
+                })
+                .verifyComplete();
+
+        ArgumentCaptor<JsonObject> shared = ArgumentCaptor.forClass(JsonObject.class);
+        verify(collection, atLeastOnce()).upsert(eq("OnboardingJob::" + accepted.getJobId()), shared.capture(), any(UpsertOptions.class));
+        assertThat(shared.getAllValues())
+                .extracting(document -> document.getString("state"))
+                .containsExactly("ACCEPTED", "RUNNING", "COMPLETED");
+        assertThat(shared.getValue().toString()).doesNotContain("Qwert@123");
+        assertThat(meterRegistry.counter(OnboardingJobs.METRIC_NAME, "result", "completed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldReportFailedJob() {
+        onboardingJobs = new OnboardingJobs(userService, userRegisterStateRepository, couchbaseTemplate, properties, meterRegistry);
+        when(userService.saveOnboardShakti(any(), anyString(), isNull(), anyString()))
+                .thenReturn(Mono.error(new IllegalStateException("gluu down")));
+
+        OnboardingJobStatus accepted = onboardingJobs.submit(request(), "1.1.1.1", null).block();
+
+        StepVerifier
+                .create(onboardingJobs.status(accepted.getJobId()))
+                .assertNext(status -> {
+                    assertThat(status.getState()).isEqualTo(OnboardingJobStatus.State.FAILED);
+                    assertThat(status.getMessage()).isEqualTo("gluu down");
+                })
+                .verifyComplete();
+        assertThat(meterRegistry.counter(OnboardingJobs.METRIC_NAME, "result", "failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRejectJobWhenQueueIsFull() {
+        properties.setConcurrency(1);
+        properties.setQueueSize(1);
+        onboardingJobs = new OnboardingJobs(userService, userRegisterStateRepository, couchbaseTemplate, properties, meterRegistry);
+        when(userService.saveOnboardShakti(any(), anyString(), isNull(), anyString())).thenReturn(Mono.never());
+
+        // the first runs, the second waits for the only worker
+        onboardingJobs.submit(request(), "1.1.1.1", null).block();
+        onboardingJobs.submit(request(), "1.1.1.1", null).block();
+
+        StepVerifier
+                .create(onboardingJobs.submit(request(), "1.1.1.1", null))
+                .expectError(ServiceOverloadedException.class)
+                .verify();
+        assertThat(meterRegistry.get(OnboardingJobs.QUEUED).gauge().value()).isEqualTo(1);
+        assertThat(meterRegistry.counter(OnboardingJobs.METRIC_NAME, "result", "rejected").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldQueueJobsSubmittedConcurrently() {
+        properties.setConcurrency(1);
+        properties.setQueueSize(100);
+        onboardingJobs = new OnboardingJobs(userService, userRegisterStateRepository, couchbaseTemplate, properties, meterRegistry);
+        when(userService.saveOnboardShakti(any(), anyString(), isNull(), anyString())).thenReturn(Mono.never());
+
+        StepVerifier
+                .create(Flux.range(0, 50)
+                        .parallel()
+                        .runOn(Schedulers.parallel())
+                        .flatMap(i -> onboardingJobs.submit(request(), "1.1.1.1", null))
+                        .sequential())
+                .expectNextCount(50)
+                .verifyComplete();
+
+        // one job runs, the others wait for the only worker
+        assertThat(meterRegistry.get(OnboardingJobs.QUEUED).gauge().value()).isEqualTo(49);
+        assertThat(meterRegistry.counter(OnboardingJobs.METRIC_NAME, "result", "accepted").count()).isEqualTo(50);
+    }
+
+    @Test
+    void shouldGiveQueueSlotBackWhenJobCannotBeQueued() {
+        onboardingJobs = new OnboardingJobs(userService, userRegisterStateRepository, couchbaseTemplate, properties, meterRegistry);
+        // no worker takes jobs any more
+        onboardingJobs.dispose();
+
+        StepVerifier
+                .create(onboardingJobs.submit(request(), "1.1.1.1", null))
+                .expectError(ServiceOverloadedException.class)
+                .verify();
+
+        assertThat(meterRegistry.get(OnboardingJobs.QUEUED).gauge().value()).isEqualTo(0);
+        assertThat(meterRegistry.counter(OnboardingJobs.METRIC_NAME, "result", "failed").count()).isEqualTo(1);
+        ArgumentCaptor<JsonObject> shared = ArgumentCaptor.forClass(JsonObject.class);
+        verify(collection, atLeastOnce()).upsert(anyString(), shared.capture(), any(UpsertOptions.class));
+        assertThat(shared.getValue().getString("state")).isEqualTo("FAILED");
+    }
+
+    @Test
+    void shouldReadJobSharedByAnotherReplica() {
+        onboardingJobs = new OnboardingJobs(userService, userRegisterStateRepository, couchbaseTemplate, properties, meterRegistry);
+        GetResult result = mock(GetResult.class);
+        when(result.contentAsObject()).thenReturn(JsonObject.create()
+                .put("_type", OnboardingJobs.TYPE)
+                .put("state", "RUNNING")
+                .put("acceptedAt", Instant.now().toString()));
+        when(collection.get("OnboardingJob::job-1")).thenReturn(Mono.just(result));
+
+        StepVerifier
+                .create(onboardingJobs.status("job-1"))
+                .assertNext(status -> {
+                    assertThat(status.getJobId()).isEqualTo("job-1");
+                    assertThat(status.getState()).isEqualTo(OnboardingJobStatus.State.RUNNING);
+                })
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldAnswerNotFoundForUnknownJob() {
+        onboardingJobs = new OnboardingJobs(userService, userRegisterStateRepository, couchbaseTemplate, properties, meterRegistry);
+
+        StepVerifier
+                .create(onboardingJobs.status("job-1"))
+                .expectError(RecordNotFoundException.class)
+                .verify();
+    }
+
+    private static OnboardShaktiUserRequest request() {
+        return OnboardShaktiUserRequest
+                .builder()
+                .email("a@a.com")
+                .countryCode("+1")
+                .mobileNo("9876549876")
+                .password("Qwert@123")
+                .deviceId("1234")
+                .build();
+    }
+}
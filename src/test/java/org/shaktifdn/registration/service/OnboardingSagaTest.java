@@ -0,0 +1,223 @@
+package org.shaktifdn.registration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.client.Deadline;
+import org.shaktifdn.registration.config.OnboardingSagaProperties;
+import org.shaktifdn.registration.exception.ConflictRecordsException;
+import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
+import org.shaktifdn.registration.model.UserRegisterState;
+import org.shaktifdn.registration.repository.UserRegisterStateRepository;
+import org.springframework.http.HttpStatus;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class OnboardingSagaTest {
+
+    private static final String SHAKTI_ID = "shakti-1";
+
+    private final UserRegisterStateRepository userRegisterStateRepository = mock(UserRegisterStateRepository.class);
+    private final OnboardingSagaProperties properties = new OnboardingSagaProperties();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final List<String> undone = new ArrayList<>();
+    private OnboardingSaga onboardingSaga;
+
+    @BeforeEach
+    void setUp() {
+        properties.setBackoff(Duration.ofMillis(1));
+        when(userRegisterStateRepository.addCompletedSteps(anyString(), any())).thenReturn(Mono.empty());
+        when(userRegisterStateRepository.deleteById(anyString())).thenReturn(Mono.empty());
+        onboardingSaga = new OnboardingSaga(userRegisterStateRepository, properties, meterRegistry);
+    }
+
+    @Test
+    void shouldRetryTransientFailureAndLogCompletedStep() {
+        OnboardingSaga.Execution saga = onboardingSaga.start(SHAKTI_ID);
+        saga.log(new UserRegisterState());
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(saga.<String>step("selfyIdEncrypt", () -> attempts.incrementAndGet() == 1
+                        ? Mono.error(new ExternalServiceDependencyFailure(HttpStatus.SERVICE_UNAVAILABLE, "try again"))
+                        : Mono.just("encrypted")))
+                .expectNext("encrypted")
+                .verifyComplete();
+
+        assertThat(attempts).hasValue(2);
+        verify(userRegisterStateRepository).addCompletedSteps(UserRegisterState.key(SHAKTI_ID), List.of("selfyIdEncrypt"));
+        assertThat(meterRegistry.counter(OnboardingSaga.METRIC_NAME, "step", "selfyIdEncrypt", "result", "retried").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotRetryPermanentFailure() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(onboardingSaga.start(SHAKTI_ID).step("gluuCreate", () -> {
+                    attempts.incrementAndGet();
+                    return Mono.error(new ConflictRecordsException("a@a.com is already registered in system"));
+                }))
+                .expectError(ConflictRecordsException.class)
+                .verify();
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void shouldNotRetryOnceDeadlineExpired() {
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(onboardingSaga.start(SHAKTI_ID)
+                        .step("gluuCreate", () -> {
+                            attempts.incrementAndGet();
+                            return Mono.error(new TimeoutException());
+                        })
+                        .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ZERO))))
+                .expectError(TimeoutException.class)
+                .verify();
+
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void shouldCompensateCompletedStepsMostRecentFirst() {
+        OnboardingSaga.Execution saga = onboardingSaga.start(SHAKTI_ID);
+
+        StepVerifier
+                .create(saga.step("gluuCreate", () -> Mono.just("created"), undo("gluuCreate"))
+                        .map(created -> saga.log(new UserRegisterState()))
+                        .then(saga.step("walletDeviceAccess", () -> Mono.just("registered"), undo("walletDeviceAccess")))
+                        .then(saga.step("userCreatedMessage", () -> Mono.error(new IllegalStateException("outbox down"))))
+                        .onErrorResume(e -> saga.compensate(e).then(Mono.error(e))))
+                .expectErrorMessage("outbox down")
+                .verify();
+
+        assertThat(undone).containsExactly("walletDeviceAccess", "gluuCreate");
+        verify(userRegisterStateRepository).deleteById(UserRegisterState.key(SHAKTI_ID));
+    }
+
+    @Test
+    void shouldCompensateStepThatMayHaveBeenApplied() {
+        properties.setRetries(0);
+        OnboardingSaga.Execution saga = onboardingSaga.start(SHAKTI_ID);
+
+        StepVerifier
+                .create(saga.step("gluuCreate", () -> Mono.error(new TimeoutException()), undo("gluuCreate"))
+                        .onErrorResume(e -> saga.compensate(e).then(Mono.error(e))))
+                .expectError(TimeoutException.class)
+                .verify();
+
+        assertThat(undone).containsExactly("gluuCreate");
+        verify(userRegisterStateRepository, never()).deleteById(anyString());
+    }
+
+    @Test
+    void shouldKeepStateWhenCompensationFails() {
+        OnboardingSaga.Execution saga = onboardingSaga.start(SHAKTI_ID);
+        saga.log(new UserRegisterState());
+
+        StepVerifier
+                .create(saga.step("gluuCreate", () -> Mono.just("created"), () -> Mono.error(new IllegalStateException("gluu down")))
+                        .then(saga.compensate(new IllegalStateException("outbox down"))))
+                .verifyComplete();
+
+        verify(userRegisterStateRepository, never()).deleteById(anyString());
+        assertThat(meterRegistry.counter(OnboardingSaga.METRIC_NAME, "step", "compensation", "result", "failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldCompensateOutsideExpiredDeadline() {
+        OnboardingSaga.Execution saga = onboardingSaga.start(SHAKTI_ID);
+        saga.log(new UserRegisterState());
+
+        StepVerifier
+                .create(saga.step("gluuCreate", () -> Mono.just("created"), () -> Mono.deferContextual(context -> {
+                            if (context.hasKey(Deadline.class)) {
+                                return Mono.error(new TimeoutException("deadline exceeded"));
+                            }
+                            undone.add("gluuCreate");
+                            return Mono.empty();
+                        }))
+                        .then(saga.step("userCreatedMessage", () -> Mono.error(new IllegalStateException("outbox down"))))
+                        .onErrorResume(e -> saga.compensate(e).then(Mono.error(e)))
+                        .contextWrite(context -> context.put(Deadline.class, Deadline.after(Duration.ZERO))))
+                .expectErrorMessage("outbox down")
+                .verify();
+
+        assertThat(undone).containsExactly("gluuCreate");
+        verify(userRegisterStateRepository).deleteById(UserRegisterState.key(SHAKTI_ID));
+    }
+
+    @Test
+    void shouldGiveUpCompensationAfterItsTimeout() {
+        properties.setCompensationTimeout(Duration.ofMillis(50));
+        OnboardingSaga.Execution saga = onboardingSaga.start(SHAKTI_ID);
+        saga.log(new UserRegisterState());
+
+        StepVerifier
+                .create(saga.step("gluuCreate", () -> Mono.just("created"), Mono::never)
+                        .then(saga.compensate(new IllegalStateException("outbox down"))))
+                .verifyComplete();
+
+        verify(userRegisterStateRepository, never()).deleteById(anyString());
+        assertThat(meterRegistry.counter(OnboardingSaga.METRIC_NAME, "step", "compensation", "result", "failed").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldRunStepOnceWithoutRetry() {
+        OnboardingSaga.Execution saga = onboardingSaga.start(SHAKTI_ID);
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(saga.stepOnce("walletDeviceAccess", () -> {
+                    attempts.incrementAndGet();
+                    return Mono.error(new ExternalServiceDependencyFailure(HttpStatus.SERVICE_UNAVAILABLE, "try again"));
+                }))
+                .expectError(ExternalServiceDependencyFailure.class)
+                .verify();
+
+        assertThat(attempts).hasValue(1);
+        assertThat(saga.wasUncertain("walletDeviceAccess")).isTrue();
+    }
+
+    @Test
+    void shouldTellUncertainAttemptOfRetriedStep() {
+        OnboardingSaga.Execution saga = onboardingSaga.start(SHAKTI_ID);
+        AtomicInteger attempts = new AtomicInteger();
+
+        StepVerifier
+                .create(saga.<String>step("gluuCreate", () -> {
+                    if (attempts.incrementAndGet() == 1) {
+                        return Mono.error(new TimeoutException());
+                    }
+                    return saga.wasUncertain("gluuCreate")
+                            ? Mono.just("found")
+                            : Mono.error(new ConflictRecordsException("a@a.com is already registered in system"));
+                }, undo("gluuCreate")))
+                .expectNext("found")
+                .verifyComplete();
+
+        assertThat(saga.wasUncertain("selfyIdEncrypt")).isFalse();
+    }
+
+    private Supplier<Mono<?>> undo(String step) {
+        return () -> Mono.fromRunnable(() -> undone.add(step));
+    }
+}
@@ -1,5 +1,6 @@
 package org.shaktifdn.registration.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import io.specto.hoverfly.junit.core.Hoverfly;
 import io.specto.hoverfly.junit.core.HoverflyConfig;
 import io.specto.hoverfly.junit.core.model.RequestFieldMatcher;
@@ -8,6 +9,9 @@ import io.specto.hoverfly.junit.dsl.matchers.HoverflyMatchers;
 import org.junit.jupiter.api.AfterAll;
 import org.junit.jupiter.api.BeforeAll;
 import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.client.ConcurrencyLimiters;
+import org.shaktifdn.registration.client.WebClientRegistry;
+import org.shaktifdn.registration.config.ConcurrencyLimitProperties;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
 import org.shaktifdn.registration.exception.SelfyIdBadRequestException;
@@ -50,7 +54,8 @@ class SelfyIdServiceTest {
         selfyIdService = new SelfyIdService(
                 WebClient.builder()
                         .defaultHeader(HttpHeaders.CONTENT_TYPE, MediaType.APPLICATION_JSON_VALUE),
-                properties
+                properties,
+                new WebClientRegistry(new ServiceProperties(), new ConcurrencyLimiters(new ConcurrencyLimitProperties(), new SimpleMeterRegistry()))
         );
     }
 
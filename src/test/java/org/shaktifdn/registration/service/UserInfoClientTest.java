@@ -0,0 +1,161 @@
+package org.shaktifdn.registration.service;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.shaktifdn.registration.config.AuthProperties;
+import org.shaktifdn.registration.exception.ShaktiWebClientException;
+import org.shaktifdn.registration.response.UserDetail;
+import org.springframework.security.core.context.ReactiveSecurityContextHolder;
+import org.springframework.security.oauth2.client.registration.ClientRegistration;
+import org.springframework.security.oauth2.client.registration.ReactiveClientRegistrationRepository;
+import org.springframework.security.oauth2.client.userinfo.OAuth2UserRequest;
+import org.springframework.security.oauth2.client.userinfo.ReactiveOAuth2UserService;
+import org.springframework.security.oauth2.core.AuthorizationGrantType;
+import org.springframework.security.oauth2.core.user.DefaultOAuth2User;
+import org.springframework.security.oauth2.core.user.OAuth2User;
+import org.springframework.security.oauth2.jwt.Jwt;
+import org.springframework.security.oauth2.server.resource.authentication.JwtAuthenticationToken;
+import reactor.core.publisher.Mono;
+import reactor.test.StepVerifier;
+import reactor.util.context.Context;
+
+import java.time.Instant;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class UserInfoClientTest {
+
+    @SuppressWarnings("unchecked")
+    private final ReactiveOAuth2UserService<OAuth2UserRequest, OAuth2User> userService = mock(ReactiveOAuth2UserService.class);
+    private final ReactiveClientRegistrationRepository clientRegistrations = mock(ReactiveClientRegistrationRepository.class);
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final AuthProperties authProperties = new AuthProperties();
+
+    @BeforeEach
+    void setUp() {
+        when(clientRegistrations.findByRegistrationId("gluu")).thenReturn(Mono.just(ClientRegistration
+                .withRegistrationId("gluu")
+                .clientId("client")
+                .authorizationGrantType(AuthorizationGrantType.CLIENT_CREDENTIALS)
+                .tokenUri("http://localhost/token")
+                .userInfoUri("http://localhost/userinfo")
+                .userNameAttributeName("sub")
+                .build()));
+        when(userService.loadUser(any())).thenReturn(Mono.just(new DefaultOAuth2User(
+                List.of(),
+                Map.of("sub", "u-1", "shaktiID", "sk-1", "email", "a@a.com"),
+                "sub"
+        )));
+    }
+
+    @Test
+    void shouldCacheUserInfoPerToken() {
+        UserInfoClient client = new UserInfoClient(userService, clientRegistrations, authProperties, meterRegistry);
+
+        StepVerifier
+                .create(client.getShaktiId().contextWrite(authenticated(jwt("token-1", Map.of())))
+                        .then(client.getShaktiId().contextWrite(authenticated(jwt("token-1", Map.of())))))
+                .assertNext(userDetail -> assertThat(userDetail.getShaktiId()).isEqualTo("sk-1"))
+                .verifyComplete();
+        StepVerifier
+                .create(client.getShaktiId().contextWrite(authenticated(jwt("token-2", Map.of()))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(userService, times(2)).loadUser(any());
+        verify(clientRegistrations, times(1)).findByRegistrationId("gluu");
+    }
+
+    @Test
+    void shouldLoadUserInfoWithCallerContext() {
+        when(userService.loadUser(any())).thenReturn(Mono.deferContextual(context -> context.hasKey("trace")
+                ? Mono.just(new DefaultOAuth2User(List.of(), Map.of("sub", "u-1", "shaktiID", "sk-1", "email", "a@a.com"), "sub"))
+                : Mono.error(new IllegalStateException("no trace"))));
+        UserInfoClient client = new UserInfoClient(userService, clientRegistrations, authProperties, meterRegistry);
+
+        StepVerifier
+                .create(client.getShaktiId()
+                        .contextWrite(authenticated(jwt("token-1", Map.of())))
+                        .contextWrite(context -> context.put("trace", "t-1")))
+                .assertNext(userDetail -> assertThat(userDetail.getShaktiId()).isEqualTo("sk-1"))
+                .verifyComplete();
+    }
+
+    @Test
+    void shouldNotCacheExpiredToken() {
+        UserInfoClient client = new UserInfoClient(userService, clientRegistrations, authProperties, meterRegistry);
+        Jwt expired = Jwt.withTokenValue("token-1")
+                .header("alg", "RS256")
+                .claim("sub", "u-1")
+                .issuedAt(Instant.now().minusSeconds(120))
+                .expiresAt(Instant.now().minusSeconds(60))
+                .build();
+
+        StepVerifier
+                .create(client.getShaktiId().contextWrite(authenticated(expired))
+                        .then(client.getShaktiId().contextWrite(authenticated(expired))))
+                .expectNextCount(1)
+                .verifyComplete();
+
+        verify(userService, times(2)).loadUser(any());
+    }
+
+    @Test
+    void shouldTakeUserDetailFromClaims() {
+        authProperties.getUserInfo().setClaimsEnabled(true);
+        UserInfoClient client = new UserInfoClient(userService, clientRegistrations, authProperties, meterRegistry);
+
+        StepVerifier
+                .create(client.getShaktiId()
+                        .contextWrite(authenticated(jwt("token-1", Map.of("shaktiID", "sk-2", "email", "b@a.com")))))
+                .assertNext(userDetail -> {
+                    assertThat(userDetail.getShaktiId()).isEqualTo("sk-2");
+                    assertThat(userDetail.getEmail()).isEqualTo("b@a.com");
+                })
+                .verifyComplete();
+
+        verify(userService, never()).loadUser(any());
+        assertThat(meterRegistry.counter(UserInfoClient.METRIC_NAME, "source", "claims").count()).isEqualTo(1);
+    }
+
+    @Test
+    void shouldNotCacheFailures() {
+        when(userService.loadUser(any()))
+                .thenReturn(Mono.error(new IllegalStateException("gluu down")))
+                .thenReturn(Mono.just(new DefaultOAuth2User(List.of(), Map.of("sub", "u-1", "shaktiID", "sk-1", "email", "a@a.com"), "sub")));
+        UserInfoClient client = new UserInfoClient(userService, clientRegistrations, authProperties, meterRegistry);
+
+        StepVerifier
+                .create(client.getShaktiId().contextWrite(authenticated(jwt("token-1", Map.of()))))
+                .expectError(ShaktiWebClientException.class)
+                .verify();
+        StepVerifier
+                .create(client.getShaktiId().contextWrite(authenticated(jwt("token-1", Map.of())))
+                        .map(UserDetail::getShaktiId))
+                .expectNext("sk-1")
+                .verifyComplete();
+    }
+
+    private static Jwt jwt(String tokenValue, Map<String, Object> claims) {
+        return Jwt.withTokenValue(tokenValue)
+                .header("alg", "RS256")
+                .claim("sub", "u-1")
+                .claims(all -> all.putAll(claims))
+                .issuedAt(Instant.now())
+                .expiresAt(Instant.now().plusSeconds(300))
+                .build();
+    }
+
+    private static Context authenticated(Jwt jwt) {
+        return ReactiveSecurityContextHolder.withAuthentication(new JwtAuthenticationToken(jwt));
+    }
+}
@@ -5,10 +5,10 @@ import com.couchbase.client.java.query.QueryStatus;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.jupiter.api.Test;
 import org.shaktifdn.registration.AbstractIntegrationTest;
+import org.shaktifdn.registration.model.CleanupCheckpoint;
 import org.shaktifdn.registration.model.UserRegisterState;
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
 import org.shaktifdn.registration.model.UserRegisterStateType;
-import org.shaktifdn.registration.repository.UserRegisterStateDetailRepository;
+import org.shaktifdn.registration.repository.CleanupCheckpointRepository;
 import org.shaktifdn.registration.repository.UserRegisterStateRepository;
 import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -21,7 +21,6 @@ import reactor.test.StepVerifier;
 import javax.ws.rs.core.Response;
 import java.time.Duration;
 import java.time.OffsetDateTime;
-import java.util.ArrayList;
 import java.util.List;
 import java.util.Objects;
 import java.util.UUID;
@@ -38,7 +37,7 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
     private UserRegisterStateRepository userRegisterStateRepository;
 
     @Autowired
-    private UserRegisterStateDetailRepository userRegisterStateDetailRepository;
+    private CleanupCheckpointRepository cleanupCheckpointRepository;
 
     @Autowired
     private UserRegistrationFailedService service;
@@ -61,13 +60,14 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
                         OnboardShaktiUserRequest.builder().shaktiID(UUID.randomUUID().toString()).build(),
                         true
                 );
-        List<UserRegisterStateDetail> details = new ArrayList<>();
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.GLUU_CREATED));
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.KYC_USER_CREATED));
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.KYC_USER_WALLET_UPDATED));
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.WALLET_CREATED));
-
-        userRegisterState.setLastModification(OffsetDateTime.now().minus(afterDuration).minusMinutes(1).toInstant());
+        List<UserRegisterStateType> stateTypes = List.of(
+                UserRegisterStateType.GLUU_CREATED,
+                UserRegisterStateType.KYC_USER_CREATED,
+                UserRegisterStateType.KYC_USER_WALLET_UPDATED,
+                UserRegisterStateType.WALLET_CREATED
+        );
+
+        userRegisterState.setCreatedAt(OffsetDateTime.now().minus(afterDuration).minusMinutes(1).toInstant());
         assertThat(insert(UUID.randomUUID().toString(), "kycuser", userRegisterState.getShaktiId()))
                 .isEqualTo(QueryStatus.SUCCESS);
         assertThat(insert(UUID.randomUUID().toString(), "selfy_id", userRegisterState.getShaktiId()))
@@ -78,11 +78,7 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
         StepVerifier.create(userRegisterStateRepository.save(userRegisterState))
                 .expectNextMatches(Objects::nonNull)
                 .verifyComplete();
-        StepVerifier.create(userRegisterStateDetailRepository.saveAll(details))
-                .expectNextMatches(Objects::nonNull)
-                .expectNextMatches(Objects::nonNull)
-                .expectNextMatches(Objects::nonNull)
-                .expectNextMatches(Objects::nonNull)
+        StepVerifier.create(userRegisterStateRepository.addStateTypes(userRegisterState.getId(), stateTypes))
                 .verifyComplete();
         when(gluuService.deleteUser(userRegisterState.getEmail())).thenReturn(Mono.just(Response.ok().build()));
 
@@ -93,7 +89,7 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
         assertThat(
                 executeQuery("SELECT s.* FROM `services` s ")
                         .rowsAsObject().size()
-        ).isEqualTo(8);
+        ).isEqualTo(4);
 
         // When
         StepVerifier.create(service.cleanup()).expectNext(true).verifyComplete();
@@ -119,7 +115,7 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
                                 .build(),
                         true
                 );
-        userRegisterState.setLastModification(OffsetDateTime.now().minusMinutes(1).toInstant());
+        userRegisterState.setCreatedAt(OffsetDateTime.now().minusMinutes(1).toInstant());
         assertThat(insert(UUID.randomUUID().toString(), "kycuser", userRegisterState.getShaktiId()))
                 .isEqualTo(QueryStatus.SUCCESS);
         assertThat(insert(UUID.randomUUID().toString(), "selfy_id", userRegisterState.getShaktiId()))
@@ -173,15 +169,9 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
                                 .build(),
                         true
                 );
-        List<UserRegisterStateDetail> details = new ArrayList<>();
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.GLUU_CREATED));
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.KYC_USER_CREATED));
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.KYC_USER_WALLET_UPDATED));
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.WALLET_CREATED));
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.SELFY_ID_ENCRYPTED));
-        details.add(UserRegisterStateDetail.create(userRegisterState, UserRegisterStateType.BOUNTY_CREATED));
-
-        userRegisterState.setLastModification(OffsetDateTime.now().minusMinutes(200).toInstant());
+        userRegisterState.getStateTypes().addAll(List.of(UserRegisterStateType.values()));
+
+        userRegisterState.setCreatedAt(OffsetDateTime.now().minusMinutes(200).toInstant());
         assertThat(insert(UUID.randomUUID().toString(), "kycuser", userRegisterState.getShaktiId()))
                 .isEqualTo(QueryStatus.SUCCESS);
         assertThat(insert(UUID.randomUUID().toString(), "selfy_id", userRegisterState.getShaktiId()))
@@ -192,14 +182,6 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
         StepVerifier.create(userRegisterStateRepository.save(userRegisterState))
                 .expectNextMatches(Objects::nonNull)
                 .verifyComplete();
-        StepVerifier.create(userRegisterStateDetailRepository.saveAll(details))
-                .expectNextMatches(Objects::nonNull)
-                .expectNextMatches(Objects::nonNull)
-                .expectNextMatches(Objects::nonNull)
-                .expectNextMatches(Objects::nonNull)
-                .expectNextMatches(Objects::nonNull)
-                .expectNextMatches(Objects::nonNull)
-                .verifyComplete();
         when(gluuService.deleteUser(userRegisterState.getEmail())).thenReturn(Mono.just(Response.ok().build()));
 
         await().atMost(3, TimeUnit.SECONDS)
@@ -209,7 +191,7 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
         assertThat(
                 executeQuery("SELECT s.* FROM `services` s ")
                         .rowsAsObject().size()
-        ).isEqualTo(10);
+        ).isEqualTo(4);
 
         // When
         StepVerifier.create(service.cleanup()).expectNext(true).verifyComplete();
@@ -227,11 +209,174 @@ class UserRegistrationFailedServiceTest extends AbstractIntegrationTest {
         assertThat(
                 executeQuery("SELECT s.* FROM `services` s ")
                         .rowsAsObject().size()
-        ).isEqualTo(10);
+        ).isEqualTo(4);
         assertThat(executeQuery("SELECT s.* FROM `services` s ").rowsAsObject().isEmpty()).isEqualTo(false);
         verify(gluuService, never()).deleteUser(userRegisterState.getEmail());
     }
 
+    @Test
+    void shouldResumeFromCheckpoint() {
+        assertThat(executeQuery("DELETE FROM `services` s ").metaData().status()).isEqualTo(QueryStatus.SUCCESS);
+        // Given
+        UserRegisterState userRegisterState = UserRegisterState
+                .create(
+                        OnboardShaktiUserRequest.builder().shaktiID(UUID.randomUUID().toString()).build(),
+                        true
+                );
+        userRegisterState.getStateTypes().add(UserRegisterStateType.GLUU_CREATED);
+        userRegisterState.setCreatedAt(OffsetDateTime.now().minus(afterDuration).minusMinutes(1).toInstant());
+        StepVerifier.create(userRegisterStateRepository.save(userRegisterState))
+                .expectNextMatches(Objects::nonNull)
+                .verifyComplete();
+        // a previous run already went past this state
+        CleanupCheckpoint checkpoint = CleanupCheckpoint.start(
+                UserRegistrationFailedService.CHECKPOINT,
+                OffsetDateTime.now().toInstant()
+        );
+        checkpoint.setLastId(userRegisterState.getId());
+        StepVerifier.create(cleanupCheckpointRepository.save(checkpoint))
+                .expectNextMatches(Objects::nonNull)
+                .verifyComplete();
+
+        await().atMost(3, TimeUnit.SECONDS)
+                .with()
+                .pollInterval(Duration.ofSeconds(2))
+                .until(() -> true);
+
+        // When
+        StepVerifier.create(service.cleanup()).expectNext(true).verifyComplete();
+
+        // Then
+        StepVerifier.create(userRegisterStateRepository.existsById(userRegisterState.getId()))
+                .expectNext(true)
+                .verifyComplete();
+        StepVerifier.create(cleanupCheckpointRepository.existsById(checkpoint.getId()))
+                .expectNext(false)
+                .verifyComplete();
+        verify(gluuService, never()).deleteUser(userRegisterState.getEmail());
+    }
+
+    @Test
+    void shouldCleanUpStateByItsCreationTime() {
+        assertThat(executeQuery("DELETE FROM `services` s ").metaData().status()).isEqualTo(QueryStatus.SUCCESS);
+        // Given a state as the onboarding writes it
+        String shaktiId = UUID.randomUUID().toString();
+        UserRegisterState userRegisterState = UserRegisterState
+                .create(
+                        OnboardShaktiUserRequest.builder().shaktiID(shaktiId).email(shaktiId + "@a.com").build(),
+                        true
+                );
+        userRegisterState.getStateTypes().add(UserRegisterStateType.GLUU_CREATED);
+        StepVerifier.create(userRegisterStateRepository.save(userRegisterState))
+                .expectNextMatches(Objects::nonNull)
+                .verifyComplete();
+        // a run looking at states created before now plus a minute
+        StepVerifier.create(cleanupCheckpointRepository.save(CleanupCheckpoint.start(
+                        UserRegistrationFailedService.CHECKPOINT,
+                        OffsetDateTime.now().plusMinutes(1).toInstant()
+                )))
+                .expectNextMatches(Objects::nonNull)
+                .verifyComplete();
+        when(gluuService.deleteUser(userRegisterState.getEmail())).thenReturn(Mono.just(Response.ok().build()));
+
+        await().atMost(3, TimeUnit.SECONDS)
+                .with()
+                .pollInterval(Duration.ofSeconds(2))
+                .until(() -> true);
+
+        // When
+        StepVerifier.create(service.cleanup()).expectNext(true).verifyComplete();
+
+        // Then
+        StepVerifier.create(userRegisterStateRepository.existsById(userRegisterState.getId()))
+                .expectNext(false)
+                .verifyComplete();
+        verify(gluuService).deleteUser(userRegisterState.getEmail());
+    }
+
+    @Test
+    void shouldCleanUpIncompleteLegacyStateOnly() {
+        assertThat(executeQuery("DELETE FROM `services` s ").metaData().status()).isEqualTo(QueryStatus.SUCCESS);
+        // Given states from before stateTypes, with their types in detail documents
+        UserRegisterState incomplete = givenLegacyState(List.of(UserRegisterStateType.GLUU_CREATED));
+        UserRegisterState complete = givenLegacyState(List.of(UserRegisterStateType.values()));
+        when(gluuService.deleteUser(incomplete.getEmail())).thenReturn(Mono.just(Response.ok().build()));
+
+        await().atMost(3, TimeUnit.SECONDS)
+                .with()
+                .pollInterval(Duration.ofSeconds(2))
+                .until(() -> true);
+
+        // When
+        StepVerifier.create(service.cleanup()).expectNext(true).verifyComplete();
+
+        // Then
+        StepVerifier.create(userRegisterStateRepository.existsById(incomplete.getId()))
+                .expectNext(false)
+                .verifyComplete();
+        StepVerifier.create(userRegisterStateRepository.existsById(complete.getId()))
+                .expectNext(true)
+                .verifyComplete();
+        verify(gluuService).deleteUser(incomplete.getEmail());
+        verify(gluuService, never()).deleteUser(complete.getEmail());
+    }
+
+    @Test
+    void shouldMergeTypesOfLegacyStateUpdatedSinceDeploy() {
+        assertThat(executeQuery("DELETE FROM `services` s ").metaData().status()).isEqualTo(QueryStatus.SUCCESS);
+        // Given a state from before stateTypes that got its last events afterwards
+        UserRegisterState mixed = givenLegacyState(
+                List.of(UserRegisterStateType.GLUU_CREATED, UserRegisterStateType.KYC_USER_CREATED, UserRegisterStateType.KYC_USER_WALLET_UPDATED),
+                List.of(UserRegisterStateType.SELFY_ID_ENCRYPTED, UserRegisterStateType.WALLET_CREATED, UserRegisterStateType.BOUNTY_CREATED)
+        );
+        assertThat(insert(UUID.randomUUID().toString(), "kycuser", mixed.getShaktiId()))
+                .isEqualTo(QueryStatus.SUCCESS);
+
+        await().atMost(3, TimeUnit.SECONDS)
+                .with()
+                .pollInterval(Duration.ofSeconds(2))
+                .until(() -> true);
+
+        // When
+        StepVerifier.create(service.cleanup()).expectNext(true).verifyComplete();
+
+        // Then
+        StepVerifier.create(userRegisterStateRepository.existsById(mixed.getId()))
+                .expectNext(true)
+                .verifyComplete();
+        assertThat(executeQuery("SELECT s.* FROM `services` s WHERE `_type` = \"kycuser\"").rowsAsObject()).hasSize(1);
+        verify(gluuService, never()).deleteUser(mixed.getEmail());
+    }
+
+    private UserRegisterState givenLegacyState(List<UserRegisterStateType> detailTypes) {
+        return givenLegacyState(List.of(), detailTypes);
+    }
+
+    private UserRegisterState givenLegacyState(List<UserRegisterStateType> stateTypes, List<UserRegisterStateType> detailTypes) {
+        String shaktiId = UUID.randomUUID().toString();
+        UserRegisterState userRegisterState = UserRegisterState
+                .create(
+                        OnboardShaktiUserRequest.builder().shaktiID(shaktiId).email(shaktiId + "@a.com").build(),
+                        true
+                );
+        userRegisterState.setId(UUID.randomUUID().toString());
+        userRegisterState.getStateTypes().addAll(stateTypes);
+        userRegisterState.setCreatedAt(OffsetDateTime.now().minus(afterDuration).minusMinutes(1).toInstant());
+        StepVerifier.create(userRegisterStateRepository.save(userRegisterState))
+                .expectNextMatches(Objects::nonNull)
+                .verifyComplete();
+        if (stateTypes.isEmpty()) {
+            assertThat(executeQuery("UPDATE `services` USE KEYS \"" + userRegisterState.getId() + "\" UNSET `stateTypes`")
+                    .metaData().status()).isEqualTo(QueryStatus.SUCCESS);
+        }
+        for (UserRegisterStateType stateType : detailTypes) {
+            assertThat(executeQuery("INSERT INTO `services` (KEY, VALUE) VALUES (\"" + UUID.randomUUID() +
+                    "\", {\"_type\": \"UserRegisterStateDetail\", \"userRegisterStateId\": \"" + userRegisterState.getId() +
+                    "\", \"stateType\": \"" + stateType.name() + "\"})").metaData().status()).isEqualTo(QueryStatus.SUCCESS);
+        }
+        return userRegisterState;
+    }
+
     private QueryStatus insert(String id, String type, String shaktiId) {
         return couchbaseTemplate
                 .getCouchbaseClientFactory()
@@ -1,30 +1,52 @@
 package org.shaktifdn.registration.service;
 
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.gluu.oxauth.client.UserInfoClient;
+import org.gluu.oxtrust.model.scim2.user.UserResource;
+import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.shaktifdn.registration.AbstractTest;
+import org.shaktifdn.registration.cache.EmailRegistrationCache;
+import org.shaktifdn.registration.cache.OnboardingIdempotency;
+import org.shaktifdn.registration.cache.VerifiedContactCache;
+import org.shaktifdn.registration.config.OnboardingSagaProperties;
+import org.shaktifdn.registration.config.RegistrationCacheProperties;
+import org.shaktifdn.registration.constant.Constant;
 import org.shaktifdn.registration.constant.Message;
+import org.shaktifdn.registration.exception.ConflictRecordsException;
+import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
+import org.shaktifdn.registration.exception.SelfyIdBadRequestException;
+import org.shaktifdn.registration.exception.ShaktiWebClientException;
 import org.shaktifdn.registration.message.CreateUserMessage;
+import org.shaktifdn.registration.message.CreateUserOutbox;
+import org.shaktifdn.registration.metrics.OnboardingMetrics;
+import org.shaktifdn.registration.model.OutboxMessage;
 import org.shaktifdn.registration.model.UserRegisterState;
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
 import org.shaktifdn.registration.model.UserRegisterStateType;
-import org.shaktifdn.registration.repository.UserRegisterStateDetailRepository;
 import org.shaktifdn.registration.repository.UserRegisterStateRepository;
 import org.shaktifdn.registration.request.NewUserWalletAccessRequest;
 import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
 import org.shaktifdn.registration.request.WalletBytesEncryptRequest;
+import org.shaktifdn.registration.response.ResponseBean;
 import org.shaktifdn.registration.response.SmsServiceResponse;
 import org.shaktifdn.registration.response.TokenResponse;
 import org.shaktifdn.registration.response.WalletBytesEncryptResponse;
+import org.shaktifdn.registration.util.Utils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.http.HttpStatus;
 import org.springframework.test.context.ContextConfiguration;
 import reactor.core.publisher.Mono;
-import reactor.core.publisher.Sinks;
 import reactor.test.StepVerifier;
 
 import javax.ws.rs.core.Response;
+import java.time.Duration;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
@@ -33,7 +55,15 @@ import static org.mockito.ArgumentMatchers.anyString;
 import static org.mockito.BDDMockito.then;
 import static org.mockito.Mockito.*;
 
-@ContextConfiguration(classes = {UserService.class})
+@ContextConfiguration(classes = {
+        UserService.class,
+        EmailRegistrationCache.class,
+        RegistrationCacheProperties.class,
+        OnboardingMetrics.class,
+        OnboardingSaga.class,
+        OnboardingSagaProperties.class,
+        SimpleMeterRegistry.class
+})
 public class UserServiceTest extends AbstractTest {
 
     private static final String IP_ADDRESS = "0.0.0.0";
@@ -57,10 +87,7 @@ public class UserServiceTest extends AbstractTest {
     private UserRegisterStateRepository userRegisterStateRepository;
 
     @MockBean
-    private UserRegisterStateDetailRepository userRegisterStateDetailRepository;
-
-    @MockBean
-    private Sinks.Many<CreateUserMessage> createUserMessageSink;
+    private CreateUserOutbox createUserOutbox;
 
     @MockBean
     private SelfyIdService selfyIdService;
@@ -74,6 +101,28 @@ public class UserServiceTest extends AbstractTest {
     @MockBean
     private WalletService walletService;
 
+    @MockBean
+    private VerifiedContactCache verifiedContactCache;
+
+    @MockBean
+    private OnboardingIdempotency onboardingIdempotency;
+
+    @Autowired
+    private EmailRegistrationCache emailRegistrationCache;
+
+    private final AtomicReference<UserResource> gluuUser = new AtomicReference<>();
+
+    @BeforeEach
+    void setUp() {
+        emailRegistrationCache.invalidateAll();
+        when(verifiedContactCache.isEmailVerified(any(), any())).thenReturn(Mono.just(false));
+        when(verifiedContactCache.isMobileVerified(any(), any(), any())).thenReturn(Mono.just(false));
+        when(onboardingIdempotency.onboard(any(), any(), any()))
+                .thenAnswer(invocation -> Mono.defer(invocation.<Supplier<Mono<ResponseBean>>>getArgument(2)));
+        when(userRegisterStateRepository.addCompletedSteps(any(), any())).thenReturn(Mono.empty());
+        when(userRegisterStateRepository.deleteById(anyString())).thenReturn(Mono.empty());
+        when(gluuService.deleteUser(any())).thenReturn(Mono.just(Response.noContent().build()));
+    }
 
     @Test
     public void saveOnboardShaktiTest() {
@@ -98,19 +147,15 @@ public class UserServiceTest extends AbstractTest {
         ArgumentCaptor<UserRegisterState> userRegisterStateCaptor = ArgumentCaptor.forClass(UserRegisterState.class);
         when(userRegisterStateRepository.save(userRegisterStateCaptor.capture()))
                 .thenReturn(Mono.just(userRegisterState));
-        when(userRegisterStateRepository.findByShaktiId(any()))
-                .thenReturn(Mono.just(userRegisterState));
+        when(userRegisterStateRepository.addStateTypes(any(), any()))
+                .thenReturn(Mono.empty());
         when(gluuService.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
                 .thenReturn(Mono.just(false));
         when(bizVaultServiceWebClient.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
                 .thenReturn(Mono.just(false));
         ArgumentCaptor<CreateUserMessage> createUserMessageCaptor = ArgumentCaptor.forClass(CreateUserMessage.class);
-        when(createUserMessageSink.tryEmitNext(createUserMessageCaptor.capture())).thenReturn(Sinks.EmitResult.OK);
-
-        ArgumentCaptor<UserRegisterStateDetail> userRegisterStateDetailCaptor
-                = ArgumentCaptor.forClass(UserRegisterStateDetail.class);
-        when(userRegisterStateDetailRepository.save(userRegisterStateDetailCaptor.capture()))
-                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
+        when(createUserOutbox.enqueue(createUserMessageCaptor.capture()))
+                .thenAnswer(invocationOnMock -> Mono.just(OutboxMessage.create(CreateUserOutbox.BINDING, invocationOnMock.getArgument(0))));
         when(walletService.userDeviceAccessRegister(any())).thenReturn(Mono.just(""));
         //then
         StepVerifier
@@ -130,7 +175,7 @@ public class UserServiceTest extends AbstractTest {
         verify(gluuService).createUser(any(), anyString());
         verify(mobileService).inquire(any(), any(), any());
         verify(emailService).isOtpVerified(any(), any());
-        verify(createUserMessageSink).tryEmitNext(any());
+        verify(createUserOutbox).enqueue(any());
         then(userRegisterStateRepository).should().save(any());
 
         UserRegisterState userRegisterStateToTest = userRegisterStateCaptor.getValue();
@@ -138,9 +183,8 @@ public class UserServiceTest extends AbstractTest {
         assertEquals(onboardShaktiUserRequest.getEmail(), userRegisterStateToTest.getEmail());
         assertEquals(onboardShaktiUserRequest.getCountryCode(), userRegisterStateToTest.getCountryCode());
         assertEquals(onboardShaktiUserRequest.getMobileNo(), userRegisterStateToTest.getMobileNumber());
-        verify(userRegisterStateDetailRepository).save(any());
-
-        assertEquals(userRegisterStateDetailCaptor.getValue().getStateType(), UserRegisterStateType.GLUU_CREATED);
+        assertEquals(Set.of(UserRegisterStateType.GLUU_CREATED), userRegisterStateToTest.getStateTypes());
+        verify(userRegisterStateRepository, never()).addStateTypes(any(), any());
 
         CreateUserMessage createUserMessage = createUserMessageCaptor.getValue();
         assertNotNull(createUserMessage);
@@ -182,24 +226,20 @@ public class UserServiceTest extends AbstractTest {
         ArgumentCaptor<UserRegisterState> userRegisterStateCaptor = ArgumentCaptor.forClass(UserRegisterState.class);
         when(userRegisterStateRepository.save(userRegisterStateCaptor.capture()))
                 .thenReturn(Mono.just(userRegisterState));
-        when(userRegisterStateRepository.findByShaktiId(any()))
-                .thenReturn(Mono.just(userRegisterState));
+        when(userRegisterStateRepository.addStateTypes(any(), any()))
+                .thenReturn(Mono.empty());
         when(gluuService.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
                 .thenReturn(Mono.just(false));
         when(bizVaultServiceWebClient.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
                 .thenReturn(Mono.just(false));
         ArgumentCaptor<CreateUserMessage> createUserMessageCaptor = ArgumentCaptor.forClass(CreateUserMessage.class);
-        when(createUserMessageSink.tryEmitNext(createUserMessageCaptor.capture())).thenReturn(Sinks.EmitResult.OK);
+        when(createUserOutbox.enqueue(createUserMessageCaptor.capture()))
+                .thenAnswer(invocationOnMock -> Mono.just(OutboxMessage.create(CreateUserOutbox.BINDING, invocationOnMock.getArgument(0))));
         ArgumentCaptor<WalletBytesEncryptRequest> walletBytesEncryptRequestCaptor =
                 ArgumentCaptor.forClass(WalletBytesEncryptRequest.class);
         when(selfyIdService.encrypt(walletBytesEncryptRequestCaptor.capture()))
                 .thenReturn(Mono.just(WalletBytesEncryptResponse.builder().encryptedWalletBytes("enc").build()));
 
-        ArgumentCaptor<UserRegisterStateDetail> userRegisterStateDetailCaptor
-                = ArgumentCaptor.forClass(UserRegisterStateDetail.class);
-        when(userRegisterStateDetailRepository.save(userRegisterStateDetailCaptor.capture()))
-                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
-
         NewUserWalletAccessRequest.builder().deviceId("dc-1234").build();
         when(walletService.userDeviceAccessRegister(any())).thenReturn(Mono.just(""));
         //then
@@ -211,7 +251,7 @@ public class UserServiceTest extends AbstractTest {
                 .verifyComplete();
         then(gluuService).should().isEmailRegistered(onboardShaktiUserRequest.getEmail());
         then(userRegisterStateRepository).should(atLeast(1)).save(any());
-        verify(createUserMessageSink).tryEmitNext(any());
+        verify(createUserOutbox).enqueue(any());
         verify(selfyIdService).encrypt(any());
 
 
@@ -220,10 +260,11 @@ public class UserServiceTest extends AbstractTest {
         assertEquals(onboardShaktiUserRequest.getEmail(), userRegisterStateToTest.getEmail());
         assertEquals(onboardShaktiUserRequest.getCountryCode(), userRegisterStateToTest.getCountryCode());
         assertEquals(onboardShaktiUserRequest.getMobileNo(), userRegisterStateToTest.getMobileNumber());
-        verify(userRegisterStateDetailRepository, times(2)).save(any());
-
-        assertEquals(userRegisterStateDetailCaptor.getAllValues().get(0).getStateType(), UserRegisterStateType.GLUU_CREATED);
-        assertEquals(userRegisterStateDetailCaptor.getAllValues().get(1).getStateType(), UserRegisterStateType.WALLET_CREATED);
+        assertEquals(Set.of(UserRegisterStateType.GLUU_CREATED), userRegisterStateToTest.getStateTypes());
+        verify(userRegisterStateRepository).addStateTypes(
+                UserRegisterState.key(userRegisterStateToTest.getShaktiId()),
+                List.of(UserRegisterStateType.WALLET_CREATED)
+        );
         assertEquals(
                 onboardShaktiUserRequest.getWalletBytes(),
                 walletBytesEncryptRequestCaptor.getValue().getWalletBytes()
@@ -256,15 +297,16 @@ public class UserServiceTest extends AbstractTest {
                 .thenReturn(Mono.just(true));
         when(bizVaultServiceWebClient.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
                 .thenReturn(Mono.just(false));
+        when(emailService.isOtpVerified(any(), any())).thenReturn(Mono.never());
+        when(mobileService.inquire(any(), any(), any())).thenReturn(Mono.never());
         //then
         StepVerifier
                 .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
                 .expectErrorMessage("siddiquifaizal@yahoo.com email is already registered")
-                .verify();
+                .verify(Duration.ofSeconds(5));
 
         verify(gluuService).isEmailRegistered(onboardShaktiUserRequest.getEmail());
         verify(gluuService, never()).createUser(any(), anyString());
-        verify(mobileService, never()).inquire(any(), any(), any());
     }
 
     @Test
@@ -276,15 +318,216 @@ public class UserServiceTest extends AbstractTest {
                 .thenReturn(Mono.just(false));
         when(bizVaultServiceWebClient.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
                 .thenReturn(Mono.just(true));
+        when(emailService.isOtpVerified(any(), any())).thenReturn(Mono.never());
+        when(mobileService.inquire(any(), any(), any())).thenReturn(Mono.never());
         //then
         StepVerifier
                 .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
                 .expectErrorMessage("siddiquifaizal@yahoo.com email is already registered")
-                .verify();
+                .verify(Duration.ofSeconds(5));
 
         verify(gluuService).isEmailRegistered(onboardShaktiUserRequest.getEmail());
         verify(gluuService, never()).createUser(any(), anyString());
+    }
+
+    @Test
+    public void saveOnboardShaktiTest_email_not_verified() {
+        //given
+        OnboardShaktiUserRequest onboardShaktiUserRequest = givenOnboardShaktiModel(false);
+        //when
+        when(gluuService.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
+                .thenReturn(Mono.just(false));
+        when(bizVaultServiceWebClient.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
+                .thenReturn(Mono.just(false));
+        when(emailService.isOtpVerified(any(), any())).thenReturn(Mono.just(false));
+        when(mobileService.inquire(any(), any(), any())).thenReturn(Mono.never());
+        //then
+        StepVerifier
+                .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
+                .expectError(ShaktiWebClientException.class)
+                .verify(Duration.ofSeconds(5));
+
+        verify(mobileService).inquire(any(), any(), any());
+        verify(gluuService, never()).createUser(any(), anyString());
+    }
+
+    @Test
+    public void saveOnboardShaktiTest_recently_verified_contacts() {
+        //given
+        OnboardShaktiUserRequest onboardShaktiUserRequest = givenOnboardShaktiModel(false);
+        //when
+        when(verifiedContactCache.isEmailVerified(onboardShaktiUserRequest.getEmail(), Constant.EMAIL_REGISTERATION_FLOW))
+                .thenReturn(Mono.just(true));
+        when(verifiedContactCache.isMobileVerified(any(), any(), any()))
+                .thenReturn(Mono.just(true));
+        when(gluuService.createUser(any(), anyString()))
+                .thenReturn(Mono.just(Response.ok().build()));
+        when(userRegisterStateRepository.save(any()))
+                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
+        when(gluuService.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
+                .thenReturn(Mono.just(false));
+        when(bizVaultServiceWebClient.isEmailRegistered(onboardShaktiUserRequest.getEmail()))
+                .thenReturn(Mono.just(false));
+        when(createUserOutbox.enqueue(any()))
+                .thenAnswer(invocationOnMock -> Mono.just(OutboxMessage.create(CreateUserOutbox.BINDING, invocationOnMock.getArgument(0))));
+        when(walletService.userDeviceAccessRegister(any())).thenReturn(Mono.just(""));
+        //then
+        StepVerifier
+                .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
+                .expectNextMatches(responseBean -> responseBean.getStatus() == 201)
+                .verifyComplete();
+
+        verify(emailService, never()).isOtpVerified(any(), any());
         verify(mobileService, never()).inquire(any(), any(), any());
+        verify(gluuService).createUser(any(), anyString());
+    }
+
+    @Test
+    public void saveOnboardShaktiTest_retries_transient_failure_of_a_step() {
+        //given
+        OnboardShaktiUserRequest onboardShaktiUserRequest = givenOnboardShaktiModel(true);
+        givenVerifiedNewUser(onboardShaktiUserRequest);
+        when(selfyIdService.encrypt(any()))
+                .thenReturn(Mono.error(new ExternalServiceDependencyFailure(HttpStatus.SERVICE_UNAVAILABLE, "try again")))
+                .thenReturn(Mono.just(WalletBytesEncryptResponse.builder().encryptedWalletBytes("enc").build()));
+        //then
+        StepVerifier
+                .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
+                .expectNextMatches(responseBean -> responseBean.getStatus() == 201)
+                .verifyComplete();
+
+        verify(gluuService, times(1)).createUser(any(), anyString());
+        verify(selfyIdService, times(2)).encrypt(any());
+        verify(gluuService, never()).deleteUser(any());
+        ArgumentCaptor<UserRegisterState> userRegisterStateCaptor = ArgumentCaptor.forClass(UserRegisterState.class);
+        verify(userRegisterStateRepository).save(userRegisterStateCaptor.capture());
+        assertEquals(Set.of(UserService.STAGE_GLUU_CREATE), userRegisterStateCaptor.getValue().getCompletedSteps());
+        verify(userRegisterStateRepository).addCompletedSteps(
+                UserRegisterState.key(onboardShaktiUserRequest.getShaktiID()),
+                List.of(UserService.STAGE_SELFYID_ENCRYPT)
+        );
+    }
+
+    @Test
+    public void saveOnboardShaktiTest_retries_gluu_server_error_on_create() {
+        //given
+        OnboardShaktiUserRequest onboardShaktiUserRequest = givenOnboardShaktiModel(true);
+        givenVerifiedNewUser(onboardShaktiUserRequest);
+        when(gluuService.createUser(any(), anyString()))
+                .thenReturn(Mono.error(new ExternalServiceDependencyFailure(HttpStatus.SERVICE_UNAVAILABLE, "try again")))
+                .thenReturn(Mono.just(Response.ok().build()));
+        when(selfyIdService.encrypt(any()))
+                .thenReturn(Mono.just(WalletBytesEncryptResponse.builder().encryptedWalletBytes("enc").build()));
+        //then
+        StepVerifier
+                .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
+                .expectNextMatches(responseBean -> responseBean.getStatus() == 201)
+                .verifyComplete();
+
+        verify(gluuService, times(2)).createUser(any(), anyString());
+        verify(gluuService, never()).deleteUser(any());
+    }
+
+    @Test
+    public void saveOnboardShaktiTest_compensates_permanent_failure() {
+        //given
+        OnboardShaktiUserRequest onboardShaktiUserRequest = givenOnboardShaktiModel(true);
+        givenVerifiedNewUser(onboardShaktiUserRequest);
+        when(selfyIdService.encrypt(any()))
+                .thenReturn(Mono.error(new SelfyIdBadRequestException("Bad request has been sent")));
+        //then
+        StepVerifier
+                .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
+                .expectError(SelfyIdBadRequestException.class)
+                .verify(Duration.ofSeconds(5));
+
+        verify(selfyIdService, times(1)).encrypt(any());
+        verify(gluuService).deleteUser(onboardShaktiUserRequest.getEmail());
+        verify(userRegisterStateRepository).deleteById(UserRegisterState.key(onboardShaktiUserRequest.getShaktiID()));
+        verify(createUserOutbox, never()).enqueue(any());
+    }
+
+    @Test
+    public void saveOnboardShaktiTest_recognizes_own_gluu_user_after_timeout() {
+        //given
+        OnboardShaktiUserRequest onboardShaktiUserRequest = givenOnboardShaktiModel(true);
+        givenVerifiedNewUser(onboardShaktiUserRequest);
+        // the first create goes through but its answer is lost, the retry finds the user
+        when(gluuService.createUser(any(), anyString())).thenAnswer(invocationOnMock -> {
+            if (gluuUser.get() == null) {
+                gluuUser.set(Utils.createUserModel(invocationOnMock.getArgument(0), invocationOnMock.getArgument(1)));
+                return Mono.error(new TimeoutException());
+            }
+            return Mono.error(new ConflictRecordsException(onboardShaktiUserRequest.getEmail() + " is already registered in system"));
+        });
+        when(selfyIdService.encrypt(any()))
+                .thenReturn(Mono.just(WalletBytesEncryptResponse.builder().encryptedWalletBytes("enc").build()));
+        //then
+        StepVerifier
+                .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
+                .expectNextMatches(responseBean -> responseBean.getStatus() == 201)
+                .verifyComplete();
+
+        verify(gluuService, times(2)).createUser(any(), anyString());
+        verify(gluuService, never()).deleteUser(any());
+    }
+
+    @Test
+    public void saveOnboardShaktiTest_leaves_gluu_user_of_another_registration() {
+        //given
+        OnboardShaktiUserRequest onboardShaktiUserRequest = givenOnboardShaktiModel(true);
+        givenVerifiedNewUser(onboardShaktiUserRequest);
+        OnboardShaktiUserRequest otherRegistration = givenOnboardShaktiModel(true);
+        otherRegistration.setShaktiID("another-shakti-id");
+        gluuUser.set(Utils.createUserModel(otherRegistration, IP_ADDRESS));
+        when(gluuService.createUser(any(), anyString()))
+                .thenReturn(Mono.error(new TimeoutException()))
+                .thenReturn(Mono.error(new ConflictRecordsException(onboardShaktiUserRequest.getEmail() + " is already registered in system")));
+        //then
+        StepVerifier
+                .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
+                .expectError(ConflictRecordsException.class)
+                .verify(Duration.ofSeconds(5));
+
+        verify(gluuService, never()).deleteUser(any());
+    }
+
+    @Test
+    public void saveOnboardShaktiTest_does_not_retry_wallet_device_access() {
+        //given
+        OnboardShaktiUserRequest onboardShaktiUserRequest = givenOnboardShaktiModel(true);
+        givenVerifiedNewUser(onboardShaktiUserRequest);
+        when(selfyIdService.encrypt(any()))
+                .thenReturn(Mono.just(WalletBytesEncryptResponse.builder().encryptedWalletBytes("enc").build()));
+        when(walletService.userDeviceAccessRegister(any()))
+                .thenReturn(Mono.error(new ExternalServiceDependencyFailure(HttpStatus.SERVICE_UNAVAILABLE, "try again")));
+        //then
+        StepVerifier
+                .create(userService.saveOnboardShakti(onboardShaktiUserRequest, IP_ADDRESS))
+                .expectError(ExternalServiceDependencyFailure.class)
+                .verify(Duration.ofSeconds(5));
+
+        verify(walletService, times(1)).userDeviceAccessRegister(any());
+        verify(gluuService).deleteUser(onboardShaktiUserRequest.getEmail());
+    }
+
+    private void givenVerifiedNewUser(OnboardShaktiUserRequest onboardShaktiUserRequest) {
+        when(verifiedContactCache.isEmailVerified(any(), any())).thenReturn(Mono.just(true));
+        when(verifiedContactCache.isMobileVerified(any(), any(), any())).thenReturn(Mono.just(true));
+        when(gluuService.isEmailRegistered(onboardShaktiUserRequest.getEmail())).thenReturn(Mono.just(false));
+        when(bizVaultServiceWebClient.isEmailRegistered(onboardShaktiUserRequest.getEmail())).thenReturn(Mono.just(false));
+        when(gluuService.createUser(any(), anyString())).thenAnswer(invocationOnMock -> {
+            gluuUser.set(Utils.createUserModel(invocationOnMock.getArgument(0), invocationOnMock.getArgument(1)));
+            return Mono.just(Response.ok().build());
+        });
+        when(gluuService.getUser(onboardShaktiUserRequest.getEmail()))
+                .thenAnswer(invocationOnMock -> Mono.justOrEmpty(gluuUser.get()));
+        when(userRegisterStateRepository.save(any()))
+                .thenAnswer(invocationOnMock -> Mono.just(invocationOnMock.getArgument(0)));
+        when(userRegisterStateRepository.addStateTypes(any(), any())).thenReturn(Mono.empty());
+        when(walletService.userDeviceAccessRegister(any())).thenReturn(Mono.just(""));
+        when(createUserOutbox.enqueue(any()))
+                .thenAnswer(invocationOnMock -> Mono.just(OutboxMessage.create(CreateUserOutbox.BINDING, invocationOnMock.getArgument(0))));
     }
 
     private OnboardShaktiUserRequest givenOnboardShaktiModel(boolean isMobile) {
@@ -316,6 +559,20 @@ public class UserServiceTest extends AbstractTest {
         verify(bizVaultServiceWebClient).isEmailRegistered(email);
     }
 
+    @Test
+    public void checkUserExistTest_cached() {
+        String email = "amitzkumar001@gmail.com";
+        when(gluuService.isEmailRegistered(email)).thenReturn(Mono.just(true));
+        when(bizVaultServiceWebClient.isEmailRegistered(email)).thenReturn(Mono.just(false));
+        StepVerifier
+                .create(userService.checkEmailIsRegistered(email)
+                        .then(userService.checkEmailIsRegistered(email.toUpperCase())))
+                .expectNext(true)
+                .verifyComplete();
+        verify(gluuService, times(1)).isEmailRegistered(email);
+        verify(bizVaultServiceWebClient, times(1)).isEmailRegistered(email);
+    }
+
     @Test
     public void checkUserExistTestBizVault() {
         String email = "amitzkumar001@gmail.com";
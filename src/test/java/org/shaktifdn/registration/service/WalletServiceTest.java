@@ -8,19 +8,15 @@ import io.specto.hoverfly.junit.core.model.RequestFieldMatcher;
 import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
-import org.mockito.ArgumentCaptor;
 import org.shaktifdn.registration.AbstractTest;
 import org.shaktifdn.registration.RegistrationTestConfiguration;
 import org.shaktifdn.registration.config.ServiceProperties;
 import org.shaktifdn.registration.enums.AccountType;
 import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
 import org.shaktifdn.registration.model.UserRegisterState;
-import org.shaktifdn.registration.model.UserRegisterStateDetail;
 import org.shaktifdn.registration.model.UserRegisterStateType;
-import org.shaktifdn.registration.repository.UserRegisterStateDetailRepository;
 import org.shaktifdn.registration.repository.UserRegisterStateRepository;
 import org.shaktifdn.registration.request.CreateWalletRequest;
-import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
 import org.shaktifdn.registration.request.NewUserWalletAccessRequest;
 import org.shaktifdn.registration.request.WalletRequest;
 import org.shaktifdn.registration.response.CreateWalletResponse;
@@ -31,19 +27,17 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ContextConfiguration;
-import reactor.core.publisher.Flux;
 import reactor.core.publisher.Mono;
 import reactor.test.StepVerifier;
 
 import java.util.List;
+import java.util.UUID;
 
 import static io.specto.hoverfly.junit.core.HoverflyMode.SIMULATE;
 import static io.specto.hoverfly.junit.core.SimulationSource.dsl;
 import static io.specto.hoverfly.junit.dsl.HoverflyDsl.service;
 import static io.specto.hoverfly.junit.dsl.ResponseCreators.serverError;
 import static io.specto.hoverfly.junit.dsl.ResponseCreators.success;
-import static org.assertj.core.api.Assertions.assertThat;
-import static org.mockito.ArgumentMatchers.anyCollection;
 import static org.mockito.Mockito.*;
 
 @ContextConfiguration(classes = {WalletService.class})
@@ -65,9 +59,6 @@ public class WalletServiceTest extends AbstractTest {
     @MockBean
     private UserRegisterStateRepository userRegisterStateRepository;
 
-    @MockBean
-    private UserRegisterStateDetailRepository userRegisterStateDetailRepository;
-
     @MockBean
     private ServiceProperties serviceProperties;
 
@@ -105,15 +96,14 @@ public class WalletServiceTest extends AbstractTest {
                 .shaktiID(userDetail.getShaktiId())
                 .build();
 
-        UserRegisterState userRegisterState = UserRegisterState.create(
-                OnboardShaktiUserRequest.builder().build(),
-                false
-        );
+        // a state from before the Shakti ID keys
+        UserRegisterState userRegisterState = new UserRegisterState();
+        userRegisterState.setId(UUID.randomUUID().toString());
+        userRegisterState.setShaktiId(userDetail.getShaktiId());
         when(userRegisterStateRepository.findByShaktiId(userDetail.getShaktiId()))
                 .thenReturn(Mono.just(userRegisterState));
-        ArgumentCaptor<List<UserRegisterStateDetail>> captor = ArgumentCaptor.forClass(List.class);
-        when(userRegisterStateDetailRepository.saveAll(captor.capture()))
-                .thenAnswer(invocationOnMock -> Flux.just(invocationOnMock.getArgument(0)));
+        when(userRegisterStateRepository.addStateTypes(any(), any()))
+                .thenReturn(Mono.empty());
 
         CreateWalletResponse createWalletResponse = new CreateWalletResponse();
         createWalletResponse.setWalletBytes("wb");
@@ -150,12 +140,10 @@ public class WalletServiceTest extends AbstractTest {
 
         verify(userInfoClient).getShaktiId();
         verify(kycUserService).isWalletExists(userDetail.getShaktiId());
-        verify(userRegisterStateRepository).findByShaktiId(userDetail.getShaktiId());
-        verify(userRegisterStateDetailRepository).saveAll(anyCollection());
-        assertThat(captor.getValue().get(0).getUserRegisterStateId()).isEqualTo(userRegisterState.getId());
-        assertThat(captor.getValue().get(0).getStateType()).isEqualTo(UserRegisterStateType.WALLET_CREATED);
-        assertThat(captor.getValue().get(1).getUserRegisterStateId()).isEqualTo(userRegisterState.getId());
-        assertThat(captor.getValue().get(1).getStateType()).isEqualTo(UserRegisterStateType.KYC_USER_WALLET_UPDATED);
+        verify(userRegisterStateRepository).addStateTypes(
+                userRegisterState.getId(),
+                List.of(UserRegisterStateType.WALLET_CREATED, UserRegisterStateType.KYC_USER_WALLET_UPDATED)
+        );
     }
 
     @Test
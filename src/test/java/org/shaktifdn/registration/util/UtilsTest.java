@@ -1,12 +1,18 @@
 package org.shaktifdn.registration.util;
 
+import org.gluu.oxtrust.model.scim2.user.UserResource;
 import org.junit.jupiter.api.Test;
 import org.shaktifdn.registration.exception.BadRequestException;
 import org.shaktifdn.registration.exception.ExternalServiceDependencyFailure;
 import org.shaktifdn.registration.exception.ShaktiWebClientException;
+import org.shaktifdn.registration.request.OnboardShaktiUserRequest;
+import org.springframework.http.HttpStatus;
 import org.springframework.web.reactive.function.client.WebClientResponseException;
 import reactor.test.StepVerifier;
 
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
 
 class UtilsTest {
 
@@ -17,6 +23,13 @@ class UtilsTest {
                 .expectError(ExternalServiceDependencyFailure.class).verify();
     }
 
+    @Test
+    void shouldKeepExternalDependencyError() {
+        ExternalServiceDependencyFailure failure = new ExternalServiceDependencyFailure(HttpStatus.SERVICE_UNAVAILABLE, "try again");
+        StepVerifier.create(Utils.handleExternalServiceCallException(failure, "test is back"))
+                .expectErrorMatches(error -> error == failure).verify();
+    }
+
     @Test
     void shouldReturnShaktiWebClientError() {
         BadRequestException badRequestException = new BadRequestException("test");
@@ -24,4 +37,13 @@ class UtilsTest {
                 .expectError(ShaktiWebClientException.class).verify();
     }
 
-}
\ No newline at end of file
+    @Test
+    void shouldReadShaktiIdOfGluuUser() {
+        OnboardShaktiUserRequest request = new OnboardShaktiUserRequest();
+        request.setEmail("a@a.com");
+        request.setShaktiID("shakti-1");
+
+        assertEquals("shakti-1", Utils.shaktiId(Utils.createUserModel(request, null)));
+        assertNull(Utils.shaktiId(new UserResource()));
+    }
+}